@@ -31,6 +31,7 @@ import javax.servlet.http.HttpServlet;
 @WebServlet(
     name = "NewServlet",
     urlPatterns = {"/NewServlet", "/NewServlet2"},
+    loadOnStartup = 1,
     initParams = {
       @WebInitParam(name = "Name", value = "Value"),
       @WebInitParam(name = "Name2", value = "Value2")
@@ -0,0 +1,222 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.BarefootRequestBody;
+
+/**
+ * Fields of an HTTP event that are used to build a servlet request, read either from a map or
+ * straight from the event JSON. A body read from JSON is kept as a slice of the event and only
+ * decoded when the servlet opens it.
+ */
+class AwsEvent {
+  /** payload formats, function URLs use the HTTP API format */
+  enum Format {
+    /** REST API, payload version 1.0 */
+    REST,
+    /** HTTP API and function URL, payload version 2.0 */
+    HTTP,
+    /** application load balancer, single or multi-value */
+    ALB
+  }
+
+  String version, resource, path, method, rawPath, rawQueryString, domainName, requestPath;
+  String source, detailType;
+  String protocol = "HTTP";
+  boolean isBase64Encoded, elb;
+  Map<String, String> headers, queryStringParameters;
+  Map<String, List<String>> multiValueHeaders, multiValueQueryStringParameters;
+  List<String> cookies;
+  /** members kept by {@link AwsEventParser}, without the body and the members it skipped */
+  final Map<String, Object> members = new LinkedHashMap<>();
+
+  private String body;
+  private byte[] buf;
+  private int bodyStart, bodyEnd;
+  private boolean bodyEscaped;
+
+  Format getFormat() {
+    if (elb) {
+      return Format.ALB;
+    }
+    return "2.0".equals(version) ? Format.HTTP : Format.REST;
+  }
+
+  /**
+   * can the response use multiValueHeaders, the load balancer only accepts them when it sent them
+   *
+   * @return true for payload version 1.0 and multi-value load balancer events
+   */
+  boolean acceptsMultiValueHeaders() {
+    switch (getFormat()) {
+      case REST:
+        return true;
+      case ALB:
+        return multiValueHeaders != null;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * reads the fields used from the request context
+   *
+   * @param requestContext request context of the event
+   */
+  void setRequestContext(Map<?, ?> requestContext) {
+    for (Map.Entry<?, ?> f : requestContext.entrySet()) {
+      Object value = f.getValue();
+      if (value == null) {
+        continue;
+      }
+      switch (String.valueOf(f.getKey())) {
+        case "http":
+          if (value instanceof Map) {
+            Map<?, ?> http = (Map<?, ?>) value;
+            Object o = http.get("method");
+            if (o != null) {
+              method = o.toString();
+            }
+            o = http.get("protocol");
+            if (o != null) {
+              protocol = o.toString();
+            }
+          }
+          break;
+        case "domainName":
+          domainName = value.toString();
+          break;
+        case "protocol":
+          protocol = value.toString();
+          break;
+        case "path":
+          requestPath = value.toString();
+          break;
+        case "elb":
+          elb = true;
+          break;
+      }
+    }
+  }
+
+  /**
+   * same rules as {@link BarefootAwsHandler#isWarmup(Map, boolean)}
+   *
+   * @param header true to accept the warmup header
+   * @return true if the event should not be dispatched
+   */
+  boolean isWarmup(boolean header) {
+    if (BarefootAwsHandler.WARMUP_SOURCE.equals(source)) {
+      return true;
+    }
+
+    if (BarefootAwsHandler.EVENTS_SOURCE.equals(source)
+        && BarefootAwsHandler.SCHEDULED_EVENT.equals(detailType)) {
+      return true;
+    }
+
+    Map<String, ?> h = !header ? null : headers == null ? multiValueHeaders : headers;
+
+    if (h != null) {
+      for (String name : h.keySet()) {
+        if (AbstractServletContext.WARMUP_HEADER.equalsIgnoreCase(name)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  void setBody(String s) {
+    body = s;
+    buf = null;
+  }
+
+  /**
+   * keeps the body as the content of a JSON string
+   *
+   * @param b event bytes
+   * @param start offset after the opening quote
+   * @param end offset of the closing quote
+   */
+  void setBody(byte[] b, int start, int end) {
+    body = null;
+    buf = b;
+    bodyStart = start;
+    bodyEnd = end;
+    bodyEscaped = false;
+
+    for (int i = start; i < end; i++) {
+      if (b[i] == '\\') {
+        bodyEscaped = true;
+        break;
+      }
+    }
+  }
+
+  /**
+   * is the body a slice of the event with nothing to unescape
+   *
+   * @return true if the body bytes can be used as they are
+   */
+  boolean isRawSlice() {
+    return buf != null && !bodyEscaped;
+  }
+
+  String getBody() {
+    if (body == null && buf != null) {
+      body = JsonReader.unescape(buf, bodyStart, bodyEnd);
+    }
+    return body;
+  }
+
+  /**
+   * body for the request, a raw slice is used in place and an escaped one is unescaped when read
+   *
+   * @return body or null
+   */
+  BarefootRequestBody getRequestBody() {
+    if (isRawSlice()) {
+      return isBase64Encoded
+          ? BarefootRequestBody.ofBase64(buf, bodyStart, bodyEnd - bodyStart)
+          : BarefootRequestBody.of(buf, bodyStart, bodyEnd - bodyStart, StandardCharsets.UTF_8);
+    }
+
+    if (buf != null && !isBase64Encoded) {
+      return BarefootRequestBody.ofText(this::getBody);
+    }
+
+    String s = getBody();
+
+    if (s == null) {
+      return null;
+    }
+
+    return isBase64Encoded ? BarefootRequestBody.ofBase64(s) : BarefootRequestBody.of(s);
+  }
+}
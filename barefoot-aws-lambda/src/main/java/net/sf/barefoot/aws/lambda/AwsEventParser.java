@@ -0,0 +1,231 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads HTTP events straight from the event JSON. The payload format is taken from the first event
+ * and after that the members which only duplicate what that format already provides are skipped
+ * rather than built. The body is kept as a slice of the event. An event that turns out to be in a
+ * different format is read again without skipping anything.
+ */
+final class AwsEventParser {
+  private volatile AwsEvent.Format format;
+
+  /**
+   * format of the events seen so far
+   *
+   * @return format or null before the first event
+   */
+  AwsEvent.Format getFormat() {
+    return format;
+  }
+
+  /**
+   * reads an event from a reader positioned at its start
+   *
+   * @param reader reader over the whole event
+   * @return event fields
+   * @throws IOException on malformed input
+   */
+  AwsEvent parse(JsonReader reader) throws IOException {
+    AwsEvent.Format expected = format;
+    AwsEvent ev = parse(reader, expected);
+    AwsEvent.Format actual = ev.getFormat();
+
+    if (expected != actual) {
+      format = actual;
+
+      if (expected != null) {
+        ev = parse(reader.restart(), null);
+      }
+    }
+
+    return ev;
+  }
+
+  private static AwsEvent parse(JsonReader reader, AwsEvent.Format expected) throws IOException {
+    AwsEvent ev = new AwsEvent();
+
+    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+      throw new IOException("event is not a JSON object");
+    }
+
+    reader.beginObject();
+
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+
+      switch (name) {
+        case "version":
+          ev.version = reader.nextString();
+          ev.members.put(name, ev.version);
+          break;
+        case "resource":
+          ev.resource = reader.nextString();
+          ev.members.put(name, ev.resource);
+          break;
+        case "path":
+          ev.path = reader.nextString();
+          ev.members.put(name, ev.path);
+          break;
+        case "httpMethod":
+          ev.method = reader.nextString();
+          ev.members.put(name, ev.method);
+          break;
+        case "rawPath":
+          ev.rawPath = reader.nextString();
+          ev.members.put(name, ev.rawPath);
+          break;
+        case "rawQueryString":
+          ev.rawQueryString = reader.nextString();
+          ev.members.put(name, ev.rawQueryString);
+          break;
+        case "source":
+          ev.source = reader.nextString();
+          ev.members.put(name, ev.source);
+          break;
+        case "detail-type":
+          ev.detailType = reader.nextString();
+          ev.members.put(name, ev.detailType);
+          break;
+        case "isBase64Encoded":
+          if (reader.peek() == JsonReader.Token.NULL) {
+            reader.skipValue();
+          } else {
+            ev.isBase64Encoded = reader.nextBoolean();
+          }
+          ev.members.put(name, ev.isBase64Encoded);
+          break;
+        case "body":
+          if (reader.peek() == JsonReader.Token.STRING) {
+            int end = reader.endOfString();
+            int start = reader.position() + 1;
+            reader.skipValue();
+            ev.setBody(reader.buf, start, end);
+          } else {
+            ev.setBody(reader.nextString());
+          }
+          break;
+        case "headers":
+          ev.headers = readStringMap(reader);
+          ev.members.put(name, ev.headers);
+          break;
+        case "multiValueHeaders":
+          if (expected == AwsEvent.Format.REST || expected == AwsEvent.Format.HTTP) {
+            reader.skipValue();
+          } else {
+            ev.multiValueHeaders = readListMap(reader);
+            ev.members.put(name, ev.multiValueHeaders);
+          }
+          break;
+        case "queryStringParameters":
+          if (expected == AwsEvent.Format.REST || expected == AwsEvent.Format.HTTP) {
+            reader.skipValue();
+          } else {
+            ev.queryStringParameters = readStringMap(reader);
+            ev.members.put(name, ev.queryStringParameters);
+          }
+          break;
+        case "multiValueQueryStringParameters":
+          ev.multiValueQueryStringParameters = readListMap(reader);
+          ev.members.put(name, ev.multiValueQueryStringParameters);
+          break;
+        case "cookies":
+          ev.cookies = readList(reader);
+          ev.members.put(name, ev.cookies);
+          break;
+        case "requestContext":
+          {
+            Object value = reader.readValue();
+            if (value instanceof Map) {
+              ev.setRequestContext((Map<?, ?>) value);
+            }
+            ev.members.put(name, value);
+          }
+          break;
+        default:
+          ev.members.put(name, reader.readValue());
+          break;
+      }
+    }
+
+    reader.endObject();
+
+    return ev;
+  }
+
+  private static Map<String, String> readStringMap(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.skipValue();
+      return null;
+    }
+
+    Map<String, String> map = new LinkedHashMap<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      map.put(name, reader.nextString());
+    }
+    reader.endObject();
+    return map;
+  }
+
+  private static Map<String, List<String>> readListMap(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.skipValue();
+      return null;
+    }
+
+    Map<String, List<String>> map = new LinkedHashMap<>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      List<String> list = readList(reader);
+      if (list != null) {
+        map.put(name, list);
+      }
+    }
+    reader.endObject();
+    return map;
+  }
+
+  private static List<String> readList(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonReader.Token.NULL) {
+      reader.skipValue();
+      return null;
+    }
+
+    List<String> list = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      list.add(reader.nextString());
+    }
+    reader.endArray();
+    return list;
+  }
+}
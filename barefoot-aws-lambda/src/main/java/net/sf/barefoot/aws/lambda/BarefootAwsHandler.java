@@ -23,15 +23,12 @@ package net.sf.barefoot.aws.lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,7 +38,11 @@ import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
 import net.sf.barefoot.context.AbstractServletResponse;
 import net.sf.barefoot.context.BarefootContentType;
+import net.sf.barefoot.context.BarefootPrimingRequest;
+import net.sf.barefoot.context.BarefootResponseHeaders;
 import net.sf.barefoot.context.BarefootServletException;
+import net.sf.barefoot.context.jfr.BarefootResponseSerializationEvent;
+import net.sf.barefoot.util.ResponseBuffer;
 
 /** Dispatcher for requests received from Gateway */
 public class BarefootAwsHandler
@@ -49,11 +50,27 @@ public class BarefootAwsHandler
   final AbstractServletContext servletContext;
   final HttpServletRequestFactory requestFactory = new HttpServletRequestFactory();
   static final String CONTENT_TYPE = "Content-Type",
+      CONTENT_ENCODING = "Content-Encoding",
       STATUS_CODE = "statusCode",
       IS_BASE64_ENCODED = "isBase64Encoded",
       BODY = "body",
       HEADERS = "headers",
-      COOKIES = "cookies";
+      MULTI_VALUE_HEADERS = "multiValueHeaders",
+      COOKIES = "cookies",
+      SET_COOKIE = "Set-Cookie",
+      SOURCE = "source",
+      WARMUP_SOURCE = "serverless-plugin-warmup",
+      EVENTS_SOURCE = "aws.events",
+      DETAIL_TYPE = "detail-type",
+      SCHEDULED_EVENT = "Scheduled Event";
+  /** invocation payload limit, responses beyond it would fail in the runtime */
+  static final long PAYLOAD_LIMIT = 6L << 20;
+  /** room in the payload for the status, headers and JSON quoting of the envelope */
+  static final long ENVELOPE_RESERVE = 64L << 10;
+  /** most bytes of a body returned as text */
+  static final long BODY_LIMIT = PAYLOAD_LIMIT - ENVELOPE_RESERVE;
+  /** most bytes of a body returned as Base64, which takes 4 characters for every 3 bytes */
+  static final long BASE64_BODY_LIMIT = BODY_LIMIT / 4 * 3;
 
   public BarefootAwsHandler(AbstractServletContext sc) {
     servletContext = sc;
@@ -63,116 +80,275 @@ public class BarefootAwsHandler
     return servletContext;
   }
 
-  Map<String, Object> writeResponse(AbstractServletResponse response, Output output)
+  /**
+   * runs the context's priming requests through this handler as API Gateway HTTP API events, the
+   * responses are discarded
+   *
+   * @return number of requests run
+   */
+  public int prime() {
+    return servletContext.prime(servletContext.getPrimingRequests(), this::prime);
+  }
+
+  void prime(BarefootPrimingRequest request) {
+    handleRequest(createEvent(request, servletContext.getContextPath()), new PrimingContext());
+  }
+
+  /**
+   * creates a payload version 2.0 event for a priming request
+   *
+   * @param request priming request
+   * @param contextPath context path of the servlet context
+   * @return event
+   */
+  static Map<String, Object> createEvent(BarefootPrimingRequest request, String contextPath) {
+    Map<String, Object> event = new HashMap<>();
+    Map<String, Object> requestContext = new HashMap<>();
+    Map<String, Object> http = new HashMap<>();
+    Map<String, String> headers = new HashMap<>();
+    List<String> cookies = new ArrayList<>();
+
+    http.put("method", request.getMethod());
+    http.put("path", request.getPath());
+    http.put("protocol", "HTTP/1.1");
+    requestContext.put("http", http);
+    requestContext.put("domainName", "localhost");
+    requestContext.put("path", contextPath + request.getPath());
+
+    for (Map.Entry<String, List<String>> e : request.getHeaders().entrySet()) {
+      if ("cookie".equals(e.getKey())) {
+        for (String value : e.getValue()) {
+          cookies.addAll(Arrays.asList(value.split(";\\s*")));
+        }
+      } else {
+        headers.put(e.getKey(), String.join(",", e.getValue()));
+      }
+    }
+
+    event.put("version", "2.0");
+    event.put("rawPath", request.getPath());
+    event.put("rawQueryString", request.getQueryString() == null ? "" : request.getQueryString());
+    event.put("requestContext", requestContext);
+    event.put(HEADERS, headers);
+    event.put(IS_BASE64_ENCODED, false);
+
+    if (!cookies.isEmpty()) {
+      event.put(COOKIES, cookies);
+    }
+
+    if (request.getBody() != null) {
+      event.put(BODY, request.getBody());
+    }
+
+    return event;
+  }
+
+  /**
+   * recognises keep-warm pings, scheduled events from EventBridge, the serverless warmup plugin or,
+   * when enabled, a request carrying the warmup header
+   *
+   * @param in event
+   * @param header true to accept the warmup header
+   * @return true if the event should not be dispatched
+   */
+  static boolean isWarmup(Map<String, Object> in, boolean header) {
+    Object source = in.get(SOURCE);
+
+    if (WARMUP_SOURCE.equals(source)) {
+      return true;
+    }
+
+    if (EVENTS_SOURCE.equals(source) && SCHEDULED_EVENT.equals(in.get(DETAIL_TYPE))) {
+      return true;
+    }
+
+    Object headers = header ? in.get(HEADERS) : null;
+
+    if (headers instanceof Map) {
+      for (Object name : ((Map<?, ?>) headers).keySet()) {
+        if (AbstractServletContext.WARMUP_HEADER.equalsIgnoreCase(name.toString())) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * collects the response headers as returned to the gateway, either as multiValueHeaders holding
+   * every header including the content type and set-cookie, or as headers with repeated values
+   * joined by commas and set-cookie values in the cookie list
+   *
+   * @param response servlet response
+   * @param headers receives each header with its values joined, null to use multiValueHeaders
+   * @param multiValueHeaders receives every value of each header, null to use headers
+   * @param cookies set-cookie values, moved to multiValueHeaders when that is used
+   * @return content type or null
+   */
+  static String collectHeaders(
+      AbstractServletResponse response,
+      Map<String, String> headers,
+      Map<String, List<String>> multiValueHeaders,
+      List<String> cookies) {
+    HeaderCollector collector =
+        new HeaderCollector(headers, multiValueHeaders, cookies, response.getContentType());
+    response.forEachHeader(collector);
+
+    if (multiValueHeaders != null) {
+      for (String cookie : cookies) {
+        collector.add(SET_COOKIE, cookie);
+      }
+      cookies.clear();
+      if (collector.contentType != null) {
+        multiValueHeaders.put(CONTENT_TYPE, Collections.singletonList(collector.contentType));
+      }
+    } else if (collector.contentType != null) {
+      headers.put(CONTENT_TYPE, collector.contentType);
+    }
+
+    return collector.contentType;
+  }
+
+  /** each header with its values joined by commas, or every value for multiValueHeaders */
+  private static class HeaderCollector implements BarefootResponseHeaders.Visitor {
+    final Map<String, String> headers;
+    final Map<String, List<String>> multiValueHeaders;
+    final List<String> cookies;
+    String contentType;
+    boolean hasContentType;
+
+    HeaderCollector(Map<String, String> h, Map<String, List<String>> m, List<String> c, String t) {
+      headers = h;
+      multiValueHeaders = m;
+      cookies = c;
+      contentType = t;
+    }
+
+    void add(String name, String value) {
+      multiValueHeaders.computeIfAbsent(name, (k) -> new ArrayList<>(1)).add(value);
+    }
+
+    @Override
+    public void header(String name, String value) {
+      if (CONTENT_TYPE.equalsIgnoreCase(name)) {
+        if (!hasContentType) {
+          hasContentType = true;
+          contentType = value;
+        }
+      } else if (SET_COOKIE.equalsIgnoreCase(name)) {
+        cookies.add(value);
+      } else if (multiValueHeaders != null) {
+        add(name, value);
+      } else {
+        headers.merge(name, value, (a, b) -> a + ", " + b);
+      }
+    }
+  }
+
+  Map<String, Object> writeResponse(
+      AbstractServletResponse response, ResponseBuffer output, boolean multiValue)
       throws IOException {
+    BarefootResponseSerializationEvent event = new BarefootResponseSerializationEvent();
+    event.begin();
     Map<String, Object> reply = new HashMap<>();
 
     reply.put(STATUS_CODE, response.getStatus());
 
     List<String> cookies = response.getSetCookieHeaders();
-    String contentType = response.getContentType();
-    Map<String, String> headers = new HashMap<>();
-    for (String name : response.getHeaderNames()) {
-      switch (name.toLowerCase()) {
-        case "content-type":
-          contentType = response.getHeader(name);
-          break;
-        case "set-cookie":
-          Collection<String> values = response.getHeaders(name);
-          if (!values.isEmpty()) {
-            cookies.addAll(values);
-          }
-          break;
-        default:
-          String value = response.getHeader(name);
-          if (value != null) {
-            headers.put(name, value);
-          }
-      }
-    }
+    Map<String, String> headers = multiValue ? null : new HashMap<>();
+    Map<String, List<String>> multiValueHeaders = multiValue ? new HashMap<>() : null;
+    String contentType = collectHeaders(response, headers, multiValueHeaders, cookies);
 
-    if (output.outputStream != null) {
-      byte[] toByteArray = output.outputStream.toByteArray();
+    if (output.size() > 0) {
       String csn = response.getCharacterEncoding();
-      if (csn != null) {
-        Charset charSet = Charset.forName(csn);
-        reply.put(BODY, new String(toByteArray, charSet));
+      if (response.getHeader(CONTENT_ENCODING) != null) {
+        reply.put(BODY, toBase64(output));
+        reply.put(IS_BASE64_ENCODED, true);
+      } else if (output.getWriterCharset() != null) {
+        reply.put(BODY, output.toString(output.getWriterCharset()));
+        reply.put(IS_BASE64_ENCODED, false);
+      } else if (csn != null) {
+        reply.put(BODY, output.toString(Charset.forName(csn)));
         reply.put(IS_BASE64_ENCODED, false);
       } else {
         if (BarefootContentType.isText(contentType)) {
-          reply.put(BODY, new String(toByteArray, StandardCharsets.UTF_8));
+          reply.put(BODY, output.toString(StandardCharsets.UTF_8));
           reply.put(IS_BASE64_ENCODED, false);
         } else {
-          reply.put(BODY, Base64.getEncoder().encodeToString(toByteArray));
+          reply.put(BODY, toBase64(output));
           reply.put(IS_BASE64_ENCODED, true);
         }
       }
-    } else {
-      if (output.writer != null) {
-        reply.put(BODY, output.writer.toString());
-        reply.put(IS_BASE64_ENCODED, false);
-      }
     }
 
-    if (contentType != null) {
-      headers.put(CONTENT_TYPE, contentType);
+    if (headers != null && !headers.isEmpty()) {
+      reply.put(HEADERS, headers);
     }
 
-    if (!headers.isEmpty()) {
-      reply.put(HEADERS, headers);
+    if (multiValueHeaders != null && !multiValueHeaders.isEmpty()) {
+      reply.put(MULTI_VALUE_HEADERS, multiValueHeaders);
     }
 
     if (!cookies.isEmpty()) {
       reply.put(COOKIES, cookies);
     }
 
+    if (event.shouldCommit()) {
+      event.adapter = "aws";
+      event.status = response.getStatus();
+      event.bodyLength = output.size();
+      event.commit();
+    }
+
     return reply;
   }
 
+  /** encodes a body that still fits the payload once it has grown by a third */
+  private static String toBase64(ResponseBuffer output)
+      throws ResponseBuffer.LimitExceededException {
+    if (output.size() > BASE64_BODY_LIMIT) {
+      throw new ResponseBuffer.LimitExceededException(BASE64_BODY_LIMIT);
+    }
+
+    return output.toBase64();
+  }
+
   @Override
   public Map<String, Object> handleRequest(Map<String, Object> in, Context cntxt) {
     Map<String, Object> out;
+
+    if (isWarmup(in, servletContext.isWarmupHeaderEnabled())) {
+      out = new HashMap<>();
+      out.put(STATUS_CODE, 204);
+      return out;
+    }
+
+    ResponseBuffer output = new ResponseBuffer(servletContext.getResponseLimit(BODY_LIMIT));
+
     try {
-      AbstractServletRequest request = requestFactory.create(servletContext, in, cntxt);
-      Output output = new Output();
-      AbstractServletResponse response =
-          request
-              .getServletResponseBuilder()
-              .outputStream(() -> output.getOutputStream())
-              .writer(() -> output.getWriter())
-              .build();
+      AwsEvent ev = HttpServletRequestFactory.toEvent(in);
+      AbstractServletRequest request = requestFactory.create(servletContext, ev, in, cntxt);
+      AbstractServletResponse response = request.getServletResponseBuilder().buffer(output).build();
 
       servletContext.dispatch(request, response);
 
-      out = writeResponse(response, output);
+      if (output.isLimitExceeded()) {
+        throw new ResponseBuffer.LimitExceededException(output.getLimit());
+      }
+
+      out = writeResponse(response, output, ev.acceptsMultiValueHeaders());
     } catch (RuntimeException | IOException | BarefootServletException ex) {
       cntxt.getLogger().log(ex.getMessage());
       Logger.getGlobal().log(Level.INFO, "dispatch", ex);
       out = new HashMap<>();
-      out.put(STATUS_CODE, 500);
+      out.put(
+          STATUS_CODE,
+          output.isLimitExceeded() || ex instanceof ResponseBuffer.LimitExceededException
+              ? 502
+              : 500);
     }
 
     return out;
   }
-
-  private static class Output {
-    ByteArrayOutputStream outputStream;
-    StringWriter writer;
-    PrintWriter printer;
-
-    OutputStream getOutputStream() {
-      if (writer != null) throw new IllegalStateException("writer already open");
-      if (outputStream == null) outputStream = new ByteArrayOutputStream();
-      return outputStream;
-    }
-
-    PrintWriter getWriter() {
-      if (outputStream != null) throw new IllegalStateException("stream already open");
-      if (writer == null) {
-        writer = new StringWriter();
-        printer = new PrintWriter(writer);
-      }
-      return printer;
-    }
-  }
 }
@@ -0,0 +1,135 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootPrimingRequest;
+import net.sf.barefoot.context.BarefootServletException;
+
+/**
+ * Dispatcher for requests received from Gateway as streams. The response envelope is written
+ * straight to the output stream with the body encoded as the servlet writes it, rather than being
+ * buffered and returned for the runtime to serialise. With response streaming the envelope is
+ * replaced by the HTTP integration prelude and the body is written unencoded, as used by function
+ * URLs invoked with response streaming.
+ */
+public class BarefootAwsStreamHandler implements RequestStreamHandler {
+  final AbstractServletContext servletContext;
+  final HttpServletRequestFactory requestFactory = new HttpServletRequestFactory();
+  final AwsEventParser eventParser = new AwsEventParser();
+  final boolean responseStreaming;
+
+  /**
+   * create handler
+   *
+   * @param sc servlet context
+   * @param streaming true to write response streaming framing instead of the proxy envelope
+   */
+  public BarefootAwsStreamHandler(AbstractServletContext sc, boolean streaming) {
+    servletContext = sc;
+    responseStreaming = streaming;
+  }
+
+  public BarefootAwsStreamHandler(AbstractServletContext sc) {
+    this(sc, false);
+  }
+
+  public AbstractServletContext getServletContext() {
+    return servletContext;
+  }
+
+  /**
+   * runs the context's priming requests through this handler, the responses are discarded
+   *
+   * @return number of requests run
+   */
+  public int prime() {
+    return servletContext.prime(servletContext.getPrimingRequests(), this::prime);
+  }
+
+  void prime(BarefootPrimingRequest request) {
+    try {
+      handleEvent(
+          BarefootAwsHandler.createEvent(request, servletContext.getContextPath()),
+          OutputStream.nullOutputStream(),
+          new PrimingContext());
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  @Override
+  public void handleRequest(InputStream input, OutputStream output, Context cntxt)
+      throws IOException {
+    AwsEvent ev = eventParser.parse(JsonReader.of(input));
+
+    handleEvent(ev, ev.members, output, cntxt);
+  }
+
+  void handleEvent(Map<String, Object> in, OutputStream output, Context cntxt) throws IOException {
+    handleEvent(HttpServletRequestFactory.toEvent(in), in, output, cntxt);
+  }
+
+  private void handleEvent(AwsEvent ev, Object original, OutputStream output, Context cntxt)
+      throws IOException {
+    ProxyResponseWriter writer =
+        new ProxyResponseWriter(new BufferedOutputStream(output), responseStreaming);
+
+    if (ev.isWarmup(servletContext.isWarmupHeaderEnabled())) {
+      writer.writeStatus(204);
+      return;
+    }
+
+    try {
+      AbstractServletRequest request = requestFactory.create(servletContext, ev, original, cntxt);
+      AbstractServletResponse response =
+          request
+              .getServletResponseBuilder()
+              .outputStream(() -> writer.getOutputStream())
+              .writer(() -> writer.getWriter())
+              .build();
+
+      writer.setResponse(response);
+      writer.setMultiValueHeaders(ev.acceptsMultiValueHeaders());
+      servletContext.dispatch(request, response);
+      writer.finish();
+    } catch (RuntimeException | IOException | BarefootServletException ex) {
+      cntxt.getLogger().log(ex.getMessage());
+      Logger.getGlobal().log(Level.INFO, "dispatch", ex);
+      if (writer.isCommitted()) {
+        throw ex instanceof IOException ? (IOException) ex : new IOException(ex);
+      }
+      writer.writeStatus(500);
+    }
+  }
+}
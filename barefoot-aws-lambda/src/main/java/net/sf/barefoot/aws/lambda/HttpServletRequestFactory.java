@@ -23,134 +23,129 @@ package net.sf.barefoot.aws.lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
-import net.sf.barefoot.context.BarefootContentType;
 import net.sf.barefoot.context.BarefootPreprocessor;
+import net.sf.barefoot.context.BarefootRequestBody;
+import net.sf.barefoot.context.BarefootRequestHeaders;
 import net.sf.barefoot.context.BarefootServletContextLogger;
-import net.sf.barefoot.util.ReaderInputStream;
+import net.sf.barefoot.context.jfr.BarefootRequestConversionEvent;
 
 /** create an HTTP request from the input from the gateway */
 public class HttpServletRequestFactory {
-  static final String UTF8_NAME = StandardCharsets.UTF_8.name(),
-      CONTENT_TYPE = "content-type",
-      HOST = "host",
-      X_FORWARD_PORT = "x-forwarded-port",
-      X_FORWARD_PROTO = "x-forwarded-proto";
+  static final String UTF8_NAME = StandardCharsets.UTF_8.name();
   private final BarefootPreprocessor preProcessor = new BarefootPreprocessor();
 
   /* create request from AWS proxy request */
   public AbstractServletRequest create(
       AbstractServletContext servletContext, Map<String, Object> map, Context ctxt)
       throws IOException {
-    AbstractServletRequest.Builder builder = servletContext.getServletRequestBuilder();
-    String body = null;
-    boolean isBase64Encoded = false;
-    String rawPath = null, rawQueryString = null, path = null, resource = null;
-    String version = null;
-    String domainName = null, requestPath = null;
-    String protocol = "HTTP";
-    Map<String, List<String>> multiValueQueryStringParameters = null, multiValueHeaders = null;
-    Map<String, String> headers = null;
-    List<String> cookies = null;
-    String contentType = null;
-    String serverName;
-    String host = null;
-    int serverPort = -1;
-    String fwdProto = null;
-    boolean isSecure = true;
-    String contextPath;
+    return create(servletContext, toEvent(map), map, ctxt);
+  }
+
+  /**
+   * reads the fields of an event map
+   *
+   * @param map event as deserialised by the runtime
+   * @return event fields
+   */
+  static AwsEvent toEvent(Map<String, Object> map) {
+    AwsEvent ev = new AwsEvent();
 
     for (Map.Entry<String, Object> e : map.entrySet()) {
       switch (e.getKey()) {
         case "resource":
-          resource = toStringWithDefault(e.getValue(), resource);
+          ev.resource = toStringWithDefault(e.getValue(), ev.resource);
           break;
         case "path":
-          path = toStringWithDefault(e.getValue(), path);
+          ev.path = toStringWithDefault(e.getValue(), ev.path);
           break;
         case "httpMethod":
-          builder.method(e.getValue().toString());
+          ev.method = e.getValue().toString();
           break;
         case "version":
-          version = e.getValue().toString();
+          ev.version = e.getValue().toString();
           break;
         case "isBase64Encoded":
-          isBase64Encoded = toBooleanWithDefault(e.getValue(), isBase64Encoded);
+          ev.isBase64Encoded = toBooleanWithDefault(e.getValue(), ev.isBase64Encoded);
           break;
         case "body":
-          body = toStringWithDefault(e.getValue(), body);
+          ev.setBody(toStringWithDefault(e.getValue(), null));
           break;
         case "rawQueryString":
-          rawQueryString = toStringWithDefault(e.getValue(), rawQueryString);
+          ev.rawQueryString = toStringWithDefault(e.getValue(), ev.rawQueryString);
           break;
         case "rawPath":
-          rawPath = toStringWithDefault(e.getValue(), rawPath);
+          ev.rawPath = toStringWithDefault(e.getValue(), ev.rawPath);
+          break;
+        case "queryStringParameters":
+          ev.queryStringParameters = (Map<String, String>) e.getValue();
           break;
         case "multiValueQueryStringParameters":
-          multiValueQueryStringParameters = (Map<String, List<String>>) e.getValue();
+          ev.multiValueQueryStringParameters = (Map<String, List<String>>) e.getValue();
           break;
         case "multiValueHeaders":
-          multiValueHeaders = (Map<String, List<String>>) e.getValue();
+          ev.multiValueHeaders = (Map<String, List<String>>) e.getValue();
           break;
         case "headers":
-          headers = (Map<String, String>) e.getValue();
+          ev.headers = (Map<String, String>) e.getValue();
           break;
         case "cookies":
-          cookies = (List<String>) e.getValue();
+          ev.cookies = (List<String>) e.getValue();
+          break;
+        case "source":
+          ev.source = toStringWithDefault(e.getValue(), ev.source);
+          break;
+        case "detail-type":
+          ev.detailType = toStringWithDefault(e.getValue(), ev.detailType);
           break;
         case "requestContext":
-          {
-            Map<String, Object> requestContext = (Map<String, Object>) e.getValue();
-            for (Map.Entry<String, Object> f : requestContext.entrySet()) {
-              switch (f.getKey()) {
-                case "http":
-                  {
-                    Map<String, Object> http = (Map<String, Object>) f.getValue();
-                    for (Map.Entry<String, Object> g : http.entrySet()) {
-                      switch (g.getKey()) {
-                        case "method":
-                          builder.method(g.getValue().toString());
-                          break;
-                        case "protocol":
-                          protocol = toStringWithDefault(g.getValue(), protocol);
-                          break;
-                      }
-                    }
-                  }
-                  break;
-                case "domainName":
-                  domainName = toStringWithDefault(f.getValue(), domainName);
-                  break;
-                case "protocol":
-                  protocol = toStringWithDefault(f.getValue(), protocol);
-                  break;
-                case "path":
-                  requestPath = toStringWithDefault(f.getValue(), requestPath);
-                  break;
-              }
-            }
+          if (e.getValue() instanceof Map) {
+            ev.setRequestContext((Map<?, ?>) e.getValue());
           }
           break;
       }
     }
 
-    builder.protocol(protocol);
+    return ev;
+  }
 
-    String rp = rawPath == null ? path == null ? resource : path : rawPath;
+  /**
+   * create request from the fields of an event
+   *
+   * @param servletContext context
+   * @param ev event fields
+   * @param original value for the original request attribute
+   * @param ctxt lambda context
+   * @return request
+   * @throws IOException on failure to read a form body
+   */
+  AbstractServletRequest create(
+      AbstractServletContext servletContext, AwsEvent ev, Object original, Context ctxt)
+      throws IOException {
+    BarefootRequestConversionEvent event = new BarefootRequestConversionEvent();
+    event.begin();
+    AbstractServletRequest.Builder builder = servletContext.getServletRequestBuilder();
+    String rawPath = ev.rawPath, path = ev.path, requestPath = ev.requestPath;
+    Map<String, List<String>> multiValueQueryStringParameters = ev.multiValueQueryStringParameters;
+    boolean isAlb = ev.getFormat() == AwsEvent.Format.ALB;
+    String serverName;
+    int serverPort = -1;
+    boolean isSecure = true;
+    String contextPath;
+
+    if (ev.method != null) {
+      builder.method(ev.method);
+    }
+
+    builder.protocol(ev.protocol);
+
+    String rp = rawPath == null ? path == null ? ev.resource : path : rawPath;
 
     if (requestPath != null) {
       builder.requestUri(requestPath);
@@ -165,83 +160,54 @@ public class HttpServletRequestFactory {
       builder.requestUri(rp);
     }
 
-    if (rawQueryString != null) {
-      builder.queryString(rawQueryString);
-      if (multiValueQueryStringParameters == null) {
-        multiValueQueryStringParameters = parseQueryString(rawQueryString);
+    if (ev.rawQueryString != null) {
+      builder.queryString(ev.rawQueryString);
+    } else if (multiValueQueryStringParameters != null) {
+      if (!multiValueQueryStringParameters.isEmpty()) {
+        builder.queryString(writeQueryString(multiValueQueryStringParameters, !isAlb));
       }
-    } else {
-      if (multiValueQueryStringParameters != null && !multiValueQueryStringParameters.isEmpty()) {
-        builder.queryString(writeQueryString(multiValueQueryStringParameters));
+    } else if (ev.queryStringParameters != null && !ev.queryStringParameters.isEmpty()) {
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, String> e : ev.queryStringParameters.entrySet()) {
+        appendParameter(sb, e.getKey(), e.getValue(), !isAlb);
       }
+      builder.queryString(sb.toString());
     }
 
-    if (cookies != null && !cookies.isEmpty()) {
-      builder.cookies(cookies);
+    if (ev.cookies != null && !ev.cookies.isEmpty()) {
+      builder.cookies(ev.cookies);
     }
 
-    Map<String, List<String>> lowerCaseHeaders = new HashMap<>();
-
-    if (headers != null) {
-      for (Map.Entry<String, String> e : headers.entrySet()) {
-        String key = e.getKey().toLowerCase();
-        String value = e.getValue();
-        List list = new ArrayList();
-        list.add(value);
-        lowerCaseHeaders.put(key, list);
-        switch (key) {
-          case HOST:
-            host = value;
-            break;
-          case X_FORWARD_PORT:
-            serverPort = Integer.parseInt(value);
-            break;
-          case X_FORWARD_PROTO:
-            fwdProto = value;
-            break;
-          case CONTENT_TYPE:
-            contentType = value;
-            break;
-        }
+    BarefootRequestHeaders headers = new BarefootRequestHeaders();
+
+    if (ev.headers != null) {
+      for (Map.Entry<String, String> e : ev.headers.entrySet()) {
+        headers.add(e.getKey(), e.getValue());
+      }
+    } else if (ev.multiValueHeaders != null) {
+      for (Map.Entry<String, List<String>> e : ev.multiValueHeaders.entrySet()) {
+        headers.add(e.getKey(), e.getValue());
       }
     }
 
-    builder.headers(lowerCaseHeaders);
-    builder.contentType(contentType);
+    String forwardedPort = headers.get(BarefootRequestHeaders.X_FORWARDED_PORT);
+    if (forwardedPort != null) {
+      serverPort = Integer.parseInt(forwardedPort);
+    }
+    String host = headers.get(BarefootRequestHeaders.HOST);
+    String fwdProto = headers.get(BarefootRequestHeaders.X_FORWARDED_PROTO);
+    String contentType = headers.get(BarefootRequestHeaders.CONTENT_TYPE);
 
-    if (body != null) {
-      if (preProcessor.isApplicationFormUrlEncoded(contentType)) {
-        String cs = BarefootContentType.getCharsetFromContentType(contentType);
-        Charset charSet = cs == null ? StandardCharsets.UTF_8 : Charset.forName(cs);
-
-        if (multiValueQueryStringParameters == null) {
-          multiValueQueryStringParameters = new HashMap<>();
-        } else {
-          multiValueQueryStringParameters = deepCopy(multiValueQueryStringParameters);
-        }
+    builder.headers(headers);
+    builder.contentType(contentType);
 
-        preProcessor.processApplicationFormUrlEncoded(
-            isBase64Encoded
-                ? new InputStreamReader(base64InputStream(body))
-                : new StringReader(body),
-            multiValueQueryStringParameters,
-            charSet);
-      } else {
-        final String finalBody = body;
+    BarefootRequestBody body = ev.getRequestBody();
 
-        if (isBase64Encoded) {
-          builder.inputStream(() -> base64InputStream(finalBody));
-        } else {
-          builder.reader(() -> new StringReader(finalBody));
-        }
-      }
+    if (body != null) {
+      builder.body(body);
     }
 
-    if (multiValueQueryStringParameters == null) {
-      builder.parameters(new HashMap<>());
-    } else {
-      builder.parameters(collapse(multiValueQueryStringParameters));
-    }
+    builder.preprocessor(preProcessor);
 
     if (host != null) {
       String[] hp = host.split(":");
@@ -249,7 +215,7 @@ public class HttpServletRequestFactory {
       if (hp.length > 1) serverPort = Integer.parseInt(hp[1]);
       isSecure = !"localhost".equals(serverName);
     } else {
-      serverName = domainName;
+      serverName = ev.domainName;
     }
 
     StringBuilder sb = new StringBuilder();
@@ -301,86 +267,53 @@ public class HttpServletRequestFactory {
 
     AbstractServletRequest result = builder.build();
 
-    result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_REQUEST, map);
+    result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_REQUEST, original);
     result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_CONTEXT, ctxt);
 
+    if (event.shouldCommit()) {
+      event.adapter = "aws";
+      event.method = result.getMethod();
+      event.requestURI = result.getRequestURI();
+      event.contentLength = result.getContentLengthLong();
+      event.commit();
+    }
+
     return result;
   }
 
-  private boolean toBooleanWithDefault(Object o, boolean b) {
+  private static boolean toBooleanWithDefault(Object o, boolean b) {
     return o == null ? b : o instanceof Boolean ? (Boolean) o : Boolean.parseBoolean(o.toString());
   }
 
-  private String toStringWithDefault(Object o, String s) {
+  private static String toStringWithDefault(Object o, String s) {
     return o == null ? s : o.toString();
   }
 
-  Map<String, List<String>> parseQueryString(String s) throws UnsupportedEncodingException {
-    Map<String, List<String>> result = new HashMap<>();
-    ;
-
-    if (s != null && !s.isEmpty()) {
-      for (String nv : s.split("&")) {
-        String[] nvp = nv.split("=");
-        String n = URLDecoder.decode(nvp[0], UTF8_NAME);
-        String v = nvp.length > 1 ? URLDecoder.decode(nvp[1], UTF8_NAME) : null;
-
-        List<String> list = result.get(n);
-
-        if (list == null) {
-          list = new ArrayList();
-          result.put(n, list);
-        }
-        list.add(v);
-      }
-    }
-
-    return result;
-  }
-
-  private static final String[] EMPTY_LIST = {};
-
-  private Map<String, String[]> collapse(Map<String, List<String>> in) {
-    Map<String, String[]> result = new HashMap<>();
-
-    in.entrySet()
-        .forEach(
-            (e) -> {
-              result.put(e.getKey(), e.getValue().toArray(EMPTY_LIST));
-            });
-
-    return result;
-  }
-
-  private String writeQueryString(Map<String, List<String>> multiValueQueryStringParameters)
+  /* load balancer query parameters are passed as they appear in the URL */
+  private String writeQueryString(
+      Map<String, List<String>> multiValueQueryStringParameters, boolean encode)
       throws UnsupportedEncodingException {
     StringBuilder sb = new StringBuilder();
 
     for (Map.Entry<String, List<String>> e : multiValueQueryStringParameters.entrySet()) {
-      String name = e.getKey();
       for (String value : e.getValue()) {
-        if (sb.length() > 0) sb.append('&');
-        sb.append(URLEncoder.encode(name, UTF8_NAME));
-        if (value != null) {
-          sb.append('=');
-          if (!value.isEmpty()) {
-            sb.append(URLEncoder.encode(value, UTF8_NAME));
-          }
-        }
+        appendParameter(sb, e.getKey(), value, encode);
       }
     }
 
     return sb.toString();
   }
 
-  private Map<String, List<String>> deepCopy(Map<String, List<String>> map) {
-    Map<String, List<String>> result = new HashMap<>();
-    map.entrySet()
-        .forEach(
-            (e) -> {
-              result.put(e.getKey(), new ArrayList<>(e.getValue()));
-            });
-    return result;
+  private static void appendParameter(StringBuilder sb, String name, String value, boolean encode)
+      throws UnsupportedEncodingException {
+    if (sb.length() > 0) sb.append('&');
+    sb.append(encode ? URLEncoder.encode(name, UTF8_NAME) : name);
+    if (value != null) {
+      sb.append('=');
+      if (!value.isEmpty()) {
+        sb.append(encode ? URLEncoder.encode(value, UTF8_NAME) : value);
+      }
+    }
   }
 
   private static class ContextLogger implements BarefootServletContextLogger {
@@ -400,9 +333,4 @@ public class HttpServletRequestFactory {
       context.getLogger().log(msg);
     }
   }
-
-  private static InputStream base64InputStream(String body) {
-    return Base64.getDecoder()
-        .wrap(new ReaderInputStream(new StringReader(body), StandardCharsets.UTF_8));
-  }
 }
@@ -0,0 +1,582 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull parser for UTF-8 JSON held in a byte array. Values are read in document order, names and
+ * strings are only decoded when asked for.
+ */
+class JsonReader {
+  enum Token {
+    BEGIN_OBJECT,
+    END_OBJECT,
+    BEGIN_ARRAY,
+    END_ARRAY,
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    END
+  }
+
+  // what the enclosing object or array expects next, separators are consumed by peek
+  private static final int SCOPE_EMPTY_OBJECT = 0,
+      SCOPE_NAME = 1,
+      SCOPE_COLON = 2,
+      SCOPE_VALUE = 3,
+      SCOPE_NEXT_NAME = 4,
+      SCOPE_EMPTY_ARRAY = 5,
+      SCOPE_ELEMENT = 6,
+      SCOPE_NEXT_ELEMENT = 7;
+  final byte[] buf;
+  private final int start, limit;
+  private int pos;
+  private int[] scopes = new int[16];
+  private int depth;
+
+  JsonReader(byte[] b, int off, int len) {
+    buf = b;
+    pos = start = off;
+    limit = off + len;
+  }
+
+  JsonReader(byte[] b) {
+    this(b, 0, b.length);
+  }
+
+  /**
+   * reads a whole stream, events are bounded by the invocation payload limit
+   *
+   * @param is source
+   * @return reader over the content
+   * @throws IOException on read error
+   */
+  static JsonReader of(InputStream is) throws IOException {
+    byte[] b = new byte[Math.max(is.available(), 4096)];
+    int len = 0, i;
+
+    while ((i = is.read(b, len, b.length - len)) > 0) {
+      len += i;
+      if (len == b.length) {
+        b = Arrays.copyOf(b, len * 2);
+      }
+    }
+
+    return new JsonReader(b, 0, len);
+  }
+
+  /**
+   * a new reader over the same content from the start
+   *
+   * @return reader
+   */
+  JsonReader restart() {
+    return new JsonReader(buf, start, limit - start);
+  }
+
+  Token peek() throws IOException {
+    skipWhitespace();
+
+    if (pos == limit) {
+      return Token.END;
+    }
+
+    int scope = depth > 0 ? scopes[depth - 1] : SCOPE_VALUE;
+
+    switch (scope) {
+      case SCOPE_COLON:
+        separator(':', SCOPE_VALUE);
+        break;
+      case SCOPE_NEXT_NAME:
+        if (buf[pos] == '}') {
+          return Token.END_OBJECT;
+        }
+        separator(',', SCOPE_NAME);
+        break;
+      case SCOPE_NEXT_ELEMENT:
+        if (buf[pos] == ']') {
+          return Token.END_ARRAY;
+        }
+        separator(',', SCOPE_ELEMENT);
+        break;
+      default:
+        break;
+    }
+
+    scope = depth > 0 ? scopes[depth - 1] : SCOPE_VALUE;
+
+    switch (buf[pos]) {
+      case '"':
+        return scope == SCOPE_EMPTY_OBJECT || scope == SCOPE_NAME ? Token.NAME : Token.STRING;
+      case '}':
+        if (scope != SCOPE_EMPTY_OBJECT) {
+          throw syntaxError("unexpected }");
+        }
+        return Token.END_OBJECT;
+      case ']':
+        if (scope != SCOPE_EMPTY_ARRAY) {
+          throw syntaxError("unexpected ]");
+        }
+        return Token.END_ARRAY;
+      default:
+        break;
+    }
+
+    if (scope == SCOPE_EMPTY_OBJECT || scope == SCOPE_NAME) {
+      throw syntaxError("expected a name");
+    }
+
+    switch (buf[pos]) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case 't':
+      case 'f':
+        return Token.BOOLEAN;
+      case 'n':
+        return Token.NULL;
+      default:
+        byte b = buf[pos];
+        if (b == '-' || (b >= '0' && b <= '9')) {
+          return Token.NUMBER;
+        }
+        throw syntaxError("unexpected character");
+    }
+  }
+
+  private void skipWhitespace() {
+    while (pos < limit) {
+      switch (buf[pos]) {
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\n':
+          pos++;
+          break;
+        default:
+          return;
+      }
+    }
+  }
+
+  /** consumes the separator the enclosing scope expects before its next token */
+  private void separator(char c, int next) throws IOException {
+    if (buf[pos] != c) {
+      throw syntaxError("expected " + c);
+    }
+
+    pos++;
+    scopes[depth - 1] = next;
+    skipWhitespace();
+
+    if (pos == limit) {
+      throw syntaxError("unexpected end");
+    }
+  }
+
+  boolean hasNext() throws IOException {
+    Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+  }
+
+  void beginObject() throws IOException {
+    expect(Token.BEGIN_OBJECT);
+    pos++;
+    push(SCOPE_EMPTY_OBJECT);
+  }
+
+  void endObject() throws IOException {
+    expect(Token.END_OBJECT);
+    pos++;
+    depth--;
+    afterValue();
+  }
+
+  void beginArray() throws IOException {
+    expect(Token.BEGIN_ARRAY);
+    pos++;
+    push(SCOPE_EMPTY_ARRAY);
+  }
+
+  void endArray() throws IOException {
+    expect(Token.END_ARRAY);
+    pos++;
+    depth--;
+    afterValue();
+  }
+
+  String nextName() throws IOException {
+    expect(Token.NAME);
+    String name = readString();
+    scopes[depth - 1] = SCOPE_COLON;
+    return name;
+  }
+
+  /**
+   * reads a string, numbers and booleans are returned as their text
+   *
+   * @return value or null for a JSON null
+   * @throws IOException if the next value is not a scalar
+   */
+  String nextString() throws IOException {
+    String result;
+
+    switch (peek()) {
+      case STRING:
+        result = readString();
+        break;
+      case NUMBER:
+      case BOOLEAN:
+        result = readLiteral();
+        break;
+      case NULL:
+        readLiteral();
+        result = null;
+        break;
+      default:
+        throw syntaxError("expected a string");
+    }
+
+    afterValue();
+    return result;
+  }
+
+  boolean nextBoolean() throws IOException {
+    Token token = peek();
+
+    if (token == Token.STRING) {
+      return Boolean.parseBoolean(nextString());
+    }
+
+    expect(Token.BOOLEAN);
+    String literal = readLiteral();
+    afterValue();
+    return "true".equals(literal);
+  }
+
+  void skipValue() throws IOException {
+    switch (peek()) {
+      case BEGIN_OBJECT:
+        beginObject();
+        while (hasNext()) {
+          nextName();
+          skipValue();
+        }
+        endObject();
+        break;
+      case BEGIN_ARRAY:
+        beginArray();
+        while (hasNext()) {
+          skipValue();
+        }
+        endArray();
+        break;
+      case STRING:
+        skipString();
+        afterValue();
+        break;
+      case NUMBER:
+      case BOOLEAN:
+      case NULL:
+        readLiteral();
+        afterValue();
+        break;
+      default:
+        throw syntaxError("expected a value");
+    }
+  }
+
+  /**
+   * reads the next value as maps, lists, strings, numbers and booleans
+   *
+   * @return value
+   * @throws IOException on malformed input
+   */
+  Object readValue() throws IOException {
+    switch (peek()) {
+      case BEGIN_OBJECT:
+        {
+          Map<String, Object> map = new LinkedHashMap<>();
+          beginObject();
+          while (hasNext()) {
+            String name = nextName();
+            map.put(name, readValue());
+          }
+          endObject();
+          return map;
+        }
+      case BEGIN_ARRAY:
+        {
+          List<Object> list = new ArrayList<>();
+          beginArray();
+          while (hasNext()) {
+            list.add(readValue());
+          }
+          endArray();
+          return list;
+        }
+      case STRING:
+      case NULL:
+        return nextString();
+      case BOOLEAN:
+        return nextBoolean();
+      case NUMBER:
+        {
+          String number = nextString();
+          try {
+            return toNumber(number);
+          } catch (NumberFormatException ex) {
+            throw syntaxError("bad number " + number);
+          }
+        }
+      default:
+        throw syntaxError("expected a value");
+    }
+  }
+
+  private static Number toNumber(String s) {
+    if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+      long l = Long.parseLong(s);
+      if (l == (int) l) {
+        return (int) l;
+      }
+      return l;
+    }
+
+    return Double.valueOf(s);
+  }
+
+  private void push(int scope) {
+    if (depth == scopes.length) {
+      int[] grown = new int[depth * 2];
+      System.arraycopy(scopes, 0, grown, 0, depth);
+      scopes = grown;
+    }
+    scopes[depth++] = scope;
+  }
+
+  private void afterValue() {
+    if (depth > 0) {
+      scopes[depth - 1] = scopes[depth - 1] == SCOPE_VALUE ? SCOPE_NEXT_NAME : SCOPE_NEXT_ELEMENT;
+    }
+  }
+
+  private void expect(Token token) throws IOException {
+    if (peek() != token) {
+      throw syntaxError("expected " + token);
+    }
+  }
+
+  private String readLiteral() throws IOException {
+    int start = pos;
+
+    while (pos < limit) {
+      byte b = buf[pos];
+      if (b == ',' || b == ':' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\r'
+          || b == '\n') {
+        break;
+      }
+      pos++;
+    }
+
+    String literal = new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+
+    switch (literal) {
+      case "true":
+      case "false":
+      case "null":
+        return literal;
+      default:
+        if (buf[start] == 't' || buf[start] == 'f' || buf[start] == 'n') {
+          throw syntaxError("bad literal " + literal);
+        }
+        return literal;
+    }
+  }
+
+  /**
+   * finds the closing quote of the string at the current position, checking its escapes so the
+   * string can be unescaped later
+   *
+   * @return offset of the closing quote
+   */
+  int endOfString() throws IOException {
+    int i = pos + 1;
+
+    while (i < limit) {
+      byte b = buf[i++];
+      if (b == '"') {
+        return i - 1;
+      }
+      if (b == '\\') {
+        switch (i < limit ? buf[i] : 0) {
+          case '"':
+          case '\\':
+          case '/':
+          case 'b':
+          case 'f':
+          case 'n':
+          case 'r':
+          case 't':
+            i++;
+            break;
+          case 'u':
+            if (i + 5 > limit || hex(buf, i + 1) < 0) {
+              throw syntaxError("bad unicode escape at offset " + (i - 1));
+            }
+            i += 5;
+            break;
+          default:
+            throw syntaxError("bad escape at offset " + (i - 1));
+        }
+      }
+    }
+
+    throw syntaxError("unterminated string");
+  }
+
+  /**
+   * decodes four hex digits
+   *
+   * @param b buffer
+   * @param off offset of the first digit
+   * @return the character code, or -1 if a digit is not hex
+   */
+  private static int hex(byte[] b, int off) {
+    int value = 0;
+
+    for (int i = off; i < off + 4; i++) {
+      int digit = Character.digit(b[i], 16);
+      if (digit < 0) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+
+    return value;
+  }
+
+  /**
+   * offset of the next token, valid after {@link #peek()}
+   *
+   * @return offset in the buffer
+   */
+  int position() {
+    return pos;
+  }
+
+  private void skipString() throws IOException {
+    pos = endOfString() + 1;
+  }
+
+  private String readString() throws IOException {
+    int start = pos + 1;
+    int end = endOfString();
+    pos = end + 1;
+    return unescape(buf, start, end);
+  }
+
+  /**
+   * decodes the content of a JSON string already checked by {@link #endOfString()}
+   *
+   * @param b buffer
+   * @param start offset after the opening quote
+   * @param end offset of the closing quote
+   * @return decoded string
+   */
+  static String unescape(byte[] b, int start, int end) {
+    int i = start;
+
+    while (i < end && b[i] != '\\') {
+      i++;
+    }
+
+    if (i == end) {
+      return new String(b, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    StringBuilder sb = new StringBuilder(end - start);
+    int run = start;
+
+    while (i < end) {
+      if (b[i] != '\\') {
+        i++;
+        continue;
+      }
+
+      if (i > run) {
+        sb.append(new String(b, run, i - run, StandardCharsets.UTF_8));
+      }
+
+      char c = (char) b[i + 1];
+      i += 2;
+
+      switch (c) {
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'u':
+          sb.append((char) hex(b, i));
+          i += 4;
+          break;
+        default:
+          sb.append(c);
+          break;
+      }
+
+      run = i;
+    }
+
+    if (end > run) {
+      sb.append(new String(b, run, end - run, StandardCharsets.UTF_8));
+    }
+
+    return sb.toString();
+  }
+
+  private IOException syntaxError(String message) {
+    return new IOException("malformed JSON at offset " + pos + ", " + message);
+  }
+}
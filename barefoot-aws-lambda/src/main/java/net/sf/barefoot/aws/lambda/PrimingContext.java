@@ -0,0 +1,103 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/** lambda context for priming requests run during initialisation */
+class PrimingContext implements Context {
+  private static final AtomicInteger sequence = new AtomicInteger();
+  private final String awsRequestId = "barefoot-priming-" + sequence.incrementAndGet();
+
+  @Override
+  public String getAwsRequestId() {
+    return awsRequestId;
+  }
+
+  @Override
+  public String getLogGroupName() {
+    return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+  }
+
+  @Override
+  public String getLogStreamName() {
+    return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+  }
+
+  @Override
+  public String getFunctionName() {
+    return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+  }
+
+  @Override
+  public String getFunctionVersion() {
+    return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+  }
+
+  @Override
+  public String getInvokedFunctionArn() {
+    return null;
+  }
+
+  @Override
+  public CognitoIdentity getIdentity() {
+    return null;
+  }
+
+  @Override
+  public ClientContext getClientContext() {
+    return null;
+  }
+
+  @Override
+  public int getRemainingTimeInMillis() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int getMemoryLimitInMB() {
+    String size = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+    return size == null ? 0 : Integer.parseInt(size);
+  }
+
+  @Override
+  public LambdaLogger getLogger() {
+    return new LambdaLogger() {
+      @Override
+      public void log(String string) {
+        Logger.getGlobal().log(Level.INFO, string);
+      }
+
+      @Override
+      public void log(byte[] bytes) {
+        log(new String(bytes, StandardCharsets.UTF_8));
+      }
+    };
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootContentType;
+import net.sf.barefoot.context.jfr.BarefootResponseSerializationEvent;
+
+/**
+ * Writes the proxy integration response straight to the Lambda output stream. Status and headers
+ * are written when the servlet first writes to the body, or when it completes, and the body is
+ * encoded as it is written. Text is JSON escaped into the body string, other content is Base64
+ * encoded. Headers set after the body has started are not sent.
+ *
+ * <p>For response streaming the status and headers are written as a JSON prelude followed by eight
+ * zero bytes and the body follows unencoded.
+ */
+class ProxyResponseWriter {
+  static final int PRELUDE_DELIMITER_LENGTH = 8;
+  private final OutputStream out;
+  private final Writer sink;
+  private final boolean streaming;
+  private AbstractServletResponse response;
+  private OutputStream bodyStream;
+  private Writer bodyWriter;
+  private PrintWriter printer;
+  private OutputStream servletStream;
+  private boolean committed, base64, multiValue;
+  private long bodyLength;
+
+  ProxyResponseWriter(OutputStream os, boolean s) {
+    out = os;
+    sink = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+    streaming = s;
+  }
+
+  void setResponse(AbstractServletResponse r) {
+    response = r;
+  }
+
+  /** headers are written as multiValueHeaders, never when streaming */
+  void setMultiValueHeaders(boolean m) {
+    multiValue = m && !streaming;
+  }
+
+  boolean isCommitted() {
+    return committed;
+  }
+
+  /**
+   * stream given to the servlet
+   *
+   * @return stream encoding the body as it is written
+   */
+  OutputStream getOutputStream() {
+    if (printer != null) throw new IllegalStateException("writer already open");
+    if (servletStream == null) {
+      servletStream =
+          new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+              commit(false).write(b);
+              bodyLength++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              commit(false).write(b, off, len);
+              bodyLength += len;
+            }
+
+            @Override
+            public void flush() throws IOException {
+              commit(false).flush();
+            }
+          };
+    }
+    return servletStream;
+  }
+
+  /**
+   * writer given to the servlet
+   *
+   * @return writer encoding the body as it is written
+   */
+  PrintWriter getWriter() {
+    if (servletStream != null) throw new IllegalStateException("stream already open");
+    if (printer == null) {
+      printer =
+          new PrintWriter(
+              new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                  commitWriter().write(cbuf, off, len);
+                  bodyLength += len;
+                }
+
+                @Override
+                public void write(String str, int off, int len) throws IOException {
+                  commitWriter().write(str, off, len);
+                  bodyLength += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                  commitWriter().flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                  flush();
+                }
+              });
+    }
+    return printer;
+  }
+
+  private Writer commitWriter() throws IOException {
+    commit(true);
+    return bodyWriter;
+  }
+
+  /**
+   * writes status and headers then sets up the body encoding
+   *
+   * @param text body is written as characters
+   * @return stream for body bytes
+   */
+  private OutputStream commit(boolean text) throws IOException {
+    if (committed) {
+      return bodyStream;
+    }
+
+    committed = true;
+    response.commit();
+    String contentType = writePrelude();
+    String csn = response.getCharacterEncoding();
+    Charset charset = csn == null ? StandardCharsets.UTF_8 : Charset.forName(csn);
+
+    if (streaming) {
+      sink.write("}");
+      sink.flush();
+      out.write(new byte[PRELUDE_DELIMITER_LENGTH]);
+      bodyStream = out;
+      bodyWriter = new OutputStreamWriter(out, charset);
+    } else {
+      /* an encoded body is binary whatever its type, as the buffered handler sends it */
+      base64 =
+          response.getHeader(BarefootAwsHandler.CONTENT_ENCODING) != null
+              || !text && csn == null && !BarefootContentType.isText(contentType);
+      sink.write(",\"" + BarefootAwsHandler.IS_BASE64_ENCODED + "\":" + base64);
+      sink.write(",\"" + BarefootAwsHandler.BODY + "\":\"");
+
+      if (base64) {
+        sink.flush();
+        bodyStream =
+            Base64.getEncoder()
+                .wrap(
+                    new FilterOutputStream(out) {
+                      @Override
+                      public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                      }
+
+                      @Override
+                      public void close() throws IOException {
+                        flush();
+                      }
+                    });
+        if (text) {
+          bodyWriter = new OutputStreamWriter(bodyStream, charset);
+        }
+      } else {
+        bodyWriter = new JsonStringWriter(sink);
+        bodyStream = new DecodingOutputStream(charset, bodyWriter);
+      }
+    }
+
+    return bodyStream;
+  }
+
+  /**
+   * writes the status and headers, leaving the object open
+   *
+   * @return content type or null
+   */
+  private String writePrelude() throws IOException {
+    Map<String, String> headers = multiValue ? null : new HashMap<>();
+    Map<String, List<String>> multiValueHeaders = multiValue ? new HashMap<>() : null;
+    List<String> cookies = response.getSetCookieHeaders();
+    String contentType =
+        BarefootAwsHandler.collectHeaders(response, headers, multiValueHeaders, cookies);
+
+    sink.write("{\"" + BarefootAwsHandler.STATUS_CODE + "\":" + response.getStatus());
+
+    if (headers != null && !headers.isEmpty()) {
+      sink.write(",\"" + BarefootAwsHandler.HEADERS + "\":{");
+      String separator = "";
+      for (Map.Entry<String, String> e : headers.entrySet()) {
+        sink.write(separator);
+        writeString(e.getKey());
+        sink.write(':');
+        writeString(e.getValue());
+        separator = ",";
+      }
+      sink.write('}');
+    }
+
+    if (multiValueHeaders != null && !multiValueHeaders.isEmpty()) {
+      sink.write(",\"" + BarefootAwsHandler.MULTI_VALUE_HEADERS + "\":{");
+      String separator = "";
+      for (Map.Entry<String, List<String>> e : multiValueHeaders.entrySet()) {
+        sink.write(separator);
+        writeString(e.getKey());
+        sink.write(':');
+        writeStrings(e.getValue());
+        separator = ",";
+      }
+      sink.write('}');
+    }
+
+    if (!cookies.isEmpty()) {
+      sink.write(",\"" + BarefootAwsHandler.COOKIES + "\":");
+      writeStrings(cookies);
+    }
+
+    return contentType;
+  }
+
+  private void writeStrings(List<String> list) throws IOException {
+    sink.write('[');
+    String separator = "";
+    for (String s : list) {
+      sink.write(separator);
+      writeString(s);
+      separator = ",";
+    }
+    sink.write(']');
+  }
+
+  private void writeString(String s) throws IOException {
+    sink.write('"');
+    JsonStringWriter.escape(sink, s, 0, s.length());
+    sink.write('"');
+  }
+
+  /**
+   * completes the response, writing status and headers if the servlet wrote no body
+   *
+   * @throws IOException on write error
+   */
+  void finish() throws IOException {
+    BarefootResponseSerializationEvent event = new BarefootResponseSerializationEvent();
+    event.begin();
+
+    if (printer != null) {
+      printer.flush();
+    }
+
+    if (!committed) {
+      committed = true;
+      response.commit();
+      writePrelude();
+      sink.write('}');
+      if (streaming) {
+        sink.flush();
+        out.write(new byte[PRELUDE_DELIMITER_LENGTH]);
+      }
+    } else if (streaming) {
+      if (bodyWriter != null) {
+        bodyWriter.flush();
+      }
+    } else {
+      if (base64) {
+        if (bodyWriter != null) {
+          bodyWriter.flush();
+        }
+        bodyStream.close();
+      } else {
+        bodyStream.close();
+        bodyWriter.flush();
+      }
+      sink.write("\"}");
+    }
+
+    sink.flush();
+    out.flush();
+
+    if (event.shouldCommit()) {
+      event.adapter = "aws";
+      event.status = response.getStatus();
+      event.bodyLength = bodyLength;
+      event.commit();
+    }
+  }
+
+  /**
+   * writes a bare status, such as an error, if nothing has been written yet
+   *
+   * @param status status code
+   * @throws IOException on write error
+   */
+  void writeStatus(int status) throws IOException {
+    if (!committed) {
+      committed = true;
+      sink.write("{\"" + BarefootAwsHandler.STATUS_CODE + "\":" + status + "}");
+      sink.flush();
+      if (streaming) {
+        out.write(new byte[PRELUDE_DELIMITER_LENGTH]);
+      }
+      out.flush();
+    }
+  }
+
+  /** escapes characters into the content of a JSON string */
+  static class JsonStringWriter extends Writer {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final Writer writer;
+
+    JsonStringWriter(Writer w) {
+      writer = w;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      int end = off + len;
+      int run = off;
+
+      for (int i = off; i < end; i++) {
+        String replacement = replacement(cbuf[i]);
+        if (replacement != null) {
+          writer.write(cbuf, run, i - run);
+          writer.write(replacement);
+          run = i + 1;
+        }
+      }
+
+      writer.write(cbuf, run, end - run);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      escape(writer, str, off, off + len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+
+    static void escape(Writer writer, String s, int start, int end) throws IOException {
+      int run = start;
+
+      for (int i = start; i < end; i++) {
+        String replacement = replacement(s.charAt(i));
+        if (replacement != null) {
+          writer.write(s, run, i - run);
+          writer.write(replacement);
+          run = i + 1;
+        }
+      }
+
+      writer.write(s, run, end - run);
+    }
+
+    private static String replacement(char c) {
+      if (c == '"') {
+        return "\\\"";
+      }
+
+      if (c == '\\') {
+        return "\\\\";
+      }
+
+      if (c >= 0x20) {
+        return null;
+      }
+
+      switch (c) {
+        case '\n':
+          return "\\n";
+        case '\r':
+          return "\\r";
+        case '\t':
+          return "\\t";
+        default:
+          return "\\u00" + HEX[c >> 4] + HEX[c & 0xf];
+      }
+    }
+  }
+
+  /** decodes bytes into characters as they are written, carrying partial sequences over */
+  static class DecodingOutputStream extends OutputStream {
+    private final CharsetDecoder decoder;
+    private final Writer writer;
+    private final ByteBuffer input = ByteBuffer.allocate(1024);
+    private final CharBuffer output = CharBuffer.allocate(1024);
+
+    DecodingOutputStream(Charset charset, Writer w) {
+      decoder =
+          charset
+              .newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      writer = w;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        int n = Math.min(len, input.remaining());
+        input.put(b, off, n);
+        off += n;
+        len -= n;
+        input.flip();
+        decode(false);
+        input.compact();
+      }
+    }
+
+    private void decode(boolean endOfInput) throws IOException {
+      while (true) {
+        CoderResult result = decoder.decode(input, output, endOfInput);
+        drain();
+        if (!result.isOverflow()) {
+          break;
+        }
+      }
+    }
+
+    private void drain() throws IOException {
+      output.flip();
+      if (output.hasRemaining()) {
+        writer.write(output.array(), output.position(), output.remaining());
+      }
+      output.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.flip();
+      decode(true);
+      while (decoder.flush(output).isOverflow()) {
+        drain();
+      }
+      drain();
+      input.clear();
+      writer.flush();
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import net.sf.barefoot.aws.concrete.ConcreteContext;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** events read straight from JSON build the same requests as events read into maps */
+public class AwsEventParserTest {
+  final ObjectMapper mapper = new ObjectMapper();
+  final HttpServletRequestFactory requestFactory = new HttpServletRequestFactory();
+  final AbstractServletContext servletContext =
+      new net.sf.barefoot.context.javax.BarefootServletContext("");
+  final TypeReference<Map<String, Object>> typeMapStringObject =
+      new TypeReference<Map<String, Object>>() {};
+  final String[] resources = {
+    "testHandleRequestV1.json",
+    "testHandleRequestV2.json",
+    "actualRequestV2.json",
+    "pathRequest.json",
+    "paramsList.json",
+    "xformBody.json",
+    "albRequest.json",
+    "albMultiValueRequest.json"
+  };
+
+  byte[] read(String name) throws IOException {
+    try (InputStream is = getClass().getResourceAsStream(name)) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      is.transferTo(baos);
+      return baos.toByteArray();
+    }
+  }
+
+  AbstractServletRequest fromMap(byte[] json) throws IOException {
+    Map<String, Object> map = mapper.readValue(json, typeMapStringObject);
+    return requestFactory.create(servletContext, map, ConcreteContext.builder().build());
+  }
+
+  AbstractServletRequest fromParser(AwsEventParser parser, byte[] json) throws IOException {
+    AwsEvent ev = parser.parse(new JsonReader(json));
+    return requestFactory.create(servletContext, ev, ev.members, ConcreteContext.builder().build());
+  }
+
+  static String content(AbstractServletRequest request) throws IOException {
+    try (BufferedReader reader = request.getReader()) {
+      return reader == null ? null : reader.lines().collect(Collectors.joining("\n"));
+    }
+  }
+
+  static Map<String, List<String>> parameters(AbstractServletRequest request) {
+    Map<String, List<String>> map = new TreeMap<>();
+    request.getParameterMap().forEach((k, v) -> map.put(k, Arrays.asList(v)));
+    return map;
+  }
+
+  static Map<String, List<String>> headers(AbstractServletRequest request) {
+    Map<String, List<String>> map = new TreeMap<>();
+    for (String name : Collections.list(request.getHeaderNames())) {
+      map.put(name, Collections.list(request.getHeaders(name)));
+    }
+    return map;
+  }
+
+  void assertSame(AbstractServletRequest expected, AbstractServletRequest actual)
+      throws IOException {
+    Assert.assertEquals(expected.getMethod(), actual.getMethod());
+    Assert.assertEquals(expected.getProtocol(), actual.getProtocol());
+    Assert.assertEquals(expected.getRequestURI(), actual.getRequestURI());
+    Assert.assertEquals(expected.getRequestURL().toString(), actual.getRequestURL().toString());
+    Assert.assertEquals(expected.getContextPath(), actual.getContextPath());
+    Assert.assertEquals(expected.getPathInfo(), actual.getPathInfo());
+    Assert.assertEquals(expected.getQueryString(), actual.getQueryString());
+    Assert.assertEquals(expected.getServerName(), actual.getServerName());
+    Assert.assertEquals(expected.getServerPort(), actual.getServerPort());
+    Assert.assertEquals(expected.getContentType(), actual.getContentType());
+    Assert.assertEquals(parameters(expected), parameters(actual));
+    Assert.assertEquals(headers(expected), headers(actual));
+    Assert.assertEquals(content(expected), content(actual));
+  }
+
+  @Test
+  public void testSameAsMap() throws IOException {
+    for (String name : resources) {
+      byte[] json = read(name);
+      assertSame(fromMap(json), fromParser(new AwsEventParser(), json));
+    }
+  }
+
+  @Test
+  public void testFormatChange() throws IOException {
+    AwsEventParser parser = new AwsEventParser();
+
+    for (String name : resources) {
+      byte[] json = read(name);
+      AbstractServletRequest request = fromParser(parser, json);
+      assertSame(fromMap(json), request);
+      Assert.assertEquals(
+          HttpServletRequestFactory.toEvent(mapper.readValue(json, typeMapStringObject))
+              .getFormat(),
+          parser.getFormat());
+    }
+  }
+
+  @Test
+  public void testFormats() throws IOException {
+    Assert.assertEquals(
+        AwsEvent.Format.REST,
+        new AwsEventParser().parse(new JsonReader(read("testHandleRequestV1.json"))).getFormat());
+    Assert.assertEquals(
+        AwsEvent.Format.HTTP,
+        new AwsEventParser().parse(new JsonReader(read("testHandleRequestV2.json"))).getFormat());
+    Assert.assertEquals(
+        AwsEvent.Format.ALB,
+        new AwsEventParser().parse(new JsonReader(read("albRequest.json"))).getFormat());
+  }
+
+  @Test
+  public void testSkipsDuplicates() throws IOException {
+    AwsEventParser parser = new AwsEventParser();
+    byte[] json = read("testHandleRequestV1.json");
+    parser.parse(new JsonReader(json));
+    AwsEvent ev = parser.parse(new JsonReader(json));
+
+    Assert.assertNull(ev.multiValueHeaders);
+    Assert.assertNull(ev.queryStringParameters);
+    Assert.assertNotNull(ev.headers);
+    Assert.assertFalse(ev.members.containsKey("multiValueHeaders"));
+  }
+
+  @Test
+  public void testAlbParameters() throws IOException {
+    AbstractServletRequest request =
+        fromParser(new AwsEventParser(), read("albMultiValueRequest.json"));
+
+    Assert.assertArrayEquals(new String[] {"a", "b&c"}, request.getParameterValues("tag"));
+    Assert.assertEquals("x=y", request.getParameter("q"));
+    Assert.assertEquals(
+        "https://lambda-alb-123578498.us-east-1.elb.amazonaws.com/lambda/submit",
+        request.getRequestURL().toString());
+    Assert.assertEquals(2, Collections.list(request.getHeaders("x-forwarded-for")).size());
+    Assert.assertEquals("café \"quoted\"\nline two", content(request));
+
+    request = fromParser(new AwsEventParser(), read("albRequest.json"));
+
+    Assert.assertEquals("a b", request.getParameter("name"));
+    Assert.assertEquals("1234ABCD", request.getParameter("query"));
+  }
+
+  @Test
+  public void testLazyBody() throws IOException {
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    String json =
+        "{\"version\":\"2.0\",\"rawPath\":\"/upload\",\"rawQueryString\":\"\","
+            + "\"headers\":{\"host\":\"localhost\",\"content-type\":\"application/octet-stream\"},"
+            + "\"requestContext\":{\"http\":{\"method\":\"PUT\",\"protocol\":\"HTTP/1.1\"}},"
+            + "\"body\":\""
+            + Base64.getEncoder().encodeToString(data)
+            + "\",\"isBase64Encoded\":true}";
+    AwsEvent ev = new AwsEventParser().parse(new JsonReader(json.getBytes(StandardCharsets.UTF_8)));
+
+    Assert.assertTrue(ev.isRawSlice());
+    Assert.assertEquals(data.length, ev.getRequestBody().getContentLength(StandardCharsets.UTF_8));
+    Assert.assertFalse(ev.members.containsKey("body"));
+
+    AbstractServletRequest request =
+        requestFactory.create(servletContext, ev, ev.members, ConcreteContext.builder().build());
+
+    Assert.assertEquals(data.length, request.getContentLengthLong());
+    Assert.assertArrayEquals(data, request.getInputStream().readAllBytes());
+  }
+
+  @Test
+  public void testWarmup() throws IOException {
+    String json = "{\"source\":\"aws.events\",\"detail-type\":\"Scheduled Event\",\"detail\":{}}";
+    Assert.assertTrue(
+        new AwsEventParser()
+            .parse(new JsonReader(json.getBytes(StandardCharsets.UTF_8)))
+            .isWarmup(false));
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.aws.concrete.ConcreteContext;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.javax.BarefootServletContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** responses are buffered up to the payload limit */
+public class BarefootAwsHandlerTest {
+  final ObjectMapper mapper = new ObjectMapper();
+  final TypeReference<Map<String, Object>> typeMapStringObject =
+      new TypeReference<Map<String, Object>>() {};
+
+  BarefootAwsHandler createHandler(String limit) throws Exception {
+    BarefootServletContext context = new BarefootServletContext("");
+    context.setInitParameter(AbstractServletContext.RESPONSE_LIMIT, limit);
+    context
+        .addServlet(
+            "test",
+            new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp)
+                  throws IOException {
+                resp.setContentType("text/plain");
+                switch (req.getParameter("mode")) {
+                  case "reset":
+                    resp.getWriter().print("discarded");
+                    resp.resetBuffer();
+                    resp.getWriter().print("kept");
+                    break;
+                  case "size":
+                    resp.getWriter().print(resp.getBufferSize());
+                    break;
+                  case "commit":
+                    resp.getWriter().print("body");
+                    resp.flushBuffer();
+                    try {
+                      resp.resetBuffer();
+                      resp.setStatus(500);
+                    } catch (IllegalStateException ex) {
+                      resp.setStatus(resp.isCommitted() ? 202 : 500);
+                    }
+                    break;
+                  case "writer":
+                    resp.getWriter().print("0123456789ABCDEF");
+                    break;
+                  case "stream":
+                    resp.getOutputStream().write(new byte[16]);
+                    break;
+                  case "binary":
+                    resp.setContentType("application/octet-stream");
+                    resp.getOutputStream()
+                        .write(new byte[(int) BarefootAwsHandler.BASE64_BODY_LIMIT + 1]);
+                    break;
+                  case "vary":
+                    resp.addHeader("Vary", "Accept");
+                    resp.addHeader("Vary", "Accept-Encoding");
+                    resp.addHeader("Link", "</a.css>; rel=preload");
+                    resp.addHeader("Link", "</b.js>; rel=preload");
+                    resp.getWriter().print("vary");
+                    break;
+                }
+              }
+            })
+        .addMapping("/*");
+    context.onStartup();
+    return new BarefootAwsHandler(context);
+  }
+
+  Map<String, Object> event(String mode) throws IOException {
+    return event("testHandleRequestV1.json", mode);
+  }
+
+  Map<String, Object> event(String resource, String mode) throws IOException {
+    Map<String, Object> event;
+    try (InputStream is = getClass().getResourceAsStream(resource)) {
+      event = mapper.readValue(is, typeMapStringObject);
+    }
+    event.remove("multiValueQueryStringParameters");
+    event.remove("queryStringParameters");
+    event.put("rawQueryString", "mode=" + mode);
+    return event;
+  }
+
+  Map<String, Object> handle(BarefootAwsHandler handler, String mode) throws IOException {
+    return handler.handleRequest(event(mode), ConcreteContext.builder().build());
+  }
+
+  @Test
+  public void testBuffer() throws Exception {
+    BarefootAwsHandler handler = createHandler("");
+
+    Assert.assertEquals("kept", handle(handler, "reset").get("body"));
+    Assert.assertEquals(
+        Long.toString(BarefootAwsHandler.BODY_LIMIT), handle(handler, "size").get("body"));
+
+    Map<String, Object> reply = handle(handler, "commit");
+    Assert.assertEquals(202, reply.get("statusCode"));
+    Assert.assertEquals("body", reply.get("body"));
+  }
+
+  @Test
+  public void testLimit() throws Exception {
+    BarefootAwsHandler handler = createHandler("10");
+
+    Assert.assertEquals(502, handle(handler, "writer").get("statusCode"));
+    Assert.assertEquals(502, handle(handler, "stream").get("statusCode"));
+    Assert.assertEquals("10", handle(handler, "size").get("body"));
+  }
+
+  @Test
+  public void testBase64Limit() throws Exception {
+    BarefootAwsHandler handler = createHandler("");
+
+    Assert.assertEquals(502, handle(handler, "binary").get("statusCode"));
+  }
+
+  @Test
+  public void testRepeatedHeaders() throws Exception {
+    BarefootAwsHandler handler = createHandler("");
+
+    Map<String, Object> reply = handle(handler, "vary");
+    Map<?, ?> multiValueHeaders = (Map<?, ?>) reply.get("multiValueHeaders");
+    Assert.assertFalse(reply.containsKey("headers"));
+    Assert.assertEquals(Arrays.asList("Accept", "Accept-Encoding"), multiValueHeaders.get("Vary"));
+    Assert.assertEquals(
+        Arrays.asList("</a.css>; rel=preload", "</b.js>; rel=preload"),
+        multiValueHeaders.get("Link"));
+    Assert.assertEquals(
+        Collections.singletonList("text/plain"), multiValueHeaders.get("Content-Type"));
+
+    reply =
+        handler.handleRequest(
+            event("testHandleRequestV2.json", "vary"), ConcreteContext.builder().build());
+    Map<?, ?> headers = (Map<?, ?>) reply.get("headers");
+    Assert.assertFalse(reply.containsKey("multiValueHeaders"));
+    Assert.assertEquals("Accept, Accept-Encoding", headers.get("Vary"));
+    Assert.assertEquals("</a.css>; rel=preload, </b.js>; rel=preload", headers.get("Link"));
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.aws.concrete.ConcreteContext;
+import net.sf.barefoot.context.BarefootRequestException;
+import net.sf.barefoot.context.javax.BarefootServletContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** stream handler writes the same envelope as the map handler */
+public class BarefootAwsStreamHandlerTest {
+  static final String TEXT = "quote \" backslash \\ newline \n tab \t bell \u0007 é é 😀";
+  final ObjectMapper mapper = new ObjectMapper();
+  final TypeReference<Map<String, Object>> typeMapStringObject =
+      new TypeReference<Map<String, Object>>() {};
+
+  BarefootServletContext createContext() throws Exception {
+    BarefootServletContext context = new BarefootServletContext("");
+    context
+        .addServlet(
+            "test",
+            new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp)
+                  throws IOException {
+                resp.setStatus(201);
+                resp.setHeader("X-Test", "yes");
+                resp.addCookie(new Cookie("c", "v"));
+                switch (req.getParameter("parameter2")) {
+                  case "writer":
+                    resp.setContentType("text/plain");
+                    resp.getWriter().print(TEXT);
+                    break;
+                  case "utf8":
+                    resp.setContentType("application/json");
+                    byte[] utf8 = TEXT.getBytes(StandardCharsets.UTF_8);
+                    for (byte b : utf8) {
+                      resp.getOutputStream().write(b);
+                    }
+                    break;
+                  case "latin1":
+                    resp.setContentType("text/plain; charset=ISO-8859-1");
+                    resp.setCharacterEncoding("ISO-8859-1");
+                    resp.getOutputStream().write("café".getBytes(StandardCharsets.ISO_8859_1));
+                    break;
+                  case "binary":
+                    resp.setContentType("application/octet-stream");
+                    byte[] bytes = new byte[1000];
+                    for (int i = 0; i < bytes.length; i++) {
+                      bytes[i] = (byte) i;
+                    }
+                    resp.getOutputStream().write(bytes, 0, 7);
+                    resp.getOutputStream().write(bytes, 7, bytes.length - 7);
+                    break;
+                  case "gzip":
+                    resp.setContentType("text/plain");
+                    resp.setHeader("Content-Encoding", "gzip");
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(resp.getOutputStream())) {
+                      gzip.write(TEXT.getBytes(StandardCharsets.UTF_8));
+                    }
+                    break;
+                  case "session":
+                    req.getSession().setAttribute("a", "b");
+                    resp.setContentType("text/plain");
+                    resp.getWriter().print(TEXT);
+                    resp.flushBuffer();
+                    break;
+                  case "lateSession":
+                    resp.setContentType("text/plain");
+                    resp.getWriter().print(TEXT);
+                    resp.flushBuffer();
+                    req.getSession();
+                    break;
+                  case "lateReject":
+                    resp.setContentType("text/plain");
+                    resp.getWriter().print(TEXT);
+                    resp.flushBuffer();
+                    throw new BarefootRequestException(
+                        BarefootRequestException.BAD_REQUEST, "late");
+                  case "empty":
+                    break;
+                  default:
+                    throw new IOException("failed");
+                }
+              }
+            })
+        .addMapping("/*");
+    context.onStartup();
+    return context;
+  }
+
+  Map<String, Object> event(String mode) throws IOException {
+    Map<String, Object> event;
+    try (InputStream is = getClass().getResourceAsStream("testHandleRequestV1.json")) {
+      event = mapper.readValue(is, typeMapStringObject);
+    }
+    event.remove("multiValueQueryStringParameters");
+    event.remove("queryStringParameters");
+    event.put("rawQueryString", "parameter2=" + mode);
+    return event;
+  }
+
+  @Test
+  public void testEnvelope() throws Exception {
+    BarefootServletContext context = createContext();
+    BarefootAwsHandler mapHandler = new BarefootAwsHandler(context);
+    BarefootAwsStreamHandler streamHandler = new BarefootAwsStreamHandler(context);
+
+    for (String mode :
+        Arrays.asList("writer", "utf8", "latin1", "binary", "gzip", "empty", "error")) {
+      Map<String, Object> expected =
+          mapHandler.handleRequest(event(mode), ConcreteContext.builder().build());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      streamHandler.handleRequest(
+          new ByteArrayInputStream(mapper.writeValueAsBytes(event(mode))),
+          out,
+          ConcreteContext.builder().build());
+      Map<String, Object> actual = mapper.readValue(out.toByteArray(), typeMapStringObject);
+
+      Assert.assertEquals(mode, mapper.valueToTree(expected), mapper.valueToTree(actual));
+    }
+  }
+
+  @Test
+  public void testCompressedText() throws Exception {
+    BarefootAwsStreamHandler handler = new BarefootAwsStreamHandler(createContext());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handler.handleRequest(
+        new ByteArrayInputStream(mapper.writeValueAsBytes(event("gzip"))),
+        out,
+        ConcreteContext.builder().build());
+    Map<String, Object> reply = mapper.readValue(out.toByteArray(), typeMapStringObject);
+
+    Assert.assertEquals(true, reply.get("isBase64Encoded"));
+    try (InputStream is =
+        new GZIPInputStream(
+            new ByteArrayInputStream(Base64.getDecoder().decode((String) reply.get("body"))))) {
+      Assert.assertEquals(TEXT, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testResponseStreaming() throws Exception {
+    BarefootAwsStreamHandler handler = new BarefootAwsStreamHandler(createContext(), true);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handler.handleRequest(
+        new ByteArrayInputStream(mapper.writeValueAsBytes(event("utf8"))),
+        out,
+        ConcreteContext.builder().build());
+    byte[] bytes = out.toByteArray();
+    int end = 0;
+    while (bytes[end] != 0) end++;
+
+    Map<String, Object> prelude =
+        mapper.readValue(new String(bytes, 0, end, StandardCharsets.UTF_8), typeMapStringObject);
+    Assert.assertEquals(201, prelude.get("statusCode"));
+    Assert.assertEquals("yes", ((Map) prelude.get("headers")).get("X-Test"));
+    Assert.assertFalse(prelude.containsKey("body"));
+
+    for (int i = 0; i < ProxyResponseWriter.PRELUDE_DELIMITER_LENGTH; i++) {
+      Assert.assertEquals(0, bytes[end + i]);
+    }
+
+    int start = end + ProxyResponseWriter.PRELUDE_DELIMITER_LENGTH;
+    Assert.assertEquals(
+        TEXT, new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSessionCookieInPrelude() throws Exception {
+    BarefootAwsStreamHandler handler = new BarefootAwsStreamHandler(createContext(), true);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handler.handleRequest(
+        new ByteArrayInputStream(mapper.writeValueAsBytes(event("session"))),
+        out,
+        ConcreteContext.builder().build());
+    byte[] bytes = out.toByteArray();
+    int end = 0;
+    while (bytes[end] != 0) end++;
+
+    String prelude = new String(bytes, 0, end, StandardCharsets.UTF_8);
+    Assert.assertTrue(prelude, prelude.contains("JSESSIONID="));
+  }
+
+  @Test
+  public void testHeadersAfterCommit() throws Exception {
+    BarefootAwsStreamHandler handler = new BarefootAwsStreamHandler(createContext(), true);
+
+    for (String mode : Arrays.asList("lateSession", "lateReject")) {
+      try {
+        handler.handleRequest(
+            new ByteArrayInputStream(mapper.writeValueAsBytes(event(mode))),
+            new ByteArrayOutputStream(),
+            ConcreteContext.builder().build());
+        Assert.fail(mode);
+      } catch (IOException ex) {
+        Assert.assertNotNull(mode, ex.getCause());
+      }
+    }
+  }
+
+  @Test
+  public void testWarmup() throws Exception {
+    BarefootAwsStreamHandler handler = new BarefootAwsStreamHandler(createContext());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    handler.handleRequest(
+        new ByteArrayInputStream(
+            "{\"source\":\"serverless-plugin-warmup\"}".getBytes(StandardCharsets.UTF_8)),
+        out,
+        ConcreteContext.builder().build());
+    Assert.assertEquals(
+        "{\"statusCode\":204}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -21,13 +21,10 @@
 
 package net.sf.barefoot.aws.lambda;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.util.List;
 import java.util.Map;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -53,13 +50,18 @@ public class HttpServletRequestFactoryTest {
   public HttpServletRequestFactoryTest() {}
 
   @Test
-  public void testParseQueryString() throws JsonProcessingException, UnsupportedEncodingException {
-    HttpServletRequestFactory instance = new HttpServletRequestFactory();
-    Map<String, List<String>> result =
-        instance.parseQueryString("parameter1=value1&parameter1=value2&parameter2=value");
-    Assert.assertEquals(2, result.size());
-    Assert.assertEquals(2, result.get("parameter1").size());
-    Assert.assertEquals(1, result.get("parameter2").size());
+  public void testParseQueryString() throws IOException {
+    AwsEvent ev = new AwsEvent();
+    ev.method = "GET";
+    ev.rawPath = "/";
+    ev.rawQueryString = "parameter1=value1&parameter1=value2&parameter2=value&parameter3=a%3Db=c";
+    AbstractServletRequest request =
+        requestFactory.create(servletContext, ev, ev, ConcreteContext.builder().build());
+    Map<String, String[]> result = request.getParameterMap();
+    Assert.assertEquals(3, result.size());
+    Assert.assertEquals(2, result.get("parameter1").length);
+    Assert.assertEquals(1, result.get("parameter2").length);
+    Assert.assertEquals("a=b=c", request.getParameter("parameter3"));
   }
 
   @Test
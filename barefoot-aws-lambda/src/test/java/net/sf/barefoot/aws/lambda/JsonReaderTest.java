@@ -0,0 +1,136 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.aws.lambda;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test the event reader against Jackson */
+public class JsonReaderTest {
+  final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void testEvents() throws IOException {
+    for (String name :
+        Arrays.asList(
+            "testHandleRequestV1.json",
+            "actualRequestV2.json",
+            "pathRequest.json",
+            "xformBody.json")) {
+      Map<String, Object> expected;
+      Object actual;
+
+      try (InputStream is = getClass().getResourceAsStream(name)) {
+        expected = mapper.readValue(is, new TypeReference<Map<String, Object>>() {});
+      }
+
+      try (InputStream is = getClass().getResourceAsStream(name)) {
+        actual = JsonReader.of(is).readValue();
+      }
+
+      Assert.assertEquals(name, expected, actual);
+    }
+  }
+
+  @Test
+  public void testScalars() throws IOException {
+    String json =
+        "{\"s\":\"a\\\"b\\\\c\\n\\u00e9\\ud83d\\ude00é\",\"i\":-12,\"l\":12345678901,"
+            + "\"d\":1.5e2,\"t\":true,\"f\":false,\"n\":null,\"a\":[1,[],{}],\"o\":{\"x\":{}}}";
+    Object expected = mapper.readValue(json, Object.class);
+    Object actual = new JsonReader(json.getBytes(StandardCharsets.UTF_8)).readValue();
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testSkip() throws IOException {
+    JsonReader reader =
+        new JsonReader("{\"a\":{\"b\":[1,\"]\"]},\"c\":\"d\"}".getBytes(StandardCharsets.UTF_8));
+    reader.beginObject();
+    Assert.assertEquals("a", reader.nextName());
+    reader.skipValue();
+    Assert.assertEquals("c", reader.nextName());
+    Assert.assertEquals("d", reader.nextString());
+    Assert.assertFalse(reader.hasNext());
+    reader.endObject();
+    Assert.assertEquals(JsonReader.Token.END, reader.peek());
+  }
+
+  @Test
+  public void testMalformed() {
+    for (String json :
+        Arrays.asList(
+            "{\"a\":tru}",
+            "{\"a\" \"b\"}",
+            "{\"a\":1 \"b\":2}",
+            "{\"a\":1,}",
+            "{,\"a\":1}",
+            "[1 2]",
+            "[1,]",
+            "[,1]",
+            "[1:2]",
+            "[1-2]",
+            "{\"a\",1}",
+            "\"\\u12\"",
+            "\"\\u12zz\"",
+            "\"\\x\"",
+            "\"\\")) {
+      try {
+        new JsonReader(json.getBytes(StandardCharsets.UTF_8)).readValue();
+        Assert.fail(json);
+      } catch (IOException ex) {
+        Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("malformed JSON"));
+      }
+    }
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    byte[] json = "{\"a\":[1,2,{\"b\":\"c\"}]}".getBytes(StandardCharsets.UTF_8);
+    InputStream is =
+        new FilterInputStream(new ByteArrayInputStream(json)) {
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 3));
+          }
+
+          @Override
+          public int available() {
+            return 0;
+          }
+        };
+
+    JsonReader reader = JsonReader.of(is);
+
+    Assert.assertEquals(mapper.readValue(json, Object.class), reader.readValue());
+    Assert.assertEquals(mapper.readValue(json, Object.class), reader.restart().readValue());
+  }
+}
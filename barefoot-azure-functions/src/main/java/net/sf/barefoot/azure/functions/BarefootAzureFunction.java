@@ -26,17 +26,16 @@ import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.logging.Level;
 import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
 import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootPrimingRequest;
 import net.sf.barefoot.context.BarefootServletException;
+import net.sf.barefoot.util.ResponseBuffer;
 
 /** dispatcher for Azure messages */
 public class BarefootAzureFunction
@@ -57,54 +56,85 @@ public class BarefootAzureFunction
     responseFactory = new HttpResponseMessageFactory();
   }
 
+  /**
+   * runs the context's priming requests through this function, the responses are discarded
+   *
+   * @return number of requests run
+   */
+  public int prime() {
+    return servletContext.prime(servletContext.getPrimingRequests(), this::prime);
+  }
+
+  void prime(BarefootPrimingRequest request) {
+    apply(new PrimingRequestMessage(request), new PrimingRequestMessage.Context());
+  }
+
+  /**
+   * recognises keep-warm pings by the warmup header
+   *
+   * @param request Azure request
+   * @param header true to accept the warmup header
+   * @return true if the request should not be dispatched
+   */
+  static boolean isWarmup(HttpRequestMessage<?> request, boolean header) {
+    Map<String, String> headers = request.getHeaders();
+
+    if (header && headers != null) {
+      for (String name : headers.keySet()) {
+        if (AbstractServletContext.WARMUP_HEADER.equalsIgnoreCase(name)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
   @Override
   public HttpResponseMessage apply(HttpRequestMessage<?> request, final ExecutionContext context) {
     HttpResponseMessage response;
 
+    if (isWarmup(request, servletContext.isWarmupHeaderEnabled())) {
+      return request.createResponseBuilder(HttpStatus.NO_CONTENT).build();
+    }
+
+    ResponseBuffer output = new ResponseBuffer(servletContext.getResponseLimit(Long.MAX_VALUE));
+
     try {
-      Output output = new Output();
       AbstractServletRequest sreq = requestFactory.create(servletContext, request, context);
-      AbstractServletResponse resp =
-          sreq.getServletResponseBuilder()
-              .outputStream(() -> output.getOutputStream())
-              .writer(() -> output.getWriter())
-              .build();
+      AbstractServletResponse resp = sreq.getServletResponseBuilder().buffer(output).build();
 
       servletContext.dispatch(sreq, resp);
 
-      response = responseFactory.create(request, resp, output.getBody());
+      if (output.isLimitExceeded()) {
+        throw new ResponseBuffer.LimitExceededException(output.getLimit());
+      }
+
+      response = responseFactory.create(request, resp, getBody(output));
     } catch (RuntimeException | IOException | BarefootServletException ex) {
       context.getLogger().log(Level.INFO, ex.getMessage(), ex);
-      response = request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR).build();
+      response =
+          request
+              .createResponseBuilder(
+                  output.isLimitExceeded()
+                      ? HttpStatus.BAD_GATEWAY
+                      : HttpStatus.INTERNAL_SERVER_ERROR)
+              .build();
     }
 
     return response;
   }
 
-  private static class Output {
-    ByteArrayOutputStream outputStream;
-    StringWriter writer;
-    PrintWriter printer;
-
-    OutputStream getOutputStream() {
-      if (writer != null) throw new IllegalStateException("writer already open");
-      if (outputStream == null) outputStream = new ByteArrayOutputStream();
-      return outputStream;
-    }
-
-    PrintWriter getWriter() {
-      if (outputStream != null) throw new IllegalStateException("stream already open");
-      if (writer == null) {
-        writer = new StringWriter();
-        printer = new PrintWriter(writer);
-      }
-      return printer;
-    }
-
-    Object getBody() {
-      return outputStream == null
-          ? writer == null ? null : writer.toString()
-          : outputStream.toByteArray();
+  /**
+   * body as given to the runtime, text written with the writer is a string
+   *
+   * @param output buffered response
+   * @return body or null if nothing was written
+   */
+  static Object getBody(ResponseBuffer output) {
+    if (output.getWriterCharset() != null) {
+      return output.toString(output.getWriterCharset());
     }
+    return output.size() > 0 ? output.toByteArray() : null;
   }
 }
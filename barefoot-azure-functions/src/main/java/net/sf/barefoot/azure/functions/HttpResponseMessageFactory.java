@@ -26,6 +26,8 @@ import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
 import java.util.List;
 import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootResponseHeaders;
+import net.sf.barefoot.context.jfr.BarefootResponseSerializationEvent;
 
 /** encode responses for Azure */
 public class HttpResponseMessageFactory {
@@ -33,23 +35,23 @@ public class HttpResponseMessageFactory {
 
   public HttpResponseMessage create(
       HttpRequestMessage req, AbstractServletResponse resp, Object body) {
+    BarefootResponseSerializationEvent event = new BarefootResponseSerializationEvent();
+    event.begin();
     HttpStatus status = HttpStatus.valueOf(resp.getStatus());
-    HttpResponseMessage.Builder builder = req.createResponseBuilder(status);
-    boolean hasContentType = false;
+    HeaderWriter writer = new HeaderWriter(req.createResponseBuilder(status));
     String contentType = resp.getContentType();
 
-    for (String header : resp.getHeaderNames()) {
-      hasContentType |= header.equalsIgnoreCase(CONTENT_TYPE);
-      for (String value : resp.getHeaders(header)) {
-        builder = builder.header(header, value);
-      }
-    }
+    resp.forEachHeader(writer);
+
+    HttpResponseMessage.Builder builder = writer.builder;
 
-    if (contentType != null && !hasContentType) {
+    if (contentType != null && !writer.hasContentType) {
       builder = builder.header(CONTENT_TYPE, contentType);
     }
 
-    if (body != null && !status.equals((HttpStatus.NO_CONTENT))) {
+    if (body != null
+        && !status.equals(HttpStatus.NO_CONTENT)
+        && !status.equals(HttpStatus.NOT_MODIFIED)) {
       builder = builder.body(body);
     }
 
@@ -61,6 +63,34 @@ public class HttpResponseMessageFactory {
       }
     }
 
-    return builder.build();
+    HttpResponseMessage message = builder.build();
+
+    if (event.shouldCommit()) {
+      event.adapter = "azure";
+      event.status = resp.getStatus();
+      event.bodyLength =
+          body instanceof byte[]
+              ? ((byte[]) body).length
+              : body instanceof String ? ((String) body).length() : 0;
+      event.commit();
+    }
+
+    return message;
+  }
+
+  /** copies header values straight into the message builder */
+  private static class HeaderWriter implements BarefootResponseHeaders.Visitor {
+    HttpResponseMessage.Builder builder;
+    boolean hasContentType;
+
+    HeaderWriter(HttpResponseMessage.Builder b) {
+      builder = b;
+    }
+
+    @Override
+    public void header(String name, String value) {
+      hasContentType |= CONTENT_TYPE.equalsIgnoreCase(name);
+      builder = builder.header(name, value);
+    }
   }
 }
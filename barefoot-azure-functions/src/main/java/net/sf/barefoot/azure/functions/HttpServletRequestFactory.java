@@ -24,19 +24,12 @@ package net.sf.barefoot.azure.functions;
 import com.google.gson.Gson;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpRequestMessage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
@@ -44,17 +37,16 @@ import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
 import net.sf.barefoot.context.BarefootContentType;
 import net.sf.barefoot.context.BarefootPreprocessor;
+import net.sf.barefoot.context.BarefootRequestBody;
+import net.sf.barefoot.context.BarefootRequestHeaders;
 import net.sf.barefoot.context.BarefootServletContextLogger;
-import net.sf.barefoot.util.ByteBufferInputStream;
+import net.sf.barefoot.context.jfr.BarefootRequestConversionEvent;
 
 /** create HTTP servlet request from Azure request */
 public class HttpServletRequestFactory {
   final Gson gson;
   final BarefootPreprocessor preProcessor = new BarefootPreprocessor();
-  static final String COOKIE = "cookie",
-      CONTENT_TYPE = "content-type",
-      HOST = "host",
-      X_FORWARD_PORT = "x-forwarded-port",
+  static final String X_FORWARD_PORT = "x-forwarded-port",
       X_FORWARD_PROTO = "x-forwarded-proto",
       X_FORWARD_HOST = "x-forwarded-host",
       X_FORWARD_PREFIX = "x-forwarded-prefix";
@@ -77,16 +69,17 @@ public class HttpServletRequestFactory {
       HttpRequestMessage<?> req,
       ExecutionContext execContext)
       throws IOException {
+    BarefootRequestConversionEvent event = new BarefootRequestConversionEvent();
+    event.begin();
     AbstractServletRequest.Builder builder = servletContext.getServletRequestBuilder();
-    Map<String, List<String>> hdrs = new HashMap<>();
-    Map<String, List<String>> params = new HashMap<>();
+    BarefootRequestHeaders hdrs = new BarefootRequestHeaders();
     String contentType = null;
     Supplier<Reader> reader = null;
     Supplier<InputStream> inputStream = null;
+    BarefootRequestBody requestBody = null;
     String serverName = null;
     int serverPort = -1;
     boolean isSecure = false;
-    String host = null;
     String contextPath = servletContext.getContextPath();
     String proto = null;
 
@@ -98,50 +91,38 @@ public class HttpServletRequestFactory {
 
     if (reqHead != null) {
       for (Map.Entry<String, String> s : reqHead.entrySet()) {
-        final String key = s.getKey().toLowerCase();
-        final String value = s.getValue();
-        boolean addHeader = true;
-        switch (key) {
-          case COOKIE:
-            builder.cookies(value);
-            addHeader = false;
-            break;
-          case HOST:
-            host = value;
-            break;
-          case CONTENT_TYPE:
-            contentType = value;
-            break;
-          case X_FORWARD_PREFIX:
-            switch (value) {
-              case "":
-              case "/":
-                contextPath = "";
-                break;
-              default:
-                contextPath = value;
-                break;
-            }
-            break;
-          case X_FORWARD_HOST:
-            serverName = value;
-            break;
-          case X_FORWARD_PORT:
-            serverPort = Integer.parseInt(value);
-            break;
-          case X_FORWARD_PROTO:
-            proto = value;
-            isSecure = "https".equals(value);
-            break;
-        }
-        if (addHeader) {
-          List<String> list = new ArrayList<>();
-          list.add(value);
-          hdrs.put(key, list);
-        }
+        hdrs.add(s.getKey(), s.getValue());
       }
     }
 
+    builder.cookies(hdrs.get(BarefootRequestHeaders.COOKIE));
+    String host = hdrs.get(BarefootRequestHeaders.HOST);
+    contentType = hdrs.get(BarefootRequestHeaders.CONTENT_TYPE);
+    String prefix = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PREFIX);
+
+    if (prefix != null) {
+      contextPath = prefix.isEmpty() || "/".equals(prefix) ? "" : prefix;
+    }
+
+    String forwardedHost = hdrs.get(BarefootRequestHeaders.X_FORWARDED_HOST);
+
+    if (forwardedHost != null) {
+      serverName = forwardedHost;
+    }
+
+    String forwardedPort = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PORT);
+
+    if (forwardedPort != null) {
+      serverPort = Integer.parseInt(forwardedPort);
+    }
+
+    String forwardedProto = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PROTO);
+
+    if (forwardedProto != null) {
+      proto = forwardedProto;
+      isSecure = "https".equals(forwardedProto);
+    }
+
     String uri = contextPath + path;
     String url;
 
@@ -184,45 +165,44 @@ public class HttpServletRequestFactory {
       url = uri;
     }
 
-    Map<String, String> qp = req.getQueryParameters();
+    String queryString = req.getUri().getRawQuery();
 
-    if (qp != null && !qp.isEmpty()) {
-      StringBuilder sb = new StringBuilder();
+    if (queryString == null) {
+      Map<String, String> qp = req.getQueryParameters();
 
-      for (Map.Entry<String, String> s : qp.entrySet()) {
-        List<String> list = new ArrayList<>();
-        list.add(s.getValue());
-        params.put(s.getKey(), list);
+      if (qp != null && !qp.isEmpty()) {
+        StringBuilder sb = new StringBuilder();
 
-        if (sb.length() != 0) sb.append("&");
-        sb.append(s.getKey());
-        if (s.getValue() != null) {
-          sb.append("=");
-          sb.append(URLEncoder.encode(s.getValue(), StandardCharsets.UTF_8.name()));
+        for (Map.Entry<String, String> s : qp.entrySet()) {
+          if (sb.length() != 0) sb.append("&");
+          sb.append(URLEncoder.encode(s.getKey(), StandardCharsets.UTF_8.name()));
+          if (s.getValue() != null) {
+            sb.append("=");
+            sb.append(URLEncoder.encode(s.getValue(), StandardCharsets.UTF_8.name()));
+          }
         }
-      }
 
-      if (sb.length() != 0) {
-        builder.queryString(sb.toString());
+        queryString = sb.toString();
       }
     }
 
+    if (queryString != null && !queryString.isEmpty()) {
+      builder.queryString(queryString);
+    }
+
     while (body != null) {
       if (body instanceof String) {
-        final String str = (String) body;
-        reader = () -> new StringReader(str);
+        requestBody = BarefootRequestBody.of((String) body);
         break;
       }
 
       if (body instanceof byte[]) {
-        final byte[] bytes = (byte[]) body;
-        inputStream = () -> new ByteArrayInputStream(bytes);
+        requestBody = BarefootRequestBody.of((byte[]) body);
         break;
       }
 
       if (body instanceof ByteBuffer) {
-        final ByteBuffer buf = (ByteBuffer) body;
-        inputStream = () -> new ByteBufferInputStream(buf);
+        requestBody = BarefootRequestBody.of((ByteBuffer) body);
         break;
       }
 
@@ -254,22 +234,13 @@ public class HttpServletRequestFactory {
       }
     }
 
-    if ((reader != null || inputStream != null)
-        && preProcessor.isApplicationFormUrlEncoded(contentType)) {
-      String cs = BarefootContentType.getCharsetFromContentType(contentType);
-      Charset charSet = cs == null ? StandardCharsets.UTF_8 : Charset.forName(cs);
-      preProcessor.processApplicationFormUrlEncoded(
-          reader == null ? new InputStreamReader(inputStream.get(), charSet) : reader.get(),
-          params,
-          charSet);
-    } else {
-      builder.reader(reader);
-      builder.inputStream(inputStream);
-    }
+    builder.body(requestBody);
+    builder.reader(reader);
+    builder.inputStream(inputStream);
+    builder.preprocessor(preProcessor);
 
     builder.method(req.getHttpMethod().name());
     builder.headers(hdrs);
-    builder.parameters(collapse(params));
     builder.isSecure(Boolean.TRUE);
     builder.serverName(serverName);
     builder.serverPort(serverPort);
@@ -286,6 +257,14 @@ public class HttpServletRequestFactory {
     result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_REQUEST, req);
     result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_CONTEXT, execContext);
 
+    if (event.shouldCommit()) {
+      event.adapter = "azure";
+      event.method = result.getMethod();
+      event.requestURI = result.getRequestURI();
+      event.contentLength = result.getContentLengthLong();
+      event.commit();
+    }
+
     return result;
   }
 
@@ -306,18 +285,4 @@ public class HttpServletRequestFactory {
       context.getLogger().info(msg);
     }
   }
-
-  private static final String[] EMPTY_LIST = {};
-
-  private Map<String, String[]> collapse(Map<String, List<String>> in) {
-    Map<String, String[]> result = new HashMap<>();
-
-    in.entrySet()
-        .forEach(
-            (e) -> {
-              result.put(e.getKey(), e.getValue().toArray(EMPTY_LIST));
-            });
-
-    return result;
-  }
 }
@@ -0,0 +1,157 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.azure.functions;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.HttpStatusType;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import net.sf.barefoot.context.BarefootPrimingRequest;
+
+/** Azure request message for priming requests run during initialisation */
+class PrimingRequestMessage implements HttpRequestMessage<Optional<String>> {
+  private final URI uri;
+  private final HttpMethod method;
+  private final Map<String, String> headers = new HashMap<>(), queryParameters = new HashMap<>();
+  private final Optional<String> body;
+
+  PrimingRequestMessage(BarefootPrimingRequest request) {
+    uri = URI.create("http://localhost" + request.getPath());
+    method = HttpMethod.value(request.getMethod());
+    body = Optional.ofNullable(request.getBody());
+
+    for (Map.Entry<String, List<String>> e : request.getHeaders().entrySet()) {
+      headers.put(e.getKey(), String.join("cookie".equals(e.getKey()) ? "; " : ",", e.getValue()));
+    }
+
+    for (Map.Entry<String, List<String>> e : request.getQueryParameters().entrySet()) {
+      queryParameters.put(e.getKey(), e.getValue().get(0));
+    }
+  }
+
+  @Override
+  public URI getUri() {
+    return uri;
+  }
+
+  @Override
+  public HttpMethod getHttpMethod() {
+    return method;
+  }
+
+  @Override
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public Map<String, String> getQueryParameters() {
+    return queryParameters;
+  }
+
+  @Override
+  public Optional<String> getBody() {
+    return body;
+  }
+
+  @Override
+  public HttpResponseMessage.Builder createResponseBuilder(HttpStatus hs) {
+    return new ResponseBuilder().status(hs);
+  }
+
+  @Override
+  public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType hst) {
+    return new ResponseBuilder().status(hst);
+  }
+
+  /** builds responses that only keep the status, priming output is discarded */
+  static class ResponseBuilder implements HttpResponseMessage.Builder {
+    HttpStatusType status = HttpStatus.OK;
+
+    @Override
+    public HttpResponseMessage.Builder status(HttpStatusType hst) {
+      status = hst;
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage.Builder header(String name, String value) {
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage.Builder body(Object o) {
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage build() {
+      final HttpStatusType result = status;
+      return new HttpResponseMessage() {
+        @Override
+        public HttpStatusType getStatus() {
+          return result;
+        }
+
+        @Override
+        public String getHeader(String name) {
+          return null;
+        }
+
+        @Override
+        public Object getBody() {
+          return null;
+        }
+      };
+    }
+  }
+
+  /** execution context for priming requests */
+  static class Context implements ExecutionContext {
+    private static final AtomicInteger sequence = new AtomicInteger();
+    private final String invocationId = "barefoot-priming-" + sequence.incrementAndGet();
+
+    @Override
+    public Logger getLogger() {
+      return Logger.getGlobal();
+    }
+
+    @Override
+    public String getInvocationId() {
+      return invocationId;
+    }
+
+    @Override
+    public String getFunctionName() {
+      return null;
+    }
+  }
+}
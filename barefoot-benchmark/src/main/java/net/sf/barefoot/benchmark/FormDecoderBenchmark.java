@@ -0,0 +1,131 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.sf.barefoot.context.BarefootPreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Compares the byte decoder with the original character and URLDecoder implementation */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormDecoderBenchmark {
+  @Param({"10", "500"})
+  int fields;
+
+  final Charset charset = StandardCharsets.UTF_8;
+  final BarefootPreprocessor preprocessor = new BarefootPreprocessor();
+  byte[] form;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+
+    for (int i = 0; i < fields; i++) {
+      if (i > 0) sb.append('&');
+      sb.append("field").append(i % 50).append('=');
+      sb.append("some+value+%26+more%20text+").append(i).append("%E2%82%AC");
+    }
+
+    form = sb.toString().getBytes(charset);
+  }
+
+  @Benchmark
+  public Map<String, String[]> bytes() throws IOException {
+    Map<String, String[]> params = new HashMap<>();
+    preprocessor.decodeApplicationFormUrlEncoded(new ByteArrayInputStream(form), params, charset);
+    return params;
+  }
+
+  @Benchmark
+  public Map<String, List<String>> legacy() throws IOException {
+    Map<String, List<String>> params = new HashMap<>();
+    legacy(new InputStreamReader(new ByteArrayInputStream(form), charset), params, charset);
+    return params;
+  }
+
+  /** the decoder as it was, one character at a time with each token passed to URLDecoder */
+  static void legacy(Reader reader, Map<String, List<String>> params, Charset cs)
+      throws IOException {
+    StringBuilder nameBuilder = null, valueBuilder = null;
+    String charset = cs.name();
+
+    while (true) {
+      int c = reader.read();
+
+      if (c == -1 || c == '&') {
+        if (nameBuilder != null) {
+          String name = URLDecoder.decode(nameBuilder.toString(), charset);
+          String value =
+              valueBuilder == null ? null : URLDecoder.decode(valueBuilder.toString(), charset);
+          List<String> list = params.get(name);
+          if (list == null) {
+            list = new ArrayList<>();
+            params.put(name, list);
+          }
+          list.add(value);
+        }
+        if (c == -1) break;
+        nameBuilder = null;
+        valueBuilder = null;
+      } else {
+        if (c == '=' && valueBuilder == null) {
+          valueBuilder = new StringBuilder();
+        } else {
+          if (valueBuilder != null) {
+            valueBuilder.append((char) c);
+          } else {
+            if (nameBuilder == null) {
+              nameBuilder = new StringBuilder();
+            }
+            nameBuilder.append((char) c);
+          }
+        }
+      }
+    }
+  }
+}
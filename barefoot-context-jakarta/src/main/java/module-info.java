@@ -24,6 +24,7 @@ module net.sf.barefoot.context.jakarta {
   requires net.sf.barefoot.util;
   requires jakarta.servlet;
   requires java.naming;
+  requires jdk.jfr;
 
   exports net.sf.barefoot.context.jakarta;
 }
@@ -30,31 +30,91 @@ import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Set;
 import net.sf.barefoot.context.AbstractFilterRegistration;
+import net.sf.barefoot.context.jfr.BarefootFilterEvent;
+import net.sf.barefoot.context.metrics.BarefootMetric;
 
 /** Filter registration object */
 public final class BarefootFilterRegistration extends AbstractFilterRegistration
-    implements FilterRegistration.Dynamic, FilterConfig, FilterChain {
-  final ServletContext servletContext;
+    implements FilterRegistration.Dynamic, FilterConfig {
+  final BarefootServletContext servletContext;
   final Filter filter;
-  FilterChain chain;
+  final EnumSet<DispatcherType> dispatcherTypes = EnumSet.noneOf(DispatcherType.class);
+  boolean isMatchAfter = true;
+  boolean isGlobal;
+  final BarefootMetric metric;
 
   /** registration for a specific filter for a given servlet */
-  BarefootFilterRegistration(ServletContext c, String string, Filter f) {
+  BarefootFilterRegistration(BarefootServletContext c, String string, Filter f) {
     super(string);
     servletContext = c;
     filter = f;
+    metric = c.getMetrics().filterMetric(string);
   }
 
   @Override
   public void addMappingForServletNames(
-      EnumSet<DispatcherType> es, boolean bln, String... strings) {}
+      EnumSet<DispatcherType> es, boolean bln, String... strings) {
+    addMapping(es, bln);
+    servletMappings.addAll(Arrays.asList(strings));
+  }
 
   @Override
-  public void addMappingForUrlPatterns(
-      EnumSet<DispatcherType> es, boolean bln, String... strings) {}
+  public void addMappingForUrlPatterns(EnumSet<DispatcherType> es, boolean bln, String... strings) {
+    addMapping(es, bln);
+    urlPatterns.addAll(Arrays.asList(strings));
+  }
+
+  private void addMapping(EnumSet<DispatcherType> es, boolean bln) {
+    dispatcherTypes.addAll(es == null ? EnumSet.of(DispatcherType.REQUEST) : es);
+
+    if (!bln) {
+      isMatchAfter = false;
+    }
+  }
+
+  /**
+   * does the filter apply to this type of dispatch, filters mapped without a dispatcher type only
+   * apply to requests
+   */
+  boolean isDispatchedFor(DispatcherType type) {
+    return dispatcherTypes.isEmpty()
+        ? type == DispatcherType.REQUEST
+        : dispatcherTypes.contains(type);
+  }
+
+  /** has the filter been given neither url-patterns nor servlet names */
+  boolean isUnmapped() {
+    return urlPatterns.isEmpty() && servletMappings.isEmpty();
+  }
+
+  /** does any url-pattern match the route */
+  boolean isMappedTo(Set<String> patterns) {
+    if (isGlobal) {
+      return true;
+    }
+
+    for (String pattern : urlPatterns) {
+      if (patterns.contains(pattern)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** is the servlet named in the mappings */
+  boolean isMappedTo(BarefootServletRegistration reg) {
+    return isGlobal
+        || reg != null
+            && (servletMappings.contains(reg.getName()) || servletMappings.contains("*"));
+  }
 
   @Override
   public String getClassName() {
@@ -73,9 +133,33 @@ public final class BarefootFilterRegistration extends AbstractFilterRegistration
     return servletContext;
   }
 
-  @Override
-  public void doFilter(ServletRequest sr, ServletResponse sr1)
+  /** invoke the filter with the rest of the chain, timings include the rest of the chain */
+  void doFilter(ServletRequest sr, ServletResponse sr1, FilterChain chain)
       throws IOException, ServletException {
-    filter.doFilter(sr, sr1, chain);
+    BarefootFilterEvent event = new BarefootFilterEvent();
+    event.begin();
+    long started = System.nanoTime();
+    boolean completed = false;
+    try {
+      filter.doFilter(sr, sr1, chain);
+      completed = true;
+    } finally {
+      metric.record(
+          System.nanoTime() - started,
+          BarefootServletContext.statusOf(sr1, completed),
+          BarefootServletContext.contentLengthOf(sr),
+          BarefootServletContext.contentLengthOf(sr1));
+      if (event.shouldCommit()) {
+        event.filterName = name;
+        if (sr instanceof HttpServletRequest) {
+          event.servletPath = ((HttpServletRequest) sr).getServletPath();
+          event.requestURI = ((HttpServletRequest) sr).getRequestURI();
+        }
+        if (sr1 instanceof HttpServletResponse) {
+          event.status = ((HttpServletResponse) sr1).getStatus();
+        }
+        event.commit();
+      }
+    }
   }
 }
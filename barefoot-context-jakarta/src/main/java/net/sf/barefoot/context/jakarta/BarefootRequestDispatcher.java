@@ -22,6 +22,7 @@
 package net.sf.barefoot.context.jakarta;
 
 import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
@@ -29,16 +30,16 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
 import java.io.IOException;
+import net.sf.barefoot.context.BarefootServletMapping;
 
 /** Dispatcher for include and forward */
 class BarefootRequestDispatcher implements RequestDispatcher {
   final BarefootServletContext context;
-  final BarefootServletRegistration servlet;
-  final String uri, pathInfo, contextPath;
+  final FilterChain[] filterChains;
+  final String uri, servletPath, pathInfo, contextPath;
 
-  BarefootRequestDispatcher(BarefootServletContext ctx, BarefootServletRegistration sr, String p) {
+  BarefootRequestDispatcher(BarefootServletContext ctx, String p) {
     context = ctx;
-    servlet = sr;
     uri = p;
     String cp = context.getContextPath();
 
@@ -50,8 +51,13 @@ class BarefootRequestDispatcher implements RequestDispatcher {
       }
     }
 
+    BarefootServletMapping.Match<BarefootServletRegistration, FilterChain[]> match =
+        context.servletMapping.match(p);
+
     contextPath = cp;
-    pathInfo = p;
+    filterChains = match.getChain();
+    servletPath = match.getServletPath();
+    pathInfo = match.getPathInfo();
   }
 
   @Override
@@ -68,13 +74,18 @@ class BarefootRequestDispatcher implements RequestDispatcher {
 
   void invoke(DispatcherType dispatcherType, ServletRequest request, ServletResponse response)
       throws ServletException, IOException {
-    servlet.servlet.service(
+    filterChains[dispatcherType.ordinal()].doFilter(
         new HttpServletRequestWrapper((HttpServletRequest) request) {
           @Override
           public DispatcherType getDispatcherType() {
             return dispatcherType;
           }
 
+          @Override
+          public String getServletPath() {
+            return servletPath;
+          }
+
           @Override
           public String getPathInfo() {
             return pathInfo;
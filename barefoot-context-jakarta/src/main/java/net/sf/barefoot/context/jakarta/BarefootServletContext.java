@@ -21,6 +21,7 @@
 
 package net.sf.barefoot.context.jakarta;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.FilterRegistration;
@@ -41,39 +42,51 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.SessionTrackingMode;
 import jakarta.servlet.annotation.HandlesTypes;
 import jakarta.servlet.descriptor.JspConfigDescriptor;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSessionAttributeListener;
 import jakarta.servlet.http.HttpSessionListener;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.EventListener;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import net.sf.barefoot.context.*;
+import net.sf.barefoot.context.jfr.BarefootRequestListenerEvent;
+import net.sf.barefoot.context.jfr.BarefootStartupEvent;
 import net.sf.barefoot.util.IteratorEnumeration;
 
 /**
  * Context for all servlets. This holds the list of servlets allowing them to have requests
- * dispatched to them
+ * dispatched to them. The servlet mapping is published through a volatile field once started so
+ * requests may be dispatched concurrently.
  */
 public final class BarefootServletContext extends AbstractServletContext implements ServletContext {
   final Map<String, BarefootServletRegistration> servlets = new HashMap<>();
-  final Map<String, BarefootServletRegistration> servletPaths = new HashMap<>();
-  final Map<String, BarefootFilterRegistration> filters = new HashMap<>();
-  final List<ServletContextListener> contextListeners = new ArrayList<>();
-  final List<ServletContextAttributeListener> contextAttributeListeners = new ArrayList<>();
-  final List<HttpSessionListener> httpSessionListeners = new ArrayList<>();
-  final List<HttpSessionAttributeListener> httpSessionAttributeListeners = new ArrayList<>();
-  final List<ServletRequestListener> servletRequestListeners = new ArrayList<>();
+  final Map<String, BarefootFilterRegistration> filters = new LinkedHashMap<>();
+  final List<ServletContextListener> contextListeners = new CopyOnWriteArrayList<>();
+  final List<ServletContextAttributeListener> contextAttributeListeners =
+      new CopyOnWriteArrayList<>();
+  final List<HttpSessionListener> httpSessionListeners = new CopyOnWriteArrayList<>();
+  final List<HttpSessionAttributeListener> httpSessionAttributeListeners =
+      new CopyOnWriteArrayList<>();
+  final List<ServletRequestListener> servletRequestListeners = new CopyOnWriteArrayList<>();
   final BarefootSessionCookieConfig sessionCookieConfig = new BarefootSessionCookieConfig();
+  volatile BarefootServletMapping<BarefootServletRegistration, FilterChain[]> servletMapping;
 
   /** internal, to be called in constructor */
   private void commonInit() {
@@ -82,6 +95,7 @@ public final class BarefootServletContext extends AbstractServletContext impleme
     listenerMap.put(HttpSessionListener.class, httpSessionListeners);
     listenerMap.put(HttpSessionAttributeListener.class, httpSessionAttributeListeners);
     listenerMap.put(ServletRequestListener.class, servletRequestListeners);
+    servletMapping = buildServletMapping();
   }
 
   /**
@@ -112,24 +126,7 @@ public final class BarefootServletContext extends AbstractServletContext impleme
 
   @Override
   public RequestDispatcher getRequestDispatcher(String string) {
-    BarefootServletRegistration dispatcher = servletPaths.get(string);
-    if (dispatcher == null) {
-      if (!string.isEmpty()) {
-        for (Map.Entry<String, BarefootServletRegistration> entry : servletPaths.entrySet()) {
-          String key = entry.getKey();
-          if (key != null && !key.isEmpty()) {
-            if (string.startsWith(key)) {
-              dispatcher = entry.getValue();
-              break;
-            }
-          }
-        }
-      }
-      if (dispatcher == null) {
-        dispatcher = servletPaths.get(null);
-      }
-    }
-    return new BarefootRequestDispatcher(this, dispatcher, string);
+    return new BarefootRequestDispatcher(this, string);
   }
 
   @Override
@@ -174,20 +171,18 @@ public final class BarefootServletContext extends AbstractServletContext impleme
     servlets.put(name, reg);
 
     servletStartupTasks.add(
-        () -> {
-          for (String m : reg.getMappings()) {
-            servletPaths.put(m, reg);
-            if ("/".equals(m)) {
-              servletPaths.put("", reg);
-              servletPaths.put(null, reg);
-            }
-          }
-          try {
-            reg.onStartup();
-          } catch (ServletException ex) {
-            throw new RuntimeException(ex);
-          }
-        });
+        new StartupTask(
+            name,
+            reg::getLoadOnStartup,
+            () -> {
+              try {
+                if (reg.getLoadOnStartup() >= 0) {
+                  reg.onStartup();
+                }
+              } catch (ServletException ex) {
+                throw new RuntimeException(ex);
+              }
+            }));
 
     return reg;
   }
@@ -251,15 +246,15 @@ public final class BarefootServletContext extends AbstractServletContext impleme
     filters.put(name, fr);
 
     filterStartupTasks.add(
-        () -> {
-          fr.chain = rootFilter;
-          rootFilter = fr;
-          try {
-            fr.onStartup();
-          } catch (ServletException ex) {
-            throw new RuntimeException(ex);
-          }
-        });
+        new StartupTask(
+            name,
+            () -> {
+              try {
+                fr.onStartup();
+              } catch (ServletException ex) {
+                throw new RuntimeException(ex);
+              }
+            }));
 
     return fr;
   }
@@ -349,8 +344,11 @@ public final class BarefootServletContext extends AbstractServletContext impleme
   @Override
   public void onStartup() throws ServletException {
     try {
-      ServiceLoader<ServletContainerInitializer> serviceLoader =
-          ServiceLoader.load(ServletContainerInitializer.class, resourceLoader);
+      ServletContainerInitializer bootstrap = loadBootstrap();
+      Iterable<ServletContainerInitializer> serviceLoader =
+          bootstrap == null
+              ? ServiceLoader.load(ServletContainerInitializer.class, resourceLoader)
+              : Collections.singletonList(bootstrap);
       boolean isEmpty = true;
 
       for (ServletContainerInitializer init : serviceLoader) {
@@ -379,6 +377,8 @@ public final class BarefootServletContext extends AbstractServletContext impleme
       }
 
       super.onStartup();
+
+      servletMapping = buildServletMapping();
     } catch (RuntimeException ex) {
       Throwable cause = ex.getCause();
       if (cause instanceof ServletException) {
@@ -392,45 +392,301 @@ public final class BarefootServletContext extends AbstractServletContext impleme
     }
   }
 
-  /** the end of the chain that calls the servlets */
-  protected FilterChain rootFilter =
-      (ServletRequest req, ServletResponse resp) -> {
-        HttpServletRequest http = (HttpServletRequest) req;
-        String servletPath = http.getServletPath();
-        BarefootServletRegistration reg = servletPaths.get(servletPath);
-        if (reg == null) {
-          ((HttpServletResponse) resp).sendError(HttpServletResponse.SC_NOT_FOUND);
-        } else {
-          reg.servlet.service(req, resp);
+  /**
+   * Loads the initializer generated at build time by the barefoot-maven-plugin bootstrap goal. It
+   * replaces the service loader lookup, the @HandlesTypes scan and the parsing of web.xml.
+   *
+   * @return the generated initializer or null if the build did not generate one
+   */
+  private ServletContainerInitializer loadBootstrap() throws ReflectiveOperationException {
+    String className = null;
+
+    try (InputStream is = resourceLoader.getResourceAsStream(BOOTSTRAP_RESOURCE)) {
+      if (is != null) {
+        try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+          className = reader.readLine();
         }
-      };
+      }
+    } catch (IOException ex) {
+      log("Barefoot, " + BOOTSTRAP_RESOURCE, ex);
+    }
+
+    if (className == null || className.trim().isEmpty()) {
+      return null;
+    }
+
+    return Class.forName(className.trim(), true, resourceLoader)
+        .asSubclass(ServletContainerInitializer.class)
+        .getDeclaredConstructor()
+        .newInstance();
+  }
+
+  /** resource naming the generated initializer */
+  static final String BOOTSTRAP_RESOURCE =
+      "META-INF/barefoot/" + ServletContainerInitializer.class.getName();
+
+  /**
+   * Freezes the servlet and filter url-patterns into the index used to resolve requests, along with
+   * the filter chains for every route and dispatcher type
+   *
+   * @return servlet mapping
+   */
+  private BarefootServletMapping<BarefootServletRegistration, FilterChain[]> buildServletMapping() {
+    BarefootServletMapping.Builder<BarefootServletRegistration, FilterChain[]> builder =
+        BarefootServletMapping.builder();
+    List<BarefootFilterRegistration> ordered = new ArrayList<>();
+    Map<List<Object>, FilterChain> chains = new HashMap<>();
+    boolean unmappedGlobal = isUnmappedFilterGlobal();
+
+    servlets
+        .values()
+        .forEach(
+            (reg) -> {
+              resolveCompressionThreshold(reg);
+              for (String m : reg.getMappings()) {
+                builder.add(m, reg);
+              }
+            });
+
+    filters
+        .values()
+        .forEach(
+            (fr) -> {
+              fr.isGlobal = unmappedGlobal && fr.isUnmapped();
+              for (String m : fr.getUrlPatternMappings()) {
+                builder.add(m);
+              }
+              if (!fr.isMatchAfter) {
+                ordered.add(fr);
+              }
+            });
+
+    filters
+        .values()
+        .forEach(
+            (fr) -> {
+              if (fr.isMatchAfter) {
+                ordered.add(fr);
+              }
+            });
+
+    servlets
+        .values()
+        .forEach(
+            (reg) -> {
+              reg.filterChains = buildFilterChains(reg, null, ordered, chains);
+            });
+
+    return builder.build((reg, patterns) -> buildFilterChains(reg, patterns, ordered, chains));
+  }
+
+  /**
+   * Builds a chain for each dispatcher type, filters matched by url-pattern come before those
+   * matched by servlet name. Identical chains are shared between routes.
+   *
+   * @param reg servlet at the end of the chain, may be null
+   * @param patterns url-patterns of the route, null for named dispatch
+   * @param ordered filters in the order they apply
+   * @param chains chains already built
+   * @return chains indexed by dispatcher type ordinal
+   */
+  private FilterChain[] buildFilterChains(
+      BarefootServletRegistration reg,
+      Set<String> patterns,
+      List<BarefootFilterRegistration> ordered,
+      Map<List<Object>, FilterChain> chains) {
+    DispatcherType[] types = DispatcherType.values();
+    FilterChain[] result = new FilterChain[types.length];
+
+    for (DispatcherType type : types) {
+      List<Object> key = new ArrayList<>();
+      key.add(reg);
+
+      if (patterns != null) {
+        for (BarefootFilterRegistration fr : ordered) {
+          if (fr.isDispatchedFor(type) && fr.isMappedTo(patterns)) {
+            key.add(fr);
+          }
+        }
+      }
+
+      for (BarefootFilterRegistration fr : ordered) {
+        if (fr.isDispatchedFor(type) && fr.isMappedTo(reg) && !key.contains(fr)) {
+          key.add(fr);
+        }
+      }
+
+      result[type.ordinal()] = chains.computeIfAbsent(key, this::linkFilterChain);
+    }
+
+    return result;
+  }
+
+  /**
+   * links filters to the servlet at the end of the chain
+   *
+   * @param key servlet followed by the filters
+   * @return head of the chain
+   */
+  private FilterChain linkFilterChain(List<Object> key) {
+    BarefootServletRegistration reg = (BarefootServletRegistration) key.get(0);
+    FilterChain chain;
+
+    if (reg == null) {
+      chain =
+          (ServletRequest req, ServletResponse resp) ->
+              ((HttpServletResponse) resp).sendError(HttpServletResponse.SC_NOT_FOUND);
+    } else {
+      chain = (ServletRequest req, ServletResponse resp) -> reg.service(req, resp);
+    }
+
+    for (int i = key.size() - 1; i > 0; i--) {
+      BarefootFilterRegistration fr = (BarefootFilterRegistration) key.get(i);
+      FilterChain next = chain;
+      chain = (ServletRequest req, ServletResponse resp) -> fr.doFilter(req, resp, next);
+    }
+
+    return chain;
+  }
+
+  /**
+   * initialise a servlet on its first request
+   *
+   * @param reg servlet with negative load-on-startup
+   * @throws ServletException from the servlet's init
+   */
+  void deferredInit(BarefootServletRegistration reg) throws ServletException {
+    BarefootStartupEvent event = new BarefootStartupEvent();
+    event.begin();
+    if (reg.onStartup()) {
+      if (event.shouldCommit()) {
+        event.phase = PHASE_SERVLET;
+        event.name = reg.getName();
+        event.deferred = true;
+        event.commit();
+      }
+      deferredInitNanos.add(reg.getInitNanos());
+      log(
+          "Barefoot, initialized "
+              + reg.getName()
+              + " in "
+              + TimeUnit.NANOSECONDS.toMillis(reg.getInitNanos())
+              + "ms");
+    }
+  }
 
   @Override
   public void dispatch(AbstractServletRequest req, AbstractServletResponse resp)
       throws IOException, BarefootServletException {
+    long started = System.nanoTime();
+    boolean completed = false;
     try {
       currentRequest.set(req);
+      if (isETagEnabled()) {
+        resp.hashBody();
+      }
+      int threshold = getCompressionThreshold(((BarefootServletRequest) req).servletRegistration);
+      if (threshold >= 0) {
+        req.inflateBody();
+        resp.compressBody(threshold);
+      }
       if (!servletRequestListeners.isEmpty()) {
         ServletRequestEvent sce = new ServletRequestEvent(this, (ServletRequest) req);
         for (ServletRequestListener e : servletRequestListeners) {
+          BarefootRequestListenerEvent event = new BarefootRequestListenerEvent();
+          event.begin();
           e.requestInitialized(sce);
+          commitListenerEvent(event, e, true, req);
         }
       }
       try {
-        rootFilter.doFilter((ServletRequest) req, (ServletResponse) resp);
+        ((BarefootServletRequest) req)
+            .filterChains[DispatcherType.REQUEST.ordinal()].doFilter(
+                (ServletRequest) req, (ServletResponse) resp);
+      } catch (BarefootRequestException ex) {
+        reject(resp, ex);
+      } catch (ServletException ex) {
+        if (!(ex.getRootCause() instanceof BarefootRequestException)) {
+          throw ex;
+        }
+        reject(resp, (BarefootRequestException) ex.getRootCause());
       } finally {
         if (!servletRequestListeners.isEmpty()) {
           int i = servletRequestListeners.size();
           ServletRequestEvent sce = new ServletRequestEvent(this, (ServletRequest) req);
           while (0 != i--) {
-            servletRequestListeners.get(i).requestDestroyed(sce);
+            ServletRequestListener e = servletRequestListeners.get(i);
+            BarefootRequestListenerEvent event = new BarefootRequestListenerEvent();
+            event.begin();
+            e.requestDestroyed(sce);
+            commitListenerEvent(event, e, false, req);
           }
         }
       }
+      req.commitSession(resp, getSessionPersister());
+      resp.finish();
+      resp.applyConditional();
+      completed = true;
     } catch (ServletException ex) {
       throw new BarefootServletException(ex);
     } finally {
       currentRequest.set(null);
+      req.release();
+      metrics
+          .requestMetric()
+          .record(
+              System.nanoTime() - started,
+              completed ? resp.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+              req.getKnownContentLength(),
+              resp.getContentLengthLong());
+    }
+  }
+
+  /**
+   * answers a request the container could not decode with its status, once committed the client has
+   * already seen a response so the exception continues
+   */
+  private static void reject(AbstractServletResponse resp, BarefootRequestException ex) {
+    if (resp.isCommitted()) {
+      throw ex;
+    }
+    resp.reset();
+    resp.setStatus(ex.getStatus());
+  }
+
+  /** status to record, a request that threw is counted as a server error */
+  static int statusOf(ServletResponse resp, boolean completed) {
+    if (!completed) {
+      return HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    }
+    return resp instanceof HttpServletResponse ? ((HttpServletResponse) resp).getStatus() : 0;
+  }
+
+  /** request length known without reading the body if the request is not wrapped */
+  static long contentLengthOf(ServletRequest req) {
+    return req instanceof AbstractServletRequest
+        ? ((AbstractServletRequest) req).getKnownContentLength()
+        : -1L;
+  }
+
+  /** declared response length if the response is not wrapped */
+  static long contentLengthOf(ServletResponse resp) {
+    return resp instanceof AbstractServletResponse
+        ? ((AbstractServletResponse) resp).getContentLengthLong()
+        : -1L;
+  }
+
+  private static void commitListenerEvent(
+      BarefootRequestListenerEvent event,
+      ServletRequestListener listener,
+      boolean initialized,
+      AbstractServletRequest req) {
+    if (event.shouldCommit()) {
+      event.listenerClass = listener.getClass().getName();
+      event.initialized = initialized;
+      event.requestURI = req.getRequestURI();
+      event.commit();
     }
   }
 
@@ -456,47 +712,47 @@ public final class BarefootServletContext extends AbstractServletContext impleme
     if (t instanceof ServletContextListener) {
       ServletContextListener listener = (ServletContextListener) t;
       listenerStartupTasks.add(
-          () -> {
-            ServletContextEvent sce = new ServletContextEvent(this);
-            listener.contextInitialized(sce);
-          });
+          new StartupTask(
+              t.getClass().getName(),
+              () -> {
+                ServletContextEvent sce = new ServletContextEvent(this);
+                listener.contextInitialized(sce);
+              }));
     }
   }
 
   @Override
   public void setAttribute(String name, Object value) {
-    if (contextAttributeListeners.isEmpty()) {
-      attributes.put(name, value);
+    if (value == null) {
+      removeAttribute(name);
     } else {
-      boolean replace = attributes.containsKey(name);
-      attributes.put(name, value);
-      ServletContextAttributeEvent scae = new ServletContextAttributeEvent(this, name, value);
-      contextAttributeListeners.forEach(
-          (e) -> {
-            if (replace) {
-              e.attributeReplaced(scae);
-            } else {
-              e.attributeAdded(scae);
-            }
-          });
+      Object old = attributes.put(name, value);
+      if (!contextAttributeListeners.isEmpty()) {
+        ServletContextAttributeEvent scae =
+            new ServletContextAttributeEvent(this, name, old == null ? value : old);
+        contextAttributeListeners.forEach(
+            (e) -> {
+              if (old == null) {
+                e.attributeAdded(scae);
+              } else {
+                e.attributeReplaced(scae);
+              }
+            });
+      }
     }
   }
 
   @Override
   public void removeAttribute(String name) {
-    if (contextAttributeListeners.isEmpty()) {
-      attributes.remove(name);
-    } else {
-      if (attributes.containsKey(name)) {
-        Object value = attributes.get(name);
-        attributes.remove(name);
-        ServletContextAttributeEvent scae = new ServletContextAttributeEvent(this, name, value);
+    Object value = name == null ? null : attributes.remove(name);
 
-        contextAttributeListeners.forEach(
-            (e) -> {
-              e.attributeRemoved(scae);
-            });
-      }
+    if (value != null && !contextAttributeListeners.isEmpty()) {
+      ServletContextAttributeEvent scae = new ServletContextAttributeEvent(this, name, value);
+
+      contextAttributeListeners.forEach(
+          (e) -> {
+            e.attributeRemoved(scae);
+          });
     }
   }
 
@@ -506,7 +762,7 @@ public final class BarefootServletContext extends AbstractServletContext impleme
         .entrySet()
         .forEach(
             (e) -> {
-              e.getValue().servlet.destroy();
+              e.getValue().onDestroy();
             });
 
     filters
@@ -526,8 +782,8 @@ public final class BarefootServletContext extends AbstractServletContext impleme
 
     try {
       servlets.clear();
-      servletPaths.clear();
       filters.clear();
+      servletMapping = buildServletMapping();
       super.destroy();
     } catch (ServletException ex) {
       throw ex;
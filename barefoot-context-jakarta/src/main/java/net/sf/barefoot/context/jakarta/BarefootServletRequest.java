@@ -23,10 +23,11 @@ package net.sf.barefoot.context.jakarta;
 
 import jakarta.servlet.AsyncContext;
 import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.MultipartConfigElement;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletInputStream;
-import jakarta.servlet.ServletRegistration;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.Cookie;
@@ -37,10 +38,17 @@ import jakarta.servlet.http.HttpSessionEvent;
 import jakarta.servlet.http.HttpUpgradeHandler;
 import jakarta.servlet.http.Part;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import net.sf.barefoot.context.AbstractServletPart;
 import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootContentType;
+import net.sf.barefoot.context.BarefootMultipartParser;
+import net.sf.barefoot.context.BarefootServletMapping;
+import net.sf.barefoot.context.BarefootSessionData;
+import net.sf.barefoot.context.BarefootSessionStore;
 
 /** Standard request for servlets */
 public final class BarefootServletRequest extends AbstractServletRequest
@@ -48,8 +56,10 @@ public final class BarefootServletRequest extends AbstractServletRequest
   private final BarefootServletContext servletContext;
   private final Cookie[] cookies;
 
-  // thses two are calculated from URI in constructor
+  // these are resolved from URI in constructor
   private final String pathInfo, servletPath;
+  final BarefootServletRegistration servletRegistration;
+  final FilterChain[] filterChains;
 
   /**
    * Initialise request state from builder
@@ -62,8 +72,6 @@ public final class BarefootServletRequest extends AbstractServletRequest
     servletContext = builder.servletContext;
     cookies = builder.cookies;
 
-    String sp = null, pi = null;
-
     String suri = uri;
 
     if (contextPathLength > 1 && suri.startsWith(contextPath)) {
@@ -74,26 +82,13 @@ public final class BarefootServletRequest extends AbstractServletRequest
       }
     }
 
-    for (Map.Entry<String, ? extends ServletRegistration> reg :
-        servletContext.getServletRegistrations().entrySet()) {
-      for (String mapping : reg.getValue().getMappings()) {
-        if (suri.startsWith(mapping)) {
-          int len = mapping.length();
-          if ((suri.length() == len) || (suri.charAt(len) == '/')) {
-            sp = mapping;
-            if (suri.length() > len) {
-              pi = suri.substring(len);
-            }
-            break;
-          }
-        }
-      }
-
-      if (sp != null) break;
-    }
+    BarefootServletMapping.Match<BarefootServletRegistration, FilterChain[]> match =
+        servletContext.servletMapping.match(suri);
 
-    pathInfo = sp == null ? suri : pi;
-    servletPath = sp == null ? "" : sp;
+    servletRegistration = match.getServlet();
+    filterChains = match.getChain();
+    pathInfo = match.getPathInfo();
+    servletPath = match.getServletPath();
   }
 
   @Override
@@ -118,25 +113,69 @@ public final class BarefootServletRequest extends AbstractServletRequest
 
   @Override
   public BarefootServletSession getSession(boolean bln) {
-    if (bln && (httpSession == null)) {
-      BarefootSessionCookieConfig sessionConfig = servletContext.getSessionCookieConfig();
-      long now = System.currentTimeMillis();
-      int maxAge = sessionConfig.getMaxAge();
-      httpSession =
-          new BarefootServletSession(this, now, now, true, null, maxAge > 0 ? maxAge : 1800);
-
-      if (!servletContext.httpSessionListeners.isEmpty()) {
-        HttpSessionEvent hse = new HttpSessionEvent((HttpSession) httpSession);
-        servletContext.httpSessionListeners.forEach(
-            (e) -> {
-              e.sessionCreated(hse);
-            });
+    if (httpSession == null) {
+      BarefootSessionData data = findSession();
+
+      if (data != null) {
+        httpSession = new BarefootServletSession(this, data, false);
+      } else if (bln) {
+        int timeout = servletContext.getSessionTimeout();
+        int maxAge = servletContext.getSessionCookieConfig().getMaxAge();
+        httpSession =
+            new BarefootServletSession(
+                this, newSession(timeout > 0 ? timeout * 60 : maxAge > 0 ? maxAge : 1800), true);
+
+        if (!servletContext.httpSessionListeners.isEmpty()) {
+          HttpSessionEvent hse = new HttpSessionEvent((HttpSession) httpSession);
+          servletContext.httpSessionListeners.forEach(
+              (e) -> {
+                e.sessionCreated(hse);
+              });
+        }
       }
     }
 
     return (BarefootServletSession) httpSession;
   }
 
+  @Override
+  protected String getCookieValue(String name) {
+    if (cookies != null) {
+      for (Cookie cookie : cookies) {
+        if (name.equals(cookie.getName())) {
+          return cookie.getValue();
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  protected String getSessionCookieName() {
+    String name = servletContext.getSessionCookieConfig().getName();
+    return name == null ? SESSION_COOKIE : name;
+  }
+
+  @Override
+  protected BarefootSessionStore getSessionStore() {
+    return servletContext.getSessionStore();
+  }
+
+  @Override
+  protected void addSessionCookie(AbstractServletResponse resp, String name, String value) {
+    BarefootSessionCookieConfig config = servletContext.getSessionCookieConfig();
+    Cookie cookie = new Cookie(name, value == null ? "" : value);
+    String path = config.getPath();
+    cookie.setPath(path != null ? path : contextPath.isEmpty() ? "/" : contextPath);
+    if (config.getDomain() != null) {
+      cookie.setDomain(config.getDomain());
+    }
+    cookie.setMaxAge(value == null ? 0 : config.getMaxAge());
+    cookie.setHttpOnly(config.isHttpOnly());
+    cookie.setSecure(config.isSecure() || isSecure);
+    ((HttpServletResponse) resp).addCookie(cookie);
+  }
+
   @Override
   public HttpSession getSession() {
     return getSession(true);
@@ -159,12 +198,42 @@ public final class BarefootServletRequest extends AbstractServletRequest
 
   @Override
   public Collection<Part> getParts() throws IOException, ServletException {
-    throw new UnsupportedOperationException("Not supported yet.");
+    List<AbstractServletPart> list = readParts();
+
+    if (list == null) {
+      throw new ServletException("not " + BarefootContentType.MULTIPART_FORM_DATA);
+    }
+
+    List<Part> result = new ArrayList<>(list.size());
+    for (AbstractServletPart part : list) {
+      result.add((Part) part);
+    }
+    return result;
   }
 
   @Override
   public Part getPart(String string) throws IOException, ServletException {
-    throw new UnsupportedOperationException("Not supported yet.");
+    for (Part part : getParts()) {
+      if (string.equals(part.getName())) {
+        return part;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  protected BarefootMultipartParser getMultipartParser() {
+    MultipartConfigElement config =
+        servletRegistration == null ? null : servletRegistration.multipartConfigElement;
+
+    return config == null
+        ? null
+        : new BarefootMultipartParser(
+            config.getLocation(),
+            config.getMaxFileSize(),
+            config.getMaxRequestSize(),
+            config.getFileSizeThreshold(),
+            BarefootServletPart::new);
   }
 
   @Override
@@ -219,9 +288,7 @@ public final class BarefootServletRequest extends AbstractServletRequest
   }
 
   void sessionDestroyed(BarefootServletSession session) {
-    if (httpSession == session) {
-      httpSession = null;
-    }
+    invalidateSession(session);
   }
 
   /** Builder for requests */
@@ -23,22 +23,23 @@ package net.sf.barefoot.context.javax;
 
 import java.io.IOException;
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import net.sf.barefoot.context.BarefootServletMapping;
 
 /** Dispatcher for include and forward */
 class BarefootRequestDispatcher implements RequestDispatcher {
   final BarefootServletContext context;
-  final BarefootServletRegistration servlet;
-  final String uri, pathInfo, contextPath;
+  final FilterChain[] filterChains;
+  final String uri, servletPath, pathInfo, contextPath;
 
-  BarefootRequestDispatcher(BarefootServletContext ctx, BarefootServletRegistration sr, String p) {
+  BarefootRequestDispatcher(BarefootServletContext ctx, String p) {
     context = ctx;
-    servlet = sr;
     uri = p;
     String cp = context.getContextPath();
 
@@ -50,8 +51,13 @@ class BarefootRequestDispatcher implements RequestDispatcher {
       }
     }
 
+    BarefootServletMapping.Match<BarefootServletRegistration, FilterChain[]> match =
+        context.servletMapping.match(p);
+
     contextPath = cp;
-    pathInfo = p;
+    filterChains = match.getChain();
+    servletPath = match.getServletPath();
+    pathInfo = match.getPathInfo();
   }
 
   @Override
@@ -68,13 +74,18 @@ class BarefootRequestDispatcher implements RequestDispatcher {
 
   void invoke(DispatcherType dispatcherType, ServletRequest request, ServletResponse response)
       throws ServletException, IOException {
-    servlet.servlet.service(
+    filterChains[dispatcherType.ordinal()].doFilter(
         new HttpServletRequestWrapper((HttpServletRequest) request) {
           @Override
           public DispatcherType getDispatcherType() {
             return dispatcherType;
           }
 
+          @Override
+          public String getServletPath() {
+            return servletPath;
+          }
+
           @Override
           public String getPathInfo() {
             return pathInfo;
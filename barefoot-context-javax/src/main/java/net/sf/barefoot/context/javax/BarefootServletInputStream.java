@@ -24,6 +24,7 @@ package net.sf.barefoot.context.javax;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 
@@ -79,6 +80,31 @@ final class BarefootServletInputStream extends ServletInputStream {
     return bais.read(b, 0, b.length);
   }
 
+  @Override
+  public int available() throws IOException {
+    return bais.available();
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    return bais.skip(n);
+  }
+
+  @Override
+  public byte[] readAllBytes() throws IOException {
+    return bais.readAllBytes();
+  }
+
+  @Override
+  public int readNBytes(byte[] b, int off, int len) throws IOException {
+    return bais.readNBytes(b, off, len);
+  }
+
+  @Override
+  public long transferTo(OutputStream out) throws IOException {
+    return bais.transferTo(out);
+  }
+
   @Override
   public void close() throws IOException {
     bais.close();
@@ -24,6 +24,7 @@ package net.sf.barefoot.context.javax;
 import java.io.IOException;
 import java.util.Set;
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.Servlet;
@@ -34,22 +35,33 @@ import javax.servlet.ServletRegistration;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.ServletSecurityElement;
+import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
 import net.sf.barefoot.context.AbstractServletRegistration;
+import net.sf.barefoot.context.jfr.BarefootServiceEvent;
+import net.sf.barefoot.context.metrics.BarefootMetric;
 
 /** Concrete servlet registation */
 public final class BarefootServletRegistration extends AbstractServletRegistration
     implements ServletRegistration.Dynamic, ServletConfig, RequestDispatcher {
   final Servlet servlet;
-  final ServletContext servletContext;
+  final BarefootServletContext servletContext;
   MultipartConfigElement multipartConfigElement;
+  FilterChain[] filterChains;
+  final BarefootMetric metric;
 
   /** creates a holder for the servlet registration information */
-  BarefootServletRegistration(ServletContext ctx, String string, Servlet srvlt) {
+  BarefootServletRegistration(BarefootServletContext ctx, String string, Servlet srvlt) {
     super(string);
     servletContext = ctx;
     servlet = srvlt;
+    metric = ctx.getMetrics().servletMetric(string);
+    MultipartConfig mc = srvlt.getClass().getAnnotation(MultipartConfig.class);
+    if (mc != null) {
+      multipartConfigElement = new MultipartConfigElement(mc);
+    }
   }
 
   @Override
@@ -72,11 +84,63 @@ public final class BarefootServletRegistration extends AbstractServletRegistrati
     throw new UnsupportedOperationException("Not supported yet.");
   }
 
-  /** calls the servlet's initialisation method */
-  void onStartup() throws ServletException {
+  /**
+   * calls the servlet's initialisation method once, concurrent callers wait for the first
+   *
+   * @return true if this call initialised the servlet
+   */
+  boolean onStartup() throws ServletException {
+    if (!isInitialised) {
+      synchronized (this) {
+        if (!isInitialised) {
+          long started = System.nanoTime();
+          servlet.init(this);
+          initNanos = System.nanoTime() - started;
+          isInitialised = true;
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** services the request, initialising the servlet on first use */
+  void service(ServletRequest sr, ServletResponse sr1) throws ServletException, IOException {
     if (!isInitialised) {
-      servlet.init(this);
-      isInitialised = true;
+      servletContext.deferredInit(this);
+    }
+    BarefootServiceEvent event = new BarefootServiceEvent();
+    event.begin();
+    long started = System.nanoTime();
+    boolean completed = false;
+    try {
+      servlet.service(sr, sr1);
+      completed = true;
+    } finally {
+      metric.record(
+          System.nanoTime() - started,
+          BarefootServletContext.statusOf(sr1, completed),
+          BarefootServletContext.contentLengthOf(sr),
+          BarefootServletContext.contentLengthOf(sr1));
+      if (event.shouldCommit()) {
+        event.servletName = name;
+        if (sr instanceof HttpServletRequest) {
+          event.servletPath = ((HttpServletRequest) sr).getServletPath();
+          event.requestURI = ((HttpServletRequest) sr).getRequestURI();
+        }
+        if (sr1 instanceof HttpServletResponse) {
+          event.status = ((HttpServletResponse) sr1).getStatus();
+        }
+        event.commit();
+      }
+    }
+  }
+
+  /** destroys the servlet if it was initialised */
+  synchronized void onDestroy() {
+    if (isInitialised) {
+      isInitialised = false;
+      servlet.destroy();
     }
   }
 
@@ -92,13 +156,19 @@ public final class BarefootServletRegistration extends AbstractServletRegistrati
 
   void invoke(DispatcherType dispatcherType, ServletRequest sr, ServletResponse sr1)
       throws ServletException, IOException {
-    servlet.service(
+    ServletRequest req =
         new HttpServletRequestWrapper((HttpServletRequest) sr) {
           @Override
           public DispatcherType getDispatcherType() {
             return dispatcherType;
           }
-        },
-        sr1);
+        };
+    FilterChain[] chains = filterChains;
+
+    if (chains == null) {
+      service(req, sr1);
+    } else {
+      chains[dispatcherType.ordinal()].doFilter(req, sr1);
+    }
   }
 }
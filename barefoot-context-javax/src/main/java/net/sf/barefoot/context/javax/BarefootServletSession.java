@@ -27,8 +27,9 @@ import javax.servlet.http.HttpSessionBindingEvent;
 import javax.servlet.http.HttpSessionContext;
 import javax.servlet.http.HttpSessionEvent;
 import net.sf.barefoot.context.AbstractServletSession;
+import net.sf.barefoot.context.BarefootSessionData;
 
-/** Servlet session with no backing */
+/** Servlet session, the state may be kept by the context's session store */
 public final class BarefootServletSession extends AbstractServletSession implements HttpSession {
   final BarefootServletRequest servletRequest;
 
@@ -38,6 +39,18 @@ public final class BarefootServletSession extends AbstractServletSession impleme
     servletRequest = req;
   }
 
+  /**
+   * Wraps session state for a request
+   *
+   * @param req request using the session
+   * @param data session state
+   * @param in true if created by this request
+   */
+  public BarefootServletSession(BarefootServletRequest req, BarefootSessionData data, boolean in) {
+    super(data, in);
+    servletRequest = req;
+  }
+
   @Override
   public ServletContext getServletContext() {
     return servletRequest.getServletContext();
@@ -67,7 +80,12 @@ public final class BarefootServletSession extends AbstractServletSession impleme
   @Override
   public void setAttribute(String name, Object value) {
     if (invalid) throw new IllegalStateException();
+    if (value == null) {
+      removeAttribute(name);
+      return;
+    }
     BarefootServletContext servletContext = servletRequest.getServletContext();
+    attributeChanged(name);
     if (servletContext.httpSessionAttributeListeners.isEmpty()) {
       attr.put(name, value);
     } else {
@@ -89,6 +107,7 @@ public final class BarefootServletSession extends AbstractServletSession impleme
   public void removeAttribute(String name) {
     if (invalid) throw new IllegalStateException();
     BarefootServletContext servletContext = servletRequest.getServletContext();
+    attributeChanged(name);
     if (servletContext.httpSessionAttributeListeners.isEmpty()) {
       attr.remove(name);
     } else {
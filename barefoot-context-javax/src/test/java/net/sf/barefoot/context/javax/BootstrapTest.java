@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Set;
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test the initializer generated at build time replaces service loading */
+public class BootstrapTest {
+
+  /** stands in for the generated initializer */
+  public static final class Bootstrap implements ServletContainerInitializer {
+    @Override
+    public void onStartup(Set<Class<?>> classes, ServletContext ctx) {
+      Assert.assertTrue(classes.isEmpty());
+      ctx.setInitParameter("bootstrap", "true");
+      ctx.addServlet("generated", Generated.class).addMapping("/generated");
+    }
+  }
+
+  /** servlet registered by the initializer */
+  public static final class Generated extends HttpServlet {
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) {
+      resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+    }
+  }
+
+  @Test
+  public void testBootstrap() throws Exception {
+    ClassLoader loader =
+        new ClassLoader(getClass().getClassLoader()) {
+          @Override
+          public InputStream getResourceAsStream(String name) {
+            if (BarefootServletContext.BOOTSTRAP_RESOURCE.equals(name)) {
+              return new ByteArrayInputStream(
+                  (Bootstrap.class.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return super.getResourceAsStream(name);
+          }
+        };
+
+    BarefootServletContext ctx = new BarefootServletContext("", loader);
+    ctx.onStartup();
+
+    Assert.assertEquals("true", ctx.getInitParameter("bootstrap"));
+
+    AbstractServletRequest req =
+        ctx.getServletRequestBuilder()
+            .headers(new HashMap<>())
+            .contextPath("")
+            .requestUri("/generated")
+            .requestUrl("http://localhost/generated")
+            .build();
+    AbstractServletResponse resp = req.getServletResponseBuilder().build();
+    ctx.dispatch(req, resp);
+
+    Assert.assertEquals(HttpServletResponse.SC_ACCEPTED, resp.getStatus());
+  }
+
+  @Test
+  public void testFallback() throws Exception {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.onStartup();
+
+    Assert.assertNull(ctx.getInitParameter("bootstrap"));
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootRequestBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** response compression and request inflation tests */
+public class CompressionTest extends TestBase {
+
+  public static class JsonServlet extends HttpServlet {
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      resp.setContentType("application/json");
+      String reset = req.getParameter("reset");
+      if (reset != null) {
+        resp.getWriter().print(json(500));
+        resp.getWriter().flush();
+        resp.resetBuffer();
+        resp.setContentType(reset);
+      }
+      resp.getWriter().print(json(Integer.parseInt(req.getParameter("n"))));
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      resp.setContentType("text/plain");
+      try (InputStream is = req.getInputStream()) {
+        resp.getOutputStream().write(is.readAllBytes());
+      }
+    }
+  }
+
+  static String json(int n) {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < n; i++) {
+      sb.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+    }
+    return sb.append(']').toString();
+  }
+
+  BarefootServletContext start(String contextValue, String servletValue) throws Exception {
+    BarefootServletContext context = newContext();
+    context.setInitParameter(AbstractServletContext.COMPRESSION, contextValue);
+    BarefootServletRegistration reg = context.addServlet("json", JsonServlet.class);
+    reg.addMapping("/json");
+    if (servletValue != null) {
+      reg.setInitParameter(AbstractServletContext.COMPRESSION, servletValue);
+    }
+    context.onStartup();
+    return context;
+  }
+
+  AbstractServletResponse dispatch(
+      BarefootServletContext context,
+      String method,
+      String query,
+      Map<String, List<String>> headers,
+      BarefootRequestBody body)
+      throws Exception {
+    AbstractServletRequest.Builder builder =
+        request(context, method, "/json").headers(headers).queryString(query);
+    if (body != null) {
+      builder.contentType("text/plain").body(body);
+    }
+    return dispatch(context, builder);
+  }
+
+  static Map<String, List<String>> acceptGzip() {
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("accept-encoding", Collections.singletonList("gzip, deflate"));
+    return headers;
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    BarefootServletContext context = start("true", null);
+
+    AbstractServletResponse resp = dispatch(context, "GET", "n=500", acceptGzip(), null);
+
+    Assert.assertEquals("gzip", resp.getHeader("Content-Encoding"));
+    Assert.assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+    Assert.assertTrue(buffer.size() < json(500).length() / 4);
+    try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+      Assert.assertEquals(json(500), new String(is.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testThreshold() throws Exception {
+    BarefootServletContext context = start("true", null);
+
+    AbstractServletResponse resp = dispatch(context, "GET", "n=2", acceptGzip(), null);
+
+    Assert.assertNull(resp.getHeader("Content-Encoding"));
+    Assert.assertEquals("Accept-Encoding", resp.getHeader("Vary"));
+    Assert.assertEquals(json(2), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+
+    resp = dispatch(context, "GET", "n=500", new HashMap<>(), null);
+
+    Assert.assertNull(resp.getHeader("Content-Encoding"));
+    Assert.assertEquals(json(500), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testServletOverride() throws Exception {
+    BarefootServletContext context = start("true", "false");
+
+    AbstractServletResponse resp = dispatch(context, "GET", "n=500", acceptGzip(), null);
+
+    Assert.assertNull(resp.getHeader("Content-Encoding"));
+    Assert.assertNull(resp.getHeader("Vary"));
+  }
+
+  @Test
+  public void testInflate() throws Exception {
+    BarefootServletContext context = start("false", "100000");
+    String content = json(100);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+      gzip.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+    Map<String, List<String>> headers = new HashMap<>();
+    headers.put("content-encoding", Collections.singletonList("gzip"));
+
+    AbstractServletResponse resp =
+        dispatch(context, "POST", null, headers, BarefootRequestBody.of(baos.toByteArray()));
+
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertEquals(content, new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testResetBuffer() throws Exception {
+    BarefootServletContext context = start("true", null);
+
+    AbstractServletResponse resp =
+        dispatch(context, "GET", "n=300&reset=application/json", acceptGzip(), null);
+
+    Assert.assertEquals("gzip", resp.getHeader("Content-Encoding"));
+    try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+      Assert.assertEquals(json(300), new String(is.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    resp = dispatch(context, "GET", "n=300&reset=image/png", acceptGzip(), null);
+
+    Assert.assertNull(resp.getHeader("Content-Encoding"));
+    Assert.assertEquals(json(300), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootDateCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** conditional request tests */
+public class ConditionalTest extends TestBase {
+  static final String CONTENT = "unchanged content";
+  static final long LAST_MODIFIED = 784111777000L;
+
+  public static class PollServlet extends HttpServlet {
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      resp.setContentType("text/plain");
+      resp.setDateHeader("Last-Modified", LAST_MODIFIED);
+      resp.getWriter().print(CONTENT);
+    }
+  }
+
+  BarefootServletContext start(boolean etag) throws Exception {
+    BarefootServletContext context = newContext();
+    if (etag) {
+      context.setInitParameter(AbstractServletContext.ETAG, "true");
+    }
+    context.addServlet("poll", PollServlet.class).addMapping("/poll");
+    context.onStartup();
+    return context;
+  }
+
+  AbstractServletResponse dispatch(BarefootServletContext context, String name, String value)
+      throws Exception {
+    Map<String, List<String>> headers = new HashMap<>();
+    if (name != null) {
+      headers.put(name, Collections.singletonList(value));
+    }
+    return dispatch(context, request(context, "GET", "/poll").headers(headers));
+  }
+
+  @Test
+  public void testETag() throws Exception {
+    BarefootServletContext context = start(true);
+
+    AbstractServletResponse first = dispatch(context, null, null);
+    String etag = first.getHeader("ETag");
+    Assert.assertEquals(200, first.getStatus());
+    Assert.assertTrue(etag.startsWith("W/\""));
+    Assert.assertEquals(CONTENT, buffer.toString(StandardCharsets.UTF_8));
+
+    AbstractServletResponse second = dispatch(context, "If-None-Match", "\"other\", " + etag);
+    Assert.assertEquals(304, second.getStatus());
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertEquals(etag, second.getHeader("etag"));
+
+    AbstractServletResponse third = dispatch(context, "If-None-Match", "\"other\"");
+    Assert.assertEquals(200, third.getStatus());
+    Assert.assertEquals(CONTENT, buffer.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testIfModifiedSince() throws Exception {
+    BarefootServletContext context = start(false);
+
+    AbstractServletResponse resp =
+        dispatch(context, "If-Modified-Since", BarefootDateCodec.format(LAST_MODIFIED));
+    Assert.assertEquals(304, resp.getStatus());
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertNull(resp.getHeader("ETag"));
+
+    resp = dispatch(context, "If-Modified-Since", BarefootDateCodec.format(LAST_MODIFIED - 1000));
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertEquals(CONTENT, buffer.toString(StandardCharsets.UTF_8));
+  }
+}
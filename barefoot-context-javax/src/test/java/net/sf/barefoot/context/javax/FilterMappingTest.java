@@ -0,0 +1,174 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootServletException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test filter mappings */
+public class FilterMappingTest {
+  final List<String> trace = new ArrayList<>();
+
+  class TraceFilter implements Filter {
+    final String name;
+
+    TraceFilter(String n) {
+      name = n;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+        throws IOException, ServletException {
+      trace.add(name);
+      chain.doFilter(req, resp);
+    }
+  }
+
+  class TraceServlet extends HttpServlet {
+    final String name;
+
+    TraceServlet(String n) {
+      name = n;
+    }
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      trace.add(name + ":" + req.getDispatcherType());
+      String forward = req.getHeader("forward");
+      if (forward != null && req.getDispatcherType() == DispatcherType.REQUEST) {
+        req.getRequestDispatcher(forward).forward(req, resp);
+      }
+    }
+  }
+
+  BarefootServletContext createContext() throws ServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.addServlet("api", new TraceServlet("api")).addMapping("/api/*");
+    ctx.addServlet("page", new TraceServlet("page")).addMapping("*.html");
+    ctx.addFilter("all", new TraceFilter("all"))
+        .addMappingForUrlPatterns(
+            EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD), true, "/*");
+    ctx.addFilter("secure", new TraceFilter("secure"))
+        .addMappingForUrlPatterns(null, true, "/api/secure/*");
+    ctx.addFilter("named", new TraceFilter("named"))
+        .addMappingForServletNames(EnumSet.of(DispatcherType.REQUEST), true, "page");
+    ctx.addFilter("first", new TraceFilter("first"))
+        .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "*.html");
+    ctx.onStartup();
+    return ctx;
+  }
+
+  List<String> dispatch(BarefootServletContext ctx, String uri, String forward)
+      throws IOException, BarefootServletException {
+    HashMap<String, List<String>> headers = new HashMap<>();
+    if (forward != null) {
+      List<String> list = new ArrayList<>();
+      list.add(forward);
+      headers.put("forward", list);
+    }
+    AbstractServletRequest req =
+        ctx.getServletRequestBuilder()
+            .headers(headers)
+            .contextPath("")
+            .requestUri(uri)
+            .requestUrl("http://localhost" + uri)
+            .build();
+    AbstractServletResponse resp = req.getServletResponseBuilder().build();
+    trace.clear();
+    ctx.dispatch(req, resp);
+    return trace;
+  }
+
+  @Test
+  public void testUrlPatterns() throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = createContext();
+    Assert.assertEquals("[all, api:REQUEST]", dispatch(ctx, "/api/hello", null).toString());
+    Assert.assertEquals(
+        "[all, secure, api:REQUEST]", dispatch(ctx, "/api/secure/hello", null).toString());
+  }
+
+  @Test
+  public void testOrdering() throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = createContext();
+    Assert.assertEquals(
+        "[first, all, named, page:REQUEST]", dispatch(ctx, "/index.html", null).toString());
+  }
+
+  @Test
+  public void testForward() throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = createContext();
+    Assert.assertEquals(
+        "[all, api:REQUEST, all, page:FORWARD]",
+        dispatch(ctx, "/api/hello", "/index.html").toString());
+  }
+
+  @Test
+  public void testUnmappedFilter() throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.addServlet("api", new TraceServlet("api")).addMapping("/api/*");
+    ctx.addFilter("unmapped", new TraceFilter("unmapped"));
+    ctx.onStartup();
+    Assert.assertEquals("[api:REQUEST]", dispatch(ctx, "/api/hello", null).toString());
+    Assert.assertEquals("[]", dispatch(ctx, "/missing", null).toString());
+  }
+
+  @Test
+  public void testUnmappedFilterGlobal()
+      throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.setInitParameter(BarefootServletContext.UNMAPPED_FILTERS, "true");
+    ctx.addServlet("api", new TraceServlet("api")).addMapping("/api/*");
+    ctx.addFilter("legacy", new TraceFilter("legacy"));
+    ctx.onStartup();
+    Assert.assertEquals("[legacy, api:REQUEST]", dispatch(ctx, "/api/hello", null).toString());
+    Assert.assertEquals("[legacy]", dispatch(ctx, "/missing", null).toString());
+  }
+
+  @Test
+  public void testDefaultPattern() throws ServletException, IOException, BarefootServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.addServlet("api", new TraceServlet("api")).addMapping("/api/*");
+    ctx.addServlet("default", new TraceServlet("default")).addMapping("/");
+    ctx.addFilter("slash", new TraceFilter("slash")).addMappingForUrlPatterns(null, true, "/");
+    ctx.onStartup();
+    Assert.assertEquals("[api:REQUEST]", dispatch(ctx, "/api/hello", null).toString());
+    Assert.assertEquals("[slash, default:REQUEST]", dispatch(ctx, "/index.html", null).toString());
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootPreprocessor;
+import net.sf.barefoot.context.BarefootRequestBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** form decoding failures are answered as client errors */
+public class FormTest extends TestBase {
+
+  public static class FormServlet extends HttpServlet {
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      resp.setContentType("text/plain");
+      resp.getWriter().print("before ");
+      resp.getWriter().print(req.getParameter("a"));
+    }
+  }
+
+  BarefootServletContext start() throws Exception {
+    BarefootServletContext context = newContext();
+    context.addServlet("form", FormServlet.class).addMapping("/form");
+    context.onStartup();
+    return context;
+  }
+
+  AbstractServletResponse dispatch(BarefootServletContext context, String body) throws Exception {
+    return dispatch(
+        context,
+        request(context, "POST", "/form")
+            .contentType("application/x-www-form-urlencoded")
+            .body(BarefootRequestBody.of(body)));
+  }
+
+  @Test
+  public void testForm() throws Exception {
+    AbstractServletResponse resp = dispatch(start(), "a=1&b=2");
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertEquals("before 1", buffer.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testMalformed() throws Exception {
+    AbstractServletResponse resp = dispatch(start(), "a=%zz");
+    Assert.assertEquals(400, resp.getStatus());
+    Assert.assertEquals("", buffer.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testTooManyParameters() throws Exception {
+    StringBuilder sb = new StringBuilder("a=1");
+    for (int i = 0; i < BarefootPreprocessor.MAX_PARAMETERS; i++) {
+      sb.append("&p").append(i).append("=x");
+    }
+    AbstractServletResponse resp = dispatch(start(), sb.toString());
+    Assert.assertEquals(413, resp.getStatus());
+    Assert.assertEquals("", buffer.toString(StandardCharsets.UTF_8));
+  }
+}
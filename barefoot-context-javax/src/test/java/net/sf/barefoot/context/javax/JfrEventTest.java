@@ -0,0 +1,139 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test flight recorder events */
+public class JfrEventTest {
+
+  @Test
+  public void testEvents() throws Exception {
+    Path path = Files.createTempFile("barefoot", ".jfr");
+
+    try (Recording recording = new Recording()) {
+      for (String name : new String[] {"Startup", "Filter", "Service"}) {
+        recording.enable("net.sf.barefoot." + name).withThreshold(Duration.ZERO);
+      }
+      recording.start();
+
+      BarefootServletContext ctx = new BarefootServletContext("");
+      ctx.addFilter(
+              "teapot",
+              new Filter() {
+                @Override
+                public void init(FilterConfig fc) {}
+
+                @Override
+                public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+                    throws IOException, ServletException {
+                  chain.doFilter(req, resp);
+                }
+
+                @Override
+                public void destroy() {}
+              })
+          .addMappingForUrlPatterns(null, true, "/*");
+      ServletRegistration.Dynamic reg =
+          ctx.addServlet(
+              "teapot",
+              new HttpServlet() {
+                @Override
+                protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                  resp.setStatus(418);
+                }
+              });
+      reg.addMapping("/tea/*");
+      reg.setLoadOnStartup(-1);
+      ctx.onStartup();
+
+      AbstractServletRequest req =
+          ctx.getServletRequestBuilder()
+              .headers(new HashMap<>())
+              .contextPath("")
+              .requestUri("/tea/pot")
+              .requestUrl("http://localhost/tea/pot")
+              .build();
+      AbstractServletResponse resp = req.getServletResponseBuilder().build();
+      ctx.dispatch(req, resp);
+
+      recording.stop();
+      recording.dump(path);
+    }
+
+    try {
+      List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+      Set<String> found = new HashSet<>();
+      int servlets = 0;
+
+      for (RecordedEvent event : events) {
+        String name = event.getEventType().getName();
+        found.add(name);
+        if ("net.sf.barefoot.Service".equals(name)) {
+          Assert.assertEquals("teapot", event.getString("servletName"));
+          Assert.assertEquals("/tea", event.getString("servletPath"));
+          Assert.assertEquals(418, event.getInt("status"));
+        }
+        if ("net.sf.barefoot.Startup".equals(name) && "servlet".equals(event.getString("phase"))) {
+          Assert.assertEquals("teapot", event.getString("name"));
+          Assert.assertTrue(event.getBoolean("deferred"));
+          servlets++;
+        }
+        if ("net.sf.barefoot.Filter".equals(name)) {
+          Assert.assertEquals("teapot", event.getString("filterName"));
+          Assert.assertEquals("/tea/pot", event.getString("requestURI"));
+        }
+      }
+
+      Assert.assertTrue(found.contains("net.sf.barefoot.Startup"));
+      Assert.assertEquals(1, servlets);
+      Assert.assertTrue(found.contains("net.sf.barefoot.Filter"));
+      Assert.assertTrue(found.contains("net.sf.barefoot.Service"));
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
@@ -81,6 +81,18 @@ public class ListenerTest {
     Assert.assertTrue(scal.removed);
   }
 
+  @Test
+  public void testNullAttributeName() throws ServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    SCAL scal = new SCAL();
+    ctx.addListener(scal);
+    ctx.onStartup();
+
+    Assert.assertNull(ctx.getAttribute(null));
+    ctx.removeAttribute(null);
+    Assert.assertFalse(scal.removed);
+  }
+
   class HSL implements HttpSessionListener {
     boolean created, destroyed;
 
@@ -0,0 +1,112 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.metrics.BarefootMetricSnapshot;
+import net.sf.barefoot.context.metrics.BarefootMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test request metrics */
+public class MetricsTest {
+
+  @Test
+  public void testMetrics() throws Exception {
+    BarefootServletContext ctx = new BarefootServletContext("/metrics");
+    ctx.addFilter(
+            "pass",
+            new Filter() {
+              @Override
+              public void init(FilterConfig fc) {}
+
+              @Override
+              public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+                  throws IOException, ServletException {
+                chain.doFilter(req, resp);
+              }
+
+              @Override
+              public void destroy() {}
+            })
+        .addMappingForUrlPatterns(null, true, "/*");
+    ctx.addServlet(
+            "teapot",
+            new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                resp.setStatus("/metrics/tea".equals(req.getRequestURI()) ? 418 : 200);
+              }
+            })
+        .addMapping("/*");
+    ctx.onStartup();
+
+    for (int i = 0; i < 10; i++) {
+      String uri = i < 3 ? "/metrics/tea" : "/metrics/coffee";
+      AbstractServletRequest req =
+          ctx.getServletRequestBuilder()
+              .headers(new HashMap<>())
+              .contextPath("/metrics")
+              .requestUri(uri)
+              .requestUrl("http://localhost" + uri)
+              .build();
+      AbstractServletResponse resp = req.getServletResponseBuilder().build();
+      ctx.dispatch(req, resp);
+    }
+
+    BarefootMetrics metrics = (BarefootMetrics) ctx.getAttribute(BarefootMetrics.ATTRIBUTE);
+    Assert.assertSame(ctx.getMetrics(), metrics);
+
+    BarefootMetricSnapshot servlet = metrics.getServlets().get("teapot");
+    Assert.assertEquals(10, servlet.getCount());
+    Assert.assertEquals(7, servlet.getStatus2xx());
+    Assert.assertEquals(3, servlet.getStatus4xx());
+    Assert.assertTrue(servlet.getP99Nanos() > 0);
+    Assert.assertEquals(10, metrics.getFilters().get("pass").getCount());
+    Assert.assertEquals(10, metrics.getRequests().getCount());
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = metrics.register("/metrics");
+    Assert.assertTrue(server.isRegistered(name));
+    CompositeData requests = (CompositeData) server.getAttribute(name, "Requests");
+    Assert.assertEquals(10L, requests.get("count"));
+
+    ctx.destroy();
+    Assert.assertFalse(server.isRegistered(name));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootRequestBody;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** multipart request tests */
+public class MultipartTest extends TestBase {
+  static final String BOUNDARY = "b0undary";
+  static List<Path> spilled;
+
+  @MultipartConfig(fileSizeThreshold = 16)
+  public static class UploadServlet extends HttpServlet {
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      Collection<Part> parts = req.getParts();
+      Part file = req.getPart("file");
+      StringBuilder sb = new StringBuilder();
+      sb.append(parts.size()).append(',').append(req.getParameter("comment")).append(',');
+      sb.append(file.getSubmittedFileName()).append(',').append(file.getSize()).append(',');
+      try (InputStream is = file.getInputStream()) {
+        sb.append(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+      }
+      try (Stream<Path> s = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+        spilled =
+            s.filter(p -> p.getFileName().toString().startsWith("barefoot"))
+                .filter(p -> p.toString().endsWith(".part"))
+                .filter(Files::exists)
+                .collect(Collectors.toList());
+      }
+      resp.getWriter().print(sb);
+    }
+  }
+
+  static String body(String content) {
+    return "--"
+        + BOUNDARY
+        + "\r\nContent-Disposition: form-data; name=\"comment\"\r\n\r\nhello\r\n--"
+        + BOUNDARY
+        + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"f.txt\"\r\n"
+        + "Content-Type: text/plain\r\n\r\n"
+        + content
+        + "\r\n--"
+        + BOUNDARY
+        + "--\r\n";
+  }
+
+  AbstractServletResponse dispatch(BarefootServletContext context, String body) throws Exception {
+    return dispatch(
+        context,
+        request(context, "POST", "/upload")
+            .contentType("multipart/form-data; boundary=" + BOUNDARY)
+            .body(BarefootRequestBody.of(body)));
+  }
+
+  @Test
+  public void testParts() throws Exception {
+    BarefootServletContext context = newContext();
+    context.addServlet("upload", UploadServlet.class).addMapping("/upload");
+    context.onStartup();
+
+    String content = "this is longer than the threshold";
+    AbstractServletResponse resp = dispatch(context, body(content));
+
+    Assert.assertEquals(200, resp.getStatus());
+    Assert.assertEquals(
+        "2,hello,f.txt," + content.length() + "," + content,
+        buffer.toString(StandardCharsets.UTF_8));
+    Assert.assertFalse(spilled.isEmpty());
+    for (Path p : spilled) {
+      Assert.assertFalse(Files.exists(p));
+    }
+  }
+
+  @Test
+  public void testNotMultipart() throws Exception {
+    BarefootServletContext context = newContext();
+    context.addServlet("upload", UploadServlet.class).addMapping("/upload");
+    context.onStartup();
+
+    BarefootServletRequest req =
+        (BarefootServletRequest)
+            context
+                .getServletRequestBuilder()
+                .headers(new HashMap<>())
+                .method("POST")
+                .contextPath("")
+                .requestUri("/upload")
+                .requestUrl("http://localhost/upload")
+                .contentType("text/plain")
+                .build();
+
+    try {
+      req.getParts();
+      Assert.fail("expected exception");
+    } catch (ServletException ex) {
+      Assert.assertNull(req.getParameter("comment"));
+    }
+  }
+}
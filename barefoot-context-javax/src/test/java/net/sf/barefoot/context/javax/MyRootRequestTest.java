@@ -33,6 +33,7 @@ import net.sf.barefoot.testtool.DeepComparator;
 import net.sf.barefoot.testtool.HttpServletRequestState;
 import net.sf.barefoot.testtool.javax.HttpServletRequestStateFactory;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -190,4 +191,39 @@ public class MyRootRequestTest extends TestBase {
           mapper.readValue(res, Map.class));
     }
   }
+
+  private BarefootServletRequest formRequest() {
+    BarefootServletRequest.Builder map = BarefootServletRequest.builder();
+    byte[] contentBytes = "SOME=THING&ANYTHING=ELSE&wibble=a%3Db".getBytes();
+    map.method("POST");
+    map.requestUri("/submit/debug");
+    map.requestUrl("http://127.0.0.1:8080/submit/debug");
+    map.servletContext(new BarefootServletContext(""));
+    map.queryString("wibble=flim&wibble=egg");
+    map.contentType("application/x-www-form-urlencoded");
+    map.contentLength(contentBytes.length);
+    map.inputStream(() -> new ByteArrayInputStream(contentBytes));
+    map.headers(new HashMap<>());
+    map.contextPath("");
+    return map.build();
+  }
+
+  @Test
+  public void testLazyParameters() throws IOException {
+    BarefootServletRequest req = formRequest();
+
+    Assert.assertArrayEquals(new String[] {"flim", "egg", "a=b"}, req.getParameterValues("wibble"));
+    Assert.assertEquals("THING", req.getParameter("SOME"));
+    Assert.assertEquals(3, req.getParameterMap().size());
+    Assert.assertEquals(-1, req.getInputStream().read());
+  }
+
+  @Test
+  public void testStreamBeforeParameters() throws IOException {
+    BarefootServletRequest req = formRequest();
+
+    Assert.assertEquals('S', req.getInputStream().read());
+    Assert.assertArrayEquals(new String[] {"flim", "egg"}, req.getParameterValues("wibble"));
+    Assert.assertNull(req.getParameter("SOME"));
+  }
 }
@@ -0,0 +1,242 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootSessionDelta;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** sessions kept between requests */
+public class SessionStoreTest extends TestBase {
+
+  public static class CounterServlet extends HttpServlet {
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+        throws ServletException, IOException {
+      if (req.getParameter("logout") != null) {
+        req.getSession().invalidate();
+        return;
+      }
+      HttpSession session = req.getSession();
+      Integer count = (Integer) session.getAttribute("count");
+      if (req.getParameter("read") != null) {
+        resp.setHeader("x-count", String.valueOf(count));
+        return;
+      }
+      if (req.getParameter("append") != null) {
+        List<String> list = (List<String>) session.getAttribute("list");
+        if (list == null) {
+          session.setAttribute("list", new ArrayList<>(Arrays.asList("first")));
+        } else {
+          list.add(req.getParameter("append"));
+        }
+        return;
+      }
+      String big = req.getParameter("big");
+      if (big != null) {
+        session.setAttribute("big", new String(new char[Integer.parseInt(big)]).replace('\0', 'x'));
+      }
+      count = count == null ? 1 : count + 1;
+      session.setAttribute("count", count);
+      resp.setHeader("x-count", count.toString());
+      resp.setHeader("x-valid", Boolean.toString(req.isRequestedSessionIdValid()));
+    }
+  }
+
+  BarefootServletContext start() throws Exception {
+    return start(null);
+  }
+
+  BarefootServletContext start(String keys) throws Exception {
+    BarefootServletContext context = newContext();
+    if (keys != null) {
+      context.setInitParameter(AbstractServletContext.SESSION_KEYS, keys);
+    }
+    context.getSessionCookieConfig().setHttpOnly(true);
+    context.addServlet("counter", CounterServlet.class).addMapping("/counter");
+    context.onStartup();
+    return context;
+  }
+
+  AbstractServletResponse dispatch(BarefootServletContext context, String query, String cookie)
+      throws Exception {
+    return dispatch(
+        context, request(context, "GET", "/counter").queryString(query).cookies(cookie));
+  }
+
+  static Cookie sessionCookie(AbstractServletResponse resp) {
+    List<String> headers = resp.getSetCookieHeaders();
+    Assert.assertEquals(1, headers.size());
+    Cookie cookie = BarefootCookieCutter.SINGLETON_INSTANCE.parseSetCookie(headers.get(0));
+    Assert.assertEquals("JSESSIONID", cookie.getName());
+    return cookie;
+  }
+
+  @Test
+  public void testSession() throws Exception {
+    BarefootServletContext context = start();
+
+    AbstractServletResponse first = dispatch(context, null, null);
+    Assert.assertEquals("1", first.getHeader("x-count"));
+    Assert.assertEquals("false", first.getHeader("x-valid"));
+    Cookie cookie = sessionCookie(first);
+    Assert.assertTrue(cookie.isHttpOnly());
+    String id = "JSESSIONID=" + cookie.getValue();
+
+    AbstractServletResponse second = dispatch(context, null, id);
+    Assert.assertEquals("2", second.getHeader("x-count"));
+    Assert.assertEquals("true", second.getHeader("x-valid"));
+    Assert.assertTrue(second.getSetCookieHeaders().isEmpty());
+
+    AbstractServletResponse logout = dispatch(context, "logout=true", id);
+    Assert.assertEquals(0, sessionCookie(logout).getMaxAge());
+
+    AbstractServletResponse third = dispatch(context, null, id);
+    Assert.assertEquals("1", third.getHeader("x-count"));
+    Assert.assertNotEquals(cookie.getValue(), sessionCookie(third).getValue());
+  }
+
+  @Test
+  public void testUnknownSession() throws Exception {
+    BarefootServletContext context = start();
+
+    AbstractServletResponse resp = dispatch(context, null, "JSESSIONID=unknown");
+
+    Assert.assertEquals("1", resp.getHeader("x-count"));
+    Assert.assertEquals("false", resp.getHeader("x-valid"));
+    Assert.assertNotEquals("unknown", sessionCookie(resp).getValue());
+  }
+
+  /* request cookies for the next request from the cookies set by a response */
+  static String cookies(AbstractServletResponse resp) {
+    StringBuilder sb = new StringBuilder();
+    for (String header : resp.getSetCookieHeaders()) {
+      Cookie cookie = BarefootCookieCutter.SINGLETON_INSTANCE.parseSetCookie(header);
+      if (cookie.getMaxAge() != 0) {
+        if (sb.length() > 0) sb.append("; ");
+        sb.append(cookie.getName()).append('=').append(cookie.getValue());
+      }
+    }
+    return sb.toString();
+  }
+
+  static final String KEY = "AAECAwQFBgcICQoLDA0ODw==", OLD_KEY = "ZGlmZmVyZW50IGtleSAxMg==";
+
+  @Test
+  public void testCookieStore() throws Exception {
+    BarefootServletContext context = start(KEY);
+
+    AbstractServletResponse first = dispatch(context, null, null);
+    Assert.assertEquals("1", first.getHeader("x-count"));
+    Cookie cookie = sessionCookie(first);
+    Assert.assertTrue(cookie.getValue().length() > 40);
+    String sent = cookies(first);
+
+    AbstractServletResponse second = dispatch(context, null, sent);
+    Assert.assertEquals("2", second.getHeader("x-count"));
+    Assert.assertEquals("true", second.getHeader("x-valid"));
+    sent = cookies(second);
+
+    AbstractServletResponse read = dispatch(context, "read=true", sent);
+    Assert.assertEquals("2", read.getHeader("x-count"));
+    Assert.assertTrue(read.getSetCookieHeaders().isEmpty());
+
+    AbstractServletResponse logout = dispatch(context, "logout=true", sent);
+    Assert.assertEquals(0, sessionCookie(logout).getMaxAge());
+  }
+
+  @Test
+  public void testCookieChunks() throws Exception {
+    BarefootServletContext context = start(KEY);
+
+    AbstractServletResponse big = dispatch(context, "big=10000", null);
+    Assert.assertEquals(4, big.getSetCookieHeaders().size());
+
+    AbstractServletResponse read = dispatch(context, "read=true", cookies(big));
+    Assert.assertEquals("1", read.getHeader("x-count"));
+
+    AbstractServletResponse small = dispatch(context, "big=10", cookies(big));
+    List<String> headers = small.getSetCookieHeaders();
+    Assert.assertEquals(4, headers.size());
+    Assert.assertEquals(
+        0, BarefootCookieCutter.SINGLETON_INSTANCE.parseSetCookie(headers.get(3)).getMaxAge());
+    Assert.assertEquals("2", dispatch(context, "read=true", cookies(small)).getHeader("x-count"));
+  }
+
+  @Test
+  public void testKeyRotation() throws Exception {
+    String sent = cookies(dispatch(start(OLD_KEY), null, null));
+
+    AbstractServletResponse rotated = dispatch(start(KEY + "," + OLD_KEY), null, sent);
+    Assert.assertEquals("2", rotated.getHeader("x-count"));
+
+    AbstractServletResponse unknown = dispatch(start(KEY), null, sent);
+    Assert.assertEquals("1", unknown.getHeader("x-count"));
+
+    String tampered = sent.substring(0, sent.length() - 2) + (sent.endsWith("A") ? "BB" : "AA");
+    Assert.assertEquals("1", dispatch(start(OLD_KEY), null, tampered).getHeader("x-count"));
+  }
+
+  @Test
+  public void testDelta() throws Exception {
+    BarefootServletContext context = start();
+    List<BarefootSessionDelta> deltas = new ArrayList<>();
+    context.setSessionPersister(deltas::add);
+
+    String id = "JSESSIONID=" + sessionCookie(dispatch(context, null, null)).getValue();
+    Assert.assertEquals(1, deltas.size());
+    Assert.assertTrue(deltas.get(0).isCreated());
+    Assert.assertEquals(1, deltas.get(0).getChangedAttributes().get("count"));
+
+    dispatch(context, "read=true", id);
+    Assert.assertTrue(deltas.get(1).isAccessOnly());
+
+    dispatch(context, "append=first", id);
+    Assert.assertEquals(Arrays.asList("first"), deltas.get(2).getChangedAttributes().get("list"));
+    Assert.assertFalse(deltas.get(2).getChangedAttributes().containsKey("count"));
+
+    dispatch(context, "append=second", id);
+    Assert.assertEquals(
+        Arrays.asList("first", "second"), deltas.get(3).getChangedAttributes().get("list"));
+
+    dispatch(context, null, id);
+    Assert.assertEquals(
+        Collections.singleton("count"), deltas.get(4).getChangedAttributes().keySet());
+
+    dispatch(context, "logout=true", id);
+    Assert.assertTrue(deltas.get(5).isInvalidated());
+    Assert.assertEquals(6, deltas.size());
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.javax;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test ordering and parallelism of startup */
+public class StartupTest {
+  final List<String> trace = new CopyOnWriteArrayList<>();
+
+  class InitServlet extends HttpServlet {
+    final String name;
+    final CountDownLatch latch;
+
+    InitServlet(String n, CountDownLatch l) {
+      name = n;
+      latch = l;
+    }
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+      super.init(config);
+      if (latch != null) {
+        latch.countDown();
+        try {
+          if (!latch.await(10, TimeUnit.SECONDS)) {
+            throw new ServletException("not initialised in parallel");
+          }
+        } catch (InterruptedException ex) {
+          throw new ServletException(ex);
+        }
+      }
+      trace.add(name);
+    }
+  }
+
+  @Test
+  public void testLoadOnStartupOrder() throws ServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    CountDownLatch latch = new CountDownLatch(2);
+    ctx.setStartupParallelism(2);
+    ctx.addServlet("lazy", new InitServlet("lazy", null)).setLoadOnStartup(-1);
+    ctx.addServlet("second", new InitServlet("second", null)).setLoadOnStartup(2);
+    ctx.addServlet("firstA", new InitServlet("first", latch)).setLoadOnStartup(1);
+    ctx.addServlet("firstB", new InitServlet("first", latch)).setLoadOnStartup(1);
+    ctx.onStartup();
+    Assert.assertEquals("[first, first, second]", trace.toString());
+    Assert.assertTrue(ctx.getStartupNanos() > 0);
+  }
+
+  @Test
+  public void testParallelIsOptIn() throws ServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    Assert.assertEquals(1, ctx.getStartupParallelism());
+
+    CountDownLatch latch = new CountDownLatch(2);
+    ctx.setInitParameter(AbstractServletContext.STARTUP_PARALLELISM, "2");
+    Assert.assertEquals(2, ctx.getStartupParallelism());
+    ctx.addServlet("a", new InitServlet("a", latch)).setLoadOnStartup(1);
+    ctx.addServlet("b", new InitServlet("b", latch)).setLoadOnStartup(1);
+    ctx.onStartup();
+    Assert.assertEquals(2, trace.size());
+  }
+
+  @Test
+  public void testSequential() throws ServletException {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.setStartupParallelism(1);
+    ctx.addServlet("b", new InitServlet("b", null)).setLoadOnStartup(1);
+    ctx.addServlet("a", new InitServlet("a", null)).setLoadOnStartup(1);
+    ctx.addServlet("c", new InitServlet("c", null)).setLoadOnStartup(0);
+    ctx.onStartup();
+    Assert.assertEquals("[c, b, a]", trace.toString());
+  }
+
+  @Test
+  public void testFailure() {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    ctx.setStartupParallelism(2);
+    ctx.addServlet("ok", new InitServlet("ok", null));
+    ctx.addServlet(
+        "fail",
+        new HttpServlet() {
+          @Override
+          public void init() throws ServletException {
+            throw new ServletException("fail");
+          }
+        });
+    try {
+      ctx.onStartup();
+      Assert.fail("expected exception");
+    } catch (ServletException ex) {
+      Assert.assertEquals("fail", ex.getMessage());
+    }
+  }
+
+  @Test
+  public void testLazyInit() throws Exception {
+    BarefootServletContext ctx = new BarefootServletContext("");
+    AtomicInteger inits = new AtomicInteger();
+    ctx.addServlet(
+            "lazy",
+            new HttpServlet() {
+              @Override
+              public void init() throws ServletException {
+                inits.incrementAndGet();
+              }
+
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+              }
+            })
+        .setLoadOnStartup(-1);
+    ctx.getServletRegistration("lazy").addMapping("/lazy");
+    ctx.onStartup();
+    Assert.assertEquals(0, inits.get());
+    Assert.assertEquals(0, ctx.getDeferredInitNanos());
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Callable<Integer>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < 64; i++) {
+      tasks.add(
+          () -> {
+            AbstractServletRequest req =
+                ctx.getServletRequestBuilder()
+                    .headers(new HashMap<>())
+                    .contextPath("")
+                    .requestUri("/lazy")
+                    .requestUrl("http://localhost/lazy")
+                    .build();
+            AbstractServletResponse resp = req.getServletResponseBuilder().build();
+            ctx.dispatch(req, resp);
+            return resp.getStatus();
+          });
+    }
+
+    try {
+      for (Future<Integer> f : executor.invokeAll(tasks)) {
+        Assert.assertEquals(HttpServletResponse.SC_NO_CONTENT, (int) f.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(1, inits.get());
+    Assert.assertTrue(ctx.getDeferredInitNanos() > 0);
+  }
+}
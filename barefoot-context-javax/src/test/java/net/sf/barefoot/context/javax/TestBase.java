@@ -35,13 +35,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.AbstractServletResponse;
 import net.sf.barefoot.context.BarefootServletContextLogger;
+import net.sf.barefoot.util.ResponseBuffer;
 
 /** Test Base class */
 public class TestBase {
 
   protected JettyServer jettyServer;
 
+  /** body of the response to the last {@link #dispatch} */
+  ResponseBuffer buffer;
+
   final BarefootServletContextLogger logger =
       new BarefootServletContextLogger() {
         @Override
@@ -55,6 +61,46 @@ public class TestBase {
         }
       };
 
+  /**
+   * @return context at the root, not yet started
+   */
+  BarefootServletContext newContext() {
+    return new BarefootServletContext("", getClass().getClassLoader());
+  }
+
+  /**
+   * @param context started context
+   * @param method request method
+   * @param path request path from the root
+   * @return request builder without headers, query or body
+   */
+  AbstractServletRequest.Builder request(
+      BarefootServletContext context, String method, String path) {
+    return context
+        .getServletRequestBuilder()
+        .headers(new HashMap<>())
+        .method(method)
+        .contextPath("")
+        .requestUri(path)
+        .requestUrl("http://localhost" + path);
+  }
+
+  /**
+   * dispatches a request, buffering the response in {@link #buffer}
+   *
+   * @param context started context
+   * @param request request builder
+   * @return response
+   */
+  AbstractServletResponse dispatch(
+      BarefootServletContext context, AbstractServletRequest.Builder request) throws Exception {
+    AbstractServletRequest req = request.build();
+    buffer = new ResponseBuffer(1 << 20);
+    AbstractServletResponse resp = req.getServletResponseBuilder().buffer(buffer).build();
+    context.dispatch(req, resp);
+    return resp;
+  }
+
   protected Map<String, String> getHeaders(String req) throws IOException {
     Socket sock = new Socket("localhost", jettyServer.port);
     byte[] d = req.getBytes(StandardCharsets.UTF_8);
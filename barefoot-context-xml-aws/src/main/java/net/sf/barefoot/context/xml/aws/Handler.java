@@ -55,7 +55,9 @@ public class Handler implements RequestHandler<Map<String, Object>, Map<String,
               context, localClassLoader, BarefootContextXmlLoader.META_INF_CONTEXT_XML);
           AbstractServletContext servletContext =
               (AbstractServletContext) context.lookup("barefoot/context");
-          instance = new BarefootAwsHandler(servletContext);
+          BarefootAwsHandler handler = new BarefootAwsHandler(servletContext);
+          handler.prime();
+          instance = handler;
         } finally {
           thread.setContextClassLoader(originalClassLoader);
         }
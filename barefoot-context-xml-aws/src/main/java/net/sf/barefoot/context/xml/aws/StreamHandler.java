@@ -0,0 +1,83 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.xml.aws;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.naming.InitialContext;
+import javax.naming.spi.NamingManager;
+import net.sf.barefoot.aws.lambda.BarefootAwsStreamHandler;
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.xml.BarefootContextXmlLoader;
+import net.sf.barefoot.naming.BarefootInitialContextFactoryBuilder;
+
+/**
+ * Stream entry for AWS Lambda. Context is loaded from META-INF/context.xml. Set the environment
+ * variable BAREFOOT_RESPONSE_STREAMING to true for function URLs invoked with response streaming.
+ */
+public class StreamHandler implements RequestStreamHandler {
+  public static final String RESPONSE_STREAMING = "BAREFOOT_RESPONSE_STREAMING";
+  protected final RequestStreamHandler dispatcher;
+  private static final Object mutex = new Object();
+  private static RequestStreamHandler instance;
+
+  public StreamHandler() throws Exception {
+    synchronized (mutex) {
+      if (instance == null) {
+        Thread thread = Thread.currentThread();
+        ClassLoader originalClassLoader = thread.getContextClassLoader();
+
+        try {
+          ClassLoader localClassLoader = getClass().getClassLoader();
+          thread.setContextClassLoader(localClassLoader);
+          NamingManager.setInitialContextFactoryBuilder(
+              new BarefootInitialContextFactoryBuilder(localClassLoader));
+          javax.naming.Context context =
+              (javax.naming.Context)
+                  new InitialContext().lookup(BarefootContextXmlLoader.JAVA_COMP_ENV);
+          BarefootContextXmlLoader.load(
+              context, localClassLoader, BarefootContextXmlLoader.META_INF_CONTEXT_XML);
+          AbstractServletContext servletContext =
+              (AbstractServletContext) context.lookup("barefoot/context");
+          BarefootAwsStreamHandler handler =
+              new BarefootAwsStreamHandler(
+                  servletContext, Boolean.parseBoolean(System.getenv(RESPONSE_STREAMING)));
+          handler.prime();
+          instance = handler;
+        } finally {
+          thread.setContextClassLoader(originalClassLoader);
+        }
+      }
+
+      dispatcher = instance;
+    }
+  }
+
+  @Override
+  public void handleRequest(InputStream input, OutputStream output, Context cntxt)
+      throws IOException {
+    dispatcher.handleRequest(input, output, cntxt);
+  }
+}
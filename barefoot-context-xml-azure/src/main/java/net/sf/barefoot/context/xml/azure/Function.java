@@ -56,7 +56,9 @@ public class Function
               context, loader, BarefootContextXmlLoader.META_INF_CONTEXT_XML);
           AbstractServletContext servletContext =
               (AbstractServletContext) context.lookup("barefoot/context");
-          instance = new BarefootAzureFunction(servletContext);
+          BarefootAzureFunction azureFunction = new BarefootAzureFunction(servletContext);
+          azureFunction.prime();
+          instance = azureFunction;
         } finally {
           thread.setContextClassLoader(original);
         }
@@ -57,7 +57,9 @@ public class Function implements HttpFunction {
               context, loader, BarefootContextXmlLoader.META_INF_CONTEXT_XML);
           AbstractServletContext servletContext =
               (AbstractServletContext) context.lookup("barefoot/context");
-          instance = new BarefootGoogleFunction(servletContext);
+          BarefootGoogleFunction googleFunction = new BarefootGoogleFunction(servletContext);
+          googleFunction.prime();
+          instance = googleFunction;
         } finally {
           thread.setContextClassLoader(original);
         }
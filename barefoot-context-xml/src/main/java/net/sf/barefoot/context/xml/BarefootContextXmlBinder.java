@@ -0,0 +1,149 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.xml;
+
+import java.util.Enumeration;
+import java.util.function.Function;
+import javax.naming.CompositeName;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NamingException;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+
+/**
+ * Binds the Resource and Environment entries of a context.xml into a naming context. Used both when
+ * parsing the file and by initializers generated at build time, values are expanded when bound.
+ */
+public final class BarefootContextXmlBinder {
+  private final Context context;
+  private final Function<String, String> valueExpander;
+
+  /** Entries of a context.xml generated at build time. */
+  public interface Bootstrap {
+    /**
+     * binds every entry
+     *
+     * @param binder target of the entries
+     * @throws NamingException if binding fails
+     */
+    void bind(BarefootContextXmlBinder binder) throws NamingException;
+  }
+
+  public BarefootContextXmlBinder(Context c, Function<String, String> f) {
+    context = c;
+    valueExpander = f == null ? (s) -> s : f;
+  }
+
+  /**
+   * binds a Resource as a reference unless the name is already bound
+   *
+   * @param name name to bind
+   * @param type class of the object
+   * @param factory object factory class name
+   * @param addresses pairs of address type and value
+   * @throws NamingException if binding fails
+   */
+  public void resource(String name, String type, String factory, String... addresses)
+      throws NamingException {
+    Name bindName = new CompositeName(valueExpander.apply(name));
+    Reference reference =
+        new Reference(valueExpander.apply(type), valueExpander.apply(factory), null);
+
+    for (int i = 0; i < addresses.length; i += 2) {
+      reference.add(new StringRefAddr(addresses[i], valueExpander.apply(addresses[i + 1])));
+    }
+
+    if (!makeTree(bindName)) {
+      context.bind(bindName, reference);
+    }
+  }
+
+  /**
+   * binds an Environment value unless the name is already bound
+   *
+   * @param name name to bind
+   * @param type class of the value
+   * @param value string form of the value
+   * @throws NamingException if binding fails
+   */
+  public void environment(String name, String type, String value) throws NamingException {
+    Name bindName = new CompositeName(valueExpander.apply(name));
+
+    if (!makeTree(bindName)) {
+      context.bind(bindName, getValue(valueExpander.apply(type), valueExpander.apply(value)));
+    }
+  }
+
+  private Object getValue(String type, String value) {
+    switch (type) {
+      case "java.lang.String":
+        return value;
+      case "java.lang.Character":
+        if (value.length() != 1) {
+          throw new IllegalArgumentException("value should have exactly one character: " + value);
+        }
+        return value.charAt(0);
+      case "java.lang.Short":
+        return Short.parseShort(value);
+      case "java.lang.Integer":
+        return Integer.parseInt(value);
+      case "java.lang.Long":
+        return Long.parseLong(value);
+      case "java.lang.Boolean":
+        return Boolean.parseBoolean(value);
+      case "java.lang.Double":
+        return Double.parseDouble(value);
+      case "java.lang.Float":
+        return Float.parseFloat(value);
+      case "null":
+        return null;
+    }
+
+    throw new TypeNotPresentException(type, null);
+  }
+
+  private boolean makeTree(Name bindName) throws NamingException {
+    boolean result = false;
+    try {
+      context.lookup(bindName);
+      result = true;
+    } catch (NamingException ex) {
+      Name resolved = ex.getResolvedName();
+      Name remaining = ex.getRemainingName();
+
+      if (remaining.size() != 1) {
+        Context parent =
+            (resolved == null || resolved.isEmpty()) ? context : (Context) context.lookup(resolved);
+        Enumeration<String> all = remaining.getAll();
+        while (all.hasMoreElements()) {
+          String element = all.nextElement();
+          if (!all.hasMoreElements()) {
+            break;
+          }
+          parent = parent.createSubcontext(element);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -21,43 +21,33 @@
 
 package net.sf.barefoot.context.xml;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
-import javax.naming.CompositeName;
 import javax.naming.Context;
-import javax.naming.Name;
 import javax.naming.NamingException;
-import javax.naming.Reference;
-import javax.naming.StringRefAddr;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 /** Collect Context element attributes. */
 final class BarefootContextXmlHandler extends DefaultHandler {
-  protected final Context context;
-  protected final Function<String, String> valueExpander;
+  protected final BarefootContextXmlBinder binder;
 
   public BarefootContextXmlHandler(Context c, Function<String, String> f) {
-    context = c;
-    valueExpander = f == null ? (s) -> s : f;
+    binder = new BarefootContextXmlBinder(c, f);
   }
 
   @Override
   public void startElement(String uri, String lName, String qName, Attributes attr)
       throws SAXException {
     try {
-      String name = valueExpander.apply(attr.getValue("name"));
+      String name = attr.getValue("name");
 
       switch (qName) {
         case "Resource":
           {
-            String type = valueExpander.apply(attr.getValue("type"));
-            String factory = valueExpander.apply(attr.getValue("factory"));
-            Name bindName = new CompositeName(name);
-            Reference reference = new Reference(type, factory, null);
-
-            String fcn = reference.getFactoryClassName();
+            List<String> addresses = new ArrayList<>();
 
             int i = attr.getLength();
 
@@ -70,27 +60,21 @@ final class BarefootContextXmlHandler extends DefaultHandler {
                 case "factory":
                   break;
                 default:
-                  String v = valueExpander.apply(attr.getValue(i));
-                  reference.add(new StringRefAddr(n, v));
+                  addresses.add(n);
+                  addresses.add(attr.getValue(i));
                   break;
               }
             }
 
-            if (!makeTree(bindName)) {
-              context.bind(bindName, reference);
-            }
+            binder.resource(
+                name,
+                attr.getValue("type"),
+                attr.getValue("factory"),
+                addresses.toArray(new String[addresses.size()]));
           }
           break;
         case "Environment":
-          {
-            String type = valueExpander.apply(attr.getValue("type"));
-            String value = valueExpander.apply(attr.getValue("value"));
-            Name bindName = new CompositeName(name);
-
-            if (!makeTree(bindName)) {
-              context.bind(bindName, getValue(type, value));
-            }
-          }
+          binder.environment(name, attr.getValue("type"), attr.getValue("value"));
           break;
         case "Context":
           break;
@@ -101,57 +85,4 @@ final class BarefootContextXmlHandler extends DefaultHandler {
       throw new SAXException(ex);
     }
   }
-
-  private Object getValue(String type, String value) {
-    switch (type) {
-      case "java.lang.String":
-        return value;
-      case "java.lang.Character":
-        if (value.length() != 1) {
-          throw new IllegalArgumentException("value should have exactly one character: " + value);
-        }
-        return value.charAt(0);
-      case "java.lang.Short":
-        return Short.parseShort(value);
-      case "java.lang.Integer":
-        return Integer.parseInt(value);
-      case "java.lang.Long":
-        return Long.parseLong(value);
-      case "java.lang.Boolean":
-        return Boolean.parseBoolean(value);
-      case "java.lang.Double":
-        return Double.parseDouble(value);
-      case "java.lang.Float":
-        return Float.parseFloat(value);
-      case "null":
-        return null;
-    }
-
-    throw new TypeNotPresentException(type, null);
-  }
-
-  private boolean makeTree(Name bindName) throws NamingException {
-    boolean result = false;
-    try {
-      context.lookup(bindName);
-      result = true;
-    } catch (NamingException ex) {
-      Name resolved = ex.getResolvedName();
-      Name remaining = ex.getRemainingName();
-
-      if (remaining.size() != 1) {
-        Context parent =
-            (resolved == null || resolved.isEmpty()) ? context : (Context) context.lookup(resolved);
-        Enumeration<String> all = remaining.getAll();
-        while (all.hasMoreElements()) {
-          String element = all.nextElement();
-          if (!all.hasMoreElements()) {
-            break;
-          }
-          parent = parent.createSubcontext(element);
-        }
-      }
-    }
-    return result;
-  }
 }
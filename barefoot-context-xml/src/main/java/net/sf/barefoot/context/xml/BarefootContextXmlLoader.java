@@ -21,29 +21,34 @@
 
 package net.sf.barefoot.context.xml;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
 import javax.naming.Context;
+import javax.naming.NamingException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import net.sf.barefoot.util.StringVariableExpander;
 import org.xml.sax.SAXException;
 
-/** Utility to load file with expansion. */
+/**
+ * Utility to load file with expansion. If the build generated a bootstrap for META-INF/context.xml,
+ * named by {@link #META_INF_BAREFOOT_CONTEXT_XML}, that is used instead of parsing the file.
+ */
 public class BarefootContextXmlLoader {
   public static void load(Context ctxt, ClassLoader cl, String path)
       throws ParserConfigurationException, SAXException, IOException {
+    if (META_INF_CONTEXT_XML.equals(path) && loadBootstrap(ctxt, cl)) {
+      return;
+    }
+
     SAXParserFactory factory = SAXParserFactory.newInstance();
     SAXParser saxParser = factory.newSAXParser();
-    BarefootContextXmlHandler handler =
-        new BarefootContextXmlHandler(
-            ctxt,
-            new StringVariableExpander(
-                (String name) -> {
-                  String value = System.getProperty(name);
-                  return value == null ? System.getenv(name) : value;
-                }));
+    BarefootContextXmlHandler handler = new BarefootContextXmlHandler(ctxt, newExpander());
 
     try (InputStream is = cl.getResourceAsStream(path)) {
       if (is == null) throw new IOException("File not found: " + path);
@@ -51,6 +56,48 @@ public class BarefootContextXmlLoader {
     }
   }
 
+  private static boolean loadBootstrap(Context ctxt, ClassLoader cl) throws SAXException {
+    String className;
+
+    try (InputStream is = cl.getResourceAsStream(META_INF_BAREFOOT_CONTEXT_XML)) {
+      if (is == null) {
+        return false;
+      }
+      try (BufferedReader reader =
+          new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+        className = reader.readLine();
+      }
+    } catch (IOException ex) {
+      return false;
+    }
+
+    if (className == null || className.trim().isEmpty()) {
+      return false;
+    }
+
+    try {
+      BarefootContextXmlBinder.Bootstrap bootstrap =
+          Class.forName(className.trim(), true, cl)
+              .asSubclass(BarefootContextXmlBinder.Bootstrap.class)
+              .getDeclaredConstructor()
+              .newInstance();
+      bootstrap.bind(new BarefootContextXmlBinder(ctxt, newExpander()));
+    } catch (ReflectiveOperationException | NamingException ex) {
+      throw new SAXException(ex);
+    }
+
+    return true;
+  }
+
+  private static Function<String, String> newExpander() {
+    return new StringVariableExpander(
+        (String name) -> {
+          String value = System.getProperty(name);
+          return value == null ? System.getenv(name) : value;
+        });
+  }
+
   public static final String META_INF_CONTEXT_XML = "META-INF/context.xml",
+      META_INF_BAREFOOT_CONTEXT_XML = "META-INF/barefoot/context.xml",
       JAVA_COMP_ENV = "java:comp/env";
 }
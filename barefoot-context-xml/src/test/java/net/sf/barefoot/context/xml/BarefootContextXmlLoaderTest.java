@@ -21,7 +21,10 @@
 
 package net.sf.barefoot.context.xml;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Hashtable;
 import javax.naming.Context;
 import javax.naming.InitialContext;
@@ -59,4 +62,35 @@ public class BarefootContextXmlLoaderTest {
     init.unbind("jdbc");
     init.unbind("barefoot");
   }
+
+  /** stands in for the bootstrap generated from context.xml */
+  public static final class Bootstrap implements BarefootContextXmlBinder.Bootstrap {
+    @Override
+    public void bind(BarefootContextXmlBinder binder) throws NamingException {
+      binder.environment("net.sf.barefoot.context.xml.generated", "java.lang.Integer", "42");
+    }
+  }
+
+  @Test
+  public void testBootstrap()
+      throws ParserConfigurationException, SAXException, IOException, NamingException {
+    Context init = (Context) new InitialContext().lookup("java:comp/env");
+    ClassLoader cl =
+        new ClassLoader(getClass().getClassLoader()) {
+          @Override
+          public InputStream getResourceAsStream(String name) {
+            if (BarefootContextXmlLoader.META_INF_BAREFOOT_CONTEXT_XML.equals(name)) {
+              return new ByteArrayInputStream(
+                  Bootstrap.class.getName().getBytes(StandardCharsets.UTF_8));
+            }
+            return super.getResourceAsStream(name);
+          }
+        };
+
+    BarefootContextXmlLoader.load(init, cl, BarefootContextXmlLoader.META_INF_CONTEXT_XML);
+
+    Assert.assertEquals(42, init.lookup("net.sf.barefoot.context.xml.generated"));
+
+    init.unbind("net.sf.barefoot.context.xml.generated");
+  }
 }
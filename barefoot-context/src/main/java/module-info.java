@@ -21,7 +21,12 @@
 
 module net.sf.barefoot.context {
   requires java.logging;
-  requires net.sf.barefoot.util;
+  requires java.management;
+  requires java.naming;
+  requires jdk.jfr;
+  requires transitive net.sf.barefoot.util;
 
   exports net.sf.barefoot.context;
+  exports net.sf.barefoot.context.jfr;
+  exports net.sf.barefoot.context.metrics;
 }
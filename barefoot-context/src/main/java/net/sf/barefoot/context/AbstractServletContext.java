@@ -21,12 +21,16 @@
 
 package net.sf.barefoot.context;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.EventListener;
 import java.util.HashMap;
@@ -34,27 +38,110 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import net.sf.barefoot.context.jfr.BarefootStartupEvent;
+import net.sf.barefoot.context.metrics.BarefootMetrics;
 import net.sf.barefoot.util.IteratorEnumeration;
 
-/** Base class for servlet context */
+/**
+ * Base class for servlet context.
+ *
+ * <p>Listeners, filters and servlets are registered from a single thread before {@link
+ * #onStartup()}. Once started the context may dispatch requests from any number of threads at once.
+ * Attributes and init parameters are held in concurrent maps, listener lists are copy-on-write and
+ * the lifecycle state is volatile, so everything registered before startup is safely published to
+ * the dispatching threads.
+ */
 public abstract class AbstractServletContext {
   static final Level LOG_LEVEL = Level.INFO;
-  protected final Map<String, Object> attributes = new HashMap<>();
-  protected final Map<String, String> initParameters = new HashMap<>();
+  /** init parameter or system property, set to true to register the metrics MXBean */
+  public static final String METRICS_JMX = "net.sf.barefoot.metrics.jmx";
+  /** init parameter or system property naming the priming resource, empty to disable priming */
+  public static final String PRIMING = "net.sf.barefoot.priming";
+  /** default resource holding the priming requests */
+  public static final String PRIMING_RESOURCE = "META-INF/barefoot/priming.http";
+  /**
+   * request header marking a keep-warm ping, answered without reaching the servlets when {@link
+   * #WARMUP} is true
+   */
+  public static final String WARMUP_HEADER = "x-barefoot-warmup";
+  /**
+   * init parameter or system property, set to true to answer requests carrying {@link
+   * #WARMUP_HEADER} as keep-warm pings
+   */
+  public static final String WARMUP = "net.sf.barefoot.warmup.header";
+  /** init parameter or system property, the most bytes of a response an adapter buffers */
+  public static final String RESPONSE_LIMIT = "net.sf.barefoot.response.limit";
+  /**
+   * init parameter or system property, set to true to give buffered GET responses a weak ETag and
+   * answer conditional requests for an unchanged response with 304
+   */
+  public static final String ETAG = "net.sf.barefoot.etag";
+  /**
+   * init parameter of a servlet or the context, or system property, true or the smallest buffered
+   * response in bytes to compress, compressed request bodies are inflated too
+   */
+  public static final String COMPRESSION = "net.sf.barefoot.compression";
+  /** smallest response compressed when {@link #COMPRESSION} is true */
+  public static final int COMPRESSION_THRESHOLD = 1024;
+  /** init parameter or system property, the most sessions held by the default session store */
+  public static final String SESSION_LIMIT = "net.sf.barefoot.session.limit";
+  /** most sessions held by the default session store unless {@link #SESSION_LIMIT} is set */
+  public static final int DEFAULT_SESSION_LIMIT = 10000;
+  /**
+   * init parameter, system property or java:comp/env entry, Base64 AES keys that keep sessions in
+   * encrypted cookies instead of memory, the first encrypts and the rest are still accepted
+   */
+  public static final String SESSION_KEYS = "net.sf.barefoot.session.keys";
+  /**
+   * init parameter or system property, threads used to initialise filters and servlets, or true for
+   * one per processor, one at a time when not set
+   */
+  public static final String STARTUP_PARALLELISM = "net.sf.barefoot.startup.parallelism";
+  /**
+   * init parameter or system property, set to true to run filters added without any mapping on
+   * every request as Barefoot did before filter mappings were honoured
+   */
+  public static final String UNMAPPED_FILTERS = "net.sf.barefoot.filters.unmapped";
+
+  protected final Map<String, Object> attributes = new ConcurrentHashMap<>();
+  protected final Map<String, String> initParameters = new ConcurrentHashMap<>();
   protected final String contextPath;
   protected final ThreadLocal<AbstractServletRequest> currentRequest = new ThreadLocal<>();
   protected final Map<Class<? extends EventListener>, List<? extends EventListener>> listenerMap =
       new HashMap<>();
-  protected int state = STATE_NEW;
-  protected final List<Runnable> listenerStartupTasks = new ArrayList<>(),
+  protected volatile int state = STATE_NEW;
+  protected final List<StartupTask> listenerStartupTasks = new ArrayList<>(),
       filterStartupTasks = new ArrayList<>(),
       servletStartupTasks = new ArrayList<>();
-  protected final List[] startupList = {
-    listenerStartupTasks, filterStartupTasks, servletStartupTasks
-  };
   protected int sessionTimeout;
+  private volatile BarefootSessionStore sessionStore;
+  private final Object sessionStoreLock = new Object();
+  private volatile BarefootSessionPersister sessionPersister;
+  protected int startupParallelism; // zero until set or read from STARTUP_PARALLELISM
+  protected boolean eTagEnabled; // read from ETAG by onStartup
+  private boolean warmupHeaderEnabled; // read from WARMUP by onStartup
+  private long responseLimit = -1; // read from RESPONSE_LIMIT by onStartup, -1 when unset
+  protected int compressionThreshold = -1; // read from COMPRESSION by onStartup
+  protected long startupNanos;
+  protected final LongAdder deferredInitNanos = new LongAdder();
+  protected long primingNanos;
+  protected final BarefootMetrics metrics = new BarefootMetrics();
   protected String requestCharacterEncoding, responseCharacterEncoding;
   protected static final int
       /** context is uninitialized */
@@ -116,6 +203,81 @@ public abstract class AbstractServletContext {
     sessionTimeout = i;
   }
 
+  /**
+   * store keeping sessions between requests, created when first needed. Sessions are held in
+   * encrypted cookies when {@link #SESSION_KEYS} is set, otherwise in memory up to {@link
+   * #SESSION_LIMIT} sessions.
+   *
+   * @return store
+   */
+  public BarefootSessionStore getSessionStore() {
+    BarefootSessionStore store = sessionStore;
+
+    if (store == null) {
+      synchronized (sessionStoreLock) {
+        store = sessionStore;
+        if (store == null) {
+          String keys = initParameters.getOrDefault(SESSION_KEYS, System.getProperty(SESSION_KEYS));
+          if (keys == null) {
+            keys = lookupEnvironment(SESSION_KEYS);
+          }
+          if (keys != null) {
+            store = new BarefootCookieSessionStore(keys, resourceLoader);
+          } else {
+            String limit =
+                initParameters.getOrDefault(SESSION_LIMIT, System.getProperty(SESSION_LIMIT));
+            store =
+                new BarefootMemorySessionStore(
+                    limit == null || limit.trim().isEmpty()
+                        ? DEFAULT_SESSION_LIMIT
+                        : Integer.parseInt(limit.trim()));
+          }
+          sessionStore = store;
+        }
+      }
+    }
+
+    return store;
+  }
+
+  /* an Environment entry from context.xml, null when there is no naming context */
+  private static String lookupEnvironment(String name) {
+    try {
+      Object value = ((Context) new InitialContext().lookup("java:comp/env")).lookup(name);
+      return value == null ? null : value.toString();
+    } catch (NamingException | ClassCastException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * callback given what each request changed in the session it used
+   *
+   * @return persister or null
+   */
+  public BarefootSessionPersister getSessionPersister() {
+    return sessionPersister;
+  }
+
+  /**
+   * sets the callback given what each request changed in the session it used, set before requests
+   * are dispatched
+   *
+   * @param persister persister or null
+   */
+  public void setSessionPersister(BarefootSessionPersister persister) {
+    sessionPersister = persister;
+  }
+
+  /**
+   * replaces the session store, set before requests are dispatched
+   *
+   * @param store store
+   */
+  public void setSessionStore(BarefootSessionStore store) {
+    sessionStore = store;
+  }
+
   public String getRequestCharacterEncoding() {
     return requestCharacterEncoding;
   }
@@ -199,7 +361,7 @@ public abstract class AbstractServletContext {
 
   public void log(String string) {
     AbstractServletRequest request = currentRequest.get();
-    if (request == null) {
+    if (request == null || request.logger == null) {
       Logger.getGlobal().log(LOG_LEVEL, string);
     } else {
       request.log(string);
@@ -212,7 +374,7 @@ public abstract class AbstractServletContext {
 
   public void log(String string, Throwable thrwbl) {
     AbstractServletRequest request = currentRequest.get();
-    if (request == null) {
+    if (request == null || request.logger == null) {
       Logger.getGlobal().log(LOG_LEVEL, string, thrwbl);
     } else {
       request.log(string);
@@ -236,13 +398,11 @@ public abstract class AbstractServletContext {
   }
 
   public boolean setInitParameter(String name, String value) {
-    if (initParameters.containsKey(name)) return false;
-    initParameters.put(name, value);
-    return true;
+    return initParameters.putIfAbsent(name, value) == null;
   }
 
   public Object getAttribute(String string) {
-    return attributes.get(string);
+    return string == null ? null : attributes.get(string);
   }
 
   public Enumeration<String> getAttributeNames() {
@@ -282,35 +442,477 @@ public abstract class AbstractServletContext {
     throw new UnsupportedOperationException("Not supported yet.");
   }
 
-  /** Initializes the context. Activates the listeners, filters and servlets. */
+  /**
+   * Initializes the context. Activates the listeners one at a time in the order they were added,
+   * then the filters, then the servlets in groups of ascending load-on-startup. Within a group they
+   * are initialised one at a time unless {@link #STARTUP_PARALLELISM} asks for a pool of threads.
+   * Servlets with a negative load-on-startup wait for their first request.
+   */
   public void onStartup() throws Exception {
     if (state != STATE_NEW) throw new IllegalStateException();
 
     state = STATE_INIT;
+    startupParallelism = getStartupParallelism();
+    eTagEnabled = Boolean.parseBoolean(initParameters.getOrDefault(ETAG, System.getProperty(ETAG)));
+    warmupHeaderEnabled =
+        Boolean.parseBoolean(initParameters.getOrDefault(WARMUP, System.getProperty(WARMUP)));
+    String limit = initParameters.getOrDefault(RESPONSE_LIMIT, System.getProperty(RESPONSE_LIMIT));
+    responseLimit = limit == null || limit.trim().isEmpty() ? -1 : Long.parseLong(limit.trim());
+    compressionThreshold =
+        parseCompressionThreshold(
+            initParameters.getOrDefault(COMPRESSION, System.getProperty(COMPRESSION)));
+
+    attributes.put(BarefootMetrics.ATTRIBUTE, metrics);
 
-    while (true) {
-      Runnable task = null;
+    final long started = System.nanoTime();
+    ExecutorService executor = null;
 
-      for (List<Runnable> list : startupList) {
-        if (!list.isEmpty()) {
-          task = list.get(0);
-          list.remove(0);
+    try {
+      while (true) {
+        List<StartupTask> batch = nextStartupBatch();
+
+        if (batch.isEmpty()) {
           break;
         }
-      }
 
-      if (task == null) {
-        break;
+        if (batch.size() == 1 || startupParallelism < 2) {
+          for (StartupTask task : batch) {
+            task.run();
+          }
+        } else {
+          if (executor == null) {
+            executor = createStartupExecutor();
+          }
+
+          runStartupBatch(executor, batch);
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
       }
+    }
 
-      task.run();
+    startupNanos = System.nanoTime() - started;
+
+    log("Barefoot, started in " + TimeUnit.NANOSECONDS.toMillis(startupNanos) + "ms");
+
+    if (Boolean.parseBoolean(
+        initParameters.getOrDefault(METRICS_JMX, System.getProperty(METRICS_JMX)))) {
+      try {
+        metrics.register(contextPath);
+      } catch (JMException ex) {
+        log("Barefoot, metrics not registered", ex);
+      }
     }
 
     state = STATE_RUN;
   }
 
+  /**
+   * takes the next group of tasks that may run together, earlier phases first
+   *
+   * @return tasks to run, empty when there are none left
+   */
+  private List<StartupTask> nextStartupBatch() {
+    List<StartupTask> batch = new ArrayList<>();
+
+    if (!listenerStartupTasks.isEmpty()) {
+      batch.add(listenerStartupTasks.remove(0).phase(PHASE_LISTENER));
+    } else if (!filterStartupTasks.isEmpty()) {
+      for (StartupTask task : filterStartupTasks) {
+        batch.add(task.phase(PHASE_FILTER));
+      }
+      filterStartupTasks.clear();
+    } else {
+      // lazy servlets report their startup event on first init instead
+      servletStartupTasks.removeIf(StartupTask::isDeferred);
+    }
+
+    if (batch.isEmpty() && !servletStartupTasks.isEmpty()) {
+      int order = Integer.MAX_VALUE;
+
+      for (StartupTask task : servletStartupTasks) {
+        order = Math.min(order, task.getOrder());
+      }
+
+      Iterator<StartupTask> it = servletStartupTasks.iterator();
+
+      while (it.hasNext()) {
+        StartupTask task = it.next();
+        if (task.getOrder() == order) {
+          batch.add(task.phase(PHASE_SERVLET));
+          it.remove();
+        }
+      }
+    }
+
+    return batch;
+  }
+
+  /**
+   * runs the tasks in parallel, waits for all of them and then reports the first failure
+   *
+   * @param executor pool to run the tasks
+   * @param batch tasks to run
+   */
+  private void runStartupBatch(ExecutorService executor, List<StartupTask> batch)
+      throws InterruptedException {
+    List<Future<?>> futures = new ArrayList<>();
+    Throwable failure = null;
+
+    for (StartupTask task : batch) {
+      futures.add(executor.submit(task));
+    }
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        if (failure == null) {
+          failure = ex.getCause();
+        }
+      }
+    }
+
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+
+    if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+  }
+
+  /**
+   * pool for startup, threads use the context class loader of the thread starting the context
+   *
+   * @return bounded pool
+   */
+  private ExecutorService createStartupExecutor() {
+    final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    final AtomicInteger count = new AtomicInteger();
+
+    return Executors.newFixedThreadPool(
+        startupParallelism,
+        (r) -> {
+          Thread thread = new Thread(r, "barefoot-startup-" + count.incrementAndGet());
+          thread.setContextClassLoader(loader);
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * number of threads used to initialise filters and servlets, as set or given by {@link
+   * #STARTUP_PARALLELISM}
+   *
+   * @return threads, one initialises them on the calling thread
+   */
+  public int getStartupParallelism() {
+    if (startupParallelism > 0) {
+      return startupParallelism;
+    }
+
+    String value =
+        initParameters.getOrDefault(STARTUP_PARALLELISM, System.getProperty(STARTUP_PARALLELISM));
+
+    if (value == null || value.trim().isEmpty()) {
+      return 1;
+    }
+
+    value = value.trim();
+
+    return "true".equalsIgnoreCase(value)
+        ? Runtime.getRuntime().availableProcessors()
+        : "false".equalsIgnoreCase(value) ? 1 : Math.max(1, Integer.parseInt(value));
+  }
+
+  /**
+   * sets the number of threads used to initialise filters and servlets, one or less initialises
+   * them on the calling thread
+   *
+   * @param n number of threads
+   */
+  public void setStartupParallelism(int n) {
+    if (state >= STATE_INIT) throw new IllegalStateException();
+    startupParallelism = Math.max(1, n);
+  }
+
+  /**
+   * time taken by onStartup
+   *
+   * @return nanoseconds
+   */
+  public long getStartupNanos() {
+    return startupNanos;
+  }
+
+  /**
+   * time taken initialising servlets on their first request rather than during startup
+   *
+   * @return nanoseconds
+   */
+  public long getDeferredInitNanos() {
+    return deferredInitNanos.sum();
+  }
+
+  /**
+   * limit for buffered responses, from the init parameter or system property {@link
+   * #RESPONSE_LIMIT} as it was when the context started
+   *
+   * @param defaultLimit limit of the adapter's platform
+   * @return bytes
+   */
+  public long getResponseLimit(long defaultLimit) {
+    return responseLimit < 0 ? defaultLimit : responseLimit;
+  }
+
+  /**
+   * do filters without mappings apply to every request, from the init parameter or system property
+   * {@link #UNMAPPED_FILTERS}, otherwise they are never invoked
+   *
+   * @return true for the legacy global chain
+   */
+  public boolean isUnmappedFilterGlobal() {
+    return Boolean.parseBoolean(
+        initParameters.getOrDefault(UNMAPPED_FILTERS, System.getProperty(UNMAPPED_FILTERS)));
+  }
+
+  /**
+   * are buffered GET responses hashed for an ETag, from the init parameter or system property
+   * {@link #ETAG} as it was when the context started
+   *
+   * @return true if enabled
+   */
+  public boolean isETagEnabled() {
+    return eTagEnabled;
+  }
+
+  /**
+   * {@link #WARMUP} as it was when the context started, off by default as any client can send the
+   * header
+   *
+   * @return true if requests carrying {@link #WARMUP_HEADER} are keep-warm pings
+   */
+  public boolean isWarmupHeaderEnabled() {
+    return warmupHeaderEnabled;
+  }
+
+  /**
+   * compression threshold for a servlet, resolved when the context started
+   *
+   * @param reg servlet registration, null if the request matched no servlet
+   * @return bytes, or -1 if compression is disabled
+   */
+  public int getCompressionThreshold(AbstractServletRegistration reg) {
+    return reg == null ? compressionThreshold : reg.compressionThreshold;
+  }
+
+  /**
+   * resolves the compression threshold of a servlet once the context's is known, its init parameter
+   * {@link #COMPRESSION} is used before the context's
+   *
+   * @param reg servlet registration
+   */
+  protected void resolveCompressionThreshold(AbstractServletRegistration reg) {
+    String value = reg.getInitParameter(COMPRESSION);
+
+    reg.compressionThreshold =
+        value == null ? compressionThreshold : parseCompressionThreshold(value);
+  }
+
+  /**
+   * parses a {@link #COMPRESSION} setting
+   *
+   * @param value true or the smallest response in bytes, may be null
+   * @return bytes, or -1 if compression is disabled
+   */
+  private static int parseCompressionThreshold(String value) {
+    if (value == null) {
+      return -1;
+    }
+
+    value = value.trim();
+
+    if (Boolean.parseBoolean(value)) {
+      return COMPRESSION_THRESHOLD;
+    }
+
+    return value.isEmpty() || !Character.isDigit(value.charAt(0)) ? -1 : Integer.parseInt(value);
+  }
+
+  /**
+   * reads the requests used to prime the context from the resource named by {@link #PRIMING}, by
+   * default {@link #PRIMING_RESOURCE}
+   *
+   * @return requests, empty if there is no priming resource
+   */
+  public List<BarefootPrimingRequest> getPrimingRequests() {
+    String name =
+        initParameters.getOrDefault(PRIMING, System.getProperty(PRIMING, PRIMING_RESOURCE));
+
+    if (name.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    InputStream is = resourceLoader.getResourceAsStream(name);
+
+    if (is == null) {
+      return Collections.emptyList();
+    }
+
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+      return BarefootPrimingRequest.parse(reader);
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * runs priming requests through a dispatcher, typically an adapter's own entry point so the whole
+   * request path is exercised. Failures are logged and do not stop the remaining requests.
+   *
+   * @param requests requests to run
+   * @param dispatcher runs one request and discards the output
+   * @return number of requests that completed
+   */
+  public int prime(
+      List<BarefootPrimingRequest> requests, Consumer<BarefootPrimingRequest> dispatcher) {
+    if (state != STATE_RUN) throw new IllegalStateException();
+
+    if (requests.isEmpty()) {
+      return 0;
+    }
+
+    final long started = System.nanoTime();
+    int count = 0;
+
+    for (BarefootPrimingRequest request : requests) {
+      try {
+        dispatcher.accept(request);
+        count++;
+      } catch (RuntimeException ex) {
+        log("Barefoot, priming " + request + " failed", ex);
+      }
+    }
+
+    primingNanos = System.nanoTime() - started;
+
+    log(
+        "Barefoot, primed "
+            + count
+            + " of "
+            + requests.size()
+            + " requests in "
+            + TimeUnit.NANOSECONDS.toMillis(primingNanos)
+            + "ms");
+
+    return count;
+  }
+
+  /**
+   * time taken by the last call to prime
+   *
+   * @return nanoseconds
+   */
+  public long getPrimingNanos() {
+    return primingNanos;
+  }
+
+  /**
+   * request metrics for this context, also the context attribute {@link BarefootMetrics#ATTRIBUTE}
+   * and registered as a platform MXBean on startup when {@link #METRICS_JMX} is true
+   *
+   * @return metrics registry
+   */
+  public BarefootMetrics getMetrics() {
+    return metrics;
+  }
+
+  protected static final String PHASE_LISTENER = "listener",
+      PHASE_FILTER = "filter",
+      PHASE_SERVLET = "servlet";
+
+  /** Task run during startup, ordered within its phase. */
+  protected static final class StartupTask implements Runnable {
+    private final String name;
+    private final IntSupplier order;
+    private final Runnable task;
+    private String phase;
+
+    /**
+     * create a startup task
+     *
+     * @param n name of what is being initialised
+     * @param o order within the phase, evaluated when the phase runs
+     * @param t initialisation to run
+     */
+    public StartupTask(String n, IntSupplier o, Runnable t) {
+      name = n;
+      order = o;
+      task = t;
+    }
+
+    /**
+     * create a startup task with no particular order
+     *
+     * @param n name of what is being initialised
+     * @param t initialisation to run
+     */
+    public StartupTask(String n, Runnable t) {
+      this(n, () -> 0, t);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * order within the phase, negative values come last
+     *
+     * @return order
+     */
+    public int getOrder() {
+      int i = order.getAsInt();
+      return i < 0 ? Integer.MAX_VALUE : i;
+    }
+
+    /**
+     * whether initialisation waits for first use, a negative order
+     *
+     * @return true when nothing runs at startup
+     */
+    public boolean isDeferred() {
+      return order.getAsInt() < 0;
+    }
+
+    StartupTask phase(String p) {
+      phase = p;
+      return this;
+    }
+
+    @Override
+    public void run() {
+      BarefootStartupEvent event = new BarefootStartupEvent();
+      event.begin();
+      task.run();
+      if (event.shouldCommit()) {
+        event.phase = phase;
+        event.name = name;
+        event.commit();
+      }
+    }
+  }
+
   public void destroy() throws Exception {
     state = STATE_SHUTDOWN;
+    metrics.unregister();
     listenerMap
         .entrySet()
         .forEach(
@@ -0,0 +1,163 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for parts of a multipart request. Small parts are held in the array they were read
+ * into, larger parts are in a temporary file.
+ */
+public abstract class AbstractServletPart {
+  protected final String name, fileName, contentType;
+  protected final Map<String, List<String>> headers; // keys should be lower-case
+  protected final Path location;
+  private final byte[] content;
+  private final long size;
+  private Path file;
+  private boolean temporary;
+
+  protected AbstractServletPart(Builder builder) {
+    name = builder.name;
+    fileName = builder.fileName;
+    contentType = builder.contentType;
+    headers = builder.headers;
+    location = builder.location;
+    content = builder.content;
+    size = builder.size;
+    file = builder.file;
+    temporary = file != null;
+  }
+
+  public InputStream getInputStream() throws IOException {
+    if (file != null) {
+      return Files.newInputStream(file);
+    }
+    return new ByteArrayInputStream(content, 0, (int) size);
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getSubmittedFileName() {
+    return fileName;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * writes the content to a file, a temporary file is moved rather than copied
+   *
+   * @param path file name, relative names are in the multipart location
+   * @throws IOException on failure
+   */
+  public void write(String path) throws IOException {
+    Path target = location.resolve(path);
+
+    if (file != null) {
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+      file = target;
+      temporary = false;
+    } else {
+      try (InputStream is = getInputStream()) {
+        Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  public void delete() throws IOException {
+    if (file != null) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * removes the temporary file if it has not been written elsewhere
+   *
+   * @throws IOException on failure
+   */
+  void release() throws IOException {
+    if (temporary) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public String getHeader(String string) {
+    List<String> list = headers.get(string.toLowerCase());
+    return (list == null || list.isEmpty()) ? null : list.get(0);
+  }
+
+  public Collection<String> getHeaders(String string) {
+    List<String> list = headers.get(string.toLowerCase());
+    return list == null ? Collections.emptyList() : list;
+  }
+
+  public Collection<String> getHeaderNames() {
+    return new ArrayList<>(headers.keySet());
+  }
+
+  /**
+   * content as text, used for form fields
+   *
+   * @param cs character set if the part does not declare one
+   * @return content
+   * @throws IOException on read
+   */
+  String getString(Charset cs) throws IOException {
+    String encoding = BarefootContentType.getCharsetFromContentType(contentType);
+    Charset charset = encoding == null ? cs : Charset.forName(encoding);
+
+    if (file != null) {
+      return new String(Files.readAllBytes(file), charset);
+    }
+    return new String(content, 0, (int) size, charset);
+  }
+
+  /** Builder for parts, filled in by the parser */
+  public static final class Builder {
+    String name, fileName, contentType;
+    Map<String, List<String>> headers;
+    Path location, file;
+    byte[] content;
+    long size;
+
+    Builder() {}
+  }
+}
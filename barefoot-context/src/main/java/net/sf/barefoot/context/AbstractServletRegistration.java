@@ -34,10 +34,12 @@ import net.sf.barefoot.util.IteratorEnumeration;
 public abstract class AbstractServletRegistration {
   protected final String name;
   protected final Map<String, String> initParams = new HashMap<>();
-  protected boolean isInitialised = false;
+  protected volatile boolean isInitialised = false;
+  protected long initNanos;
   protected final Set<String> mappings = new HashSet<>();
   protected int loadOnStartup = 0;
   protected boolean asyncSupported;
+  int compressionThreshold = -1; // resolved by the context when it starts
 
   protected AbstractServletRegistration(String n) {
     name = n;
@@ -47,6 +49,19 @@ public abstract class AbstractServletRegistration {
     loadOnStartup = arg0;
   }
 
+  public int getLoadOnStartup() {
+    return loadOnStartup;
+  }
+
+  /**
+   * time taken by the servlet's initialisation
+   *
+   * @return nanoseconds, zero if not yet initialised
+   */
+  public long getInitNanos() {
+    return initNanos;
+  }
+
   public void setRunAsRole(String arg0) {
     throw new UnsupportedOperationException("Not supported yet.");
   }
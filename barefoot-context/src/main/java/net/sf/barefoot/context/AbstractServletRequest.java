@@ -22,15 +22,18 @@
 package net.sf.barefoot.context;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -38,8 +41,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import net.sf.barefoot.util.IteratorEnumeration;
 import net.sf.barefoot.util.ReaderInputStream;
 
@@ -48,10 +53,14 @@ public abstract class AbstractServletRequest {
   public static final String ATTR_ORIGINAL_REQUEST = "net.sf.barefoot.original.request",
       ATTR_ORIGINAL_CONTEXT = "net.sf.barefoot.original.context",
       ATTR_ORIGINAL_RESPONSE = "net.sf.barefoot.original.response";
-  protected static final List<String> EMPTY_STRING_LIST = new ArrayList<>();
+  protected static final List<String> EMPTY_STRING_LIST = Collections.emptyList();
+  /** cookie name used when the session cookie config does not give one */
+  public static final String SESSION_COOKIE = "JSESSIONID";
+
   protected final Map<String, Object> attributes = new HashMap<>();
-  protected final Map<String, List<String>> headers; // keys should be lower-case
-  protected final Map<String, String[]> parameters;
+  protected final BarefootRequestHeaders headers;
+  protected Map<String, String[]> parameters; // decoded on first use unless given
+  protected final BarefootPreprocessor preprocessor;
   protected final String method,
       uri,
       url,
@@ -70,7 +79,14 @@ public abstract class AbstractServletRequest {
   protected final BarefootServletContextLogger logger;
   protected final Supplier<InputStream> inputStream;
   protected final Supplier<Reader> reader;
+  protected final BarefootRequestBody body;
   protected boolean alreadyOpen = false;
+  private boolean formRead, inflate, sessionCookieRead, sessionFound, sessionInvalidated;
+  private String requestedSessionId;
+  private BarefootSessionData requestedSession;
+  private AbstractServletSession invalidatedSession;
+  private Map<String, String> sessionCookies; // set on the response by this request
+  protected List<AbstractServletPart> parts;
   protected AbstractServletSession httpSession;
   protected String charEncoding;
 
@@ -86,8 +102,12 @@ public abstract class AbstractServletRequest {
     authType = builder.authType;
     remoteAddr = builder.remoteAddr;
     remoteHost = builder.remoteHost;
-    headers = builder.headers;
+    headers =
+        builder.headerTable != null
+            ? builder.headerTable
+            : BarefootRequestHeaders.of(builder.headers);
     parameters = builder.parameters;
+    preprocessor = builder.preprocessor == null ? DEFAULT_PREPROCESSOR : builder.preprocessor;
     isSecure = builder.isSecure;
     serverName = builder.serverName;
     protocol = builder.protocol;
@@ -96,6 +116,7 @@ public abstract class AbstractServletRequest {
     contextPath = builder.contextPath;
     inputStream = builder.inputStream;
     reader = builder.reader;
+    body = builder.body;
   }
 
   public abstract String getPathInfo();
@@ -109,21 +130,20 @@ public abstract class AbstractServletRequest {
   }
 
   public long getDateHeader(String string) {
-    throw new UnsupportedOperationException("Not supported yet.");
+    String value = headers.get(string);
+    return value == null ? -1L : BarefootDateCodec.parse(value);
   }
 
   public String getHeader(String string) {
-    List<String> list = headers.get(string.toLowerCase());
-    return (list == null || list.isEmpty()) ? null : list.get(0);
+    return headers.get(string);
   }
 
   public Enumeration<String> getHeaders(String string) {
-    List<String> list = headers.get(string.toLowerCase());
-    return new IteratorEnumeration((list == null ? EMPTY_STRING_LIST : list).iterator());
+    return new IteratorEnumeration(headers.getAll(string).iterator());
   }
 
   public Enumeration<String> getHeaderNames() {
-    return new IteratorEnumeration(headers.keySet().iterator());
+    return new IteratorEnumeration(headers.names());
   }
 
   public int getIntHeader(String string) {
@@ -157,7 +177,15 @@ public abstract class AbstractServletRequest {
   }
 
   public String getRequestedSessionId() {
-    return null;
+    if (!sessionCookieRead) {
+      sessionCookieRead = true;
+      BarefootSessionStore store = getSessionStore();
+      requestedSessionId =
+          store == null
+              ? getCookieValue(getSessionCookieName())
+              : store.getRequestedSessionId(this);
+    }
+    return requestedSessionId;
   }
 
   public String getRequestURI() {
@@ -172,17 +200,176 @@ public abstract class AbstractServletRequest {
 
   public String changeSessionId() {
     if (httpSession == null) throw new IllegalStateException();
-    String id = UUID.randomUUID().toString();
-    httpSession.id = id;
+    String id = BarefootSessionIdGenerator.generate();
+    BarefootSessionStore store = getSessionStore();
+    if (store != null) {
+      store.remove(httpSession.data.getId());
+    }
+    httpSession.idChanged(httpSession.data.getId());
+    httpSession.data.setId(id);
     return id;
   }
 
   public boolean isRequestedSessionIdValid() {
-    return false;
+    String id = getRequestedSessionId();
+    AbstractServletSession session = id == null ? null : getSession(false);
+    return session != null && !session.isNew && id.equals(session.data.getId());
   }
 
   public boolean isRequestedSessionIdFromCookie() {
-    return false;
+    return getRequestedSessionId() != null;
+  }
+
+  /**
+   * value of a request cookie
+   *
+   * @param name cookie name
+   * @return value or null if not sent
+   */
+  protected String getCookieValue(String name) {
+    return null;
+  }
+
+  /**
+   * name of the cookie carrying the session id
+   *
+   * @return name
+   */
+  protected String getSessionCookieName() {
+    return SESSION_COOKIE;
+  }
+
+  /**
+   * store holding the sessions of the context
+   *
+   * @return store or null if sessions are not kept between requests
+   */
+  protected BarefootSessionStore getSessionStore() {
+    return null;
+  }
+
+  /**
+   * sets a session cookie on the response, with the attributes of the session cookie config
+   *
+   * @param resp response
+   * @param name cookie name
+   * @param value cookie value, or null to clear the cookie
+   */
+  protected void addSessionCookie(AbstractServletResponse resp, String name, String value) {}
+
+  /**
+   * sets a session cookie once, the session may be kept both as the response is committed and after
+   * the servlet returns
+   *
+   * @param resp response
+   * @param name cookie name
+   * @param value cookie value, or null to clear the cookie
+   * @throws IllegalStateException if the response was committed without the cookie
+   */
+  public void setSessionCookie(AbstractServletResponse resp, String name, String value) {
+    if (sessionCookies == null) {
+      sessionCookies = new HashMap<>();
+    } else if (sessionCookies.containsKey(name)
+        && Objects.equals(sessionCookies.get(name), value)) {
+      return;
+    }
+
+    if (resp.isCommitted()) {
+      throw new IllegalStateException(
+          "session cookie " + name + " changed after the response was committed");
+    }
+
+    sessionCookies.put(name, value);
+    addSessionCookie(resp, name, value);
+  }
+
+  /**
+   * finds the session the request was sent with, once per request
+   *
+   * @return session state or null if there is none or it was invalidated
+   */
+  protected BarefootSessionData findSession() {
+    if (!sessionFound) {
+      sessionFound = true;
+      BarefootSessionStore store = getSessionStore();
+      if (store != null) {
+        requestedSession = store.find(this, System.currentTimeMillis());
+      }
+    }
+    return sessionInvalidated ? null : requestedSession;
+  }
+
+  /**
+   * state for a new session
+   *
+   * @param maxInactiveInterval seconds
+   * @return session state with a new id
+   */
+  protected BarefootSessionData newSession(int maxInactiveInterval) {
+    return new BarefootSessionData(
+        BarefootSessionIdGenerator.generate(), System.currentTimeMillis(), maxInactiveInterval);
+  }
+
+  /**
+   * removes an invalidated session from the store
+   *
+   * @param session session used by this request
+   */
+  protected void invalidateSession(AbstractServletSession session) {
+    session.data.invalidate();
+    BarefootSessionStore store = getSessionStore();
+    if (store != null) {
+      store.remove(session.data.getId());
+    }
+    if (httpSession == session) {
+      httpSession = null;
+    }
+    if (!session.isNew) {
+      invalidatedSession = session;
+    }
+    sessionInvalidated = true;
+  }
+
+  /**
+   * keeps the session used by this request, or forgets it if it was invalidated, leaving the store
+   * to set or clear the session cookie. Called as the response is committed so the cookie goes with
+   * the headers, and again by {@link #commitSession}.
+   *
+   * @param resp response, not yet committed
+   */
+  public void keepSession(AbstractServletResponse resp) {
+    BarefootSessionStore store = getSessionStore();
+    AbstractServletSession session = httpSession;
+
+    if (store != null) {
+      if (session != null && session.data.isValid()) {
+        store.commit(this, resp, session.data);
+      } else if (sessionInvalidated) {
+        store.commit(this, resp, null);
+      }
+    }
+  }
+
+  /**
+   * keeps the session and hands its changes to the persister. Called once the servlet has returned.
+   *
+   * @param resp response
+   * @param persister given the changes to the sessions the request used, or null
+   * @throws IllegalStateException if the session cookie changed after the response was committed
+   */
+  public void commitSession(AbstractServletResponse resp, BarefootSessionPersister persister) {
+    AbstractServletSession session = httpSession;
+
+    keepSession(resp);
+
+    if (persister != null) {
+      if (invalidatedSession != null) {
+        persister.persist(invalidatedSession.getChanges());
+      }
+      if (session != null && session.data.isValid()) {
+        persister.persist(session.getChanges());
+      }
+    }
   }
 
   public boolean isRequestedSessionIdFromURL() {
@@ -211,32 +398,179 @@ public abstract class AbstractServletRequest {
   }
 
   public int getContentLength() {
-    return (int) contentLength;
+    return (int) getContentLengthLong();
   }
 
   public long getContentLengthLong() {
+    if (contentLength < 0 && body != null) {
+      return body.getContentLength(getBodyCharset());
+    }
     return contentLength;
   }
 
+  /**
+   * length declared or already known without reading the body, recorded by metrics so they never
+   * decode a body the servlet did not read
+   *
+   * @return length or -1 if not known
+   */
+  public long getKnownContentLength() {
+    return contentLength >= 0 || body == null ? contentLength : body.getKnownContentLength();
+  }
+
+  private Charset getBodyCharset() {
+    String encoding = getCharacterEncoding();
+    return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+  }
+
   public String getContentType() {
     return contentType;
   }
 
+  private static final BarefootPreprocessor DEFAULT_PREPROCESSOR = new BarefootPreprocessor();
+
+  /**
+   * decodes the query string and, if it has not been opened, a form body when first needed
+   *
+   * @return parameters
+   * @throws BarefootRequestException if the parameters are malformed or exceed the limits
+   */
+  protected Map<String, String[]> getParameters() {
+    if (parameters == null) {
+      Map<String, String[]> map = new HashMap<>();
+
+      try {
+        preprocessor.decodeQueryString(queryString, map);
+
+        if (!alreadyOpen && preprocessor.isApplicationFormUrlEncoded(contentType)) {
+          Charset cs = getFormCharset();
+          InputStream is = openInputStream(cs);
+          formRead = true;
+
+          if (is != null) {
+            try (InputStream in = is) {
+              preprocessor.decodeApplicationFormUrlEncoded(in, map, cs);
+            }
+          }
+        } else if ((parts != null || !alreadyOpen)
+            && BarefootContentType.isMultipartFormData(contentType)
+            && getMultipartParser() != null) {
+          Charset cs = getFormCharset();
+
+          for (AbstractServletPart part : readParts()) {
+            if (part.getSubmittedFileName() == null && part.getName() != null) {
+              String[] values = map.get(part.getName());
+              String value = part.getString(cs);
+              if (values == null) {
+                values = new String[] {value};
+              } else {
+                values = Arrays.copyOf(values, values.length + 1);
+                values[values.length - 1] = value;
+              }
+              map.put(part.getName(), values);
+            }
+          }
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BarefootRequestException(BarefootRequestException.BAD_REQUEST, ex);
+      }
+
+      parameters = map;
+    }
+
+    return parameters;
+  }
+
+  /**
+   * parser for the servlet that handles the request
+   *
+   * @return parser or null if the servlet does not accept multipart requests
+   */
+  protected BarefootMultipartParser getMultipartParser() {
+    return null;
+  }
+
+  /**
+   * reads a multipart/form-data body once
+   *
+   * @return parts, or null if the request is not multipart/form-data
+   * @throws IOException on read or malformed body
+   * @throws IllegalStateException if there is no multipart configuration or a limit is exceeded
+   */
+  protected List<AbstractServletPart> readParts() throws IOException {
+    if (parts == null && BarefootContentType.isMultipartFormData(contentType)) {
+      BarefootMultipartParser parser = getMultipartParser();
+
+      if (parser == null) {
+        throw new IllegalStateException("no multipart configuration for " + uri);
+      }
+
+      if (alreadyOpen) {
+        throw new IllegalStateException("stream already open");
+      }
+
+      String boundary = BarefootContentType.getBoundaryFromContentType(contentType);
+
+      if (boundary == null || boundary.isEmpty()) {
+        throw new IOException("multipart request without a boundary");
+      }
+
+      Charset cs = getFormCharset();
+      InputStream is = openInputStream(cs);
+      formRead = true;
+
+      if (is == null) {
+        parts = new ArrayList<>();
+      } else {
+        try (InputStream in = is) {
+          parts = parser.parse(in, boundary, cs);
+        }
+      }
+    }
+
+    return parts;
+  }
+
+  /** removes temporary files held by the request */
+  public void release() {
+    if (parts != null) {
+      for (AbstractServletPart part : parts) {
+        try {
+          part.release();
+        } catch (IOException ex) {
+          if (logger != null) {
+            log("failed to remove " + part.getName(), ex);
+          }
+        }
+      }
+    }
+  }
+
+  private Charset getFormCharset() {
+    String encoding = getCharacterEncoding();
+
+    if (encoding == null) {
+      encoding = BarefootContentType.getCharsetFromContentType(contentType);
+    }
+
+    return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+  }
+
   public String getParameter(String string) {
-    String[] val = parameters.get(string);
+    String[] val = getParameters().get(string);
     return (val == null || val.length == 0) ? null : val[0];
   }
 
   public Enumeration<String> getParameterNames() {
-    return new IteratorEnumeration(parameters.keySet().iterator());
+    return new IteratorEnumeration(getParameters().keySet().iterator());
   }
 
   public String[] getParameterValues(String string) {
-    return parameters.get(string);
+    return getParameters().get(string);
   }
 
   public Map<String, String[]> getParameterMap() {
-    return parameters;
+    return getParameters();
   }
 
   public String getProtocol() {
@@ -329,17 +663,30 @@ public abstract class AbstractServletRequest {
       throw new IllegalStateException("stream already open");
     }
 
-    try {
-      if (inputStream != null) {
-        alreadyOpen = true;
-        return inputStream.get();
-      }
+    if (formRead) {
+      alreadyOpen = true;
+      return new ByteArrayInputStream(NO_BYTES);
+    }
 
-      if (reader != null) {
-        String encoding = getCharacterEncoding();
-        Charset cs = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
-        alreadyOpen = true;
-        return new ReaderInputStream(reader.get(), cs);
+    InputStream is = openInputStream(getBodyCharset());
+
+    if (is != null) {
+      alreadyOpen = true;
+    }
+
+    return is;
+  }
+
+  private InputStream openInputStream(Charset cs) throws IOException {
+    InputStream is = null;
+
+    try {
+      if (body != null) {
+        is = body.getInputStream(cs);
+      } else if (inputStream != null) {
+        is = inputStream.get();
+      } else if (reader != null) {
+        is = new ReaderInputStream(reader.get(), cs);
       }
     } catch (RuntimeException ex) {
       Throwable cause = ex.getCause();
@@ -349,7 +696,43 @@ public abstract class AbstractServletRequest {
       throw ex;
     }
 
-    return null;
+    if (is != null && inflate) {
+      switch (getContentEncoding()) {
+        case "gzip":
+        case "x-gzip":
+          return new GZIPInputStream(is);
+        case "deflate":
+          return new InflaterInputStream(is);
+        default:
+          break;
+      }
+    }
+
+    return is;
+  }
+
+  /**
+   * reads a gzip or deflate encoded body as the bytes it encodes, set by the context when
+   * compression is enabled for the servlet
+   */
+  public void inflateBody() {
+    inflate = true;
+  }
+
+  private boolean isInflated() {
+    switch (getContentEncoding()) {
+      case "gzip":
+      case "x-gzip":
+      case "deflate":
+        return inflate;
+      default:
+        return false;
+    }
+  }
+
+  private String getContentEncoding() {
+    String encoding = headers.get("Content-Encoding");
+    return encoding == null ? "" : encoding.trim().toLowerCase(Locale.ROOT);
   }
 
   public BufferedReader getReader() throws IOException {
@@ -357,7 +740,28 @@ public abstract class AbstractServletRequest {
       throw new IllegalStateException("stream already open");
     }
 
+    if (formRead) {
+      alreadyOpen = true;
+      return new BufferedReader(new StringReader(""));
+    }
+
+    if (isInflated()) {
+      Charset cs = getBodyCharset();
+      InputStream is = openInputStream(cs);
+      if (is == null) {
+        return null;
+      }
+      alreadyOpen = true;
+      return new BufferedReader(new InputStreamReader(is, cs));
+    }
+
     try {
+      if (body != null) {
+        Reader rdr = body.getReader(getBodyCharset());
+        alreadyOpen = true;
+        return new BufferedReader(rdr);
+      }
+
       if (reader != null) {
         alreadyOpen = true;
         Reader rdr = reader.get();
@@ -368,8 +772,7 @@ public abstract class AbstractServletRequest {
       }
 
       if (inputStream != null) {
-        String encoding = getCharacterEncoding();
-        Charset cs = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        Charset cs = getBodyCharset();
         alreadyOpen = true;
         return new BufferedReader(new InputStreamReader(inputStream.get(), cs));
       }
@@ -397,6 +800,7 @@ public abstract class AbstractServletRequest {
 
   public abstract static class Builder {
     Map<String, List<String>> headers; // keys should be lower-case
+    BarefootRequestHeaders headerTable;
     Map<String, String[]> parameters;
     String method,
         uri,
@@ -417,6 +821,8 @@ public abstract class AbstractServletRequest {
     BarefootServletContextLogger logger;
     Supplier<InputStream> inputStream;
     Supplier<Reader> reader;
+    BarefootRequestBody body;
+    BarefootPreprocessor preprocessor;
 
     public abstract AbstractServletRequest build();
 
@@ -432,7 +838,19 @@ public abstract class AbstractServletRequest {
     }
 
     /**
-     * Set list of parameters for the request
+     * Set request headers filled in by the adapter, used in preference to a map
+     *
+     * @param hdrs headers
+     * @return this
+     */
+    public Builder headers(BarefootRequestHeaders hdrs) {
+      headerTable = hdrs;
+      return this;
+    }
+
+    /**
+     * Set list of parameters for the request, otherwise they are decoded from the query string and
+     * form body when first asked for
      *
      * @param param list of parameters
      * @return this
@@ -442,6 +860,17 @@ public abstract class AbstractServletRequest {
       return this;
     }
 
+    /**
+     * sets the decoder used for the query string and form body
+     *
+     * @param p preprocessor
+     * @return this
+     */
+    public Builder preprocessor(BarefootPreprocessor p) {
+      preprocessor = p;
+      return this;
+    }
+
     /**
      * Set the request method
      *
@@ -660,5 +1089,16 @@ public abstract class AbstractServletRequest {
       reader = r;
       return this;
     }
+
+    /**
+     * sets a body held in memory, used in preference to the stream and reader suppliers
+     *
+     * @param b body
+     * @return this
+     */
+    public Builder body(BarefootRequestBody b) {
+      body = b;
+      return this;
+    }
   }
 }
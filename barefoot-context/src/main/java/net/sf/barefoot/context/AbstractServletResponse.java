@@ -29,39 +29,49 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+import net.sf.barefoot.util.ResponseBuffer;
 
 /** Base class for servlet responses */
 public abstract class AbstractServletResponse {
+  static final String ETAG = "ETag",
+      LAST_MODIFIED = "Last-Modified",
+      CONTENT_LENGTH = "Content-Length",
+      CONTENT_ENCODING = "Content-Encoding",
+      VARY = "Vary",
+      ACCEPT_ENCODING = "Accept-Encoding";
   int status = 200;
-  final Map<String, List<String>> headers = new HashMap<>();
+  final BarefootResponseHeaders headers = new BarefootResponseHeaders();
   private String contentType, charEncoding;
   private Locale locale;
   private final Supplier<OutputStream> outputStream;
   private final Supplier<PrintWriter> writer;
   protected long contentLength = -1L;
+  private long unencodedContentLength = -1L;
+  private String unencodedLengthHeader;
   protected final AbstractServletRequest request;
+  protected final ResponseBuffer buffer;
+  private PrintWriter bufferWriter;
+  private boolean bufferStreamOpen, committed;
+  private BarefootCompressionStream compression;
+  private int bufferSize = -1;
 
   protected AbstractServletResponse(Builder builder) {
     outputStream = builder.outputStream;
     writer = builder.writer;
     request = builder.request;
+    buffer = builder.buffer;
   }
 
   public boolean containsHeader(String string) {
-    return headers.containsKey(string);
+    return headers.contains(string);
   }
 
   public String encodeURL(String string) {
@@ -112,39 +122,20 @@ public abstract class AbstractServletResponse {
     status = 302;
   }
 
-  private static String encodeDate(long t) {
-    ZoneId GMT = ZoneId.of("UTC");
-    Instant i = Instant.ofEpochSecond(t);
-    ZonedDateTime z = ZonedDateTime.ofInstant(i, GMT);
-    return DateTimeFormatter.RFC_1123_DATE_TIME.format(z);
-  }
-
   public void setDateHeader(String name, long t) {
-    setHeader(name, encodeDate(t));
+    setHeader(name, BarefootDateCodec.format(t));
   }
 
   public void addDateHeader(String name, long t) {
-    addHeader(name, encodeDate(t));
+    addHeader(name, BarefootDateCodec.format(t));
   }
 
   public void setHeader(String name, String value) {
-    List<String> h = headers.get(name);
-    if (h == null) {
-      h = new ArrayList<>();
-      headers.put(name, h);
-      h.add(value);
-    } else {
-      h.set(0, value);
-    }
+    headers.set(name, value);
   }
 
   public void addHeader(String name, String value) {
-    List<String> h = headers.get(name);
-    if (h == null) {
-      h = new ArrayList<>();
-      headers.put(name, h);
-    }
-    h.add(value);
+    headers.add(name, value);
   }
 
   public void setIntHeader(String string, int i) {
@@ -168,16 +159,25 @@ public abstract class AbstractServletResponse {
   }
 
   public String getHeader(String string) {
-    List<String> h = headers.get(string);
-    return (h == null) || h.isEmpty() ? null : h.get(0);
+    return headers.get(string);
   }
 
   public Collection<String> getHeaders(String string) {
-    return headers.get(string);
+    return headers.getAll(string);
   }
 
   public Collection<String> getHeaderNames() {
-    return headers.keySet().stream().collect(Collectors.toList());
+    return headers.names();
+  }
+
+  /**
+   * visits the header values in the order they were set, adapters write them out without building
+   * intermediate collections
+   *
+   * @param visitor receives name and value pairs
+   */
+  public void forEachHeader(BarefootResponseHeaders.Visitor visitor) {
+    headers.forEach(visitor);
   }
 
   public String getCharacterEncoding() {
@@ -204,30 +204,94 @@ public abstract class AbstractServletResponse {
     contentLength = l;
   }
 
+  /**
+   * content length declared by the servlet, or the size of the buffered content
+   *
+   * @return length or -1 if not known
+   */
+  public long getContentLengthLong() {
+    if (contentLength < 0 && buffer != null) {
+      return buffer.size();
+    }
+    return contentLength;
+  }
+
   public void setContentType(String string) {
     contentType = string;
   }
 
   public void setBufferSize(int i) {
-    throw new UnsupportedOperationException("Not supported yet.");
+    if (committed || (buffer != null && buffer.size() > 0)) {
+      throw new IllegalStateException("content already written");
+    }
+    bufferSize = i;
   }
 
+  /**
+   * requested buffer size, the whole response is buffered up to the buffer's limit
+   *
+   * @return size
+   */
   public int getBufferSize() {
-    return 0;
+    if (bufferSize >= 0) {
+      return bufferSize;
+    }
+    return buffer == null ? 0 : (int) Math.min(buffer.getLimit(), Integer.MAX_VALUE);
+  }
+
+  public void flushBuffer() throws IOException {
+    if (bufferWriter != null) {
+      bufferWriter.flush();
+    }
+    commit();
   }
 
-  public void flushBuffer() throws IOException {}
+  /**
+   * marks the response committed, called by an adapter as it sends the status and headers. The
+   * session is kept first so its cookie is sent with them.
+   */
+  public void commit() {
+    if (!committed) {
+      if (request != null) {
+        request.keepSession(this);
+      }
+      committed = true;
+    }
+  }
 
   public void resetBuffer() {
-    throw new UnsupportedOperationException("Not supported yet.");
+    if (committed) {
+      throw new IllegalStateException("response already committed");
+    }
+    if (buffer == null) {
+      throw new UnsupportedOperationException("Not supported yet.");
+    }
+    if (bufferWriter != null) {
+      bufferWriter.flush();
+    }
+    if (compression != null) {
+      try {
+        compression.reset();
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    } else {
+      buffer.reset();
+    }
   }
 
   public boolean isCommitted() {
-    return false;
+    return committed;
   }
 
   public void reset() {
+    if (committed) {
+      throw new IllegalStateException("response already committed");
+    }
     headers.clear();
+    if (buffer != null) {
+      resetBuffer();
+    }
   }
 
   public void setLocale(Locale l) {
@@ -239,6 +303,14 @@ public abstract class AbstractServletResponse {
   }
 
   public OutputStream getOutputStream() throws IOException {
+    if (buffer != null) {
+      if (bufferWriter != null) {
+        throw new IllegalStateException("writer already open");
+      }
+      bufferStreamOpen = true;
+      return compression == null ? buffer : compression;
+    }
+
     if (outputStream != null) {
       try {
         return outputStream.get();
@@ -256,6 +328,22 @@ public abstract class AbstractServletResponse {
   }
 
   public PrintWriter getWriter() throws IOException {
+    if (buffer != null) {
+      if (bufferStreamOpen) {
+        throw new IllegalStateException("stream already open");
+      }
+      if (bufferWriter == null) {
+        String csn = getCharacterEncoding();
+        Charset cs = csn == null ? StandardCharsets.UTF_8 : Charset.forName(csn);
+        bufferWriter =
+            new PrintWriter(
+                compression == null
+                    ? buffer.getWriter(cs)
+                    : new OutputStreamWriter(compression, cs));
+      }
+      return bufferWriter;
+    }
+
     try {
       if (writer != null) {
         return writer.get();
@@ -280,12 +368,196 @@ public abstract class AbstractServletResponse {
     }
   }
 
+  /**
+   * compresses a buffered body of at least the threshold if the client accepts gzip or deflate
+   *
+   * @param threshold smallest body in bytes worth compressing
+   */
+  public void compressBody(int threshold) {
+    if (buffer != null && request != null && compression == null) {
+      compression =
+          new BarefootCompressionStream(
+              this,
+              buffer,
+              BarefootCompressionStream.negotiate(
+                  request.headers.get(BarefootRequestHeaders.ACCEPT_ENCODING)),
+              threshold);
+    }
+  }
+
+  /**
+   * called when the body reaches the compression threshold
+   *
+   * @param encoding encoding accepted by the client
+   * @return true if the body is to be encoded
+   */
+  boolean startEncoding(String encoding) {
+    if (status == 204
+        || status == 206
+        || status == 304
+        || headers.contains(CONTENT_ENCODING)
+        || !BarefootContentType.isCompressible(getContentTypeHeader())) {
+      return false;
+    }
+
+    varyOnEncoding();
+    headers.set(CONTENT_ENCODING, encoding);
+    unencodedLengthHeader = headers.get(CONTENT_LENGTH);
+    unencodedContentLength = contentLength;
+    headers.remove(CONTENT_LENGTH);
+    contentLength = -1L;
+    return true;
+  }
+
+  /** undoes {@link #startEncoding} when the body is discarded, the encoding is chosen again */
+  void stopEncoding() {
+    headers.remove(CONTENT_ENCODING);
+    if (unencodedLengthHeader != null) {
+      headers.set(CONTENT_LENGTH, unencodedLengthHeader);
+    }
+    contentLength = unencodedContentLength;
+    unencodedLengthHeader = null;
+    unencodedContentLength = -1L;
+  }
+
+  /** a compressible body depends on Accept-Encoding whether or not it was compressed */
+  void varyOnEncoding() {
+    if (!BarefootContentType.isCompressible(getContentTypeHeader())) {
+      return;
+    }
+
+    for (String value : headers.getAll(VARY)) {
+      for (String name : value.split(",")) {
+        name = name.trim();
+        if ("*".equals(name) || ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+          return;
+        }
+      }
+    }
+
+    headers.add(VARY, ACCEPT_ENCODING);
+  }
+
+  private String getContentTypeHeader() {
+    String type = headers.get("Content-Type");
+    return type == null ? contentType : type;
+  }
+
+  /**
+   * completes a buffered body once the servlet has returned, text held by the writer is encoded and
+   * any compression is finished
+   *
+   * @throws IOException on write failure
+   */
+  public void finish() throws IOException {
+    if (bufferWriter != null) {
+      bufferWriter.flush();
+    }
+    if (compression != null) {
+      compression.finish();
+    }
+  }
+
+  /** hashes the body of a buffered GET as it is written, giving it a weak ETag */
+  public void hashBody() {
+    if (buffer != null && request != null && "GET".equals(request.method)) {
+      buffer.setChecksum(new CRC32C());
+    }
+  }
+
+  /**
+   * sets the ETag of a hashed body, then answers If-None-Match or If-Modified-Since with 304 when
+   * the client's copy is current. Only a buffered response can drop its body.
+   *
+   * @return true if the response is now 304 Not Modified
+   */
+  public boolean applyConditional() {
+    if (buffer == null
+        || request == null
+        || status != 200
+        || !("GET".equals(request.method) || "HEAD".equals(request.method))) {
+      return false;
+    }
+
+    Checksum checksum = buffer.getChecksum();
+
+    if (checksum != null && !headers.contains(ETAG)) {
+      headers.set(
+          ETAG,
+          "W/\""
+              + Long.toHexString(buffer.size())
+              + "-"
+              + Long.toHexString(checksum.getValue())
+              + "\"");
+    }
+
+    boolean notModified;
+    List<String> ifNoneMatch = request.headers.getAll("If-None-Match");
+
+    if (!ifNoneMatch.isEmpty()) {
+      notModified = matchesETag(ifNoneMatch, headers.get(ETAG));
+    } else {
+      notModified =
+          isNotModifiedSince(
+              headers.get(LAST_MODIFIED),
+              request.headers.get(BarefootRequestHeaders.IF_MODIFIED_SINCE));
+    }
+
+    if (notModified) {
+      status = 304;
+      contentLength = -1L;
+      headers.remove(CONTENT_LENGTH);
+      buffer.reset();
+    }
+
+    return notModified;
+  }
+
+  /* weak comparison, W/ prefixes are ignored */
+  private static boolean matchesETag(List<String> ifNoneMatch, String etag) {
+    if (etag == null) {
+      return false;
+    }
+
+    String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+
+    for (String value : ifNoneMatch) {
+      for (String tag : value.split(",")) {
+        tag = tag.trim();
+        if ("*".equals(tag)) {
+          return true;
+        }
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals(opaque)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean isNotModifiedSince(String lastModified, String ifModifiedSince) {
+    if (lastModified == null || ifModifiedSince == null) {
+      return false;
+    }
+
+    try {
+      return BarefootDateCodec.parse(lastModified) <= BarefootDateCodec.parse(ifModifiedSince);
+    } catch (IllegalArgumentException ex) {
+      return false;
+    }
+  }
+
   public abstract List<String> getSetCookieHeaders();
 
   public abstract static class Builder {
     protected Supplier<OutputStream> outputStream;
     protected Supplier<PrintWriter> writer;
     protected AbstractServletRequest request;
+    protected ResponseBuffer buffer;
 
     public abstract Builder outputStream(Supplier<OutputStream> os);
 
@@ -293,6 +565,17 @@ public abstract class AbstractServletResponse {
 
     public abstract Builder request(AbstractServletRequest req);
 
+    /**
+     * buffers the whole response, used in preference to the stream and writer suppliers
+     *
+     * @param b buffer
+     * @return this
+     */
+    public Builder buffer(ResponseBuffer b) {
+      buffer = b;
+      return this;
+    }
+
     public abstract AbstractServletResponse build();
   }
 }
@@ -21,33 +21,154 @@
 
 package net.sf.barefoot.context;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import net.sf.barefoot.util.IteratorEnumeration;
 
-/** basic servlet session */
+/**
+ * basic servlet session, a view for one request of state that may be shared with others. The view
+ * tracks which attributes the request set or removed, and which of the values it found were
+ * modified in place, so only the changes need to be persisted.
+ */
 public abstract class AbstractServletSession {
-  final long createdTime, lastAccessedTime;
-  protected int maxInactiveInterval;
-  String id;
+  private static final int IMMUTABLE = 0, CONTENT_HASH = 1, IDENTITY_HASH = 2;
+  /* how a change to a value can be seen, values without their own hashCode are assumed changed */
+  private static final ClassValue<Integer> VALUE_KIND =
+      new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+          if (type == String.class
+              || type == Integer.class
+              || type == Long.class
+              || type == Double.class
+              || type == Float.class
+              || type == Short.class
+              || type == Byte.class
+              || type == Character.class
+              || type == Boolean.class
+              || type == BigInteger.class
+              || type == BigDecimal.class
+              || type.isEnum()) {
+            return IMMUTABLE;
+          }
+          try {
+            return type.getMethod("hashCode").getDeclaringClass() == Object.class
+                ? IDENTITY_HASH
+                : CONTENT_HASH;
+          } catch (NoSuchMethodException ex) {
+            return IDENTITY_HASH;
+          }
+        }
+      };
+
+  final long lastAccessedTime;
+  protected final BarefootSessionData data;
   protected boolean isNew;
-  protected final Map<String, Object> attr = new HashMap<>();
+  protected final Map<String, Object> attr;
   protected boolean invalid;
+  private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+  private final Map<String, Long> fingerprints;
+  private boolean intervalChanged;
+  private String previousId;
 
   public AbstractServletSession(long ct, long at, boolean in, String i, int mii) {
-    createdTime = ct;
-    lastAccessedTime = at;
+    this(new BarefootSessionData(i, ct, at, mii, new ConcurrentHashMap<>()), in);
+  }
+
+  /**
+   * wraps session state for a request, the state is marked as accessed now
+   *
+   * @param d session state
+   * @param in true if created by this request
+   */
+  public AbstractServletSession(BarefootSessionData d, boolean in) {
+    data = d;
+    lastAccessedTime = d.getLastAccessedTime();
     isNew = in;
-    id = i;
-    maxInactiveInterval = mii;
+    attr = d.getAttributes();
+    if (in) {
+      fingerprints = null;
+    } else {
+      d.setLastAccessedTime(System.currentTimeMillis());
+      fingerprints = new HashMap<>();
+      attr.forEach(
+          (name, value) -> {
+            if (VALUE_KIND.get(value.getClass()) == CONTENT_HASH) {
+              fingerprints.put(name, fingerprint(value));
+            }
+          });
+    }
+  }
+
+  /* size and hash of a value, either changes when most collections and beans are modified */
+  private static long fingerprint(Object value) {
+    int size =
+        value instanceof Collection
+            ? ((Collection<?>) value).size()
+            : value instanceof Map ? ((Map<?, ?>) value).size() : 0;
+    return ((long) size << 32) | (value.hashCode() & 0xffffffffL);
+  }
+
+  /**
+   * records that the request set or removed an attribute
+   *
+   * @param name attribute name
+   */
+  protected void attributeChanged(String name) {
+    dirty.add(name);
+  }
+
+  void idChanged(String oldId) {
+    if (previousId == null) {
+      previousId = oldId;
+    }
+  }
+
+  /**
+   * what this request changed in the session, attributes found at the start are compared with their
+   * size and hash to catch changes made in place
+   *
+   * @return changes
+   */
+  public BarefootSessionDelta getChanges() {
+    Map<String, Object> changed = new HashMap<>();
+    Set<String> removed = new HashSet<>();
+
+    for (String name : dirty) {
+      Object value = attr.get(name);
+      if (value == null) {
+        removed.add(name);
+      } else {
+        changed.put(name, value);
+      }
+    }
+
+    if (fingerprints != null && !invalid) {
+      fingerprints.forEach(
+          (name, fingerprint) -> {
+            Object value = attr.get(name);
+            if (value != null && !changed.containsKey(name) && fingerprint(value) != fingerprint) {
+              changed.put(name, value);
+            }
+          });
+    }
+
+    return new BarefootSessionDelta(
+        data, previousId, isNew, invalid, intervalChanged, changed, removed);
   }
 
   public long getCreationTime() {
     if (invalid) throw new IllegalStateException();
-    return createdTime;
+    return data.getCreationTime();
   }
 
   public long getLastAccessedTime() {
@@ -57,15 +178,18 @@ public abstract class AbstractServletSession {
 
   public String getId() {
     if (invalid) throw new IllegalStateException();
-    return id;
+    return data.getId();
   }
 
   public int getMaxInactiveInterval() {
-    return maxInactiveInterval;
+    return data.getMaxInactiveInterval();
   }
 
   public void setMaxInactiveInterval(int x) {
-    maxInactiveInterval = x;
+    if (x != data.getMaxInactiveInterval()) {
+      intervalChanged = true;
+      data.setMaxInactiveInterval(x);
+    }
   }
 
   public boolean isNew() {
@@ -86,7 +210,11 @@ public abstract class AbstractServletSession {
 
   public Object getAttribute(String name) {
     if (invalid) throw new IllegalStateException();
-    return attr.get(name);
+    Object value = attr.get(name);
+    if (value != null && VALUE_KIND.get(value.getClass()) == IDENTITY_HASH) {
+      dirty.add(name);
+    }
+    return value;
   }
 
   public Object getValue(String name) {
@@ -0,0 +1,185 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import net.sf.barefoot.util.ResponseBuffer;
+
+/**
+ * Holds the start of a response body until it reaches the threshold, then writes it to the buffer
+ * compressed if the client accepts an encoding and the content type compresses well. Bodies below
+ * the threshold are written as they are.
+ */
+final class BarefootCompressionStream extends OutputStream {
+  static final String GZIP = "gzip", DEFLATE = "deflate";
+  private static final int DEFLATE_BUFFER = 8192;
+  private final AbstractServletResponse response;
+  private final ResponseBuffer buffer;
+  private final String encoding;
+  private final byte[] held;
+  private int count;
+  private OutputStream out; // null until the threshold is reached
+  private boolean encoded; // the response was given a Content-Encoding by this stream
+
+  BarefootCompressionStream(
+      AbstractServletResponse resp, ResponseBuffer buf, String enc, int threshold) {
+    response = resp;
+    buffer = buf;
+    encoding = enc;
+    held = new byte[threshold];
+  }
+
+  /**
+   * chooses gzip, then deflate, from an Accept-Encoding header
+   *
+   * @param acceptEncoding header value, may be null
+   * @return encoding or null if neither is accepted
+   */
+  static String negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    boolean gzip = false, gzipListed = false, deflate = false, any = false;
+
+    for (String item : acceptEncoding.split(",")) {
+      int semi = item.indexOf(';');
+      String name = (semi < 0 ? item : item.substring(0, semi)).trim().toLowerCase(Locale.ROOT);
+      boolean accepted = semi < 0 || !isZeroQuality(item.substring(semi + 1));
+
+      switch (name) {
+        case GZIP:
+        case "x-gzip":
+          gzip = accepted;
+          gzipListed = true;
+          break;
+        case DEFLATE:
+          deflate = accepted;
+          break;
+        case "*":
+          any = accepted;
+          break;
+        default:
+          break;
+      }
+    }
+
+    return gzip || (any && !gzipListed) ? GZIP : deflate ? DEFLATE : null;
+  }
+
+  private static boolean isZeroQuality(String params) {
+    for (String p : params.split(";")) {
+      p = p.trim();
+      if (p.startsWith("q=") || p.startsWith("Q=")) {
+        try {
+          return Double.parseDouble(p.substring(2).trim()) == 0;
+        } catch (NumberFormatException ex) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (out == null) {
+      if (count < held.length) {
+        held[count++] = (byte) b;
+        return;
+      }
+      start();
+    }
+    out.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (out == null) {
+      if (count + len <= held.length) {
+        System.arraycopy(b, off, held, count, len);
+        count += len;
+        return;
+      }
+      start();
+    }
+    out.write(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (out != null) {
+      out.flush();
+    }
+  }
+
+  /* the body is at least the threshold, compress it if the response allows */
+  private void start() throws IOException {
+    if (encoding != null && response.startEncoding(encoding)) {
+      encoded = true;
+      out =
+          GZIP.equals(encoding)
+              ? new GZIPOutputStream(buffer, DEFLATE_BUFFER)
+              : new DeflaterOutputStream(buffer);
+    } else {
+      response.varyOnEncoding();
+      out = buffer;
+    }
+    out.write(held, 0, count);
+    count = 0;
+  }
+
+  /**
+   * writes what is held and completes the encoding
+   *
+   * @throws IOException on write failure
+   */
+  void finish() throws IOException {
+    if (out == null) {
+      response.varyOnEncoding();
+      out = buffer;
+      buffer.write(held, 0, count);
+      count = 0;
+    } else if (out != buffer) {
+      out.close();
+      out = buffer;
+    }
+  }
+
+  /** discards the body so far, the encoding is chosen again */
+  void reset() throws IOException {
+    if (out != null && out != buffer) {
+      out.close();
+    }
+    if (encoded) {
+      encoded = false;
+      response.stopEncoding();
+    }
+    out = null;
+    count = 0;
+    buffer.reset();
+  }
+}
@@ -21,24 +21,62 @@
 
 package net.sf.barefoot.context;
 
+import java.util.Locale;
+
 /** parser for content-type */
 public class BarefootContentType {
 
-  static final String CHAR_SEQ_EQ = "charset=";
-
+  static final String CHAR_SEQ_EQ = "charset=", BOUNDARY_EQ = "boundary=";
   public static final String APPLICATION_JSON = "application/json",
-      APPLICATION_FORM_URLENCODED = "application/x-www-form-urlencoded";
+      APPLICATION_FORM_URLENCODED = "application/x-www-form-urlencoded",
+      MULTIPART_FORM_DATA = "multipart/form-data";
 
   public static String getCharsetFromContentType(String s) {
+    return getParameterFromContentType(s, CHAR_SEQ_EQ);
+  }
+
+  /**
+   * multipart boundary with any quotes removed
+   *
+   * @param s content type
+   * @return boundary or null if not given
+   */
+  public static String getBoundaryFromContentType(String s) {
+    String result = getParameterFromContentType(s, BOUNDARY_EQ);
+
+    if (result != null) {
+      result = result.trim();
+      if (result.length() > 1 && result.startsWith("\"") && result.endsWith("\"")) {
+        result = result.substring(1, result.length() - 1);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * checks for form data in parts
+   *
+   * @param contentType content type
+   * @return true if multipart/form-data
+   */
+  public static boolean isMultipartFormData(String contentType) {
+    int len = MULTIPART_FORM_DATA.length();
+    return contentType != null
+        && contentType.regionMatches(true, 0, MULTIPART_FORM_DATA, 0, len)
+        && (contentType.length() == len || contentType.charAt(len) == ';');
+  }
+
+  private static String getParameterFromContentType(String s, String nameEq) {
     String result = null;
 
     if (s != null) {
       int len = s.length();
       int off = 0;
-      int matchLen = CHAR_SEQ_EQ.length();
+      int matchLen = nameEq.length();
 
       while (off < len) {
-        if (s.regionMatches(true, off, CHAR_SEQ_EQ, 0, matchLen)) {
+        if (s.regionMatches(true, off, nameEq, 0, matchLen)) {
           int next = s.indexOf(';', off);
           result = next < 0 ? s.substring(off + matchLen) : s.substring(off + matchLen, next);
           break;
@@ -61,4 +99,28 @@ public class BarefootContentType {
             || APPLICATION_FORM_URLENCODED.equals(contentType)
             || contentType.startsWith("text/"));
   }
+
+  /**
+   * checks for text formats that are worth compressing
+   *
+   * @param contentType content type, parameters are ignored
+   * @return true for text, JSON, XML and JavaScript
+   */
+  public static boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+
+    int semi = contentType.indexOf(';');
+    String type =
+        (semi < 0 ? contentType : contentType.substring(0, semi)).trim().toLowerCase(Locale.ROOT);
+
+    return type.startsWith("text/")
+        || type.endsWith("+json")
+        || type.endsWith("+xml")
+        || APPLICATION_JSON.equals(type)
+        || APPLICATION_FORM_URLENCODED.equals(type)
+        || "application/xml".equals(type)
+        || "application/javascript".equals(type);
+  }
 }
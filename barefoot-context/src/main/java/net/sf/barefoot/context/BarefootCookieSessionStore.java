@@ -0,0 +1,278 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Session store that keeps nothing on the server. The encoded session is encrypted with AES-GCM and
+ * sent back to the client in the session cookie, split over several cookies when it is long. The
+ * cookie is only sent again when the session changed or its recorded access time is more than half
+ * way to expiry. The first key encrypts, the others are still accepted so keys can be rotated.
+ */
+public final class BarefootCookieSessionStore implements BarefootSessionStore {
+  /** characters of the encrypted session per cookie, within the 4096 bytes a browser keeps */
+  public static final int CHUNK_SIZE = 3800;
+  /** most cookies a session may be split over */
+  public static final int MAX_CHUNKS = 8;
+
+  private static final byte VERSION = 1;
+  private static final int NONCE_BYTES = 12, HEADER_BYTES = 2 + NONCE_BYTES, TAG_BITS = 128;
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+  private static final ThreadLocal<Cipher> CIPHER =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException ex) {
+              throw new RuntimeException(ex);
+            }
+          });
+
+  private final SecretKeySpec[] keys;
+  private final byte[] keyIds;
+  private final ClassLoader loader;
+
+  /**
+   * creates the store
+   *
+   * @param keyList AES keys in Base64, separated by commas or white space, the first is used to
+   *     encrypt
+   * @param cl class loader for serialised attributes
+   * @throws IllegalArgumentException if there are no keys or a key is not 128, 192 or 256 bits
+   */
+  public BarefootCookieSessionStore(String keyList, ClassLoader cl) {
+    List<SecretKeySpec> list = new ArrayList<>();
+
+    for (String key : keyList.split("[,\\s]+")) {
+      if (!key.isEmpty()) {
+        byte[] bytes = Base64.getDecoder().decode(key.replace('-', '+').replace('_', '/'));
+        if (bytes.length != 16 && bytes.length != 24 && bytes.length != 32) {
+          throw new IllegalArgumentException("session key must be 128, 192 or 256 bits");
+        }
+        list.add(new SecretKeySpec(bytes, "AES"));
+      }
+    }
+
+    if (list.isEmpty()) {
+      throw new IllegalArgumentException("no session keys");
+    }
+
+    keys = list.toArray(new SecretKeySpec[0]);
+    keyIds = new byte[keys.length];
+    loader = cl;
+
+    try {
+      for (int i = 0; i < keys.length; i++) {
+        keyIds[i] = MessageDigest.getInstance("SHA-256").digest(keys[i].getEncoded())[0];
+      }
+    } catch (GeneralSecurityException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /* sessions are only found through the request */
+  @Override
+  public BarefootSessionData find(String id, long now) {
+    return null;
+  }
+
+  @Override
+  public void save(BarefootSessionData session) {}
+
+  @Override
+  public void remove(String id) {}
+
+  @Override
+  public BarefootSessionData find(AbstractServletRequest request, long now) {
+    String name = request.getSessionCookieName();
+    String value = request.getCookieValue(name);
+
+    if (value == null) {
+      return null;
+    }
+
+    StringBuilder sb = null;
+
+    for (int i = 1; i < MAX_CHUNKS; i++) {
+      String chunk = request.getCookieValue(chunkName(name, i));
+      if (chunk == null) {
+        break;
+      }
+      if (sb == null) {
+        sb = new StringBuilder(value);
+      }
+      sb.append(chunk);
+    }
+
+    try {
+      byte[] plain = decrypt(DECODER.decode(sb == null ? value : sb.toString()));
+
+      if (plain != null) {
+        BarefootSessionData session = BarefootSessionCodec.decode(plain, loader);
+        if (!session.isExpired(now)) {
+          session.setSnapshot(plain);
+          return session;
+        }
+      }
+    } catch (IllegalArgumentException ex) {
+      if (request.logger != null) {
+        request.log("session cookie discarded", ex);
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public String getRequestedSessionId(AbstractServletRequest request) {
+    BarefootSessionData session = request.findSession();
+    return session == null ? null : session.getId();
+  }
+
+  @Override
+  public void commit(
+      AbstractServletRequest request,
+      AbstractServletResponse response,
+      BarefootSessionData session) {
+    String name = request.getSessionCookieName();
+    int sent = 0;
+
+    while (sent < MAX_CHUNKS && request.getCookieValue(chunkName(name, sent)) != null) {
+      sent++;
+    }
+
+    int chunks = 0;
+
+    if (session != null) {
+      byte[] plain = BarefootSessionCodec.encode(session);
+
+      if (!changed(session, plain)) {
+        return;
+      }
+
+      String value = ENCODER.encodeToString(encrypt(plain));
+      chunks = (value.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+      if (chunks > MAX_CHUNKS) {
+        throw new IllegalStateException(
+            "session of " + value.length() + " characters is too large for cookies");
+      }
+
+      for (int i = 0; i < chunks; i++) {
+        request.setSessionCookie(
+            response,
+            chunkName(name, i),
+            value.substring(i * CHUNK_SIZE, Math.min(value.length(), (i + 1) * CHUNK_SIZE)));
+      }
+
+      session.setSnapshot(plain);
+    }
+
+    for (int i = chunks; i < sent; i++) {
+      request.setSessionCookie(response, chunkName(name, i), null);
+    }
+  }
+
+  /* the access time alone changing is only worth a cookie once half the timeout has gone */
+  private static boolean changed(BarefootSessionData session, byte[] plain) {
+    Object snapshot = session.getSnapshot();
+
+    if (!(snapshot instanceof byte[])) {
+      return true;
+    }
+
+    byte[] previous = (byte[]) snapshot;
+    int mii = session.getMaxInactiveInterval();
+
+    if (mii > 0
+        && session.getLastAccessedTime() - BarefootSessionCodec.lastAccessedTime(previous)
+            > mii * 500L) {
+      return true;
+    }
+
+    int body = BarefootSessionCodec.BODY;
+
+    return !Arrays.equals(previous, body, previous.length, plain, body, plain.length);
+  }
+
+  private static String chunkName(String name, int i) {
+    return i == 0 ? name : name + "_" + i;
+  }
+
+  private byte[] encrypt(byte[] plain) {
+    Cipher cipher = CIPHER.get();
+    byte[] header = new byte[HEADER_BYTES];
+    header[0] = VERSION;
+    header[1] = keyIds[0];
+    byte[] nonce = new byte[NONCE_BYTES];
+    BarefootSessionIdGenerator.nextBytes(nonce);
+    System.arraycopy(nonce, 0, header, 2, NONCE_BYTES);
+
+    try {
+      cipher.init(Cipher.ENCRYPT_MODE, keys[0], new GCMParameterSpec(TAG_BITS, nonce));
+      cipher.updateAAD(header, 0, 2);
+      byte[] result = new byte[HEADER_BYTES + cipher.getOutputSize(plain.length)];
+      System.arraycopy(header, 0, result, 0, HEADER_BYTES);
+      cipher.doFinal(plain, 0, plain.length, result, HEADER_BYTES);
+      return result;
+    } catch (GeneralSecurityException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /* tries each key with the id in the header, null if none authenticates the data */
+  private byte[] decrypt(byte[] data) {
+    if (data.length < HEADER_BYTES + TAG_BITS / 8 || data[0] != VERSION) {
+      return null;
+    }
+
+    Cipher cipher = CIPHER.get();
+
+    for (int i = 0; i < keys.length; i++) {
+      if (keyIds[i] == data[1]) {
+        try {
+          cipher.init(
+              Cipher.DECRYPT_MODE, keys[i], new GCMParameterSpec(TAG_BITS, data, 2, NONCE_BYTES));
+          cipher.updateAAD(data, 0, 2);
+          return cipher.doFinal(data, HEADER_BYTES, data.length - HEADER_BYTES);
+        } catch (AEADBadTagException ex) {
+          continue;
+        } catch (GeneralSecurityException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Locale;
+
+/**
+ * HTTP dates as used by Date, Last-Modified and If-Modified-Since. Dates have a resolution of one
+ * second, so the last date formatted and the last date parsed are kept and reused while they
+ * repeat. RFC 1123 dates are written, RFC 850 and asctime dates are also read.
+ */
+public final class BarefootDateCodec {
+  private static final DateTimeFormatter RFC_850 =
+      new DateTimeFormatterBuilder()
+          .appendPattern("EEEE, dd-MMM-")
+          .appendValueReduced(ChronoField.YEAR, 2, 2, 1970)
+          .appendPattern(" HH:mm:ss 'GMT'")
+          .toFormatter(Locale.US)
+          .withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter ASCTIME =
+      DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US);
+  private static volatile Entry lastFormatted = new Entry(Long.MIN_VALUE, null);
+  private static volatile Entry lastParsed = new Entry(Long.MIN_VALUE, null);
+
+  private BarefootDateCodec() {}
+
+  /** a date and its text, replaced as a whole so readers never see half an update */
+  private static class Entry {
+    final long seconds;
+    final String text;
+
+    Entry(long s, String t) {
+      seconds = s;
+      text = t;
+    }
+  }
+
+  /**
+   * writes a date in RFC 1123 form
+   *
+   * @param millis milliseconds since the epoch
+   * @return date text
+   */
+  public static String format(long millis) {
+    long seconds = Math.floorDiv(millis, 1000L);
+    Entry entry = lastFormatted;
+
+    if (entry.seconds != seconds) {
+      ZonedDateTime z = ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneOffset.UTC);
+      entry = new Entry(seconds, DateTimeFormatter.RFC_1123_DATE_TIME.format(z));
+      lastFormatted = entry;
+    }
+
+    return entry.text;
+  }
+
+  /**
+   * reads a date in any of the forms allowed by HTTP/1.1
+   *
+   * @param text date text
+   * @return milliseconds since the epoch
+   * @throws IllegalArgumentException if the text is not a date
+   */
+  public static long parse(String text) {
+    Entry entry = lastParsed;
+
+    if (text.equals(entry.text)) {
+      return entry.seconds * 1000L;
+    }
+
+    long seconds;
+    String s = text.trim();
+    int comma = s.indexOf(',');
+
+    try {
+      if (comma < 0) {
+        seconds = LocalDateTime.parse(s, ASCTIME).toEpochSecond(ZoneOffset.UTC);
+      } else if (comma == 3) {
+        seconds = ZonedDateTime.parse(s, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+      } else {
+        seconds = ZonedDateTime.parse(s, RFC_850).toEpochSecond();
+      }
+    } catch (DateTimeParseException ex) {
+      throw new IllegalArgumentException(text, ex);
+    }
+
+    lastParsed = new Entry(seconds, text);
+
+    return seconds * 1000L;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sessions held in memory by a warm container. The sessions are spread over segments with a lock
+ * each, and each segment drops its least recently used session once full. Sessions that have been
+ * inactive for longer than their interval are dropped when found, or as the segment is written.
+ */
+public class BarefootMemorySessionStore implements BarefootSessionStore {
+  private static final int SEGMENTS = 16;
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  /**
+   * create store with a limit
+   *
+   * @param maxSessions most sessions held
+   */
+  public BarefootMemorySessionStore(int maxSessions) {
+    int max = Math.max(1, (maxSessions + SEGMENTS - 1) / SEGMENTS);
+
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(max);
+    }
+  }
+
+  /** segment in access order, the eldest entry is the least recently used */
+  private static final class Segment extends LinkedHashMap<String, BarefootSessionData> {
+    private static final long serialVersionUID = 1L;
+    final int max;
+
+    Segment(int m) {
+      super(16, 0.75f, true);
+      max = m;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, BarefootSessionData> eldest) {
+      return size() > max;
+    }
+  }
+
+  private Segment segmentFor(String id) {
+    int h = id.hashCode();
+    return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  @Override
+  public BarefootSessionData find(String id, long now) {
+    Segment segment = segmentFor(id);
+
+    synchronized (segment) {
+      BarefootSessionData session = segment.get(id);
+
+      if (session != null && session.isExpired(now)) {
+        segment.remove(id);
+        return null;
+      }
+
+      return session;
+    }
+  }
+
+  @Override
+  public void save(BarefootSessionData session) {
+    Segment segment = segmentFor(session.getId());
+    long now = System.currentTimeMillis();
+
+    synchronized (segment) {
+      segment.put(session.getId(), session);
+
+      Iterator<BarefootSessionData> it = segment.values().iterator();
+
+      while (it.hasNext()) {
+        BarefootSessionData eldest = it.next();
+        if (!eldest.isExpired(now)) {
+          break;
+        }
+        it.remove();
+      }
+    }
+  }
+
+  @Override
+  public void remove(String id) {
+    Segment segment = segmentFor(id);
+
+    synchronized (segment) {
+      segment.remove(id);
+    }
+  }
+
+  /**
+   * number of sessions held, including any expired ones not yet dropped
+   *
+   * @return count
+   */
+  public int size() {
+    int n = 0;
+
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        n += segment.size();
+      }
+    }
+
+    return n;
+  }
+}
@@ -0,0 +1,347 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads multipart/form-data in one pass. A part stays in memory up to the file size threshold and
+ * is then moved to a temporary file. The size limits are checked as the body is read, so an
+ * oversized request fails without being buffered.
+ */
+public class BarefootMultipartParser {
+  static final String TEMP_PREFIX = "barefoot";
+  private static final int BUFFER_SIZE = 16384, MAX_LINE = 8192;
+  private static final byte[] NO_BYTES = {};
+  private final Path location;
+  private final long maxFileSize, maxRequestSize;
+  private final int fileSizeThreshold;
+  private final Function<AbstractServletPart.Builder, ? extends AbstractServletPart> factory;
+
+  /**
+   * create parser from a multipart configuration
+   *
+   * @param loc directory for files, relative to the temporary directory
+   * @param maxFile largest part in bytes, negative for no limit
+   * @param maxRequest largest body in bytes, negative for no limit
+   * @param threshold parts larger than this are written to a file
+   * @param f creates the parts
+   */
+  public BarefootMultipartParser(
+      String loc,
+      long maxFile,
+      long maxRequest,
+      int threshold,
+      Function<AbstractServletPart.Builder, ? extends AbstractServletPart> f) {
+    Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+    location = loc == null || loc.isEmpty() ? tmp : tmp.resolve(loc);
+    maxFileSize = maxFile;
+    maxRequestSize = maxRequest;
+    fileSizeThreshold = Math.max(threshold, 0);
+    factory = f;
+  }
+
+  /**
+   * reads all the parts, any files are removed if the body cannot be read
+   *
+   * @param in body
+   * @param boundary boundary from the content type
+   * @param cs character set for part headers
+   * @return parts in the order received
+   * @throws IOException on read or malformed body
+   * @throws BarefootRequestException if a size limit is exceeded
+   */
+  public List<AbstractServletPart> parse(InputStream in, String boundary, Charset cs)
+      throws IOException {
+    List<AbstractServletPart> parts = new ArrayList<>();
+    PartReader reader = new PartReader(in, boundary);
+    PartContent content = null;
+
+    try {
+      reader.readPart(null);
+
+      while (reader.next()) {
+        AbstractServletPart.Builder builder = new AbstractServletPart.Builder();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        String line;
+
+        while (!(line = reader.readLine(cs)).isEmpty()) {
+          int colon = line.indexOf(':');
+          if (colon > 0) {
+            headers
+                .computeIfAbsent(
+                    line.substring(0, colon).trim().toLowerCase(), k -> new ArrayList<>(1))
+                .add(line.substring(colon + 1).trim());
+          }
+        }
+
+        List<String> disposition = headers.get("content-disposition");
+        if (disposition != null) {
+          parseDisposition(disposition.get(0), builder);
+        }
+        List<String> type = headers.get("content-type");
+        builder.contentType = type == null ? null : type.get(0);
+        builder.headers = headers;
+        builder.location = location;
+
+        content = new PartContent();
+        reader.readPart(content);
+        content.close();
+        builder.content = content.content;
+        builder.file = content.file;
+        builder.size = content.size;
+        content = null;
+
+        parts.add(factory.apply(builder));
+      }
+    } catch (IOException | RuntimeException ex) {
+      if (content != null) {
+        content.delete();
+      }
+      for (AbstractServletPart part : parts) {
+        part.release();
+      }
+      throw ex;
+    }
+
+    return parts;
+  }
+
+  /* name and filename from form-data; name="a"; filename="b" */
+  private static void parseDisposition(String s, AbstractServletPart.Builder builder) {
+    int i = s.indexOf(';'), len = s.length();
+
+    while (i >= 0 && i < len) {
+      i++;
+      while (i < len && Character.isWhitespace(s.charAt(i))) i++;
+      int eq = s.indexOf('=', i), semi = s.indexOf(';', i);
+      if (eq < 0 || (semi >= 0 && semi < eq)) {
+        i = semi;
+        continue;
+      }
+      String key = s.substring(i, eq).trim();
+      StringBuilder value = new StringBuilder();
+      i = eq + 1;
+      while (i < len && Character.isWhitespace(s.charAt(i))) i++;
+      if (i < len && s.charAt(i) == '"') {
+        for (i++; i < len && s.charAt(i) != '"'; i++) {
+          char c = s.charAt(i);
+          if (c == '\\' && i + 1 < len && (s.charAt(i + 1) == '"' || s.charAt(i + 1) == '\\')) {
+            c = s.charAt(++i);
+          }
+          value.append(c);
+        }
+        i = s.indexOf(';', i);
+      } else {
+        semi = s.indexOf(';', i);
+        value.append((semi < 0 ? s.substring(i) : s.substring(i, semi)).trim());
+        i = semi;
+      }
+      if ("name".equalsIgnoreCase(key)) {
+        builder.name = value.toString().trim();
+      } else if ("filename".equalsIgnoreCase(key)) {
+        builder.fileName = value.toString();
+      }
+    }
+  }
+
+  /** scans the body for delimiters */
+  private final class PartReader {
+    final InputStream in;
+    final byte[] delimiter, buf = new byte[BUFFER_SIZE];
+    int pos, lim;
+    long total;
+    boolean eof;
+
+    PartReader(InputStream is, String boundary) {
+      in = is;
+      delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+      // the first boundary need not follow a line break
+      buf[0] = '\r';
+      buf[1] = '\n';
+      lim = 2;
+    }
+
+    boolean fill() throws IOException {
+      if (eof) {
+        return false;
+      }
+      if (pos > 0) {
+        System.arraycopy(buf, pos, buf, 0, lim - pos);
+        lim -= pos;
+        pos = 0;
+      }
+      int n = in.read(buf, lim, buf.length - lim);
+      if (n < 0) {
+        eof = true;
+        return false;
+      }
+      total += n;
+      if (maxRequestSize >= 0 && total > maxRequestSize) {
+        throw new BarefootRequestException(
+            BarefootRequestException.PAYLOAD_TOO_LARGE,
+            "request exceeds " + maxRequestSize + " bytes");
+      }
+      lim += n;
+      return true;
+    }
+
+    /* copies content up to the next delimiter, the sink may be null */
+    void readPart(PartContent sink) throws IOException {
+      final byte first = delimiter[0];
+      final int dlen = delimiter.length;
+
+      while (true) {
+        int i = pos, last = lim - dlen;
+
+        for (; i <= last; i++) {
+          if (buf[i] == first && matches(i)) {
+            if (sink != null) sink.write(buf, pos, i - pos);
+            pos = i + dlen;
+            return;
+          }
+        }
+
+        // nothing before i can start a delimiter
+        if (i > pos) {
+          if (sink != null) sink.write(buf, pos, i - pos);
+          pos = i;
+        }
+
+        if (!fill()) {
+          throw new IOException("multipart body ends without a closing boundary");
+        }
+      }
+    }
+
+    boolean matches(int off) {
+      for (int j = 1; j < delimiter.length; j++) {
+        if (buf[off + j] != delimiter[j]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /* after a delimiter, either "--" for the end or the rest of the boundary line */
+    boolean next() throws IOException {
+      while (lim - pos < 2) {
+        if (!fill()) {
+          throw new IOException("multipart body ends without a closing boundary");
+        }
+      }
+      if (buf[pos] == '-' && buf[pos + 1] == '-') {
+        pos += 2;
+        return false;
+      }
+      readLine(StandardCharsets.ISO_8859_1);
+      return true;
+    }
+
+    String readLine(Charset cs) throws IOException {
+      int scanned = 0;
+
+      while (true) {
+        for (int i = pos + scanned; i + 1 < lim; i++) {
+          if (buf[i] == '\r' && buf[i + 1] == '\n') {
+            String line = new String(buf, pos, i - pos, cs);
+            pos = i + 2;
+            return line;
+          }
+        }
+        if (lim - pos >= MAX_LINE) {
+          throw new IOException("multipart header line too long");
+        }
+        scanned = Math.max(0, lim - 1 - pos);
+        if (!fill()) {
+          throw new IOException("multipart body ends within headers");
+        }
+      }
+    }
+  }
+
+  /** content of one part, in memory until it passes the threshold */
+  private final class PartContent {
+    byte[] content = NO_BYTES;
+    long size;
+    Path file;
+    OutputStream out;
+
+    void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      size += len;
+      if (maxFileSize >= 0 && size > maxFileSize) {
+        throw new BarefootRequestException(
+            BarefootRequestException.PAYLOAD_TOO_LARGE, "part exceeds " + maxFileSize + " bytes");
+      }
+      if (out == null && size <= fileSizeThreshold) {
+        int length = (int) size - len;
+        if (size > content.length) {
+          long grow = Math.max(size, Math.max(content.length * 2L, 256));
+          content = Arrays.copyOf(content, (int) Math.min(grow, fileSizeThreshold));
+        }
+        System.arraycopy(b, off, content, length, len);
+      } else {
+        if (out == null) {
+          Files.createDirectories(location);
+          file = Files.createTempFile(location, TEMP_PREFIX, ".part");
+          out = Files.newOutputStream(file);
+          out.write(content, 0, (int) (size - len));
+          content = null;
+        }
+        out.write(b, off, len);
+      }
+    }
+
+    void close() throws IOException {
+      if (out != null) {
+        out.close();
+      }
+    }
+
+    void delete() {
+      try {
+        close();
+        if (file != null) {
+          Files.deleteIfExists(file);
+        }
+      } catch (IOException ex) {
+        // already failing
+      }
+    }
+  }
+}
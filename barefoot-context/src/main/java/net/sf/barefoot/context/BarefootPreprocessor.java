@@ -21,16 +21,53 @@
 
 package net.sf.barefoot.context;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import net.sf.barefoot.util.ReaderInputStream;
 
-/** Decoder for input formats */
+/**
+ * Decoder for input formats. Form data is decoded from bytes in one pass, percent escapes and plus
+ * signs are decoded as the bytes are read and each name and value becomes a string once, in the
+ * declared character set. Names are shared between requests through a small cache. The number of
+ * parameters and the size of the form are limited.
+ */
 public class BarefootPreprocessor {
+  /** default limit on the number of form parameters */
+  public static final int MAX_PARAMETERS = 10000;
+  /** default limit on the size of form data in bytes */
+  public static final long MAX_FORM_SIZE = 2L << 20;
+
+  private static final int NAME_CACHE_SIZE = 512;
+  private final int maxParameters;
+  private final long maxFormSize;
+  private final NameEntry[] names = new NameEntry[NAME_CACHE_SIZE];
+
+  /**
+   * create preprocessor with limits
+   *
+   * @param maxParams most parameters in a form
+   * @param maxSize most bytes in a form
+   */
+  public BarefootPreprocessor(int maxParams, long maxSize) {
+    maxParameters = maxParams;
+    maxFormSize = maxSize;
+  }
+
+  /** create preprocessor with the default limits */
+  public BarefootPreprocessor() {
+    this(MAX_PARAMETERS, MAX_FORM_SIZE);
+  }
+
   /**
    * read xform data from reader
    *
@@ -41,44 +78,207 @@ public class BarefootPreprocessor {
    */
   public void processApplicationFormUrlEncoded(
       Reader reader, Map<String, List<String>> params, Charset cs) throws IOException {
-    StringBuilder nameBuilder = null, valueBuilder = null;
-    String charset = cs.name();
+    Charset encoding = isAsciiCompatible(cs) ? cs : StandardCharsets.UTF_8;
+    decode(
+        new ReaderInputStream(reader, encoding),
+        encoding,
+        (name, value) -> params.computeIfAbsent(name, k -> new ArrayList<>()).add(value));
+  }
 
-    while (true) {
-      int c = reader.read();
-
-      if (c == -1 || c == '&') {
-        if (nameBuilder != null) {
-          String name = URLDecoder.decode(nameBuilder.toString(), charset);
-          String value =
-              valueBuilder == null ? null : URLDecoder.decode(valueBuilder.toString(), charset);
-          List<String> list = params.get(name);
-          if (list == null) {
-            list = new ArrayList<>();
-            params.put(name, list);
+  /**
+   * read xform data from bytes, values are appended to those already in the map
+   *
+   * @param in input
+   * @param params parameters
+   * @param cs character set of the form
+   * @throws IOException on read
+   * @throws BarefootRequestException if the form exceeds the limits
+   */
+  public void decodeApplicationFormUrlEncoded(
+      InputStream in, Map<String, String[]> params, Charset cs) throws IOException {
+    if (!isAsciiCompatible(cs)) {
+      in = new ReaderInputStream(new InputStreamReader(in, cs), StandardCharsets.UTF_8);
+      cs = StandardCharsets.UTF_8;
+    }
+
+    decode(
+        in,
+        cs,
+        (name, value) -> {
+          String[] values = params.get(name);
+          if (values == null) {
+            values = new String[] {value};
+          } else {
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = value;
           }
-          list.add(value);
+          params.put(name, values);
+        });
+  }
+
+  /**
+   * read parameters from a query string, escapes are decoded as UTF-8
+   *
+   * @param qs query string without the leading '?'
+   * @param params parameters, values are appended to those already in the map
+   * @throws IOException never for a string
+   * @throws BarefootRequestException if the query string exceeds the limits
+   */
+  public void decodeQueryString(String qs, Map<String, String[]> params) throws IOException {
+    if (qs != null && !qs.isEmpty()) {
+      decodeApplicationFormUrlEncoded(
+          new ByteArrayInputStream(qs.getBytes(StandardCharsets.UTF_8)),
+          params,
+          StandardCharsets.UTF_8);
+    }
+  }
+
+  private void decode(InputStream in, Charset cs, BiConsumer<String, String> params)
+      throws IOException {
+    byte[] chunk = new byte[4096];
+    byte[] token = new byte[256];
+    int tokenLength = 0, nameLength = -1, escape = 0, escaped = 0, count = 0;
+    boolean hasName = false;
+    long size = 0;
+
+    while (true) {
+      int n = in.read(chunk);
+      boolean end = n < 0;
+
+      if (n > 0) {
+        size += n;
+        if (size > maxFormSize) {
+          throw new BarefootRequestException(
+              BarefootRequestException.PAYLOAD_TOO_LARGE, "form exceeds " + maxFormSize + " bytes");
         }
-        if (c == -1) break;
-        nameBuilder = null;
-        valueBuilder = null;
-      } else {
-        if (c == '=' && valueBuilder == null) {
-          valueBuilder = new StringBuilder();
+      }
+
+      for (int i = 0, limit = end ? 1 : n; i < limit; i++) {
+        int b = end ? '&' : chunk[i] & 0xFF;
+
+        if (escape > 0) {
+          int digit = end ? -1 : Character.digit(b, 16);
+          if (digit < 0) {
+            throw new IllegalArgumentException("invalid escape in form data");
+          }
+          escaped = (escaped << 4) | digit;
+          if (--escape > 0) {
+            continue;
+          }
+          b = escaped;
         } else {
-          if (valueBuilder != null) {
-            valueBuilder.append((char) c);
-          } else {
-            if (nameBuilder == null) {
-              nameBuilder = new StringBuilder();
-            }
-            nameBuilder.append((char) c);
+          switch (b) {
+            case '&':
+              if (hasName) {
+                if (++count > maxParameters) {
+                  throw new BarefootRequestException(
+                      BarefootRequestException.PAYLOAD_TOO_LARGE,
+                      "form exceeds " + maxParameters + " parameters");
+                }
+                String name = name(token, nameLength < 0 ? tokenLength : nameLength, cs);
+                String value =
+                    nameLength < 0
+                        ? null
+                        : new String(token, nameLength, tokenLength - nameLength, cs);
+                params.accept(name, value);
+              }
+              tokenLength = 0;
+              nameLength = -1;
+              hasName = false;
+              continue;
+            case '=':
+              if (nameLength < 0) {
+                nameLength = tokenLength;
+                continue;
+              }
+              break;
+            case '+':
+              b = ' ';
+              break;
+            case '%':
+              escape = 2;
+              escaped = 0;
+              continue;
+            default:
+              break;
           }
         }
+
+        if (tokenLength == token.length) {
+          token = Arrays.copyOf(token, token.length * 2);
+        }
+
+        token[tokenLength++] = (byte) b;
+
+        if (nameLength < 0) {
+          hasName = true;
+        }
+      }
+
+      if (end) {
+        break;
       }
     }
   }
 
+  /* names are looked up by their decoded bytes so repeated names are not decoded again */
+  private String name(byte[] b, int len, Charset cs) {
+    int hash = 1;
+
+    for (int i = 0; i < len; i++) {
+      hash = 31 * hash + b[i];
+    }
+
+    int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+    NameEntry entry = names[slot];
+
+    if (entry != null
+        && entry.charset.equals(cs)
+        && Arrays.equals(entry.bytes, 0, entry.bytes.length, b, 0, len)) {
+      return entry.name;
+    }
+
+    String name = new String(b, 0, len, cs);
+    names[slot] = new NameEntry(Arrays.copyOf(b, len), cs, name);
+    return name;
+  }
+
+  private Charset asciiCompatible;
+
+  private boolean isAsciiCompatible(Charset cs) {
+    if (cs == asciiCompatible
+        || cs == StandardCharsets.UTF_8
+        || cs == StandardCharsets.ISO_8859_1
+        || cs == StandardCharsets.US_ASCII) {
+      return true;
+    }
+
+    boolean result =
+        cs.canEncode()
+            && Arrays.equals(ASCII, new String(ASCII, StandardCharsets.US_ASCII).getBytes(cs));
+
+    if (result) {
+      asciiCompatible = cs;
+    }
+
+    return result;
+  }
+
+  private static final byte[] ASCII =
+      "%&=+0123456789ABCDEFabcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final class NameEntry {
+    final byte[] bytes;
+    final Charset charset;
+    final String name;
+
+    NameEntry(byte[] b, Charset cs, String n) {
+      bytes = b;
+      charset = cs;
+      name = n;
+    }
+  }
+
   /**
    * checks if content type can be parsed
    *
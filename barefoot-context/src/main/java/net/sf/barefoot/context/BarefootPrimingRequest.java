@@ -0,0 +1,254 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic request run through the container while it starts to warm up class loading, JIT and
+ * lazy initialisation before the first real request.
+ *
+ * <p>Requests are read from a file of raw HTTP messages, each a request line, headers, a blank line
+ * and an optional body. Messages are separated by lines starting with "###", other lines starting
+ * with "#" before the request line are comments.
+ *
+ * <pre>
+ * GET /hello?name=world HTTP/1.1
+ * Accept: text/plain
+ *
+ * ###
+ * POST /echo
+ * Content-Type: application/json
+ *
+ * {"ping":true}
+ * </pre>
+ *
+ * The path is relative to the context path.
+ */
+public final class BarefootPrimingRequest {
+  static final String SEPARATOR = "###";
+  private final String method, path, queryString, body;
+  private final Map<String, List<String>> headers;
+
+  private BarefootPrimingRequest(Builder builder) {
+    method = builder.method;
+    path = builder.path;
+    queryString = builder.queryString;
+    body = builder.body;
+    headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * path within the context
+   *
+   * @return path starting with a slash
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * undecoded query string
+   *
+   * @return query string or null
+   */
+  public String getQueryString() {
+    return queryString;
+  }
+
+  /**
+   * headers keyed by lower case name
+   *
+   * @return headers in the order they were given
+   */
+  public Map<String, List<String>> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * first value of a header
+   *
+   * @param name header name, any case
+   * @return value or null
+   */
+  public String getHeader(String name) {
+    List<String> values = headers.get(name.toLowerCase());
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  /**
+   * decoded query parameters
+   *
+   * @return parameters in the order they were given
+   */
+  public Map<String, List<String>> getQueryParameters() {
+    Map<String, List<String>> result = new LinkedHashMap<>();
+
+    if (queryString != null && !queryString.isEmpty()) {
+      try {
+        for (String nv : queryString.split("&")) {
+          if (nv.isEmpty()) continue;
+          int i = nv.indexOf('=');
+          String n =
+              URLDecoder.decode(i < 0 ? nv : nv.substring(0, i), StandardCharsets.UTF_8.name());
+          String v =
+              i < 0 ? "" : URLDecoder.decode(nv.substring(i + 1), StandardCharsets.UTF_8.name());
+          result.computeIfAbsent(n, (k) -> new ArrayList<>()).add(v);
+        }
+      } catch (UnsupportedEncodingException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return queryString == null ? method + " " + path : method + " " + path + "?" + queryString;
+  }
+
+  /**
+   * reads requests from a file of raw HTTP messages
+   *
+   * @param reader source of the messages
+   * @return requests in file order
+   * @throws IOException on read error
+   * @throws IllegalArgumentException on a malformed request line or header
+   */
+  public static List<BarefootPrimingRequest> parse(BufferedReader reader) throws IOException {
+    List<BarefootPrimingRequest> result = new ArrayList<>();
+    String line = reader.readLine();
+
+    while (line != null) {
+      if (line.trim().isEmpty() || line.startsWith("#")) {
+        line = reader.readLine();
+        continue;
+      }
+
+      String[] requestLine = line.trim().split("\\s+");
+
+      if (requestLine.length < 2 || requestLine.length > 3) {
+        throw new IllegalArgumentException("bad request line: " + line);
+      }
+
+      Builder builder = new Builder().method(requestLine[0]).target(requestLine[1]);
+
+      while ((line = reader.readLine()) != null && !line.isEmpty() && !line.startsWith(SEPARATOR)) {
+        int i = line.indexOf(':');
+        if (i < 1) {
+          throw new IllegalArgumentException("bad header: " + line);
+        }
+        builder.header(line.substring(0, i).trim(), line.substring(i + 1).trim());
+      }
+
+      if (line != null && line.isEmpty()) {
+        StringBuilder sb = new StringBuilder();
+
+        while ((line = reader.readLine()) != null && !line.startsWith(SEPARATOR)) {
+          sb.append(line).append('\n');
+        }
+
+        int len = sb.length();
+
+        while (len > 0 && sb.charAt(len - 1) == '\n') {
+          len--;
+        }
+
+        if (len > 0) {
+          builder.body(sb.substring(0, len));
+        }
+      }
+
+      result.add(builder.build());
+    }
+
+    return result;
+  }
+
+  public static class Builder {
+    String method = "GET", path = "/", queryString, body;
+    final Map<String, List<String>> headers = new LinkedHashMap<>();
+
+    public Builder method(String m) {
+      method = m;
+      return this;
+    }
+
+    public Builder path(String p) {
+      path = p;
+      return this;
+    }
+
+    public Builder queryString(String q) {
+      queryString = q;
+      return this;
+    }
+
+    /**
+     * sets path and query string from a request target
+     *
+     * @param t path with optional query string
+     * @return this builder
+     */
+    public Builder target(String t) {
+      int i = t.indexOf('?');
+      path = i < 0 ? t : t.substring(0, i);
+      queryString = i < 0 ? null : t.substring(i + 1);
+      return this;
+    }
+
+    public Builder header(String name, String value) {
+      headers.computeIfAbsent(name.toLowerCase(), (k) -> new ArrayList<>()).add(value);
+      return this;
+    }
+
+    public Builder body(String b) {
+      body = b;
+      return this;
+    }
+
+    public BarefootPrimingRequest build() {
+      if (!path.startsWith("/")) {
+        throw new IllegalArgumentException("path must start with a slash: " + path);
+      }
+      return new BarefootPrimingRequest(this);
+    }
+  }
+}
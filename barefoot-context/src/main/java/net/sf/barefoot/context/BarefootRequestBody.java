@@ -0,0 +1,295 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.function.Supplier;
+import net.sf.barefoot.util.ByteBufferInputStream;
+
+/**
+ * Request body held once as it arrived, as bytes or as text. Streams and readers read from it
+ * directly. Text is only encoded when it is read as bytes, Base64 is only decoded when the body is
+ * first read.
+ */
+public final class BarefootRequestBody {
+  private ByteBuffer bytes;
+  private Supplier<ByteBuffer> byteSource;
+  private final Charset bytesCharset;
+  private CharSequence text;
+  private Supplier<? extends CharSequence> textSource;
+  private final long knownLength;
+  private ByteBuffer encoded;
+  private Charset encodedCharset;
+  private long length = -2L; // -2 until computed for lengthCharset
+  private Charset lengthCharset;
+
+  private BarefootRequestBody(
+      ByteBuffer b, Supplier<ByteBuffer> bs, Charset cs, CharSequence t, long len) {
+    bytes = b;
+    byteSource = bs;
+    bytesCharset = cs;
+    text = t;
+    knownLength = len;
+  }
+
+  /**
+   * binary body
+   *
+   * @param b content
+   * @return body
+   */
+  public static BarefootRequestBody of(byte[] b) {
+    return of(b, 0, b.length, null);
+  }
+
+  /**
+   * body as a slice of an array
+   *
+   * @param b array
+   * @param off offset of the body
+   * @param len length of the body
+   * @param cs encoding if the bytes are text, null if binary
+   * @return body
+   */
+  public static BarefootRequestBody of(byte[] b, int off, int len, Charset cs) {
+    return new BarefootRequestBody(ByteBuffer.wrap(b, off, len).slice(), null, cs, null, len);
+  }
+
+  /**
+   * binary body from the remaining content of a buffer
+   *
+   * @param bb buffer, its position is not changed
+   * @return body
+   */
+  public static BarefootRequestBody of(ByteBuffer bb) {
+    ByteBuffer b = bb.slice();
+    return new BarefootRequestBody(b, null, null, null, b.remaining());
+  }
+
+  /**
+   * text body
+   *
+   * @param s content
+   * @return body
+   */
+  public static BarefootRequestBody of(CharSequence s) {
+    return new BarefootRequestBody(null, null, null, s, -1L);
+  }
+
+  /**
+   * text body that is produced when first read
+   *
+   * @param s supplies the content
+   * @return body
+   */
+  public static BarefootRequestBody ofText(Supplier<? extends CharSequence> s) {
+    BarefootRequestBody body = new BarefootRequestBody(null, null, null, null, -1L);
+    body.textSource = s;
+    return body;
+  }
+
+  /**
+   * binary body encoded as Base64 text held as bytes
+   *
+   * @param b array
+   * @param off offset of the Base64 text
+   * @param len length of the Base64 text
+   * @return body
+   */
+  public static BarefootRequestBody ofBase64(byte[] b, int off, int len) {
+    return new BarefootRequestBody(
+        null,
+        () -> Base64.getDecoder().decode(ByteBuffer.wrap(b, off, len)),
+        null,
+        null,
+        base64Length(len, len > 0 ? b[off + len - 1] : 0, len > 1 ? b[off + len - 2] : 0));
+  }
+
+  /**
+   * binary body encoded as Base64 text
+   *
+   * @param s Base64 text
+   * @return body
+   */
+  public static BarefootRequestBody ofBase64(CharSequence s) {
+    int len = s.length();
+    return new BarefootRequestBody(
+        null,
+        () -> ByteBuffer.wrap(Base64.getDecoder().decode(s.toString())),
+        null,
+        null,
+        base64Length(len, len > 0 ? s.charAt(len - 1) : 0, len > 1 ? s.charAt(len - 2) : 0));
+  }
+
+  private static long base64Length(int len, int last, int penultimate) {
+    if (len % 4 != 0) {
+      return -1L;
+    }
+    int padding = last == '=' ? penultimate == '=' ? 2 : 1 : 0;
+    return len / 4 * 3 - padding;
+  }
+
+  /**
+   * length of the body in bytes, computed once for the encoding
+   *
+   * @param cs encoding used when the body is text
+   * @return length, or -1 if the body is malformed Base64
+   */
+  public long getContentLength(Charset cs) {
+    if (length == -2L || !Objects.equals(cs, lengthCharset)) {
+      try {
+        length = computeContentLength(cs);
+      } catch (IllegalArgumentException ex) {
+        length = -1L;
+      }
+      lengthCharset = cs;
+    }
+
+    return length;
+  }
+
+  /**
+   * length of the body if it is known without reading it, for metrics
+   *
+   * @return length from the event or an earlier {@link #getContentLength}, or -1
+   */
+  public long getKnownContentLength() {
+    if (length != -2L) {
+      return length;
+    }
+    return text == null && textSource == null && bytesCharset == null ? knownLength : -1L;
+  }
+
+  private long computeContentLength(Charset cs) {
+    if (text == null && textSource == null) {
+      if (knownLength >= 0 && (bytesCharset == null || bytesCharset.equals(cs))) {
+        return knownLength;
+      }
+      return getBytes(cs).remaining();
+    }
+
+    if (StandardCharsets.UTF_8.equals(cs) && encoded == null) {
+      return utf8Length(getText());
+    }
+
+    return getBytes(cs).remaining();
+  }
+
+  /**
+   * reads the body as bytes
+   *
+   * @param cs encoding used when the body is text
+   * @return stream over the body
+   */
+  public InputStream getInputStream(Charset cs) {
+    ByteBuffer b = getBytes(cs);
+
+    if (b.hasArray()) {
+      return new ByteArrayInputStream(b.array(), b.arrayOffset() + b.position(), b.remaining());
+    }
+
+    return new ByteBufferInputStream(b);
+  }
+
+  /**
+   * reads the body as text
+   *
+   * @param cs encoding used when the body is bytes and the encoding is not otherwise known
+   * @return reader over the body
+   */
+  public Reader getReader(Charset cs) {
+    if (text != null || textSource != null) {
+      return new StringReader(getText().toString());
+    }
+
+    return new InputStreamReader(
+        getInputStream(bytesCharset), bytesCharset == null ? cs : bytesCharset);
+  }
+
+  private CharSequence getText() {
+    if (text == null) {
+      text = textSource.get();
+      textSource = null;
+    }
+    return text;
+  }
+
+  private ByteBuffer getBytes(Charset cs) {
+    if (text == null && textSource == null) {
+      if (bytes == null) {
+        bytes = byteSource.get();
+        byteSource = null;
+      }
+
+      if (bytesCharset == null || cs == null || bytesCharset.equals(cs)) {
+        return bytes.duplicate();
+      }
+
+      if (!cs.equals(encodedCharset)) {
+        encoded = cs.encode(bytesCharset.decode(bytes.duplicate()));
+        encodedCharset = cs;
+      }
+
+      return encoded.duplicate();
+    }
+
+    if (!cs.equals(encodedCharset)) {
+      encoded = cs.encode(CharBuffer.wrap(getText()));
+      encodedCharset = cs;
+    }
+
+    return encoded.duplicate();
+  }
+
+  private static long utf8Length(CharSequence s) {
+    int len = s.length();
+    long result = len;
+
+    for (int i = 0; i < len; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          result++;
+        } else if (!Character.isSurrogate(c)) {
+          result += 2;
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < len
+            && Character.isLowSurrogate(s.charAt(i + 1))) {
+          result += 2;
+          i++;
+        }
+      }
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+/**
+ * A request the container could not decode, such as a malformed form or one beyond the size limits.
+ * It is an IllegalStateException as the servlet specification requires for getParts, and dispatch
+ * answers it with its status when the response is not yet committed.
+ */
+public class BarefootRequestException extends IllegalStateException {
+  /** status for a malformed request */
+  public static final int BAD_REQUEST = 400;
+  /** status for a request beyond a size limit */
+  public static final int PAYLOAD_TOO_LARGE = 413;
+
+  private final int status;
+
+  public BarefootRequestException(int s, String message) {
+    super(message);
+    status = s;
+  }
+
+  public BarefootRequestException(int s, Throwable cause) {
+    super(cause.getMessage(), cause);
+    status = s;
+  }
+
+  /**
+   * status to answer the request with
+   *
+   * @return HTTP status code
+   */
+  public int getStatus() {
+    return status;
+  }
+}
@@ -0,0 +1,373 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Request headers in an open-addressed table. Names are compared without regard to ASCII case, so
+ * lookups do not lower-case the name. Common headers have fixed slots that can be read without a
+ * lookup. A header with one value holds the string itself rather than a list.
+ */
+public final class BarefootRequestHeaders {
+  public static final int HOST = 0,
+      CONTENT_TYPE = 1,
+      CONTENT_LENGTH = 2,
+      COOKIE = 3,
+      ACCEPT = 4,
+      ACCEPT_ENCODING = 5,
+      ACCEPT_LANGUAGE = 6,
+      AUTHORIZATION = 7,
+      USER_AGENT = 8,
+      IF_MODIFIED_SINCE = 9,
+      IF_NONE_MATCH = 10,
+      X_FORWARDED_FOR = 11,
+      X_FORWARDED_HOST = 12,
+      X_FORWARDED_PORT = 13,
+      X_FORWARDED_PROTO = 14,
+      X_FORWARDED_PREFIX = 15;
+
+  private static final String[] KNOWN = {
+    "host",
+    "content-type",
+    "content-length",
+    "cookie",
+    "accept",
+    "accept-encoding",
+    "accept-language",
+    "authorization",
+    "user-agent",
+    "if-modified-since",
+    "if-none-match",
+    "x-forwarded-for",
+    "x-forwarded-host",
+    "x-forwarded-port",
+    "x-forwarded-proto",
+    "x-forwarded-prefix"
+  };
+
+  /* known header index + 1 by hash, sized so that every known name is found on its first probe */
+  private static final byte[] KNOWN_TABLE;
+  private static final int KNOWN_MASK;
+
+  static {
+    int size = 32;
+    byte[] table = null;
+
+    while (table == null) {
+      table = new byte[size];
+      for (int i = 0; i < KNOWN.length; i++) {
+        int slot = hash(KNOWN[i]) & (size - 1);
+        if (table[slot] != 0) {
+          table = null;
+          size <<= 1;
+          break;
+        }
+        table[slot] = (byte) (i + 1);
+      }
+    }
+
+    KNOWN_TABLE = table;
+    KNOWN_MASK = size - 1;
+  }
+
+  private final Object[] known = new Object[KNOWN.length];
+  private String[] names = new String[16]; // other headers, open addressed
+  private Object[] values = new Object[16];
+  private int[] hashes = new int[16];
+  private int otherCount;
+  private String[] order = new String[16]; // lower-case names as first added
+  private int size;
+
+  /**
+   * adds a value, earlier values for the name are kept
+   *
+   * @param name header name in any case
+   * @param value value
+   */
+  public void add(String name, String value) {
+    int h = hash(name);
+    int k = knownIndex(name, h);
+
+    if (k >= 0) {
+      Object old = known[k];
+      if (old == null) {
+        addName(KNOWN[k]);
+      }
+      known[k] = append(old, value);
+    } else {
+      int slot = otherSlot(name, h);
+      if (names[slot] == null) {
+        if ((otherCount + 1) * 2 > names.length) {
+          grow();
+          slot = otherSlot(name, h);
+        }
+        names[slot] = name;
+        hashes[slot] = h;
+        otherCount++;
+        addName(toLowerCase(name));
+      }
+      values[slot] = append(values[slot], value);
+    }
+  }
+
+  /**
+   * adds each value in order
+   *
+   * @param name header name in any case
+   * @param list values
+   */
+  public void add(String name, Collection<String> list) {
+    for (String value : list) {
+      add(name, value);
+    }
+  }
+
+  /**
+   * first value of a header
+   *
+   * @param name header name in any case
+   * @return value or null if not present
+   */
+  public String get(String name) {
+    return first(lookup(name));
+  }
+
+  /**
+   * first value of a common header
+   *
+   * @param slot one of the header constants
+   * @return value or null if not present
+   */
+  public String get(int slot) {
+    return first(known[slot]);
+  }
+
+  /**
+   * all values of a header
+   *
+   * @param name header name in any case
+   * @return values, empty if not present
+   */
+  public List<String> getAll(String name) {
+    Object value = lookup(name);
+
+    if (value == null) {
+      return Collections.emptyList();
+    }
+
+    if (value instanceof String) {
+      return Collections.singletonList((String) value);
+    }
+
+    return Collections.unmodifiableList(Arrays.asList((String[]) value));
+  }
+
+  public boolean contains(String name) {
+    return lookup(name) != null;
+  }
+
+  /**
+   * number of distinct header names
+   *
+   * @return count
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * lower-case header names in the order they were first added
+   *
+   * @return names
+   */
+  public Iterator<String> names() {
+    return new Iterator<String>() {
+      int i;
+
+      @Override
+      public boolean hasNext() {
+        return i < size;
+      }
+
+      @Override
+      public String next() {
+        if (i >= size) {
+          throw new NoSuchElementException();
+        }
+        return order[i++];
+      }
+    };
+  }
+
+  /**
+   * copies headers from a map
+   *
+   * @param map headers, may be null
+   * @return table
+   */
+  public static BarefootRequestHeaders of(Map<String, ? extends Collection<String>> map) {
+    BarefootRequestHeaders result = new BarefootRequestHeaders();
+
+    if (map != null) {
+      for (Map.Entry<String, ? extends Collection<String>> e : map.entrySet()) {
+        if (e.getKey() != null && e.getValue() != null) {
+          result.add(e.getKey(), e.getValue());
+        }
+      }
+    }
+
+    return result;
+  }
+
+  private Object lookup(String name) {
+    int h = hash(name);
+    int k = knownIndex(name, h);
+
+    if (k >= 0) {
+      return known[k];
+    }
+
+    if (otherCount == 0) {
+      return null;
+    }
+
+    return values[otherSlot(name, h)];
+  }
+
+  private static int knownIndex(String name, int h) {
+    int k = KNOWN_TABLE[h & KNOWN_MASK] - 1;
+    return k >= 0 && equalsIgnoreCase(KNOWN[k], name) ? k : -1;
+  }
+
+  private int otherSlot(String name, int h) {
+    int mask = names.length - 1;
+    int slot = h & mask;
+
+    while (names[slot] != null && (hashes[slot] != h || !equalsIgnoreCase(names[slot], name))) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  private void grow() {
+    String[] oldNames = names;
+    Object[] oldValues = values;
+    int[] oldHashes = hashes;
+    int capacity = oldNames.length * 2;
+    names = new String[capacity];
+    values = new Object[capacity];
+    hashes = new int[capacity];
+
+    for (int i = 0; i < oldNames.length; i++) {
+      if (oldNames[i] != null) {
+        int slot = oldHashes[i] & (capacity - 1);
+        while (names[slot] != null) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        names[slot] = oldNames[i];
+        values[slot] = oldValues[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+  private void addName(String name) {
+    if (size == order.length) {
+      order = Arrays.copyOf(order, size * 2);
+    }
+    order[size++] = name;
+  }
+
+  private static Object append(Object old, String value) {
+    if (old == null) {
+      return value;
+    }
+
+    if (old instanceof String) {
+      return new String[] {(String) old, value};
+    }
+
+    String[] list = (String[]) old;
+    String[] grown = Arrays.copyOf(list, list.length + 1);
+    grown[list.length] = value;
+    return grown;
+  }
+
+  private static String first(Object value) {
+    return value == null || value instanceof String ? (String) value : ((String[]) value)[0];
+  }
+
+  /* hash of the lower-case name, computed without creating it */
+  static int hash(String s) {
+    int h = 0;
+
+    for (int i = 0, n = s.length(); i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      h = 31 * h + c;
+    }
+
+    return h ^ (h >>> 16);
+  }
+
+  static boolean equalsIgnoreCase(String a, String b) {
+    int n = a.length();
+
+    if (b.length() != n) {
+      return false;
+    }
+
+    for (int i = 0; i < n; i++) {
+      char x = a.charAt(i), y = b.charAt(i);
+      if (x != y) {
+        if (x >= 'A' && x <= 'Z') x += 'a' - 'A';
+        if (y >= 'A' && y <= 'Z') y += 'a' - 'A';
+        if (x != y) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private static String toLowerCase(String s) {
+    for (int i = 0, n = s.length(); i < n; i++) {
+      char c = s.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        return s.toLowerCase(Locale.ROOT);
+      }
+    }
+    return s;
+  }
+}
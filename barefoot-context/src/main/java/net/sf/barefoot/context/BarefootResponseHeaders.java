@@ -0,0 +1,235 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Response headers in insertion order. Names are compared without regard to ASCII case and keep the
+ * case they were first set with. A header with one value holds the string itself rather than a
+ * list. Responses rarely have more than a handful of headers, so lookups scan the hashes in order.
+ */
+public final class BarefootResponseHeaders {
+  /** receives each header value, in the order the headers were first set */
+  @FunctionalInterface
+  public interface Visitor {
+    void header(String name, String value);
+  }
+
+  private String[] names = new String[8];
+  private int[] hashes = new int[8];
+  private Object[] values = new Object[8]; // String or String[]
+  private int size;
+
+  /**
+   * replaces all values of a header
+   *
+   * @param name header name in any case
+   * @param value value, null removes the header
+   */
+  public void set(String name, String value) {
+    if (value == null) {
+      remove(name);
+      return;
+    }
+
+    int h = BarefootRequestHeaders.hash(name);
+    int i = indexOf(name, h);
+
+    if (i < 0) {
+      append(name, h, value);
+    } else {
+      values[i] = value;
+    }
+  }
+
+  /**
+   * adds a value, earlier values for the name are kept
+   *
+   * @param name header name in any case
+   * @param value value, null is ignored
+   */
+  public void add(String name, String value) {
+    if (value == null) {
+      return;
+    }
+
+    int h = BarefootRequestHeaders.hash(name);
+    int i = indexOf(name, h);
+
+    if (i < 0) {
+      append(name, h, value);
+    } else {
+      Object old = values[i];
+      if (old instanceof String) {
+        values[i] = new String[] {(String) old, value};
+      } else {
+        String[] list = (String[]) old;
+        String[] grown = Arrays.copyOf(list, list.length + 1);
+        grown[list.length] = value;
+        values[i] = grown;
+      }
+    }
+  }
+
+  /**
+   * removes all values of a header
+   *
+   * @param name header name in any case
+   */
+  public void remove(String name) {
+    int i = indexOf(name);
+
+    if (i >= 0) {
+      int tail = size - i - 1;
+      System.arraycopy(names, i + 1, names, i, tail);
+      System.arraycopy(hashes, i + 1, hashes, i, tail);
+      System.arraycopy(values, i + 1, values, i, tail);
+      size--;
+      names[size] = null;
+      values[size] = null;
+    }
+  }
+
+  /**
+   * first value of a header
+   *
+   * @param name header name in any case
+   * @return value or null if not present
+   */
+  public String get(String name) {
+    int i = indexOf(name);
+
+    if (i < 0) {
+      return null;
+    }
+
+    Object value = values[i];
+    return value instanceof String ? (String) value : ((String[]) value)[0];
+  }
+
+  /**
+   * all values of a header
+   *
+   * @param name header name in any case
+   * @return values, empty if not present
+   */
+  public List<String> getAll(String name) {
+    int i = indexOf(name);
+
+    if (i < 0) {
+      return Collections.emptyList();
+    }
+
+    Object value = values[i];
+
+    if (value instanceof String) {
+      return Collections.singletonList((String) value);
+    }
+
+    return Collections.unmodifiableList(Arrays.asList((String[]) value));
+  }
+
+  public boolean contains(String name) {
+    return indexOf(name) >= 0;
+  }
+
+  /**
+   * header names as first set, in order
+   *
+   * @return new list of names
+   */
+  public List<String> names() {
+    List<String> list = new ArrayList<>(size);
+
+    for (int i = 0; i < size; i++) {
+      list.add(names[i]);
+    }
+
+    return list;
+  }
+
+  /**
+   * number of distinct header names
+   *
+   * @return count
+   */
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    Arrays.fill(names, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+  }
+
+  /**
+   * visits every value of every header without copying
+   *
+   * @param visitor receives name and value pairs
+   */
+  public void forEach(Visitor visitor) {
+    for (int i = 0; i < size; i++) {
+      Object value = values[i];
+
+      if (value instanceof String) {
+        visitor.header(names[i], (String) value);
+      } else {
+        for (String s : (String[]) value) {
+          visitor.header(names[i], s);
+        }
+      }
+    }
+  }
+
+  private int indexOf(String name) {
+    return indexOf(name, BarefootRequestHeaders.hash(name));
+  }
+
+  private int indexOf(String name, int h) {
+    for (int i = 0; i < size; i++) {
+      if (hashes[i] == h && BarefootRequestHeaders.equalsIgnoreCase(names[i], name)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private void append(String name, int h, String value) {
+    if (size == names.length) {
+      int n = size * 2;
+      names = Arrays.copyOf(names, n);
+      hashes = Arrays.copyOf(hashes, n);
+      values = Arrays.copyOf(values, n);
+    }
+
+    names[size] = name;
+    hashes[size] = h;
+    values[size] = value;
+    size++;
+  }
+}
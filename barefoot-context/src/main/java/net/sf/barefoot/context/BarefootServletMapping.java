@@ -0,0 +1,425 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+package net.sf.barefoot.context;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Immutable index of url-patterns. The index is built once when the context starts and resolves a
+ * context relative path to a servlet in a single pass following the servlet specification
+ * precedence: exact match, longest path prefix, extension and then the default servlet.
+ *
+ * <p>As Barefoot always has, a plain servlet path such as "/api" also acts as a prefix for
+ * "/api/..." and the default "/" mapping reports an empty servlet path with the whole path as path
+ * info.
+ *
+ * <p>Patterns without a servlet, such as those of filters, take part in the index so that every
+ * distinct route knows the full set of patterns that match it. A chain is built for each route when
+ * the index is built and is returned with every match.
+ *
+ * @param <T> servlet registration type
+ * @param <C> chain type built for each route
+ */
+public final class BarefootServletMapping<T, C> {
+  static final int PREFIX = 0, EXTENSION = 1, DEFAULT = 2;
+  private final Map<String, Match<T, C>> exact;
+  private final Node<T, C> root;
+  private final String[] extensions;
+
+  private BarefootServletMapping(Builder<T, C> builder, BiFunction<T, Set<String>, C> chains) {
+    extensions = builder.extensions.toArray(new String[0]);
+    root = builder.root;
+
+    Map<Route<T, C>, Set<String>> patterns = new IdentityHashMap<>();
+    root.freeze(builder, extensions, new HashSet<>(), null, chains, patterns);
+
+    exact = new HashMap<>();
+
+    builder.exact.forEach(
+        (path, pattern) -> {
+          Match<T, C> match = resolve(path);
+          Set<String> set = new HashSet<>(patterns.get(match.route));
+          set.add(pattern);
+          T servlet;
+          String servletPath, pathInfo;
+
+          if (builder.exactServlets.containsKey(path)) {
+            servlet = builder.exactServlets.get(path);
+            set.remove("/");
+            servletPath = path;
+            pathInfo = null;
+          } else {
+            servlet = match.route.servlet;
+            servletPath = match.servletPath;
+            pathInfo = match.pathInfo;
+          }
+
+          exact.put(
+              path,
+              new Match<>(
+                  new Route<>(PREFIX, servlet, chains.apply(servlet, set)), servletPath, pathInfo));
+        });
+  }
+
+  /**
+   * Resolve a path to a servlet.
+   *
+   * @param path context relative path
+   * @return match holding servlet, servlet path, path info and chain
+   */
+  public Match<T, C> match(String path) {
+    Match<T, C> match = exact.get(path);
+
+    return match == null ? resolve(path) : match;
+  }
+
+  private Match<T, C> resolve(String path) {
+    final int len = path.length();
+    Node<T, C> node = root, deepest = root;
+    int end = root.servlet == null ? -1 : 0;
+
+    if (len > 0 && path.charAt(0) == '/') {
+      int off = 1;
+
+      while (off <= len) {
+        int next = path.indexOf('/', off);
+        if (next < 0) next = len;
+        node = node.child(path, off, next);
+        if (node == null) break;
+        deepest = node;
+        if (node.servlet != null) {
+          end = next;
+        }
+        off = next + 1;
+      }
+    }
+
+    Route<T, C> route = deepest.routes[matchExtension(path) + 1];
+
+    switch (route.kind) {
+      case PREFIX:
+        return new Match<>(
+            route,
+            end == 0 ? "" : path.substring(0, end),
+            end == 0 ? path : end < len ? path.substring(end) : null);
+      case EXTENSION:
+        return new Match<>(route, path, null);
+      default:
+        return new Match<>(route, "", path);
+    }
+  }
+
+  private int matchExtension(String path) {
+    if (extensions.length > 0) {
+      int slash = path.lastIndexOf('/');
+      int dot = path.lastIndexOf('.');
+
+      if (dot > slash) {
+        int off = dot + 1, len = path.length() - off;
+        for (int i = 0; i < extensions.length; i++) {
+          String ext = extensions[i];
+          if (ext.length() == len && path.regionMatches(off, ext, 0, len)) {
+            return i;
+          }
+        }
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * create an empty mapping
+   *
+   * @param <T> servlet registration type
+   * @param <C> chain type
+   * @return mapping that resolves nothing
+   */
+  public static <T, C> BarefootServletMapping<T, C> empty() {
+    return new Builder<T, C>().build();
+  }
+
+  /**
+   * create a mapping builder
+   *
+   * @param <T> servlet registration type
+   * @param <C> chain type
+   * @return new builder
+   */
+  public static <T, C> Builder<T, C> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Result of resolving a path.
+   *
+   * @param <T> servlet registration type
+   * @param <C> chain type
+   */
+  public static final class Match<T, C> {
+    private final Route<T, C> route;
+    private final String servletPath, pathInfo;
+
+    Match(Route<T, C> r, String sp, String pi) {
+      route = r;
+      servletPath = sp;
+      pathInfo = pi;
+    }
+
+    /**
+     * servlet selected for the path
+     *
+     * @return servlet or null if nothing matched
+     */
+    public T getServlet() {
+      return route.servlet;
+    }
+
+    public String getServletPath() {
+      return servletPath;
+    }
+
+    public String getPathInfo() {
+      return pathInfo;
+    }
+
+    /**
+     * chain built for the route when the mapping was built
+     *
+     * @return chain or null if built without chains
+     */
+    public C getChain() {
+      return route.chain;
+    }
+  }
+
+  /** a distinct outcome of resolving paths */
+  private static final class Route<T, C> {
+    final int kind;
+    final T servlet;
+    final C chain;
+
+    Route(int k, T s, C c) {
+      kind = k;
+      servlet = s;
+      chain = c;
+    }
+
+    /** the array only ever holds routes of the one mapping so the cast is safe */
+    @SuppressWarnings("unchecked")
+    static <T, C> Route<T, C>[] array(int length) {
+      return (Route<T, C>[]) new Route<?, ?>[length];
+    }
+  }
+
+  /** one segment of the path-prefix trie */
+  private static final class Node<T, C> {
+    final HashMap<String, Node<T, C>> building = new HashMap<>();
+    final Set<String> patterns = new HashSet<>();
+    String[] names;
+    Node<T, C>[] children;
+    Route<T, C>[] routes;
+    T servlet;
+    boolean wildcard;
+
+    /** the array only ever holds nodes of the one mapping so the cast is safe */
+    @SuppressWarnings("unchecked")
+    static <T, C> Node<T, C>[] array(int length) {
+      return (Node<T, C>[]) new Node<?, ?>[length];
+    }
+
+    Node<T, C> child(String path, int off, int end) {
+      final int len = end - off;
+      final String[] n = names;
+      for (int i = 0; i < n.length; i++) {
+        String name = n[i];
+        if (name.length() == len && path.regionMatches(off, name, 0, len)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    /** builds one route per extension plus one for none, then recurses */
+    void freeze(
+        Builder<T, C> builder,
+        String[] extensions,
+        Set<String> inherited,
+        T prefixServlet,
+        BiFunction<T, Set<String>, C> chains,
+        Map<Route<T, C>, Set<String>> routePatterns) {
+      Set<String> matched = new HashSet<>(inherited);
+      matched.addAll(patterns);
+
+      if (servlet != null) {
+        prefixServlet = servlet;
+      }
+
+      routes = Route.array(extensions.length + 1);
+
+      for (int i = 0; i < routes.length; i++) {
+        Set<String> set = new HashSet<>(matched);
+        int kind = DEFAULT;
+        T target = builder.defaultServlet;
+
+        if (i > 0) {
+          set.add("*." + extensions[i - 1]);
+        }
+
+        if (prefixServlet != null) {
+          kind = PREFIX;
+          target = prefixServlet;
+        } else if (i > 0 && builder.extensionServlets.containsKey(extensions[i - 1])) {
+          kind = EXTENSION;
+          target = builder.extensionServlets.get(extensions[i - 1]);
+        }
+
+        if (kind == DEFAULT && builder.hasDefault) {
+          set.add("/");
+        }
+
+        routes[i] = new Route<>(kind, target, chains.apply(target, set));
+        routePatterns.put(routes[i], set);
+      }
+
+      names = building.keySet().toArray(new String[0]);
+      children = Node.array(names.length);
+      for (int i = 0; i < names.length; i++) {
+        children[i] = building.get(names[i]);
+        children[i].freeze(builder, extensions, matched, prefixServlet, chains, routePatterns);
+      }
+      building.clear();
+      patterns.clear();
+    }
+  }
+
+  /**
+   * Collects url-patterns before building the index.
+   *
+   * @param <T> servlet registration type
+   * @param <C> chain type
+   */
+  public static final class Builder<T, C> {
+    final Map<String, String> exact = new LinkedHashMap<>();
+    final Map<String, T> exactServlets = new HashMap<>();
+    final Set<String> extensions = new HashSet<>();
+    final Map<String, T> extensionServlets = new HashMap<>();
+    final Node<T, C> root = new Node<>();
+    T defaultServlet;
+    boolean hasDefault;
+
+    Builder() {}
+
+    /**
+     * Add a url-pattern for a servlet
+     *
+     * @param pattern servlet url-pattern
+     * @param servlet target of the pattern
+     * @return this
+     */
+    public Builder<T, C> add(String pattern, T servlet) {
+      if (pattern.isEmpty()) {
+        exact.put("/", pattern);
+        exactServlets.put("/", servlet);
+      } else if ("/".equals(pattern)) {
+        hasDefault = true;
+        defaultServlet = servlet;
+      } else if (pattern.startsWith("*.")) {
+        extensions.add(pattern.substring(2));
+        extensionServlets.put(pattern.substring(2), servlet);
+      } else if (pattern.endsWith("/*")) {
+        Node<T, C> node = node(pattern.substring(0, pattern.length() - 2));
+        node.patterns.add(pattern);
+        node.servlet = servlet;
+        node.wildcard = true;
+      } else {
+        exact.put(pattern, pattern);
+        exactServlets.put(pattern, servlet);
+        Node<T, C> node = node(pattern);
+        if (!node.wildcard) {
+          node.servlet = servlet;
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Add a url-pattern that has no servlet, such as for a filter. A plain path is only an exact
+     * match and "/" only matches paths left to the default servlet.
+     *
+     * @param pattern url-pattern
+     * @return this
+     */
+    public Builder<T, C> add(String pattern) {
+      if (pattern.isEmpty()) {
+        exact.putIfAbsent("/", pattern);
+      } else if ("/".equals(pattern)) {
+        hasDefault = true;
+      } else if (pattern.startsWith("*.")) {
+        extensions.add(pattern.substring(2));
+      } else if (pattern.endsWith("/*")) {
+        node(pattern.substring(0, pattern.length() - 2)).patterns.add(pattern);
+      } else {
+        exact.putIfAbsent(pattern, pattern);
+      }
+      return this;
+    }
+
+    private Node<T, C> node(String path) {
+      Node<T, C> node = root;
+      int off = path.startsWith("/") ? 1 : 0, len = path.length();
+
+      while (off < len) {
+        int next = path.indexOf('/', off);
+        if (next < 0) next = len;
+        node = node.building.computeIfAbsent(path.substring(off, next), (k) -> new Node<>());
+        off = next + 1;
+      }
+
+      return node;
+    }
+
+    /**
+     * Creates the immutable index without chains
+     *
+     * @return servlet mapping
+     */
+    public BarefootServletMapping<T, C> build() {
+      return build((servlet, patterns) -> null);
+    }
+
+    /**
+     * Creates the immutable index, building a chain for each distinct route
+     *
+     * @param chains given the servlet and the url-patterns matching the route, creates the chain
+     * @return servlet mapping
+     */
+    public BarefootServletMapping<T, C> build(BiFunction<T, Set<String>, C> chains) {
+      return new BarefootServletMapping<>(this, chains);
+    }
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary form of a session. Strings, numbers, booleans and lists and maps of them are
+ * written as a tag and their value, anything else with Java serialisation. Attributes are written
+ * in name order so an unchanged session encodes to the same bytes.
+ */
+final class BarefootSessionCodec {
+  static final byte VERSION = 1;
+  /** offset of the id, everything before it is the version and the last access time */
+  static final int BODY = 9;
+
+  private static final int NULL = 0,
+      STRING = 1,
+      INTEGER = 2,
+      LONG = 3,
+      DOUBLE = 4,
+      TRUE = 5,
+      FALSE = 6,
+      ARRAY_LIST = 7,
+      HASH_MAP = 8,
+      LINKED_HASH_MAP = 9,
+      SERIALIZED = 10;
+
+  private BarefootSessionCodec() {}
+
+  /**
+   * writes a session
+   *
+   * @param session session state
+   * @return encoded session
+   */
+  static byte[] encode(BarefootSessionData session) {
+    Writer writer = new Writer();
+    Map<String, Object> attributes = session.getAttributes();
+    String[] names = attributes.keySet().toArray(new String[0]);
+    Arrays.sort(names);
+
+    writer.write(VERSION);
+    writer.writeFixed(session.getLastAccessedTime());
+    writer.writeString(session.getId());
+    writer.writeFixed(session.getCreationTime());
+    writer.writeVarLong(session.getMaxInactiveInterval());
+    writer.writeVarLong(names.length);
+
+    for (String name : names) {
+      writer.writeString(name);
+      writer.writeValue(attributes.get(name));
+    }
+
+    return writer.toByteArray();
+  }
+
+  /**
+   * reads a session
+   *
+   * @param data encoded session
+   * @param loader class loader for serialised attributes
+   * @return session state
+   * @throws IllegalArgumentException if the data is not an encoded session
+   */
+  static BarefootSessionData decode(byte[] data, ClassLoader loader) {
+    if (data.length < BODY || data[0] != VERSION) {
+      throw new IllegalArgumentException("unknown session encoding");
+    }
+
+    Reader reader = new Reader(data, loader);
+    reader.pos = 1;
+    long lastAccessedTime = reader.readFixed();
+    String id = reader.readString();
+    long creationTime = reader.readFixed();
+    int maxInactiveInterval = (int) reader.readVarLong();
+    int count = reader.readLength();
+    Map<String, Object> attributes = new ConcurrentHashMap<>(Math.max(16, count * 2));
+
+    while (count-- > 0) {
+      String name = reader.readString();
+      Object value = reader.readValue();
+      if (value != null) {
+        attributes.put(name, value);
+      }
+    }
+
+    return new BarefootSessionData(
+        id, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+  }
+
+  /**
+   * last access time held in an encoded session
+   *
+   * @param data encoded session
+   * @return milliseconds since the epoch
+   */
+  static long lastAccessedTime(byte[] data) {
+    long value = 0;
+    for (int i = 1; i < BODY; i++) {
+      value = (value << 8) | (data[i] & 0xff);
+    }
+    return value;
+  }
+
+  private static final class Writer extends ByteArrayOutputStream {
+    Writer() {
+      super(256);
+    }
+
+    void writeFixed(long value) {
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        write((int) (value >>> shift));
+      }
+    }
+
+    /* zig-zag varint, small values of either sign take one byte */
+    void writeVarLong(long value) {
+      long v = (value << 1) ^ (value >> 63);
+      while ((v & ~0x7fL) != 0) {
+        write((int) ((v & 0x7f) | 0x80));
+        v >>>= 7;
+      }
+      write((int) v);
+    }
+
+    void writeBytes(byte[] b, int off, int len) {
+      writeVarLong(len);
+      write(b, off, len);
+    }
+
+    void writeString(String s) {
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      writeBytes(b, 0, b.length);
+    }
+
+    void writeValue(Object value) {
+      if (value == null) {
+        write(NULL);
+      } else if (value instanceof String) {
+        write(STRING);
+        writeString((String) value);
+      } else if (value instanceof Integer) {
+        write(INTEGER);
+        writeVarLong((Integer) value);
+      } else if (value instanceof Long) {
+        write(LONG);
+        writeVarLong((Long) value);
+      } else if (value instanceof Double) {
+        write(DOUBLE);
+        writeFixed(Double.doubleToLongBits((Double) value));
+      } else if (value instanceof Boolean) {
+        write((Boolean) value ? TRUE : FALSE);
+      } else if (value.getClass() == ArrayList.class) {
+        List<?> list = (List<?>) value;
+        write(ARRAY_LIST);
+        writeVarLong(list.size());
+        for (Object item : list) {
+          writeValue(item);
+        }
+      } else if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+        Map<?, ?> map = (Map<?, ?>) value;
+        write(value.getClass() == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+        writeVarLong(map.size());
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+          writeValue(e.getKey());
+          writeValue(e.getValue());
+        }
+      } else {
+        Writer serialized = new Writer();
+        try (ObjectOutputStream oos = new ObjectOutputStream(serialized)) {
+          oos.writeObject(value);
+        } catch (IOException ex) {
+          throw new RuntimeException(ex);
+        }
+        write(SERIALIZED);
+        writeBytes(serialized.buf, 0, serialized.count);
+      }
+    }
+  }
+
+  private static final class Reader {
+    final byte[] data;
+    final ClassLoader loader;
+    int pos;
+
+    Reader(byte[] d, ClassLoader l) {
+      data = d;
+      loader = l;
+    }
+
+    int read() {
+      if (pos >= data.length) {
+        throw new IllegalArgumentException("truncated session");
+      }
+      return data[pos++] & 0xff;
+    }
+
+    long readFixed() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | read();
+      }
+      return value;
+    }
+
+    long readVarLong() {
+      long v = 0;
+      int shift = 0, b;
+      do {
+        if (shift > 63) {
+          throw new IllegalArgumentException("malformed session");
+        }
+        b = read();
+        v |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readLength() {
+      long len = readVarLong();
+      if (len < 0 || len > data.length - pos) {
+        throw new IllegalArgumentException("malformed session");
+      }
+      return (int) len;
+    }
+
+    String readString() {
+      int len = readLength();
+      String s = new String(data, pos, len, StandardCharsets.UTF_8);
+      pos += len;
+      return s;
+    }
+
+    Object readValue() {
+      int tag = read();
+      switch (tag) {
+        case NULL:
+          return null;
+        case STRING:
+          return readString();
+        case INTEGER:
+          return (int) readVarLong();
+        case LONG:
+          return readVarLong();
+        case DOUBLE:
+          return Double.longBitsToDouble(readFixed());
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case ARRAY_LIST:
+          {
+            int size = readLength();
+            List<Object> list = new ArrayList<>(size);
+            while (size-- > 0) {
+              list.add(readValue());
+            }
+            return list;
+          }
+        case HASH_MAP:
+        case LINKED_HASH_MAP:
+          {
+            int size = readLength();
+            Map<Object, Object> map =
+                tag == HASH_MAP ? new HashMap<>(size * 2) : new LinkedHashMap<>(size * 2);
+            while (size-- > 0) {
+              Object key = readValue();
+              map.put(key, readValue());
+            }
+            return map;
+          }
+        case SERIALIZED:
+          {
+            int len = readLength();
+            InputStream is = new ByteArrayInputStream(data, pos, len);
+            pos += len;
+            try (ObjectInputStream ois = new LoaderObjectInputStream(is, loader)) {
+              return ois.readObject();
+            } catch (IOException | ClassNotFoundException ex) {
+              throw new IllegalArgumentException(ex);
+            }
+          }
+        default:
+          throw new IllegalArgumentException("unknown session value " + tag);
+      }
+    }
+  }
+
+  private static final class LoaderObjectInputStream extends ObjectInputStream {
+    final ClassLoader loader;
+
+    LoaderObjectInputStream(InputStream is, ClassLoader l) throws IOException {
+      super(is);
+      loader = l;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      try {
+        return Class.forName(desc.getName(), false, loader);
+      } catch (ClassNotFoundException ex) {
+        return super.resolveClass(desc);
+      }
+    }
+  }
+}
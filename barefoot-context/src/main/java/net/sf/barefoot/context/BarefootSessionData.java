@@ -0,0 +1,136 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session state kept by a {@link BarefootSessionStore} between requests. Concurrent requests for
+ * the same session share one instance, each wrapped in its own servlet session.
+ */
+public final class BarefootSessionData {
+  private final long creationTime;
+  private final Map<String, Object> attributes;
+  private volatile String id;
+  private volatile long lastAccessedTime;
+  private volatile int maxInactiveInterval;
+  private volatile boolean valid = true;
+  private volatile Object snapshot;
+
+  /**
+   * restores a session
+   *
+   * @param id session id
+   * @param creationTime milliseconds since the epoch
+   * @param lastAccessedTime milliseconds since the epoch
+   * @param maxInactiveInterval seconds, zero or less never expires
+   * @param attributes attribute map, used as it is
+   */
+  public BarefootSessionData(
+      String id,
+      long creationTime,
+      long lastAccessedTime,
+      int maxInactiveInterval,
+      Map<String, Object> attributes) {
+    this.id = id;
+    this.creationTime = creationTime;
+    this.lastAccessedTime = lastAccessedTime;
+    this.maxInactiveInterval = maxInactiveInterval;
+    this.attributes = attributes;
+  }
+
+  /**
+   * creates a new session with no attributes
+   *
+   * @param id session id
+   * @param now milliseconds since the epoch
+   * @param maxInactiveInterval seconds, zero or less never expires
+   */
+  public BarefootSessionData(String id, long now, int maxInactiveInterval) {
+    this(id, now, now, maxInactiveInterval, new ConcurrentHashMap<>());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  void setId(String i) {
+    id = i;
+  }
+
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  public long getLastAccessedTime() {
+    return lastAccessedTime;
+  }
+
+  public void setLastAccessedTime(long t) {
+    lastAccessedTime = t;
+  }
+
+  public int getMaxInactiveInterval() {
+    return maxInactiveInterval;
+  }
+
+  public void setMaxInactiveInterval(int i) {
+    maxInactiveInterval = i;
+  }
+
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  public boolean isValid() {
+    return valid;
+  }
+
+  void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * has the session been inactive for longer than allowed
+   *
+   * @param now milliseconds since the epoch
+   * @return true if expired
+   */
+  public boolean isExpired(long now) {
+    int mii = maxInactiveInterval;
+    return mii > 0 && now - lastAccessedTime > mii * 1000L;
+  }
+
+  /**
+   * what the store read when the session was found, to tell later whether it changed
+   *
+   * @return store specific state or null for a new session
+   */
+  Object getSnapshot() {
+    return snapshot;
+  }
+
+  void setSnapshot(Object s) {
+    snapshot = s;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/** what one request changed in a session, so a persistence layer need only write that */
+public final class BarefootSessionDelta {
+  private final BarefootSessionData session;
+  private final String previousId;
+  private final boolean created, invalidated, intervalChanged;
+  private final Map<String, Object> changedAttributes;
+  private final Set<String> removedAttributes;
+
+  BarefootSessionDelta(
+      BarefootSessionData s,
+      String pi,
+      boolean c,
+      boolean i,
+      boolean ic,
+      Map<String, Object> ca,
+      Set<String> ra) {
+    session = s;
+    previousId = pi;
+    created = c;
+    invalidated = i;
+    intervalChanged = ic;
+    changedAttributes = Collections.unmodifiableMap(ca);
+    removedAttributes = Collections.unmodifiableSet(ra);
+  }
+
+  /**
+   * whole state of the session, for a layer that writes it all when anything changed
+   *
+   * @return session state
+   */
+  public BarefootSessionData getSession() {
+    return session;
+  }
+
+  public String getId() {
+    return session.getId();
+  }
+
+  /**
+   * id the session had before changeSessionId
+   *
+   * @return old id or null if unchanged
+   */
+  public String getPreviousId() {
+    return previousId;
+  }
+
+  public boolean isCreated() {
+    return created;
+  }
+
+  public boolean isInvalidated() {
+    return invalidated;
+  }
+
+  public boolean isMaxInactiveIntervalChanged() {
+    return intervalChanged;
+  }
+
+  public long getLastAccessedTime() {
+    return session.getLastAccessedTime();
+  }
+
+  /**
+   * attributes set, or found modified in place, by the request
+   *
+   * @return names and current values
+   */
+  public Map<String, Object> getChangedAttributes() {
+    return changedAttributes;
+  }
+
+  /**
+   * attributes removed by the request
+   *
+   * @return names
+   */
+  public Set<String> getRemovedAttributes() {
+    return removedAttributes;
+  }
+
+  /**
+   * the request only read the session, so only its last access time needs writing
+   *
+   * @return true if nothing else changed
+   */
+  public boolean isAccessOnly() {
+    return !created
+        && !invalidated
+        && !intervalChanged
+        && previousId == null
+        && changedAttributes.isEmpty()
+        && removedAttributes.isEmpty();
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Session ids from a DRBG per thread. Each generator is seeded once, so generating an id neither
+ * blocks on the entropy source nor contends with other threads.
+ */
+public final class BarefootSessionIdGenerator {
+  private static final int ID_BYTES = 18;
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final ThreadLocal<SecureRandom> RANDOM =
+      ThreadLocal.withInitial(BarefootSessionIdGenerator::newRandom);
+
+  private BarefootSessionIdGenerator() {}
+
+  private static SecureRandom newRandom() {
+    try {
+      return SecureRandom.getInstance("DRBG");
+    } catch (NoSuchAlgorithmException ex) {
+      return new SecureRandom();
+    }
+  }
+
+  /**
+   * new random id, 144 bits as URL safe Base64
+   *
+   * @return id
+   */
+  public static String generate() {
+    byte[] bytes = new byte[ID_BYTES];
+    RANDOM.get().nextBytes(bytes);
+    return ENCODER.encodeToString(bytes);
+  }
+
+  /**
+   * fills an array with random bytes from the same source as the ids
+   *
+   * @param bytes array to fill
+   */
+  static void nextBytes(byte[] bytes) {
+    RANDOM.get().nextBytes(bytes);
+  }
+}
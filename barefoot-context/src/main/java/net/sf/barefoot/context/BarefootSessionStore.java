@@ -0,0 +1,97 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+/**
+ * Keeps sessions between requests. A store is shared by every request of a context, so it is called
+ * concurrently.
+ */
+public interface BarefootSessionStore {
+  /**
+   * finds a session that has not expired
+   *
+   * @param id session id sent by the client
+   * @param now milliseconds since the epoch
+   * @return session or null if unknown or expired
+   */
+  BarefootSessionData find(String id, long now);
+
+  /**
+   * keeps a session at the end of a request that used it
+   *
+   * @param session session state
+   */
+  void save(BarefootSessionData session);
+
+  /**
+   * forgets a session after it is invalidated or given a new id
+   *
+   * @param id session id
+   */
+  void remove(String id);
+
+  /**
+   * finds the session of a request, by default by the id in its session cookie
+   *
+   * @param request request
+   * @param now milliseconds since the epoch
+   * @return session or null if there is none or it expired
+   */
+  default BarefootSessionData find(AbstractServletRequest request, long now) {
+    String id = request.getRequestedSessionId();
+    return id == null ? null : find(id, now);
+  }
+
+  /**
+   * id of the session the client sent, by default the value of the session cookie
+   *
+   * @param request request
+   * @return id or null
+   */
+  default String getRequestedSessionId(AbstractServletRequest request) {
+    return request.getCookieValue(request.getSessionCookieName());
+  }
+
+  /**
+   * keeps the session at the end of a request, by default saving it and setting the session cookie
+   * when the client does not have its id
+   *
+   * @param request request that used the session
+   * @param response response to set cookies on
+   * @param session session, or null if it was invalidated
+   */
+  default void commit(
+      AbstractServletRequest request,
+      AbstractServletResponse response,
+      BarefootSessionData session) {
+    String requested = request.getRequestedSessionId();
+
+    if (session != null) {
+      save(session);
+      if (!session.getId().equals(requested)) {
+        request.setSessionCookie(response, request.getSessionCookieName(), session.getId());
+      }
+    } else if (requested != null) {
+      request.setSessionCookie(response, request.getSessionCookieName(), null);
+    }
+  }
+}
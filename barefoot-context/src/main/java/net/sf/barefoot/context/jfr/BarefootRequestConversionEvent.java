@@ -0,0 +1,49 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** conversion of a cloud native request to a servlet request */
+@Name("net.sf.barefoot.RequestConversion")
+@Label("Request Conversion")
+@Category({"Barefoot", "Adapter"})
+public final class BarefootRequestConversionEvent extends Event {
+  @Label("Adapter")
+  public String adapter;
+
+  @Label("Method")
+  public String method;
+
+  @Label("Request URI")
+  public String requestURI;
+
+  @Label("Content Length")
+  @Description("Request body length, -1 if unknown")
+  @DataAmount
+  public long contentLength;
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** conversion of a servlet response to a cloud native response */
+@Name("net.sf.barefoot.ResponseSerialization")
+@Label("Response Serialization")
+@Category({"Barefoot", "Adapter"})
+public final class BarefootResponseSerializationEvent extends Event {
+  @Label("Adapter")
+  public String adapter;
+
+  @Label("Status")
+  public int status;
+
+  @Label("Body Length")
+  @Description("Length of the body before any encoding, -1 if streamed")
+  @DataAmount
+  public long bodyLength;
+}
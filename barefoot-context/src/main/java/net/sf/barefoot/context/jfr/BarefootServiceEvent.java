@@ -0,0 +1,45 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** a call to the servlet's service method */
+@Name("net.sf.barefoot.Service")
+@Label("Servlet Service")
+@Category({"Barefoot", "Dispatch"})
+public final class BarefootServiceEvent extends Event {
+  @Label("Servlet Name")
+  public String servletName;
+
+  @Label("Servlet Path")
+  public String servletPath;
+
+  @Label("Request URI")
+  public String requestURI;
+
+  @Label("Status")
+  public int status;
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed log-linear buckets. Values below eight have a bucket each,
+ * above that every power of two is split into eight linear buckets, so any value is placed within
+ * 12.5% of its true size.
+ */
+public final class BarefootHistogram {
+  static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * records a single value
+   *
+   * @param value non-negative value, typically nanoseconds
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketOf(value));
+    total.add(value);
+    long m = max.get();
+    while (value > m && !max.compareAndSet(m, value)) {
+      m = max.get();
+    }
+  }
+
+  /**
+   * @return number of values recorded
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * @return sum of values recorded
+   */
+  public long getTotal() {
+    return total.sum();
+  }
+
+  /**
+   * @return largest value recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * estimates a percentile as the upper bound of the bucket it falls in
+   *
+   * @param percentile between 0 and 100
+   * @return estimated value, zero when empty
+   */
+  public long getPercentile(double percentile) {
+    return getPercentiles(percentile)[0];
+  }
+
+  /** percentiles taken from one copy of the counts */
+  long[] getPercentiles(double... percentiles) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += snapshot[i] = counts.get(i);
+    }
+    long[] result = new long[percentiles.length];
+    for (int i = 0; i < percentiles.length; i++) {
+      result[i] = percentile(snapshot, count, percentiles[i]);
+    }
+    return result;
+  }
+
+  private long percentile(long[] snapshot, long count, double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+    if (rank < 1) {
+      rank = 1;
+    }
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * @return bucket index for the value
+   */
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * @return smallest value held by the bucket
+   */
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+  }
+
+  /**
+   * @return largest value held by the bucket
+   */
+  static long upperBound(int bucket) {
+    return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and latency histogram for one servlet, filter or the whole context. */
+public final class BarefootMetric {
+  private final String name;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder[] statusClasses = new LongAdder[5];
+  private final LongAdder requestBytes = new LongAdder();
+  private final LongAdder responseBytes = new LongAdder();
+  private final BarefootHistogram latency = new BarefootHistogram();
+
+  BarefootMetric(String n) {
+    name = n;
+    for (int i = 0; i < statusClasses.length; i++) {
+      statusClasses[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * records one completed request, does not allocate
+   *
+   * @param nanos elapsed time
+   * @param status response status, counted by class 1xx to 5xx
+   * @param requestLength request body length, negative if unknown
+   * @param responseLength response body length, negative if unknown
+   */
+  public void record(long nanos, int status, long requestLength, long responseLength) {
+    count.increment();
+    int statusClass = status / 100 - 1;
+    if (statusClass >= 0 && statusClass < statusClasses.length) {
+      statusClasses[statusClass].increment();
+    }
+    if (requestLength > 0) {
+      requestBytes.add(requestLength);
+    }
+    if (responseLength > 0) {
+      responseBytes.add(responseLength);
+    }
+    latency.record(nanos);
+  }
+
+  /**
+   * @return name of the servlet or filter
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return latency histogram in nanoseconds
+   */
+  public BarefootHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * @return point in time copy of the counters
+   */
+  public BarefootMetricSnapshot snapshot() {
+    long[] p = latency.getPercentiles(50, 90, 99);
+    long n = count.sum();
+    return new BarefootMetricSnapshot(
+        name,
+        n,
+        statusClasses[0].sum(),
+        statusClasses[1].sum(),
+        statusClasses[2].sum(),
+        statusClasses[3].sum(),
+        statusClasses[4].sum(),
+        requestBytes.sum(),
+        responseBytes.sum(),
+        n == 0 ? 0 : latency.getTotal() / n,
+        p[0],
+        p[1],
+        p[2],
+        latency.getMax());
+  }
+}
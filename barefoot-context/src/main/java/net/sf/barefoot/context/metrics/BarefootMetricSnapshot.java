@@ -0,0 +1,141 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import javax.management.ConstructorParameters;
+
+/** Immutable copy of a metric, latencies are in nanoseconds. */
+public final class BarefootMetricSnapshot {
+  private final String name;
+  private final long count, status1xx, status2xx, status3xx, status4xx, status5xx;
+  private final long requestBytes, responseBytes;
+  private final long meanNanos, p50Nanos, p90Nanos, p99Nanos, maxNanos;
+
+  @ConstructorParameters({
+    "name",
+    "count",
+    "status1xx",
+    "status2xx",
+    "status3xx",
+    "status4xx",
+    "status5xx",
+    "requestBytes",
+    "responseBytes",
+    "meanNanos",
+    "p50Nanos",
+    "p90Nanos",
+    "p99Nanos",
+    "maxNanos"
+  })
+  public BarefootMetricSnapshot(
+      String name,
+      long count,
+      long status1xx,
+      long status2xx,
+      long status3xx,
+      long status4xx,
+      long status5xx,
+      long requestBytes,
+      long responseBytes,
+      long meanNanos,
+      long p50Nanos,
+      long p90Nanos,
+      long p99Nanos,
+      long maxNanos) {
+    this.name = name;
+    this.count = count;
+    this.status1xx = status1xx;
+    this.status2xx = status2xx;
+    this.status3xx = status3xx;
+    this.status4xx = status4xx;
+    this.status5xx = status5xx;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.meanNanos = meanNanos;
+    this.p50Nanos = p50Nanos;
+    this.p90Nanos = p90Nanos;
+    this.p99Nanos = p99Nanos;
+    this.maxNanos = maxNanos;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getStatus1xx() {
+    return status1xx;
+  }
+
+  public long getStatus2xx() {
+    return status2xx;
+  }
+
+  public long getStatus3xx() {
+    return status3xx;
+  }
+
+  public long getStatus4xx() {
+    return status4xx;
+  }
+
+  public long getStatus5xx() {
+    return status5xx;
+  }
+
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  public long getMeanNanos() {
+    return meanNanos;
+  }
+
+  public long getP50Nanos() {
+    return p50Nanos;
+  }
+
+  public long getP90Nanos() {
+    return p90Nanos;
+  }
+
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  @Override
+  public String toString() {
+    return name + " count=" + count + " p50=" + p50Nanos + "ns p99=" + p99Nanos + "ns max="
+        + maxNanos + "ns";
+  }
+}
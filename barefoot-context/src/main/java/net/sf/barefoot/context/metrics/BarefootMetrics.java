@@ -0,0 +1,130 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics registry for a context. Registrations look up their metric once and keep it, so the
+ * request path only touches counters. Available to servlets as the context attribute {@link
+ * #ATTRIBUTE}.
+ */
+public final class BarefootMetrics implements BarefootMetricsMXBean {
+  /** name of the context attribute holding the registry */
+  public static final String ATTRIBUTE = BarefootMetrics.class.getName();
+
+  private final BarefootMetric requests = new BarefootMetric("");
+  private final Map<String, BarefootMetric> servlets = new ConcurrentHashMap<>();
+  private final Map<String, BarefootMetric> filters = new ConcurrentHashMap<>();
+  private ObjectName objectName;
+
+  /**
+   * @return metric for every request dispatched to the context
+   */
+  public BarefootMetric requestMetric() {
+    return requests;
+  }
+
+  /**
+   * @param name servlet name
+   * @return metric for the servlet, created on first use
+   */
+  public BarefootMetric servletMetric(String name) {
+    return servlets.computeIfAbsent(name, BarefootMetric::new);
+  }
+
+  /**
+   * latency of a filter includes the rest of the chain it invokes
+   *
+   * @param name filter name
+   * @return metric for the filter, created on first use
+   */
+  public BarefootMetric filterMetric(String name) {
+    return filters.computeIfAbsent(name, BarefootMetric::new);
+  }
+
+  @Override
+  public BarefootMetricSnapshot getRequests() {
+    return requests.snapshot();
+  }
+
+  @Override
+  public Map<String, BarefootMetricSnapshot> getServlets() {
+    return snapshot(servlets);
+  }
+
+  @Override
+  public Map<String, BarefootMetricSnapshot> getFilters() {
+    return snapshot(filters);
+  }
+
+  private static Map<String, BarefootMetricSnapshot> snapshot(Map<String, BarefootMetric> map) {
+    Map<String, BarefootMetricSnapshot> result = new TreeMap<>();
+    map.forEach((k, v) -> result.put(k, v.snapshot()));
+    return result;
+  }
+
+  /**
+   * registers with the platform MBean server
+   *
+   * @param contextPath used to name the bean
+   * @return object name registered
+   * @throws JMException if registration fails
+   */
+  public synchronized ObjectName register(String contextPath) throws JMException {
+    if (objectName == null) {
+      ObjectName name =
+          new ObjectName(
+              "net.sf.barefoot:type=Metrics,context="
+                  + ObjectName.quote(contextPath.isEmpty() ? "/" : contextPath)
+                  + ",id="
+                  + Integer.toHexString(System.identityHashCode(this)));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+      objectName = name;
+    }
+    return objectName;
+  }
+
+  /**
+   * removes the registration from the platform MBean server
+   *
+   * @throws JMException if unregistration fails
+   */
+  public synchronized void unregister() throws JMException {
+    if (objectName != null) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+        if (server.isRegistered(objectName)) {
+          server.unregisterMBean(objectName);
+        }
+      } finally {
+        objectName = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import java.util.Map;
+
+/** Management interface for the metrics of a context. */
+public interface BarefootMetricsMXBean {
+  /**
+   * @return all requests dispatched to the context
+   */
+  BarefootMetricSnapshot getRequests();
+
+  /**
+   * @return per servlet metrics keyed by servlet name
+   */
+  Map<String, BarefootMetricSnapshot> getServlets();
+
+  /**
+   * @return per filter metrics keyed by filter name
+   */
+  Map<String, BarefootMetricSnapshot> getFilters();
+}
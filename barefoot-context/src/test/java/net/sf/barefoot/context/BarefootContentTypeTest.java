@@ -72,4 +72,23 @@ public class BarefootContentTypeTest {
         BarefootContentType.getCharsetFromContentType(
             "application/json;sadfjsdf;weweer;asdsa; charset=UTF-8"));
   }
+
+  @Test
+  public void testCompressible() {
+    Assert.assertTrue(BarefootContentType.isCompressible("application/json; charset=UTF-8"));
+    Assert.assertTrue(BarefootContentType.isCompressible("Text/HTML"));
+    Assert.assertTrue(BarefootContentType.isCompressible("application/problem+json"));
+    Assert.assertTrue(BarefootContentType.isCompressible("image/svg+xml"));
+    Assert.assertFalse(BarefootContentType.isCompressible("image/png"));
+    Assert.assertFalse(BarefootContentType.isCompressible(null));
+  }
+
+  @Test
+  public void testNegotiate() {
+    Assert.assertEquals("gzip", BarefootCompressionStream.negotiate("gzip, deflate, br"));
+    Assert.assertEquals("deflate", BarefootCompressionStream.negotiate("gzip;q=0, deflate"));
+    Assert.assertEquals("gzip", BarefootCompressionStream.negotiate("*"));
+    Assert.assertNull(BarefootCompressionStream.negotiate("identity"));
+    Assert.assertNull(BarefootCompressionStream.negotiate(null));
+  }
 }
@@ -0,0 +1,50 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** HTTP date tests */
+public class BarefootDateCodecTest {
+  static final long SAMPLE = 784111777000L;
+
+  @Test
+  public void testFormat() {
+    Assert.assertEquals("Sun, 6 Nov 1994 08:49:37 GMT", BarefootDateCodec.format(SAMPLE));
+    Assert.assertEquals("Sun, 6 Nov 1994 08:49:37 GMT", BarefootDateCodec.format(SAMPLE + 999));
+    Assert.assertEquals("Sun, 6 Nov 1994 08:49:38 GMT", BarefootDateCodec.format(SAMPLE + 1000));
+  }
+
+  @Test
+  public void testParse() {
+    Assert.assertEquals(SAMPLE, BarefootDateCodec.parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+    Assert.assertEquals(SAMPLE, BarefootDateCodec.parse("Sunday, 06-Nov-94 08:49:37 GMT"));
+    Assert.assertEquals(SAMPLE, BarefootDateCodec.parse("Sun Nov  6 08:49:37 1994"));
+    Assert.assertEquals(SAMPLE, BarefootDateCodec.parse(BarefootDateCodec.format(SAMPLE)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalid() {
+    BarefootDateCodec.parse("yesterday");
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** in-memory session store tests */
+public class BarefootMemorySessionStoreTest {
+
+  @Test
+  public void testFind() {
+    BarefootMemorySessionStore store = new BarefootMemorySessionStore(100);
+    long now = System.currentTimeMillis();
+    BarefootSessionData session = new BarefootSessionData("one", now, 60);
+    session.getAttributes().put("name", "value");
+
+    store.save(session);
+
+    Assert.assertSame(session, store.find("one", now));
+    Assert.assertNull(store.find("two", now));
+
+    store.remove("one");
+    Assert.assertNull(store.find("one", now));
+  }
+
+  @Test
+  public void testExpiry() {
+    BarefootMemorySessionStore store = new BarefootMemorySessionStore(100);
+    long now = System.currentTimeMillis();
+
+    store.save(new BarefootSessionData("short", now, 1));
+    store.save(new BarefootSessionData("forever", now, 0));
+
+    Assert.assertNotNull(store.find("short", now + 1000));
+    Assert.assertNull(store.find("short", now + 1001));
+    Assert.assertNotNull(store.find("forever", now + 1000000));
+    Assert.assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testLimit() {
+    BarefootMemorySessionStore store = new BarefootMemorySessionStore(32);
+    long now = System.currentTimeMillis();
+
+    for (int i = 0; i < 1000; i++) {
+      store.save(new BarefootSessionData(BarefootSessionIdGenerator.generate(), now, 60));
+    }
+
+    Assert.assertTrue(store.size() <= 32);
+  }
+
+  @Test
+  public void testGenerator() {
+    Set<String> ids = new HashSet<>();
+
+    for (int i = 0; i < 1000; i++) {
+      String id = BarefootSessionIdGenerator.generate();
+      Assert.assertEquals(24, id.length());
+      Assert.assertTrue(ids.add(id));
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** multipart parser tests */
+public class BarefootMultipartParserTest {
+  static final String BOUNDARY = "----XyZ";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  static class TestPart extends AbstractServletPart {
+    TestPart(Builder builder) {
+      super(builder);
+    }
+  }
+
+  BarefootMultipartParser parser(long maxFile, long maxRequest, int threshold) {
+    return new BarefootMultipartParser(
+        folder.getRoot().getAbsolutePath(), maxFile, maxRequest, threshold, TestPart::new);
+  }
+
+  static byte[] body(byte[] file) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("preamble\r\n--").append(BOUNDARY).append("\r\n");
+    sb.append("Content-Disposition: form-data; name=\"title\"\r\n\r\n");
+    sb.append("café\r\n--").append(BOUNDARY).append("\r\n");
+    sb.append("Content-Disposition: form-data; name=\"upload\"; filename=\"a \\\"b\\\".bin\"\r\n");
+    sb.append("Content-Type: application/octet-stream\r\n\r\n");
+    byte[] head = sb.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] tail = ("\r\n--" + BOUNDARY + "--\r\nepilogue").getBytes(StandardCharsets.UTF_8);
+    byte[] result = Arrays.copyOf(head, head.length + file.length + tail.length);
+    System.arraycopy(file, 0, result, head.length, file.length);
+    System.arraycopy(tail, 0, result, head.length + file.length, tail.length);
+    return result;
+  }
+
+  /* content that repeatedly nearly matches the delimiter */
+  static byte[] content(int size) {
+    byte[] nearly = ("\r\n--" + BOUNDARY.substring(0, 4)).getBytes(StandardCharsets.US_ASCII);
+    byte[] b = new byte[size];
+    for (int i = 0; i < size; i++) {
+      b[i] = i % 100 < nearly.length ? nearly[i % 100] : (byte) i;
+    }
+    return b;
+  }
+
+  /* delivers a few bytes at a time so delimiters straddle reads */
+  static InputStream trickle(byte[] b) {
+    return new FilterInputStream(new ByteArrayInputStream(b)) {
+      int n;
+
+      @Override
+      public int read(byte[] buf, int off, int len) throws IOException {
+        return super.read(buf, off, Math.min(len, 1 + (n++ % 7)));
+      }
+    };
+  }
+
+  static byte[] readAll(AbstractServletPart part) throws IOException {
+    try (InputStream is = part.getInputStream()) {
+      return is.readAllBytes();
+    }
+  }
+
+  List<Path> files() throws IOException {
+    try (Stream<Path> s = Files.list(folder.getRoot().toPath())) {
+      return s.collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testInMemory() throws IOException {
+    byte[] file = content(1000);
+    List<AbstractServletPart> parts =
+        parser(-1, -1, 4096).parse(trickle(body(file)), BOUNDARY, StandardCharsets.UTF_8);
+
+    Assert.assertEquals(2, parts.size());
+    AbstractServletPart title = parts.get(0);
+    Assert.assertEquals("title", title.getName());
+    Assert.assertNull(title.getSubmittedFileName());
+    Assert.assertEquals("café", title.getString(StandardCharsets.UTF_8));
+
+    AbstractServletPart upload = parts.get(1);
+    Assert.assertEquals("upload", upload.getName());
+    Assert.assertEquals("a \"b\".bin", upload.getSubmittedFileName());
+    Assert.assertEquals("application/octet-stream", upload.getContentType());
+    Assert.assertEquals("application/octet-stream", upload.getHeader("Content-Type"));
+    Assert.assertEquals(1000, upload.getSize());
+    Assert.assertArrayEquals(file, readAll(upload));
+    Assert.assertTrue(files().isEmpty());
+  }
+
+  @Test
+  public void testSpill() throws IOException {
+    byte[] file = content(100000);
+    List<AbstractServletPart> parts =
+        parser(-1, -1, 1024).parse(trickle(body(file)), BOUNDARY, StandardCharsets.UTF_8);
+
+    AbstractServletPart upload = parts.get(1);
+    Assert.assertEquals(100000, upload.getSize());
+    Assert.assertArrayEquals(file, readAll(upload));
+    Assert.assertEquals(1, files().size());
+
+    upload.write("saved.bin");
+    Assert.assertArrayEquals(
+        file, Files.readAllBytes(folder.getRoot().toPath().resolve("saved.bin")));
+
+    upload.release();
+    Assert.assertEquals(1, files().size());
+  }
+
+  @Test
+  public void testRelease() throws IOException {
+    List<AbstractServletPart> parts =
+        parser(-1, -1, 0)
+            .parse(new ByteArrayInputStream(body(content(10))), BOUNDARY, StandardCharsets.UTF_8);
+
+    Assert.assertEquals(2, files().size());
+    for (AbstractServletPart part : parts) {
+      part.release();
+    }
+    Assert.assertTrue(files().isEmpty());
+  }
+
+  @Test
+  public void testMaxFileSize() throws IOException {
+    try {
+      parser(5000, -1, 1024)
+          .parse(new ByteArrayInputStream(body(content(5001))), BOUNDARY, StandardCharsets.UTF_8);
+      Assert.fail("expected limit");
+    } catch (IllegalStateException ex) {
+      Assert.assertTrue(files().isEmpty());
+    }
+  }
+
+  @Test
+  public void testMaxRequestSize() throws IOException {
+    try {
+      parser(-1, 50000, 0)
+          .parse(new ByteArrayInputStream(body(content(100000))), BOUNDARY, StandardCharsets.UTF_8);
+      Assert.fail("expected limit");
+    } catch (IllegalStateException ex) {
+      Assert.assertTrue(files().isEmpty());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws IOException {
+    byte[] b = body(content(10));
+    parser(-1, -1, 1024)
+        .parse(new ByteArrayInputStream(b, 0, b.length - 20), BOUNDARY, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testContentType() {
+    String ct = "multipart/form-data; boundary=\"" + BOUNDARY + "\"";
+    Assert.assertTrue(BarefootContentType.isMultipartFormData(ct));
+    Assert.assertFalse(BarefootContentType.isMultipartFormData("multipart/mixed"));
+    Assert.assertEquals(BOUNDARY, BarefootContentType.getBoundaryFromContentType(ct));
+  }
+}
@@ -21,10 +21,14 @@
 
 package net.sf.barefoot.context;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.StringReader;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.Assert;
@@ -96,4 +100,79 @@ public class BarefootPreprocessorTest {
     Assert.assertTrue(
         pp.isApplicationFormUrlEncoded(BarefootContentType.APPLICATION_FORM_URLENCODED + ";"));
   }
+
+  private Map<String, String[]> decode(String form, Charset cs) throws IOException {
+    Map<String, String[]> params = new HashMap<>();
+    pp.decodeApplicationFormUrlEncoded(new ByteArrayInputStream(form.getBytes(cs)), params, cs);
+    return params;
+  }
+
+  @Test
+  public void testEscapes() throws Exception {
+    Map<String, String[]> params = decode("a+b=c%20d%2Be&%41=%e2%82%ac", charset);
+    Assert.assertEquals("c d+e", params.get("a b")[0]);
+    Assert.assertEquals("\u20ac", params.get("A")[0]);
+  }
+
+  @Test
+  public void testLatin1() throws Exception {
+    Map<String, String[]> params = decode("n%E9=caf%E9", StandardCharsets.ISO_8859_1);
+    Assert.assertEquals("caf\u00e9", params.get("n\u00e9")[0]);
+  }
+
+  @Test
+  public void testRepeated() throws Exception {
+    Map<String, String[]> params = decode("A=1&B=2&A=3&&=4&C", charset);
+    Assert.assertEquals(3, params.size());
+    Assert.assertArrayEquals(new String[] {"1", "3"}, params.get("A"));
+    Assert.assertArrayEquals(new String[] {null}, params.get("C"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadEscape() throws Exception {
+    decode("A=%zz", charset);
+  }
+
+  @Test(expected = BarefootRequestException.class)
+  public void testTooManyParameters() throws Exception {
+    Map<String, String[]> params = new HashMap<>();
+    new BarefootPreprocessor(2, 1024)
+        .decodeApplicationFormUrlEncoded(
+            new ByteArrayInputStream("A=1&B=2&C=3".getBytes(charset)), params, charset);
+  }
+
+  @Test(expected = BarefootRequestException.class)
+  public void testTooLarge() throws Exception {
+    Map<String, String[]> params = new HashMap<>();
+    new BarefootPreprocessor(100, 8)
+        .decodeApplicationFormUrlEncoded(
+            new ByteArrayInputStream("A=123456789".getBytes(charset)), params, charset);
+  }
+
+  @Test
+  public void testLargeForm() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    Map<String, String> expected = new LinkedHashMap<>();
+
+    for (int i = 0; i < 2000; i++) {
+      if (i > 0) sb.append('&');
+      String name = "field" + i + "%2F%C3%A9";
+      String value = "value+" + i + "%25%E2%82%AC";
+      sb.append(name).append('=').append(value);
+      expected.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+    }
+
+    Assert.assertTrue(sb.length() > 4096);
+
+    Map<String, String[]> params = decode(sb.toString(), charset);
+    Assert.assertEquals(expected.size(), params.size());
+
+    for (Map.Entry<String, String> e : expected.entrySet()) {
+      Assert.assertEquals(e.getValue(), params.get(e.getKey())[0]);
+    }
+
+    Map<String, List<String>> legacy = new HashMap<>();
+    pp.processApplicationFormUrlEncoded(new StringReader(sb.toString()), legacy, charset);
+    Assert.assertEquals(expected.size(), legacy.size());
+  }
 }
@@ -0,0 +1,84 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test reading priming requests */
+public class BarefootPrimingRequestTest {
+  static final String PRIMING =
+      "# warm up the greeting\n"
+          + "GET /hello?name=world&name=there&x=a%20b HTTP/1.1\n"
+          + "Accept: text/plain\n"
+          + "X-Trace: one\n"
+          + "x-trace: two\n"
+          + "\n"
+          + "###\n"
+          + "POST /echo\n"
+          + "Content-Type: application/json\n"
+          + "\n"
+          + "{\"ping\":\n"
+          + "true}\n"
+          + "\n"
+          + "### and the root\n"
+          + "DELETE /\n";
+
+  @Test
+  public void testParse() throws IOException {
+    List<BarefootPrimingRequest> requests =
+        BarefootPrimingRequest.parse(new BufferedReader(new StringReader(PRIMING)));
+
+    Assert.assertEquals(3, requests.size());
+
+    BarefootPrimingRequest get = requests.get(0);
+    Assert.assertEquals("GET", get.getMethod());
+    Assert.assertEquals("/hello", get.getPath());
+    Assert.assertEquals("name=world&name=there&x=a%20b", get.getQueryString());
+    Assert.assertEquals(Arrays.asList("world", "there"), get.getQueryParameters().get("name"));
+    Assert.assertEquals(Arrays.asList("a b"), get.getQueryParameters().get("x"));
+    Assert.assertEquals("text/plain", get.getHeader("Accept"));
+    Assert.assertEquals(Arrays.asList("one", "two"), get.getHeaders().get("x-trace"));
+    Assert.assertNull(get.getBody());
+
+    BarefootPrimingRequest post = requests.get(1);
+    Assert.assertEquals("POST", post.getMethod());
+    Assert.assertEquals("/echo", post.getPath());
+    Assert.assertNull(post.getQueryString());
+    Assert.assertEquals("application/json", post.getHeader("content-type"));
+    Assert.assertEquals("{\"ping\":\ntrue}", post.getBody());
+
+    BarefootPrimingRequest delete = requests.get(2);
+    Assert.assertEquals("DELETE /", delete.toString());
+    Assert.assertTrue(delete.getHeaders().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadHeader() throws IOException {
+    BarefootPrimingRequest.parse(new BufferedReader(new StringReader("GET /\nnot a header\n")));
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** request bodies held in memory */
+public class BarefootRequestBodyTest {
+  static final String TEXT = "café 😀 €";
+
+  static String read(Reader reader) {
+    return new BufferedReader(reader).lines().collect(Collectors.joining("\n"));
+  }
+
+  @Test
+  public void testText() throws IOException {
+    BarefootRequestBody body = BarefootRequestBody.of(TEXT);
+    byte[] utf8 = TEXT.getBytes(StandardCharsets.UTF_8);
+
+    Assert.assertEquals(utf8.length, body.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertArrayEquals(utf8, body.getInputStream(StandardCharsets.UTF_8).readAllBytes());
+    Assert.assertEquals(TEXT, read(body.getReader(StandardCharsets.ISO_8859_1)));
+
+    String latin = "café";
+    body = BarefootRequestBody.of(latin);
+    Assert.assertEquals(4, body.getContentLength(StandardCharsets.ISO_8859_1));
+    Assert.assertArrayEquals(
+        latin.getBytes(StandardCharsets.ISO_8859_1),
+        body.getInputStream(StandardCharsets.ISO_8859_1).readAllBytes());
+  }
+
+  @Test
+  public void testUnpairedSurrogate() {
+    String s = "a\ud800b";
+    Assert.assertEquals(
+        s.getBytes(StandardCharsets.UTF_8).length,
+        BarefootRequestBody.of(s).getContentLength(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSlice() throws IOException {
+    byte[] utf8 = TEXT.getBytes(StandardCharsets.UTF_8);
+    byte[] b = new byte[utf8.length + 4];
+    System.arraycopy(utf8, 0, b, 2, utf8.length);
+    BarefootRequestBody body = BarefootRequestBody.of(b, 2, utf8.length, StandardCharsets.UTF_8);
+
+    Assert.assertEquals(utf8.length, body.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertEquals(utf8.length, body.getInputStream(StandardCharsets.UTF_8).available());
+    Assert.assertArrayEquals(utf8, body.getInputStream(StandardCharsets.UTF_8).readAllBytes());
+    Assert.assertEquals(TEXT, read(body.getReader(StandardCharsets.ISO_8859_1)));
+
+    String latin = "café";
+    utf8 = latin.getBytes(StandardCharsets.UTF_8);
+    body = BarefootRequestBody.of(utf8, 0, utf8.length, StandardCharsets.UTF_8);
+    Assert.assertEquals(4, body.getContentLength(StandardCharsets.ISO_8859_1));
+    Assert.assertArrayEquals(
+        latin.getBytes(StandardCharsets.ISO_8859_1),
+        body.getInputStream(StandardCharsets.ISO_8859_1).readAllBytes());
+  }
+
+  @Test
+  public void testByteBuffer() throws IOException {
+    byte[] data = new byte[300];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+    direct.put(data).flip();
+    BarefootRequestBody body = BarefootRequestBody.of(direct);
+
+    Assert.assertEquals(data.length, body.getContentLength(StandardCharsets.UTF_8));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (InputStream is = body.getInputStream(StandardCharsets.UTF_8)) {
+      Assert.assertEquals(data.length, is.available());
+      Assert.assertEquals(data.length, is.transferTo(baos));
+    }
+    Assert.assertArrayEquals(data, baos.toByteArray());
+    Assert.assertEquals(0, direct.position());
+  }
+
+  @Test
+  public void testBase64() throws IOException {
+    for (int len = 0; len < 8; len++) {
+      byte[] data = new byte[len];
+      for (int i = 0; i < len; i++) {
+        data[i] = (byte) (0xF0 + i);
+      }
+      String b64 = Base64.getEncoder().encodeToString(data);
+      byte[] ascii = ("\"" + b64 + "\"").getBytes(StandardCharsets.US_ASCII);
+
+      BarefootRequestBody body = BarefootRequestBody.ofBase64(b64);
+      Assert.assertEquals(len, body.getContentLength(StandardCharsets.UTF_8));
+      Assert.assertArrayEquals(data, body.getInputStream(StandardCharsets.UTF_8).readAllBytes());
+
+      body = BarefootRequestBody.ofBase64(ascii, 1, b64.length());
+      Assert.assertEquals(len, body.getContentLength(StandardCharsets.UTF_8));
+      Assert.assertArrayEquals(data, body.getInputStream(StandardCharsets.UTF_8).readAllBytes());
+    }
+  }
+
+  @Test
+  public void testLazyText() {
+    AtomicInteger calls = new AtomicInteger();
+    BarefootRequestBody body =
+        BarefootRequestBody.ofText(
+            () -> {
+              calls.incrementAndGet();
+              return TEXT;
+            });
+
+    Assert.assertEquals(0, calls.get());
+    Assert.assertEquals(TEXT, read(body.getReader(StandardCharsets.UTF_8)));
+    Assert.assertEquals(
+        TEXT.getBytes(StandardCharsets.UTF_8).length,
+        body.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testLengthComputedOnce() {
+    AtomicInteger reads = new AtomicInteger();
+    CharSequence counted =
+        new CharSequence() {
+          @Override
+          public int length() {
+            return TEXT.length();
+          }
+
+          @Override
+          public char charAt(int i) {
+            reads.incrementAndGet();
+            return TEXT.charAt(i);
+          }
+
+          @Override
+          public CharSequence subSequence(int start, int end) {
+            return TEXT.subSequence(start, end);
+          }
+
+          @Override
+          public String toString() {
+            return TEXT;
+          }
+        };
+    BarefootRequestBody body = BarefootRequestBody.of(counted);
+    long len = TEXT.getBytes(StandardCharsets.UTF_8).length;
+
+    Assert.assertEquals(len, body.getContentLength(StandardCharsets.UTF_8));
+    int scanned = reads.get();
+    Assert.assertEquals(len, body.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertEquals(scanned, reads.get());
+  }
+
+  @Test
+  public void testMalformedBase64() {
+    BarefootRequestBody body = BarefootRequestBody.ofBase64("not base64!");
+
+    Assert.assertEquals(-1L, body.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertEquals(-1L, body.getContentLength(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testKnownLength() {
+    BarefootRequestBody text = BarefootRequestBody.of(TEXT);
+    long len = TEXT.getBytes(StandardCharsets.UTF_8).length;
+
+    Assert.assertEquals(-1L, text.getKnownContentLength());
+    Assert.assertEquals(len, text.getContentLength(StandardCharsets.UTF_8));
+    Assert.assertEquals(len, text.getKnownContentLength());
+    Assert.assertEquals(3L, BarefootRequestBody.of(new byte[3]).getKnownContentLength());
+    Assert.assertEquals(-1L, BarefootRequestBody.ofBase64("AAA").getKnownContentLength());
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** request header table tests */
+public class BarefootRequestHeadersTest {
+
+  @Test
+  public void testKnown() {
+    BarefootRequestHeaders headers = new BarefootRequestHeaders();
+    headers.add("Content-Type", "text/plain");
+    headers.add("X-Forwarded-Proto", "https");
+
+    Assert.assertEquals("text/plain", headers.get(BarefootRequestHeaders.CONTENT_TYPE));
+    Assert.assertEquals("text/plain", headers.get("content-type"));
+    Assert.assertEquals("text/plain", headers.get("CONTENT-TYPE"));
+    Assert.assertEquals("https", headers.get(BarefootRequestHeaders.X_FORWARDED_PROTO));
+    Assert.assertNull(headers.get(BarefootRequestHeaders.HOST));
+    Assert.assertNull(headers.get("host"));
+  }
+
+  @Test
+  public void testMultiple() {
+    BarefootRequestHeaders headers = new BarefootRequestHeaders();
+    headers.add("Accept", "text/html");
+    headers.add("accept", "*/*");
+    headers.add("X-Custom", "one");
+    headers.add("x-custom", Arrays.asList("two", "three"));
+
+    Assert.assertEquals("text/html", headers.get("ACCEPT"));
+    Assert.assertEquals(Arrays.asList("text/html", "*/*"), headers.getAll("Accept"));
+    Assert.assertEquals(Arrays.asList("one", "two", "three"), headers.getAll("X-CUSTOM"));
+    Assert.assertEquals(Collections.emptyList(), headers.getAll("missing"));
+    Assert.assertEquals(2, headers.size());
+  }
+
+  @Test
+  public void testNames() {
+    BarefootRequestHeaders headers = new BarefootRequestHeaders();
+    headers.add("Host", "localhost");
+    headers.add("X-Request-Id", "1");
+    headers.add("user-agent", "curl");
+    headers.add("HOST", "again");
+
+    List<String> names = new ArrayList<>();
+    headers.names().forEachRemaining(names::add);
+    Assert.assertEquals(Arrays.asList("host", "x-request-id", "user-agent"), names);
+  }
+
+  @Test
+  public void testGrow() {
+    BarefootRequestHeaders headers = new BarefootRequestHeaders();
+
+    for (int i = 0; i < 200; i++) {
+      headers.add("X-Header-" + i, Integer.toString(i));
+    }
+
+    Assert.assertEquals(200, headers.size());
+    for (int i = 0; i < 200; i++) {
+      Assert.assertEquals(Integer.toString(i), headers.get("x-header-" + i));
+    }
+    Assert.assertFalse(headers.contains("x-header-200"));
+  }
+
+  @Test
+  public void testOf() {
+    Map<String, List<String>> map = new HashMap<>();
+    map.put("cookie", Arrays.asList("a=1", "b=2"));
+    map.put("if-none-match", Collections.singletonList("\"abc\""));
+
+    BarefootRequestHeaders headers = BarefootRequestHeaders.of(map);
+    Assert.assertEquals("a=1", headers.get(BarefootRequestHeaders.COOKIE));
+    Assert.assertEquals(2, headers.getAll("Cookie").size());
+    Assert.assertEquals("\"abc\"", headers.get("If-None-Match"));
+    Assert.assertEquals(0, BarefootRequestHeaders.of(null).size());
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** response header table tests */
+public class BarefootResponseHeadersTest {
+
+  @Test
+  public void testCaseInsensitive() {
+    BarefootResponseHeaders headers = new BarefootResponseHeaders();
+    headers.set("Content-Type", "text/plain");
+    headers.set("content-type", "text/html");
+
+    Assert.assertEquals(1, headers.size());
+    Assert.assertEquals("text/html", headers.get("CONTENT-TYPE"));
+    Assert.assertEquals(Collections.singletonList("Content-Type"), headers.names());
+    Assert.assertTrue(headers.contains("content-TYPE"));
+  }
+
+  @Test
+  public void testMultiple() {
+    BarefootResponseHeaders headers = new BarefootResponseHeaders();
+    headers.add("Vary", "Accept");
+    headers.add("vary", "Accept-Encoding");
+    headers.add("Vary", null);
+
+    Assert.assertEquals("Accept", headers.get("Vary"));
+    Assert.assertEquals(Arrays.asList("Accept", "Accept-Encoding"), headers.getAll("VARY"));
+    Assert.assertEquals(Collections.emptyList(), headers.getAll("missing"));
+
+    headers.set("Vary", "Origin");
+    Assert.assertEquals(Collections.singletonList("Origin"), headers.getAll("vary"));
+  }
+
+  @Test
+  public void testRemove() {
+    BarefootResponseHeaders headers = new BarefootResponseHeaders();
+    headers.set("A", "1");
+    headers.set("B", "2");
+    headers.set("C", "3");
+    headers.set("b", null);
+
+    Assert.assertEquals(Arrays.asList("A", "C"), headers.names());
+    Assert.assertNull(headers.get("B"));
+
+    headers.clear();
+    Assert.assertEquals(0, headers.size());
+    Assert.assertNull(headers.get("A"));
+  }
+
+  @Test
+  public void testVisitor() {
+    BarefootResponseHeaders headers = new BarefootResponseHeaders();
+
+    for (int i = 0; i < 20; i++) {
+      headers.add("X-Header-" + i, Integer.toString(i));
+    }
+    headers.add("x-header-0", "again");
+
+    List<String> visited = new ArrayList<>();
+    headers.forEach((name, value) -> visited.add(name + "=" + value));
+
+    Assert.assertEquals(21, visited.size());
+    Assert.assertEquals("X-Header-0=0", visited.get(0));
+    Assert.assertEquals("X-Header-0=again", visited.get(1));
+    Assert.assertEquals("X-Header-19=19", visited.get(20));
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** servlet mapping tests */
+public class BarefootServletMappingTest {
+  final BarefootServletMapping<String, String> mapping =
+      BarefootServletMapping.<String, String>builder()
+          .add("/", "default")
+          .add("/catalog", "catalog")
+          .add("/foo/bar/*", "foobar")
+          .add("/foo/*", "foo")
+          .add("/foo/bar/index.html", "index")
+          .add("*.jsp", "jsp")
+          .add("/api", "api")
+          .build();
+
+  void assertMatch(String path, String servlet, String servletPath, String pathInfo) {
+    BarefootServletMapping.Match<String, String> match = mapping.match(path);
+    Assert.assertEquals(path, servlet, match.getServlet());
+    Assert.assertEquals(path, servletPath, match.getServletPath());
+    Assert.assertEquals(path, pathInfo, match.getPathInfo());
+  }
+
+  @Test
+  public void testExact() {
+    assertMatch("/catalog", "catalog", "/catalog", null);
+    assertMatch("/foo/bar/index.html", "index", "/foo/bar/index.html", null);
+  }
+
+  @Test
+  public void testLongestPrefix() {
+    assertMatch("/foo/bar/baz", "foobar", "/foo/bar", "/baz");
+    assertMatch("/foo/bar", "foobar", "/foo/bar", null);
+    assertMatch("/foo/baz/", "foo", "/foo", "/baz/");
+    assertMatch("/foo/bar/index.jsp", "foobar", "/foo/bar", "/index.jsp");
+    assertMatch("/foobar", "default", "", "/foobar");
+  }
+
+  @Test
+  public void testPlainPathAsPrefix() {
+    assertMatch("/api", "api", "/api", null);
+    assertMatch("/api/hello/world", "api", "/api", "/hello/world");
+  }
+
+  @Test
+  public void testExtension() {
+    assertMatch("/catalog/index.jsp", "catalog", "/catalog", "/index.jsp");
+    assertMatch("/other/index.jsp", "jsp", "/other/index.jsp", null);
+    assertMatch("/other.jsp/index", "default", "", "/other.jsp/index");
+  }
+
+  @Test
+  public void testDefault() {
+    assertMatch("/", "default", "", "/");
+    assertMatch("/index.html", "default", "", "/index.html");
+  }
+
+  @Test
+  public void testWildcardRoot() {
+    BarefootServletMapping<String, String> m =
+        BarefootServletMapping.<String, String>builder().add("/*", "all").add("/x", "x").build();
+    Assert.assertEquals("all", m.match("/a/b").getServlet());
+    Assert.assertEquals("", m.match("/a/b").getServletPath());
+    Assert.assertEquals("/a/b", m.match("/a/b").getPathInfo());
+    Assert.assertEquals("x", m.match("/x").getServlet());
+    Assert.assertEquals("x", m.match("/x/y").getServlet());
+  }
+
+  @Test
+  public void testEmpty() {
+    BarefootServletMapping.Match<String, String> match =
+        BarefootServletMapping.<String, String>empty().match("/a");
+    Assert.assertNull(match.getServlet());
+    Assert.assertEquals("", match.getServletPath());
+    Assert.assertEquals("/a", match.getPathInfo());
+  }
+
+  @Test
+  public void testChainPatterns() {
+    BarefootServletMapping<String, String> m =
+        BarefootServletMapping.<String, String>builder()
+            .add("/api/*", "api")
+            .add("/*")
+            .add("/api/secure/*")
+            .add("/status")
+            .add("*.json")
+            .build((servlet, patterns) -> servlet + " " + new TreeSet<>(patterns));
+    Assert.assertEquals("api [/*, /api/*]", m.match("/api/hello").getChain());
+    Assert.assertEquals(
+        "api [*.json, /*, /api/*, /api/secure/*]", m.match("/api/secure/x.json").getChain());
+    Assert.assertEquals("/secure/x.json", m.match("/api/secure/x.json").getPathInfo());
+    Assert.assertEquals("null [/*, /status]", m.match("/status").getChain());
+    Assert.assertEquals("", m.match("/status").getServletPath());
+    Assert.assertEquals("/status", m.match("/status").getPathInfo());
+    Assert.assertEquals("null [/*]", m.match("/status/more").getChain());
+    Assert.assertNull(m.match("/status/more").getServlet());
+  }
+
+  @Test
+  public void testDefaultPattern() {
+    BarefootServletMapping<String, String> m =
+        BarefootServletMapping.<String, String>builder()
+            .add("/", "default")
+            .add("/api/*", "api")
+            .add("/status", "status")
+            .add("*.jsp", "jsp")
+            .add("/")
+            .add("/index.html")
+            .build((servlet, patterns) -> servlet + " " + new TreeSet<>(patterns));
+    Assert.assertEquals("default [/]", m.match("/other").getChain());
+    Assert.assertEquals("default [/, /index.html]", m.match("/index.html").getChain());
+    Assert.assertEquals("api [/api/*]", m.match("/api/hello").getChain());
+    Assert.assertEquals("status [/status]", m.match("/status").getChain());
+    Assert.assertEquals("jsp [*.jsp]", m.match("/page.jsp").getChain());
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** session encoding tests */
+public class BarefootSessionCodecTest {
+
+  @Test
+  public void testRoundTrip() {
+    BarefootSessionData session = new BarefootSessionData("id", 1000L, 1800);
+    Map<String, Object> attributes = session.getAttributes();
+    List<Object> list = new ArrayList<>(Arrays.asList("a", 1, -2L, 3.5, true, null));
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("z", "last");
+    map.put("a", list);
+    attributes.put("string", "café");
+    attributes.put("int", Integer.MIN_VALUE);
+    attributes.put("long", Long.MAX_VALUE);
+    attributes.put("false", false);
+    attributes.put("map", map);
+    attributes.put("hash", new HashMap<>(map));
+    attributes.put("decimal", new BigDecimal("1.25"));
+
+    byte[] encoded = BarefootSessionCodec.encode(session);
+    BarefootSessionData decoded = BarefootSessionCodec.decode(encoded, getClass().getClassLoader());
+
+    Assert.assertEquals("id", decoded.getId());
+    Assert.assertEquals(1000L, decoded.getCreationTime());
+    Assert.assertEquals(1000L, BarefootSessionCodec.lastAccessedTime(encoded));
+    Assert.assertEquals(1800, decoded.getMaxInactiveInterval());
+    Assert.assertEquals(attributes, decoded.getAttributes());
+    Assert.assertEquals(LinkedHashMap.class, decoded.getAttributes().get("map").getClass());
+    Assert.assertEquals(HashMap.class, decoded.getAttributes().get("hash").getClass());
+    Assert.assertArrayEquals(encoded, BarefootSessionCodec.encode(decoded));
+  }
+
+  @Test
+  public void testCompact() {
+    BarefootSessionData session = new BarefootSessionData("id", 0L, 60);
+    session.getAttributes().put("n", 1);
+
+    Assert.assertEquals(9 + 3 + 8 + 1 + 1 + 2 + 2, BarefootSessionCodec.encode(session).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncated() {
+    BarefootSessionData session = new BarefootSessionData("id", 0L, 60);
+    session.getAttributes().put("name", "value");
+    byte[] encoded = BarefootSessionCodec.encode(session);
+
+    BarefootSessionCodec.decode(
+        Arrays.copyOf(encoded, encoded.length - 2), getClass().getClassLoader());
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.context.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test histogram buckets and percentiles */
+public class BarefootHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (int i = 0; i < BarefootHistogram.BUCKETS; i++) {
+      long lower = BarefootHistogram.lowerBound(i);
+      long upper = BarefootHistogram.upperBound(i);
+      Assert.assertEquals(i, BarefootHistogram.bucketOf(lower));
+      Assert.assertEquals(i, BarefootHistogram.bucketOf(upper));
+      Assert.assertTrue(upper - lower <= lower / 8);
+    }
+    Assert.assertEquals(BarefootHistogram.BUCKETS - 1, BarefootHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    BarefootHistogram histogram = new BarefootHistogram();
+    Assert.assertEquals(0, histogram.getPercentile(99));
+
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+
+    Assert.assertEquals(1000, histogram.getCount());
+    Assert.assertEquals(1000000, histogram.getMax());
+    assertNear(500000, histogram.getPercentile(50));
+    assertNear(990000, histogram.getPercentile(99));
+    Assert.assertEquals(1000000, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void testMetric() {
+    BarefootMetric metric = new BarefootMetric("test");
+    metric.record(100, 200, 10, 20);
+    metric.record(300, 404, -1, 5);
+    metric.record(200, 500, 0, -1);
+
+    BarefootMetricSnapshot snapshot = metric.snapshot();
+    Assert.assertEquals("test", snapshot.getName());
+    Assert.assertEquals(3, snapshot.getCount());
+    Assert.assertEquals(1, snapshot.getStatus2xx());
+    Assert.assertEquals(1, snapshot.getStatus4xx());
+    Assert.assertEquals(1, snapshot.getStatus5xx());
+    Assert.assertEquals(10, snapshot.getRequestBytes());
+    Assert.assertEquals(25, snapshot.getResponseBytes());
+    Assert.assertEquals(200, snapshot.getMeanNanos());
+    Assert.assertEquals(300, snapshot.getMaxNanos());
+  }
+
+  private static void assertNear(long expected, long actual) {
+    Assert.assertTrue(
+        actual + " not near " + expected, Math.abs(actual - expected) <= expected / 8);
+  }
+}
@@ -26,28 +26,69 @@ import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
 import net.sf.barefoot.context.AbstractServletResponse;
+import net.sf.barefoot.context.BarefootPrimingRequest;
 import net.sf.barefoot.context.BarefootServletException;
+import net.sf.barefoot.context.jfr.BarefootResponseSerializationEvent;
 
 /** dispatcher for Google messages */
 public class BarefootGoogleFunction implements HttpFunction {
   final AbstractServletContext servletContext;
   final HttpServletRequestFactory requestFactory;
-  static final String SET_COOKIE = "SetCookie";
+  static final String SET_COOKIE = "SetCookie", CONTENT_TYPE = "Content-Type";
 
   public BarefootGoogleFunction(AbstractServletContext ctx) {
     servletContext = ctx;
     requestFactory = new HttpServletRequestFactory();
   }
 
+  /**
+   * runs the context's priming requests through this function, the responses are discarded
+   *
+   * @return number of requests run
+   */
+  public int prime() {
+    return servletContext.prime(servletContext.getPrimingRequests(), this::prime);
+  }
+
+  void prime(BarefootPrimingRequest request) {
+    service(new PrimingHttpRequest(request), new PrimingHttpRequest.Response());
+  }
+
+  /**
+   * recognises keep-warm pings by the warmup header
+   *
+   * @param request Google request
+   * @param header true to accept the warmup header
+   * @return true if the request should not be dispatched
+   */
+  static boolean isWarmup(HttpRequest request, boolean header) {
+    Map<String, List<String>> headers = request.getHeaders();
+
+    if (header && headers != null) {
+      for (String name : headers.keySet()) {
+        if (AbstractServletContext.WARMUP_HEADER.equalsIgnoreCase(name)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
   @Override
   public void service(HttpRequest request, HttpResponse response) {
+    if (isWarmup(request, servletContext.isWarmupHeaderEnabled())) {
+      response.setStatusCode(204);
+      return;
+    }
+
     try {
       AbstractServletRequest sreq = requestFactory.create(servletContext, request, response);
       AbstractServletResponse resp =
@@ -71,6 +112,8 @@ public class BarefootGoogleFunction implements HttpFunction {
               .build();
 
       servletContext.dispatch(sreq, resp);
+      BarefootResponseSerializationEvent event = new BarefootResponseSerializationEvent();
+      event.begin();
       response.setStatusCode(resp.getStatus());
       String contentType = resp.getContentType();
 
@@ -83,25 +126,32 @@ public class BarefootGoogleFunction implements HttpFunction {
             });
       }
 
-      Collection<String> headers = resp.getHeaderNames();
-
-      if (headers != null && !headers.isEmpty()) {
-        for (String header : headers) {
-          if ("Content-Type".equalsIgnoreCase(header)) {
-            contentType = resp.getHeader(header);
-          } else {
-            Collection<String> values = resp.getHeaders(header);
-            if (values != null && !values.isEmpty()) {
-              for (String value : values) {
-                response.appendHeader(header, value);
+      String[] headerType = new String[1];
+
+      resp.forEachHeader(
+          (name, value) -> {
+            if (CONTENT_TYPE.equalsIgnoreCase(name)) {
+              if (headerType[0] == null) {
+                headerType[0] = value;
               }
+            } else {
+              response.appendHeader(name, value);
             }
-          }
-        }
+          });
+
+      if (headerType[0] != null) {
+        contentType = headerType[0];
       }
 
       response.setContentType(contentType);
 
+      if (event.shouldCommit()) {
+        event.adapter = "google";
+        event.status = resp.getStatus();
+        event.bodyLength = -1;
+        event.commit();
+      }
+
     } catch (RuntimeException | IOException | BarefootServletException ex) {
       Logger.getGlobal().log(Level.INFO, ex.getMessage(), ex);
       response.setStatusCode(500);
@@ -25,13 +25,14 @@ import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import net.sf.barefoot.context.AbstractServletContext;
 import net.sf.barefoot.context.AbstractServletRequest;
+import net.sf.barefoot.context.BarefootRequestHeaders;
 import net.sf.barefoot.context.BarefootServletContextLogger;
+import net.sf.barefoot.context.jfr.BarefootRequestConversionEvent;
 
 /** create HTTP servlet request from Google request */
 public class HttpServletRequestFactory {
@@ -40,7 +41,6 @@ public class HttpServletRequestFactory {
       X_FORWARD_PROTO = "x-forwarded-proto",
       X_FORWARD_HOST = "x-forwarded-host",
       X_FORWARD_PREFIX = "x-forwarded-prefix";
-  static final String[] EMPTY_LIST = {};
 
   /**
    * create servlet request based on Azure request
@@ -54,11 +54,12 @@ public class HttpServletRequestFactory {
   public AbstractServletRequest create(
       AbstractServletContext servletContext, HttpRequest req, HttpResponse resp)
       throws IOException {
+    BarefootRequestConversionEvent event = new BarefootRequestConversionEvent();
+    event.begin();
     final String reqUri = req.getUri();
     final URL reqUrl = new URL(reqUri);
     AbstractServletRequest.Builder builder = servletContext.getServletRequestBuilder();
-    final Map<String, List<String>> hdrs = new HashMap<>();
-    final Map<String, String[]> params = new HashMap<>();
+    final BarefootRequestHeaders hdrs = new BarefootRequestHeaders();
     final long contentLength = req.getContentLength();
     final String contentType = req.getContentType().orElse(null);
     final String queryString = req.getQuery().orElse(null);
@@ -77,44 +78,38 @@ public class HttpServletRequestFactory {
 
     if (reqHead != null) {
       for (Map.Entry<String, List<String>> s : reqHead.entrySet()) {
-        final String key = s.getKey().toLowerCase();
-        final List<String> values = s.getValue();
-        boolean addHeader = true;
-        switch (key) {
-          case COOKIE:
-            builder.cookies(values);
-            addHeader = false;
-            break;
-          case X_FORWARD_PREFIX:
-            {
-              String value = values.get(0);
-              switch (value) {
-                case "":
-                case "/":
-                  contextPath = "";
-                  break;
-                default:
-                  contextPath = value;
-                  break;
-              }
-            }
-            break;
-          case X_FORWARD_HOST:
-            serverName = values.get(0);
-            break;
-          case X_FORWARD_PORT:
-            serverPort = Integer.parseInt(values.get(0));
-            break;
-          case X_FORWARD_PROTO:
-            proto = values.get(0);
-            break;
-        }
-        if (addHeader) {
-          hdrs.put(key, values);
-        }
+        hdrs.add(s.getKey(), s.getValue());
       }
     }
 
+    if (hdrs.contains(COOKIE)) {
+      builder.cookies(hdrs.getAll(COOKIE));
+    }
+
+    String prefix = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PREFIX);
+
+    if (prefix != null) {
+      contextPath = prefix.isEmpty() || "/".equals(prefix) ? "" : prefix;
+    }
+
+    String forwardedHost = hdrs.get(BarefootRequestHeaders.X_FORWARDED_HOST);
+
+    if (forwardedHost != null) {
+      serverName = forwardedHost;
+    }
+
+    String forwardedPort = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PORT);
+
+    if (forwardedPort != null) {
+      serverPort = Integer.parseInt(forwardedPort);
+    }
+
+    String forwardedProto = hdrs.get(BarefootRequestHeaders.X_FORWARDED_PROTO);
+
+    if (forwardedProto != null) {
+      proto = forwardedProto;
+    }
+
     final boolean isSecure = "https".equals(proto);
 
     String uri = contextPath + path;
@@ -148,18 +143,6 @@ public class HttpServletRequestFactory {
       url = uri;
     }
 
-    Map<String, List<String>> qp = req.getQueryParameters();
-
-    if (qp != null && !qp.isEmpty()) {
-      qp.entrySet()
-          .forEach(
-              (q) -> {
-                params.put(q.getKey(), q.getValue().toArray(EMPTY_LIST));
-              });
-    }
-
-    builder.parameters(params);
-
     builder.inputStream(
         () -> {
           try {
@@ -196,6 +179,14 @@ public class HttpServletRequestFactory {
     result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_REQUEST, req);
     result.setAttribute(AbstractServletRequest.ATTR_ORIGINAL_RESPONSE, resp);
 
+    if (event.shouldCommit()) {
+      event.adapter = "google";
+      event.method = result.getMethod();
+      event.requestURI = result.getRequestURI();
+      event.contentLength = result.getContentLengthLong();
+      event.commit();
+    }
+
     return result;
   }
 
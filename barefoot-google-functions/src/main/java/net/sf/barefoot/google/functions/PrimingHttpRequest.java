@@ -0,0 +1,174 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.google.functions;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import net.sf.barefoot.context.BarefootContentType;
+import net.sf.barefoot.context.BarefootPrimingRequest;
+
+/** Google request for priming requests run during initialisation */
+class PrimingHttpRequest implements HttpRequest {
+  private final BarefootPrimingRequest request;
+  private final String uri, contentType, characterEncoding;
+  private final byte[] body;
+
+  PrimingHttpRequest(BarefootPrimingRequest r) {
+    request = r;
+    uri =
+        "http://localhost"
+            + request.getPath()
+            + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+    contentType = request.getHeader("content-type");
+    characterEncoding = BarefootContentType.getCharsetFromContentType(contentType);
+    body =
+        request.getBody() == null
+            ? new byte[0]
+            : request
+                .getBody()
+                .getBytes(
+                    characterEncoding == null
+                        ? StandardCharsets.UTF_8
+                        : Charset.forName(characterEncoding));
+  }
+
+  @Override
+  public String getMethod() {
+    return request.getMethod();
+  }
+
+  @Override
+  public String getUri() {
+    return uri;
+  }
+
+  @Override
+  public String getPath() {
+    return request.getPath();
+  }
+
+  @Override
+  public Optional<String> getQuery() {
+    return Optional.ofNullable(request.getQueryString());
+  }
+
+  @Override
+  public Map<String, List<String>> getQueryParameters() {
+    return request.getQueryParameters();
+  }
+
+  @Override
+  public Map<String, HttpPart> getParts() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public Optional<String> getContentType() {
+    return Optional.ofNullable(contentType);
+  }
+
+  @Override
+  public long getContentLength() {
+    return request.getBody() == null ? -1L : body.length;
+  }
+
+  @Override
+  public Optional<String> getCharacterEncoding() {
+    return Optional.ofNullable(characterEncoding);
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new ByteArrayInputStream(body);
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(
+        new InputStreamReader(
+            getInputStream(),
+            characterEncoding == null
+                ? StandardCharsets.UTF_8
+                : Charset.forName(characterEncoding)));
+  }
+
+  @Override
+  public Map<String, List<String>> getHeaders() {
+    return request.getHeaders();
+  }
+
+  /** response that keeps the status and discards everything else */
+  static class Response implements HttpResponse {
+    int status = 200;
+    final Map<String, List<String>> headers = new HashMap<>();
+
+    @Override
+    public void setStatusCode(int code) {
+      status = code;
+    }
+
+    @Override
+    public void setStatusCode(int code, String message) {
+      status = code;
+    }
+
+    @Override
+    public void setContentType(String contentType) {}
+
+    @Override
+    public Optional<String> getContentType() {
+      return Optional.empty();
+    }
+
+    @Override
+    public void appendHeader(String header, String value) {}
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public BufferedWriter getWriter() {
+      return new BufferedWriter(Writer.nullWriter());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.google.functions;
+
+import com.google.cloud.functions.HttpRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.barefoot.context.javax.BarefootServletContext;
+import net.sf.barefoot.context.metrics.BarefootMetrics;
+import net.sf.barefoot.google.concrete.ConcreteHttpRequest;
+import net.sf.barefoot.google.concrete.ConcreteHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** dispatch from many threads at once */
+public class ConcurrentDispatchTest {
+  static final int THREADS = 8, REQUESTS = 4000;
+  final AtomicInteger requests = new AtomicInteger();
+
+  @Test
+  public void testConcurrentDispatch() throws Exception {
+    BarefootServletContext context = new BarefootServletContext("");
+    context.addListener(
+        new ServletRequestListener() {
+          @Override
+          public void requestInitialized(ServletRequestEvent sre) {
+            requests.incrementAndGet();
+          }
+
+          @Override
+          public void requestDestroyed(ServletRequestEvent sre) {}
+        });
+    context
+        .addFilter(
+            "attributes",
+            new Filter() {
+              @Override
+              public void init(FilterConfig config) {}
+
+              @Override
+              public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+                  throws IOException, ServletException {
+                String name = ((HttpServletRequest) req).getPathInfo();
+                req.getServletContext().setAttribute(name, name);
+                chain.doFilter(req, resp);
+                req.getServletContext().removeAttribute(name);
+              }
+
+              @Override
+              public void destroy() {}
+            })
+        .addMappingForUrlPatterns(null, true, "/*");
+    context
+        .addServlet(
+            "echo",
+            new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp)
+                  throws IOException {
+                Object value = getServletContext().getAttribute(req.getPathInfo());
+                resp.setContentType("text/plain");
+                resp.getOutputStream().write(value.toString().getBytes(StandardCharsets.UTF_8));
+              }
+            })
+        .addMapping("/echo/*");
+    context.onStartup();
+
+    BarefootGoogleFunction function = new BarefootGoogleFunction(context);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Callable<Boolean>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < REQUESTS; i++) {
+      String path = "/" + i;
+      tasks.add(
+          () -> {
+            HttpRequest req =
+                ConcreteHttpRequest.builder()
+                    .headers(new HashMap<>())
+                    .queryParameters(new HashMap<>())
+                    .method("GET")
+                    .contentType(Optional.empty())
+                    .path("/echo" + path)
+                    .uri("http://localhost/echo" + path)
+                    .query(Optional.empty())
+                    .characterEncoding(Optional.empty())
+                    .build();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            ConcreteHttpResponse resp =
+                ConcreteHttpResponse.builder().setOutputStream(body).build();
+            function.service(req, resp);
+            return resp.getStatusCode() == 200
+                && path.equals(new String(body.toByteArray(), StandardCharsets.UTF_8));
+          });
+    }
+
+    try {
+      for (Future<Boolean> f : executor.invokeAll(tasks)) {
+        Assert.assertTrue(f.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(REQUESTS, requests.get());
+    Assert.assertEquals(
+        Collections.singletonList(BarefootMetrics.ATTRIBUTE),
+        Collections.list(context.getAttributeNames()));
+    Assert.assertEquals(REQUESTS, context.getMetrics().getRequests().getCount());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.google.functions;
+
+import net.sf.barefoot.context.AbstractServletContext;
+import net.sf.barefoot.context.BarefootPrimingRequest;
+import net.sf.barefoot.context.javax.BarefootServletContext;
+import net.sf.barefoot.testtool.javax.PrimingFixture;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** priming requests and keep-warm pings */
+public class PrimingTest {
+  final PrimingFixture fixture = new PrimingFixture();
+  boolean warmupHeader = true;
+
+  BarefootServletContext createContext() throws Exception {
+    BarefootServletContext context = new BarefootServletContext("/app");
+    context.setInitParameter(AbstractServletContext.WARMUP, Boolean.toString(warmupHeader));
+    context.setInitParameter(AbstractServletContext.PRIMING, PrimingFixture.RESOURCE);
+    fixture.register(context);
+    context.onStartup();
+    return context;
+  }
+
+  PrimingHttpRequest.Response ping(BarefootGoogleFunction function) {
+    BarefootPrimingRequest ping =
+        new BarefootPrimingRequest.Builder()
+            .target("/echo/hello")
+            .header("X-Barefoot-Warmup", "true")
+            .build();
+    PrimingHttpRequest.Response reply = new PrimingHttpRequest.Response();
+
+    function.service(new PrimingHttpRequest(ping), reply);
+    return reply;
+  }
+
+  @Test
+  public void testPrime() throws Exception {
+    BarefootGoogleFunction function = new BarefootGoogleFunction(createContext());
+
+    fixture.assertPrimed(function.prime());
+  }
+
+  @Test
+  public void testWarmup() throws Exception {
+    PrimingHttpRequest.Response reply = ping(new BarefootGoogleFunction(createContext()));
+
+    Assert.assertEquals(204, reply.status);
+    fixture.assertNotDispatched();
+  }
+
+  @Test
+  public void testWarmupHeaderDisabled() throws Exception {
+    warmupHeader = false;
+    ping(new BarefootGoogleFunction(createContext()));
+
+    fixture.assertDispatched();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads @WebServlet, @WebFilter and @WebListener from the compiled classes at build time and writes
+ * the registrations the runtime annotation initializer would make.
+ */
+class AnnotationReader {
+  final BootstrapSource source;
+  final String api;
+
+  /**
+   * @param s generated statements
+   * @param a servlet api package prefix, javax or jakarta
+   */
+  AnnotationReader(BootstrapSource s, String a) {
+    source = s;
+    api = a;
+  }
+
+  void read(Class<?> cls) throws ReflectiveOperationException {
+    String literal = BootstrapSource.classLiteral(cls.getName());
+
+    for (Annotation annotation : cls.getAnnotations()) {
+      String type = annotation.annotationType().getName();
+
+      if (type.equals(api + ".servlet.annotation.WebServlet")) {
+        source.open("");
+        source.line(
+            "ServletRegistration.Dynamic servlet = ctx.addServlet("
+                + BootstrapSource.literal((String) get(annotation, "name"))
+                + ", "
+                + literal
+                + ");");
+        source.line("servlet.setLoadOnStartup(" + get(annotation, "loadOnStartup") + ");");
+        initParams("servlet", (Object[]) get(annotation, "initParams"));
+        source.line(
+            "servlet.addMapping(" + strings((String[]) get(annotation, "urlPatterns")) + ");");
+        source.close();
+      }
+
+      if (type.equals(api + ".servlet.annotation.WebListener")) {
+        source.line("ctx.addListener(" + literal + ");");
+      }
+
+      if (type.equals(api + ".servlet.annotation.WebFilter")) {
+        source.open("");
+        source.line(
+            "FilterRegistration.Dynamic filter = ctx.addFilter("
+                + BootstrapSource.literal((String) get(annotation, "filterName"))
+                + ", "
+                + literal
+                + ");");
+        initParams("filter", (Object[]) get(annotation, "initParams"));
+        List<String> types = new ArrayList<>();
+        for (Object dt : (Object[]) get(annotation, "dispatcherTypes")) {
+          types.add("DispatcherType." + ((Enum<?>) dt).name());
+        }
+        String urls = strings((String[]) get(annotation, "urlPatterns"));
+        source.line(
+            "filter.addMappingForUrlPatterns("
+                + (types.isEmpty()
+                    ? "EnumSet.noneOf(DispatcherType.class)"
+                    : "EnumSet.of(" + String.join(", ", types) + ")")
+                + ", true"
+                + (urls.isEmpty() ? "" : ", " + urls)
+                + ");");
+        source.close();
+      }
+    }
+  }
+
+  private void initParams(String registration, Object[] params)
+      throws ReflectiveOperationException {
+    for (Object param : params) {
+      Annotation a = (Annotation) param;
+      source.line(
+          registration
+              + ".setInitParameter("
+              + BootstrapSource.literal((String) get(a, "name"))
+              + ", "
+              + BootstrapSource.literal((String) get(a, "value"))
+              + ");");
+    }
+  }
+
+  private static String strings(String[] values) {
+    StringBuilder sb = new StringBuilder();
+    for (String value : Arrays.asList(values)) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append(BootstrapSource.literal(value));
+    }
+    return sb.toString();
+  }
+
+  private static Object get(Annotation annotation, String name)
+      throws ReflectiveOperationException {
+    try {
+      return annotation.annotationType().getMethod(name).invoke(annotation);
+    } catch (InvocationTargetException ex) {
+      throw new ReflectiveOperationException(ex.getTargetException());
+    }
+  }
+}
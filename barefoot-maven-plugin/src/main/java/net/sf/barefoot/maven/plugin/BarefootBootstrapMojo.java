@@ -0,0 +1,386 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates the container initialization at build time. The servlet container initializers found on
+ * the runtime classpath are resolved, web.xml and the servlet annotations are read and the
+ * registrations are written out as a single generated initializer, along with the bindings of
+ * META-INF/context.xml. The classes are compiled into the build output and named in
+ * META-INF/barefoot where the runtime looks for them before falling back to service loading and
+ * parsing.
+ */
+@Mojo(
+    name = "bootstrap",
+    defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+    requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class BarefootBootstrapMojo extends AbstractMojo {
+  @Parameter(defaultValue = "${project}", required = true, readonly = true)
+  MavenProject project;
+
+  /** javax or jakarta, detected from the classpath when not set */
+  @Parameter(property = "barefoot.servletApi")
+  String servletApi;
+
+  @Parameter(
+      property = "barefoot.className",
+      defaultValue = "net.sf.barefoot.generated.BarefootBootstrap")
+  String className;
+
+  @Parameter(
+      property = "barefoot.contextXmlClassName",
+      defaultValue = "net.sf.barefoot.generated.BarefootContextXmlBootstrap")
+  String contextXmlClassName;
+
+  @Parameter(defaultValue = "${project.build.directory}/generated-sources/barefoot")
+  File sourceDirectory;
+
+  @Parameter(property = "barefoot.bootstrap.skip", defaultValue = "false")
+  boolean skip;
+
+  static final String WEB_XML = "WEB-INF/web.xml",
+      CONTEXT_XML = "META-INF/context.xml",
+      META_INF_BAREFOOT = "META-INF/barefoot/",
+      CONTEXT_XML_BINDER = "net.sf.barefoot.context.xml.BarefootContextXmlBinder";
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("BarefootMojo bootstrap skipped");
+      return;
+    }
+
+    List<String> classpath;
+
+    try {
+      classpath = project.getRuntimeClasspathElements();
+    } catch (DependencyResolutionRequiredException ex) {
+      throw new MojoExecutionException("barefoot classpath", ex);
+    }
+
+    File outputDirectory = new File(project.getBuild().getOutputDirectory());
+    List<File> sources = new ArrayList<>();
+    List<String> resources = new ArrayList<>();
+
+    try (URLClassLoader loader = newClassLoader(classpath)) {
+      String api = servletApi != null ? servletApi : detectServletApi(loader);
+      String initializerType = api + ".servlet.ServletContainerInitializer";
+      List<String> initializers = providers(loader, initializerType);
+
+      if (initializers.isEmpty()) {
+        getLog().info("BarefootMojo no " + initializerType + " found");
+      } else {
+        sources.add(writeInitializer(loader, api, initializers));
+        resources.add(initializerType);
+        resources.add(className);
+      }
+
+      if (loader.getResource(CONTEXT_XML) != null
+          && loader.getResource(CONTEXT_XML_BINDER.replace('.', '/') + ".class") != null) {
+        sources.add(writeContextXml(loader));
+        resources.add("context.xml");
+        resources.add(contextXmlClassName);
+      }
+    } catch (MojoFailureException ex) {
+      throw ex;
+    } catch (IOException ex) {
+      throw new MojoExecutionException("barefoot IO error", ex);
+    } catch (Exception ex) {
+      throw new MojoExecutionException("barefoot bootstrap failed", ex);
+    }
+
+    if (sources.isEmpty()) {
+      return;
+    }
+
+    compile(classpath, outputDirectory, sources);
+
+    try {
+      for (int i = 0; i < resources.size(); i += 2) {
+        File file = new File(outputDirectory, META_INF_BAREFOOT + resources.get(i));
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), (resources.get(i + 1) + "\n").getBytes(StandardCharsets.UTF_8));
+        getLog().info("BarefootMojo wrote " + file);
+      }
+    } catch (IOException ex) {
+      throw new MojoExecutionException("barefoot IO error", ex);
+    }
+  }
+
+  private File writeInitializer(ClassLoader loader, String api, List<String> initializers)
+      throws Exception {
+    BootstrapSource source = new BootstrapSource();
+
+    for (String initializer : initializers) {
+      source.line(
+          "ctx.log(" + BootstrapSource.literal("Barefoot, initializing " + initializer) + ");");
+
+      if (initializer.equals("net.sf.barefoot.web.xml." + api + ".BarefootWebXmlInitializer")) {
+        URL url = loader.getResource(WEB_XML);
+        if (url == null) {
+          throw new MojoFailureException(WEB_XML + " not found");
+        }
+        try (InputStream is = url.openStream()) {
+          SAXParserFactory.newInstance().newSAXParser().parse(is, new WebXmlReader(source));
+        }
+      } else if (initializer.equals(
+          "net.sf.barefoot.annotation." + api + ".BarefootAnnotationInitializer")) {
+        AnnotationReader reader = new AnnotationReader(source, api);
+        for (String cls : handlesTypes(loader, loader.loadClass(initializer))) {
+          reader.read(Class.forName(cls, false, loader));
+        }
+      } else {
+        List<String> literals = new ArrayList<>();
+        for (String cls : handlesTypes(loader, loader.loadClass(initializer))) {
+          literals.add(BootstrapSource.classLiteral(cls));
+        }
+        source.line(
+            "new "
+                + initializer.replace('$', '.')
+                + "().onStartup(new HashSet<>(Arrays.<Class<?>>asList("
+                + String.join(", ", literals)
+                + ")), ctx);");
+      }
+    }
+
+    String webXmlInitializer = "net.sf.barefoot.web.xml." + api + ".BarefootWebXmlInitializer";
+    List<String> body = new ArrayList<>();
+    body.add("import java.util.Arrays;");
+    body.add("import java.util.EnumSet;");
+    body.add("import java.util.HashSet;");
+    body.add("import java.util.Set;");
+    body.add("import java.util.function.Function;");
+    for (String type :
+        Arrays.asList(
+            "DispatcherType",
+            "FilterRegistration",
+            "ServletContainerInitializer",
+            "ServletContext",
+            "ServletException",
+            "ServletRegistration")) {
+      body.add("import " + api + ".servlet." + type + ";");
+    }
+    body.add("");
+    body.add("/** Generated by the barefoot-maven-plugin bootstrap goal, do not edit. */");
+    body.add(
+        "public final class "
+            + simpleName(className)
+            + " implements ServletContainerInitializer {");
+    if (source.usesExpander) {
+      body.add("  private Function<String, String> expander;");
+      body.add("");
+    }
+    body.add("  @Override");
+    body.add(
+        "  public void onStartup(Set<Class<?>> classes, ServletContext ctx) throws ServletException"
+            + " {");
+    body.addAll(source.lines);
+    body.add("  }");
+    if (source.usesExpander) {
+      body.add("");
+      body.add("  private String expand(String value) {");
+      body.add("    if (expander == null) {");
+      body.add("      expander = " + webXmlInitializer + ".newValueExpander();");
+      body.add("    }");
+      body.add("    return expander.apply(value);");
+      body.add("  }");
+    }
+    body.add("}");
+
+    return write(className, body);
+  }
+
+  private File writeContextXml(ClassLoader loader) throws Exception {
+    BootstrapSource source = new BootstrapSource();
+
+    try (InputStream is = loader.getResource(CONTEXT_XML).openStream()) {
+      SAXParserFactory.newInstance().newSAXParser().parse(is, new ContextXmlReader(source));
+    }
+
+    List<String> body = new ArrayList<>();
+    body.add("import javax.naming.NamingException;");
+    body.add("import " + CONTEXT_XML_BINDER + ";");
+    body.add("");
+    body.add("/** Generated by the barefoot-maven-plugin bootstrap goal, do not edit. */");
+    body.add(
+        "public final class "
+            + simpleName(contextXmlClassName)
+            + " implements BarefootContextXmlBinder.Bootstrap {");
+    body.add("  @Override");
+    body.add("  public void bind(BarefootContextXmlBinder binder) throws NamingException {");
+    body.addAll(source.lines);
+    body.add("  }");
+    body.add("}");
+
+    return write(contextXmlClassName, body);
+  }
+
+  private File write(String name, List<String> body) throws IOException {
+    List<String> lines = new ArrayList<>();
+    int dot = name.lastIndexOf('.');
+    if (dot > 0) {
+      lines.add("package " + name.substring(0, dot) + ";");
+      lines.add("");
+    }
+    lines.addAll(body);
+
+    File file = new File(sourceDirectory, name.replace('.', File.separatorChar) + ".java");
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    getLog().info("BarefootMojo generated " + file);
+    return file;
+  }
+
+  private void compile(List<String> classpath, File outputDirectory, List<File> sources)
+      throws MojoExecutionException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    if (compiler == null) {
+      throw new MojoExecutionException("barefoot bootstrap requires a JDK");
+    }
+
+    List<String> args = new ArrayList<>();
+    Properties properties = project.getProperties();
+    String release = properties.getProperty("maven.compiler.release");
+    String target = properties.getProperty("maven.compiler.target");
+    if (release != null) {
+      args.add("--release");
+      args.add(release);
+    } else if (target != null) {
+      args.add("-source");
+      args.add(properties.getProperty("maven.compiler.source", target));
+      args.add("-target");
+      args.add(target);
+    }
+    args.addAll(
+        Arrays.asList(
+            "-nowarn",
+            "-encoding",
+            "UTF-8",
+            "-d",
+            outputDirectory.getPath(),
+            "-classpath",
+            String.join(File.pathSeparator, classpath)));
+    for (File source : sources) {
+      args.add(source.getPath());
+    }
+
+    if (compiler.run(null, null, null, args.toArray(new String[args.size()])) != 0) {
+      throw new MojoExecutionException("barefoot bootstrap failed to compile");
+    }
+  }
+
+  private static URLClassLoader newClassLoader(List<String> classpath) throws IOException {
+    URL[] urls = new URL[classpath.size()];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = new File(classpath.get(i)).toURI().toURL();
+    }
+    return new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+  }
+
+  static String detectServletApi(ClassLoader loader) {
+    return loader.getResource("javax/servlet/ServletContainerInitializer.class") == null
+            && loader.getResource("jakarta/servlet/ServletContainerInitializer.class") != null
+        ? "jakarta"
+        : "javax";
+  }
+
+  /** the classes service loading would find for each type named by @HandlesTypes */
+  static Set<String> handlesTypes(ClassLoader loader, Class<?> initializer)
+      throws IOException, ReflectiveOperationException {
+    Set<String> classes = new LinkedHashSet<>();
+
+    for (Annotation annotation : initializer.getAnnotations()) {
+      if (annotation.annotationType().getName().endsWith(".servlet.annotation.HandlesTypes")) {
+        Class<?>[] types =
+            (Class<?>[]) annotation.annotationType().getMethod("value").invoke(annotation);
+        for (Class<?> type : types) {
+          classes.addAll(providers(loader, type.getName()));
+        }
+      }
+    }
+
+    return classes;
+  }
+
+  /**
+   * provider class names from META-INF/services in classpath order, as service loading reads them
+   */
+  static List<String> providers(ClassLoader loader, String type) throws IOException {
+    Set<String> names = new LinkedHashSet<>();
+    Enumeration<URL> urls = loader.getResources("META-INF/services/" + type);
+
+    while (urls.hasMoreElements()) {
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(urls.nextElement().openStream(), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int hash = line.indexOf('#');
+          if (hash >= 0) {
+            line = line.substring(0, hash);
+          }
+          line = line.trim();
+          if (!line.isEmpty()) {
+            names.add(line);
+          }
+        }
+      }
+    }
+
+    return new ArrayList<>(names);
+  }
+
+  private static String simpleName(String name) {
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+}
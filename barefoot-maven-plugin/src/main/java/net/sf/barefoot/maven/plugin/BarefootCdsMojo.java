@@ -0,0 +1,427 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Creates an application class data sharing archive for a packaged function. The deployment is
+ * unpacked and its main jar run once per sample event with -XX:DumpLoadedClassList, so the list
+ * covers startup and the first request. The merged list is dumped to an archive and a JVM options
+ * file referring to it, both are added to the deployment next to the main jar, then startup is
+ * timed with and without the archive.
+ *
+ * <p>The archive is only valid for the JVM that created it and for the jar paths as given, so the
+ * function must be run with the same JVM from the directory of the main jar. The options name the
+ * archive relative to that directory, or by its absolute path when {@link #root} gives where the
+ * deployment is unpacked.
+ */
+@Mojo(name = "cds", defaultPhase = LifecyclePhase.VERIFY)
+public class BarefootCdsMojo extends AbstractMojo {
+  @Parameter(defaultValue = "${project}", required = true, readonly = true)
+  MavenProject project;
+
+  @Parameter(property = "extension")
+  String extension;
+
+  /** deployment package, defaults to the final name with the extension */
+  @Parameter(property = "file")
+  String file;
+
+  /** main jar within the deployment, found by its Main-Class when not set */
+  @Parameter(property = "barefoot.cds.jar")
+  String jar;
+
+  /** handler class passed to the main class */
+  @Parameter(property = "barefoot.cds.handler", required = true)
+  String handler;
+
+  /** sample events, each given as standard input to one run */
+  @Parameter(required = true)
+  File[] events;
+
+  /** java executable, defaults to the one running maven */
+  @Parameter(property = "barefoot.cds.java")
+  String java;
+
+  /** number of timed runs with and without the archive, the best of each is reported */
+  @Parameter(property = "barefoot.cds.runs", defaultValue = "3")
+  int runs;
+
+  /** directory the deployment is unpacked into when deployed, such as /var/task on AWS Lambda */
+  @Parameter(property = "barefoot.cds.root")
+  String root;
+
+  @Parameter(property = "barefoot.cds.skip", defaultValue = "false")
+  boolean skip;
+
+  static final String CLASSLIST = ".classlist", ARCHIVE = ".jsa", OPTIONS = ".jvmopts";
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (skip) {
+      getLog().info("BarefootMojo cds skipped");
+      return;
+    }
+
+    if (events == null || events.length == 0) {
+      throw new MojoFailureException("barefoot cds requires at least one event");
+    }
+
+    String target = project.getBuild().getDirectory();
+    String finalName = project.getBuild().getFinalName();
+
+    if (file == null) {
+      file = target + File.separator + finalName;
+      if (extension != null) {
+        file = file + extension;
+      }
+    }
+
+    if (java == null) {
+      java =
+          System.getProperty("java.home")
+              + File.separator
+              + "bin"
+              + File.separator
+              + (File.separatorChar == '\\' ? "java.exe" : "java");
+    }
+
+    File work = new File(target, "barefoot-cds");
+    File classList = new File(target, finalName + CLASSLIST);
+    File archive = new File(target, finalName + ARCHIVE);
+    File options = new File(target, finalName + OPTIONS);
+
+    try {
+      getLog().info("BarefootMojo cds processing: " + file);
+
+      String main = unpack(new File(file), work);
+      File directory = new File(work, main).getParentFile();
+      String mainJar = new File(main).getName();
+      ClassList merged = new ClassList();
+
+      for (int i = 0; i < events.length; i++) {
+        File list = new File(work, "run-" + i + CLASSLIST);
+        run(
+            directory,
+            events[i],
+            new File(work, "run-" + i + ".log"),
+            java,
+            "-XX:DumpLoadedClassList=" + list.getAbsolutePath(),
+            "-jar",
+            mainJar,
+            handler);
+
+        try (BufferedReader reader =
+            Files.newBufferedReader(list.toPath(), StandardCharsets.UTF_8)) {
+          merged.add(reader);
+        }
+      }
+
+      try (Writer writer = Files.newBufferedWriter(classList.toPath(), StandardCharsets.UTF_8)) {
+        merged.write(writer);
+      }
+
+      run(
+          directory,
+          null,
+          new File(work, "dump.log"),
+          java,
+          "-Xshare:dump",
+          "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+          "-XX:SharedArchiveFile=" + archive.getAbsolutePath(),
+          "-cp",
+          mainJar);
+
+      String folder = main.substring(0, main.lastIndexOf('/') + 1);
+
+      try (Writer writer = Files.newBufferedWriter(options.toPath(), StandardCharsets.UTF_8)) {
+        writer.write("-XX:SharedArchiveFile=" + deployedPath(root, folder, archive) + "\n");
+        writer.write("-Xshare:auto\n");
+      }
+
+      addToPackage(new File(file), folder, archive, options);
+
+      getLog().info("BarefootMojo cds archived " + merged.getClassCount() + " classes: " + archive);
+      getLog().info("BarefootMojo cds options: " + options);
+      getLog().info("BarefootMojo cds added to " + file + ": " + folder + archive.getName());
+
+      long without = Long.MAX_VALUE, with = Long.MAX_VALUE;
+
+      for (int i = 0; i < runs; i++) {
+        without =
+            Math.min(
+                without,
+                run(
+                    directory,
+                    events[0],
+                    new File(work, "without.log"),
+                    java,
+                    "-jar",
+                    mainJar,
+                    handler));
+        with =
+            Math.min(
+                with,
+                run(
+                    directory,
+                    events[0],
+                    new File(work, "with.log"),
+                    java,
+                    "-XX:SharedArchiveFile=" + archive.getAbsolutePath(),
+                    "-Xshare:on",
+                    "-jar",
+                    mainJar,
+                    handler));
+      }
+
+      if (runs > 0) {
+        getLog()
+            .info(
+                "BarefootMojo cds startup "
+                    + TimeUnit.NANOSECONDS.toMillis(without)
+                    + "ms without archive, "
+                    + TimeUnit.NANOSECONDS.toMillis(with)
+                    + "ms with archive");
+      }
+    } catch (IOException ex) {
+      throw new MojoExecutionException("barefoot IO error", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("barefoot cds interrupted", ex);
+    }
+  }
+
+  /**
+   * unpacks the deployment and finds its main jar
+   *
+   * @param zip deployment package
+   * @param work directory to unpack into, emptied first
+   * @return path of the main jar relative to the work directory
+   */
+  String unpack(File zip, File work) throws IOException, MojoFailureException {
+    delete(work);
+    Path root = work.toPath().toAbsolutePath().normalize();
+    String main = null;
+    int depth = Integer.MAX_VALUE;
+
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        Path path = root.resolve(entry.getName()).normalize();
+
+        if (!path.startsWith(root)) {
+          throw new MojoFailureException("barefoot cds entry outside of package: " + entry);
+        }
+
+        if (entry.isDirectory()) {
+          Files.createDirectories(path);
+          continue;
+        }
+
+        Files.createDirectories(path.getParent());
+
+        try (InputStream is = zipFile.getInputStream(entry)) {
+          Files.copy(is, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        path.toFile().setLastModified(entry.getTime());
+
+        String name = entry.getName();
+
+        if (jar == null) {
+          int d = name.split("/").length;
+          if (name.endsWith(".jar") && d < depth && hasMainClass(path.toFile())) {
+            main = name;
+            depth = d;
+          }
+        } else {
+          if (name.equals(jar) || name.endsWith("/" + jar)) {
+            main = name;
+          }
+        }
+      }
+    }
+
+    if (main == null) {
+      throw new MojoFailureException(
+          "barefoot cds main jar not found in " + zip + (jar == null ? "" : ": " + jar));
+    }
+
+    return main;
+  }
+
+  /**
+   * path of a file added next to the main jar as the deployed JVM will see it
+   *
+   * @param root directory the deployment is unpacked into, or null for the main jar's directory
+   * @param folder directory of the main jar within the deployment, empty or ending with a slash
+   * @param file file added
+   * @return path
+   */
+  static String deployedPath(String root, String folder, File file) {
+    if (root == null || root.isEmpty()) {
+      return file.getName();
+    }
+
+    return (root.endsWith("/") ? root : root + "/") + folder + file.getName();
+  }
+
+  /**
+   * rewrites a deployment package with files added to one of its directories, replacing any entries
+   * of the same name
+   *
+   * @param zip deployment package
+   * @param folder directory within the package, empty or ending with a slash
+   * @param files files to add
+   */
+  static void addToPackage(File zip, String folder, File... files) throws IOException {
+    List<String> names = new ArrayList<>();
+
+    for (File f : files) {
+      names.add(folder + f.getName());
+    }
+
+    File temp = new File(zip.getPath() + ".tmp");
+
+    try (ZipFile zipFile = new ZipFile(zip);
+        ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(temp.toPath()))) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+
+        if (names.contains(entry.getName())) {
+          continue;
+        }
+
+        ZipEntry copy = new ZipEntry(entry);
+
+        if (copy.getMethod() != ZipEntry.STORED) {
+          copy.setCompressedSize(-1);
+        }
+
+        out.putNextEntry(copy);
+
+        try (InputStream is = zipFile.getInputStream(entry)) {
+          is.transferTo(out);
+        }
+
+        out.closeEntry();
+      }
+
+      for (int i = 0; i < files.length; i++) {
+        ZipEntry entry = new ZipEntry(names.get(i));
+        entry.setTime(files[i].lastModified());
+        out.putNextEntry(entry);
+        Files.copy(files[i].toPath(), out);
+        out.closeEntry();
+      }
+    }
+
+    Files.move(temp.toPath(), zip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static boolean hasMainClass(File file) throws IOException {
+    try (JarFile jarFile = new JarFile(file)) {
+      Manifest manifest = jarFile.getManifest();
+      return manifest != null && manifest.getMainAttributes().getValue("Main-Class") != null;
+    }
+  }
+
+  private static void delete(File file) throws IOException {
+    File[] children = file.listFiles();
+
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+
+    Files.deleteIfExists(file.toPath());
+  }
+
+  /**
+   * runs a JVM to completion
+   *
+   * @param directory working directory
+   * @param input standard input or null
+   * @param log receives standard output and error
+   * @param command command line
+   * @return elapsed nanoseconds
+   */
+  long run(File directory, File input, File log, String... command)
+      throws IOException, InterruptedException, MojoFailureException {
+    List<String> args = new ArrayList<>(Arrays.asList(command));
+    getLog().debug("BarefootMojo cds running: " + args);
+    ProcessBuilder builder =
+        new ProcessBuilder(args).directory(directory).redirectErrorStream(true).redirectOutput(log);
+
+    if (input != null) {
+      builder.redirectInput(input);
+    }
+
+    long started = System.nanoTime();
+    Process process = builder.start();
+
+    if (input == null) {
+      process.getOutputStream().close();
+    }
+
+    int status = process.waitFor();
+    long elapsed = System.nanoTime() - started;
+
+    if (status != 0) {
+      throw new MojoFailureException(
+          "barefoot cds " + args + " exited with " + status + ", see " + log);
+    }
+
+    return elapsed;
+  }
+}
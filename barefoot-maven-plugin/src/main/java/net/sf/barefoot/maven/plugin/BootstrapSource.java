@@ -0,0 +1,112 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Statements of a generated initializer method, indented for google-java-format. */
+class BootstrapSource {
+  final List<String> lines = new ArrayList<>();
+  boolean usesExpander;
+  int depth = 2;
+
+  BootstrapSource line(String text) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < depth; i++) {
+      sb.append("  ");
+    }
+    lines.add(sb.append(text).toString());
+    return this;
+  }
+
+  BootstrapSource open(String text) {
+    line(text.isEmpty() ? "{" : text + " {");
+    depth++;
+    return this;
+  }
+
+  BootstrapSource close() {
+    depth--;
+    return line("}");
+  }
+
+  /** a string literal, or a call to expand it at runtime when it holds a variable */
+  String value(String value) {
+    if (value != null && value.contains("${")) {
+      usesExpander = true;
+      return "expand(" + literal(value) + ")";
+    }
+    return literal(value);
+  }
+
+  /** comma separated values */
+  String values(List<String> values) {
+    StringBuilder sb = new StringBuilder();
+    for (String value : values) {
+      if (sb.length() > 0) {
+        sb.append(", ");
+      }
+      sb.append(value(value));
+    }
+    return sb.toString();
+  }
+
+  static String literal(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20 || c > 0x7e) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+          break;
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /** a class literal for a binary class name */
+  static String classLiteral(String className) {
+    return className.replace('$', '.') + ".class";
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Merges the class lists written by -XX:DumpLoadedClassList over several runs. Comments and ids are
+ * dropped, as ids only identify classes within one run, and classes from custom class loaders are
+ * left out since they can only be archived with their ids.
+ */
+class ClassList {
+  private static final Pattern ID = Pattern.compile(" id: \\d+");
+  private final Set<String> entries = new LinkedHashSet<>();
+
+  /**
+   * adds the entries of one class list, keeping the order of first appearance
+   *
+   * @param reader class list
+   * @throws IOException on read error
+   */
+  void add(BufferedReader reader) throws IOException {
+    String line;
+
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty() || line.startsWith("#") || line.contains(" source: ")) {
+        continue;
+      }
+
+      entries.add(ID.matcher(line).replaceAll(""));
+    }
+  }
+
+  /**
+   * number of classes, not counting lambda entries
+   *
+   * @return class count
+   */
+  int getClassCount() {
+    int count = 0;
+
+    for (String entry : entries) {
+      if (!entry.startsWith("@")) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  void write(Writer writer) throws IOException {
+    for (String entry : entries) {
+      writer.write(entry);
+      writer.write('\n');
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads META-INF/context.xml at build time and writes the calls the runtime context.xml handler
+ * makes on its binder. The binder expands variables when it runs.
+ */
+class ContextXmlReader extends DefaultHandler {
+  final BootstrapSource source;
+
+  ContextXmlReader(BootstrapSource s) {
+    source = s;
+  }
+
+  @Override
+  public void startElement(String uri, String lName, String qName, Attributes attr)
+      throws SAXException {
+    String name = BootstrapSource.literal(attr.getValue("name"));
+
+    switch (qName) {
+      case "Resource":
+        {
+          StringBuilder sb =
+              new StringBuilder("binder.resource(")
+                  .append(name)
+                  .append(", ")
+                  .append(BootstrapSource.literal(attr.getValue("type")))
+                  .append(", ")
+                  .append(BootstrapSource.literal(attr.getValue("factory")));
+
+          int i = attr.getLength();
+
+          while (0 != i--) {
+            String n = attr.getLocalName(i);
+
+            switch (n) {
+              case "name":
+              case "type":
+              case "factory":
+                break;
+              default:
+                sb.append(", ")
+                    .append(BootstrapSource.literal(n))
+                    .append(", ")
+                    .append(BootstrapSource.literal(attr.getValue(i)));
+                break;
+            }
+          }
+
+          source.line(sb.append(");").toString());
+        }
+        break;
+      case "Environment":
+        source.line(
+            "binder.environment("
+                + name
+                + ", "
+                + BootstrapSource.literal(attr.getValue("type"))
+                + ", "
+                + BootstrapSource.literal(attr.getValue("value"))
+                + ");");
+        break;
+      case "Context":
+        break;
+      default:
+        throw new SAXException("Unknown element " + qName);
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads web.xml at build time and writes the registrations the runtime web.xml handler would make,
+ * in document order. Values holding variables are left to be expanded at runtime.
+ */
+class WebXmlReader extends DefaultHandler {
+  final BootstrapSource source;
+  final Map<String, String> values = new HashMap<>();
+  final Map<String, String> initParams = new LinkedHashMap<>();
+  final List<String> urls = new ArrayList<>();
+  StringBuilder stringBuilder;
+  String paramName, paramValue;
+  static final String FILTER = "filter",
+      SERVLET = "servlet",
+      LISTENER = "listener",
+      FILTER_NAME = "filter-name",
+      SERVLET_NAME = "servlet-name",
+      SERVLET_CLASS = "servlet-class",
+      FILTER_CLASS = "filter-class",
+      FILTER_MAPPING = "filter-mapping",
+      SERVLET_MAPPING = "servlet-mapping",
+      URL_PATTERN = "url-pattern",
+      LOAD_ON_STARTUP = "load-on-startup",
+      LISTENER_CLASS = "listener-class",
+      DESCRIPTION = "description",
+      SESSION_CONFIG = "session-config",
+      SESSION_TIMEOUT = "session-timeout",
+      CONTEXT_PARAM = "context-param",
+      INIT_PARAM = "init-param",
+      PARAM_NAME = "param-name",
+      PARAM_VALUE = "param-value",
+      WEB_APP = "web-app",
+      COOKIE_CONFIG = "cookie-config",
+      PATH = "path",
+      HTTP_ONLY = "http-only",
+      MAX_AGE = "max-age",
+      NAME = "name",
+      COMMENT = "comment",
+      DOMAIN = "domain",
+      SECURE = "secure";
+
+  WebXmlReader(BootstrapSource s) {
+    source = s;
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    if (stringBuilder != null) {
+      stringBuilder.append(ch, start, length);
+    }
+  }
+
+  @Override
+  public void startElement(String uri, String lName, String qName, Attributes attr)
+      throws SAXException {
+    switch (qName) {
+      case WEB_APP:
+      case COOKIE_CONFIG:
+        break;
+      case FILTER:
+      case SERVLET:
+      case SESSION_CONFIG:
+      case LISTENER:
+      case FILTER_MAPPING:
+      case SERVLET_MAPPING:
+        values.clear();
+        urls.clear();
+        initParams.clear();
+        break;
+      case CONTEXT_PARAM:
+      case INIT_PARAM:
+        paramName = null;
+        paramValue = null;
+        break;
+      case FILTER_NAME:
+      case SERVLET_NAME:
+      case SERVLET_CLASS:
+      case FILTER_CLASS:
+      case URL_PATTERN:
+      case LOAD_ON_STARTUP:
+      case LISTENER_CLASS:
+      case DESCRIPTION:
+      case SESSION_TIMEOUT:
+      case PARAM_NAME:
+      case PARAM_VALUE:
+      case PATH:
+      case HTTP_ONLY:
+      case MAX_AGE:
+      case NAME:
+      case COMMENT:
+      case DOMAIN:
+      case SECURE:
+        stringBuilder = new StringBuilder();
+        break;
+      default:
+        throw new SAXException("Unknown element " + qName);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    switch (qName) {
+      case WEB_APP:
+      case COOKIE_CONFIG:
+        break;
+      case LISTENER:
+        source.line("ctx.addListener(" + source.value(values.get(LISTENER_CLASS)) + ");");
+        values.clear();
+        break;
+      case FILTER:
+        source.line(
+            "ctx.addFilter("
+                + source.value(values.get(FILTER_NAME))
+                + ", "
+                + source.value(values.get(FILTER_CLASS))
+                + ");");
+        values.clear();
+        break;
+      case SERVLET:
+        {
+          String loadOnStartup = values.get(LOAD_ON_STARTUP);
+          source.open("");
+          source.line(
+              "ServletRegistration.Dynamic servlet = ctx.addServlet("
+                  + source.value(values.get(SERVLET_NAME))
+                  + ", "
+                  + source.value(values.get(SERVLET_CLASS))
+                  + ");");
+          for (Map.Entry<String, String> e : initParams.entrySet()) {
+            source.line(
+                "servlet.getInitParameters().put("
+                    + source.value(e.getKey())
+                    + ", "
+                    + source.value(e.getValue())
+                    + ");");
+          }
+          if (loadOnStartup != null) {
+            source.line("servlet.setLoadOnStartup(" + integer(loadOnStartup) + ");");
+          }
+          source.close();
+        }
+        initParams.clear();
+        values.clear();
+        break;
+      case FILTER_MAPPING:
+        source.line(
+            "ctx.getFilterRegistration("
+                + source.value(values.get(FILTER_NAME))
+                + ").getUrlPatternMappings().addAll(Arrays.asList("
+                + source.values(urls)
+                + "));");
+        urls.clear();
+        values.clear();
+        break;
+      case SERVLET_MAPPING:
+        source.line(
+            "ctx.getServletRegistration("
+                + source.value(values.get(SERVLET_NAME))
+                + ").getMappings().addAll(Arrays.asList("
+                + source.values(urls)
+                + "));");
+        urls.clear();
+        values.clear();
+        break;
+      case SESSION_CONFIG:
+        urls.clear();
+        values.clear();
+        break;
+      case URL_PATTERN:
+        urls.add(getValue());
+        break;
+      case PARAM_NAME:
+        paramName = getValue();
+        break;
+      case PARAM_VALUE:
+        paramValue = getValue();
+        break;
+      case CONTEXT_PARAM:
+        source.open(
+            "if (!ctx.setInitParameter("
+                + source.value(paramName)
+                + ", "
+                + source.value(paramValue)
+                + "))");
+        source.line(
+            "throw new ServletException("
+                + BootstrapSource.literal("context-param exists " + paramName)
+                + ");");
+        source.close();
+        paramName = null;
+        paramValue = null;
+        break;
+      case INIT_PARAM:
+        if (initParams.containsKey(paramName)) {
+          throw new SAXException("init-param exists " + paramName);
+        }
+        initParams.put(paramName, paramValue);
+        paramName = null;
+        paramValue = null;
+        break;
+      case PATH:
+        cookieConfig("setPath", source.value(getValue()));
+        break;
+      case HTTP_ONLY:
+        cookieConfig("setHttpOnly", bool(getValue()));
+        break;
+      case MAX_AGE:
+        cookieConfig("setMaxAge", integer(getValue()));
+        break;
+      case NAME:
+        cookieConfig("setName", source.value(getValue()));
+        break;
+      case COMMENT:
+        cookieConfig("setComment", source.value(getValue()));
+        break;
+      case DOMAIN:
+        cookieConfig("setDomain", source.value(getValue()));
+        break;
+      case SECURE:
+        cookieConfig("setSecure", bool(getValue()));
+        break;
+      default:
+        values.put(qName, getValue());
+        break;
+    }
+  }
+
+  private void cookieConfig(String setter, String argument) {
+    source.line("ctx.getSessionCookieConfig()." + setter + "(" + argument + ");");
+  }
+
+  private String integer(String value) {
+    return value.contains("${")
+        ? "Integer.parseInt(" + source.value(value) + ")"
+        : Integer.toString(Integer.parseInt(value));
+  }
+
+  private String bool(String value) {
+    return value.contains("${")
+        ? "Boolean.parseBoolean(" + source.value(value) + ")"
+        : Boolean.toString(Boolean.parseBoolean(value));
+  }
+
+  private String getValue() {
+    String value = stringBuilder.toString();
+    stringBuilder = null;
+    return value;
+  }
+}
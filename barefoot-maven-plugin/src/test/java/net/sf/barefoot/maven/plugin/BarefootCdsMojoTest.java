@@ -0,0 +1,80 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BarefootCdsMojoTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAddToPackage() throws Exception {
+    File zip = folder.newFile("function.zip");
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip.toPath()))) {
+      out.putNextEntry(new ZipEntry("lib/main.jar"));
+      out.write("jar".getBytes(StandardCharsets.UTF_8));
+      out.putNextEntry(new ZipEntry("lib/function.jsa"));
+      out.write("old".getBytes(StandardCharsets.UTF_8));
+    }
+    File archive = folder.newFile("function.jsa");
+    try (OutputStream out = Files.newOutputStream(archive.toPath())) {
+      out.write("new".getBytes(StandardCharsets.UTF_8));
+    }
+
+    BarefootCdsMojo.addToPackage(zip, "lib/", archive);
+
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      Assert.assertEquals(2, zipFile.size());
+      Assert.assertEquals(
+          "jar",
+          new String(
+              zipFile.getInputStream(zipFile.getEntry("lib/main.jar")).readAllBytes(),
+              StandardCharsets.UTF_8));
+      Assert.assertEquals(
+          "new",
+          new String(
+              zipFile.getInputStream(zipFile.getEntry("lib/function.jsa")).readAllBytes(),
+              StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testDeployedPath() {
+    File archive = new File("target", "function.jsa");
+
+    Assert.assertEquals("function.jsa", BarefootCdsMojo.deployedPath(null, "lib/", archive));
+    Assert.assertEquals(
+        "/var/task/lib/function.jsa", BarefootCdsMojo.deployedPath("/var/task", "lib/", archive));
+    Assert.assertEquals(
+        "/var/task/function.jsa", BarefootCdsMojo.deployedPath("/var/task/", "", archive));
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.SAXParserFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class BootstrapSourceTest {
+
+  static final String WEB_XML =
+      "<web-app>"
+          + "<context-param><param-name>db</param-name><param-value>${DB}</param-value></context-param>"
+          + "<listener><listener-class>a.Listener</listener-class></listener>"
+          + "<servlet><servlet-name>s</servlet-name><servlet-class>a.Servlet</servlet-class>"
+          + "<load-on-startup>1</load-on-startup>"
+          + "<init-param><param-name>k</param-name><param-value>\"v\"</param-value></init-param>"
+          + "</servlet>"
+          + "<servlet-mapping><servlet-name>s</servlet-name><url-pattern>/s/*</url-pattern>"
+          + "<url-pattern>*.do</url-pattern></servlet-mapping>"
+          + "<filter><filter-name>f</filter-name><filter-class>a.Filter</filter-class></filter>"
+          + "<filter-mapping><filter-name>f</filter-name><url-pattern>/*</url-pattern></filter-mapping>"
+          + "<session-config><cookie-config><secure>true</secure></cookie-config></session-config>"
+          + "</web-app>";
+
+  static final String CONTEXT_XML =
+      "<Context path=\"\">"
+          + "<Environment name=\"foo\" type=\"java.lang.String\" value=\"${FOO}\"/>"
+          + "<Resource name=\"jdbc/db\" type=\"javax.sql.DataSource\" factory=\"a.Factory\""
+          + " url=\"u\"/>"
+          + "</Context>";
+
+  @Test
+  public void testWebXml() throws Exception {
+    BootstrapSource source = new BootstrapSource();
+    parse(WEB_XML, new WebXmlReader(source));
+    String text = String.join("\n", source.lines);
+
+    Assert.assertTrue(source.usesExpander);
+    Assert.assertTrue(text.contains("if (!ctx.setInitParameter(\"db\", expand(\"${DB}\"))) {"));
+    Assert.assertTrue(text.contains("ctx.addListener(\"a.Listener\");"));
+    Assert.assertTrue(
+        text.contains(
+            "ServletRegistration.Dynamic servlet = ctx.addServlet(\"s\", \"a.Servlet\");"));
+    Assert.assertTrue(text.contains("servlet.getInitParameters().put(\"k\", \"\\\"v\\\"\");"));
+    Assert.assertTrue(text.contains("servlet.setLoadOnStartup(1);"));
+    Assert.assertTrue(
+        text.contains(
+            "ctx.getServletRegistration(\"s\").getMappings().addAll(Arrays.asList(\"/s/*\","
+                + " \"*.do\"));"));
+    Assert.assertTrue(text.contains("ctx.addFilter(\"f\", \"a.Filter\");"));
+    Assert.assertTrue(
+        text.contains(
+            "ctx.getFilterRegistration(\"f\").getUrlPatternMappings().addAll(Arrays.asList(\"/*\"));"));
+    Assert.assertTrue(text.contains("ctx.getSessionCookieConfig().setSecure(true);"));
+    Assert.assertTrue(
+        text.indexOf("ctx.addListener") < text.indexOf("ctx.addServlet")
+            && text.indexOf("ctx.addServlet") < text.indexOf("ctx.addFilter"));
+  }
+
+  @Test
+  public void testContextXml() throws Exception {
+    BootstrapSource source = new BootstrapSource();
+    parse(CONTEXT_XML, new ContextXmlReader(source));
+
+    Assert.assertEquals(2, source.lines.size());
+    Assert.assertEquals(
+        "    binder.environment(\"foo\", \"java.lang.String\", \"${FOO}\");", source.lines.get(0));
+    Assert.assertEquals(
+        "    binder.resource(\"jdbc/db\", \"javax.sql.DataSource\", \"a.Factory\", \"url\","
+            + " \"u\");",
+        source.lines.get(1));
+  }
+
+  @Test
+  public void testLiteral() {
+    Assert.assertEquals("null", BootstrapSource.literal(null));
+    Assert.assertEquals("\"a\\\\b\\n\\u00e9\"", BootstrapSource.literal("a\\b\né"));
+    Assert.assertEquals("a.B.C.class", BootstrapSource.classLiteral("a.B$C"));
+  }
+
+  private static void parse(String xml, DefaultHandler handler) throws Exception {
+    SAXParserFactory.newInstance()
+        .newSAXParser()
+        .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), handler);
+  }
+}
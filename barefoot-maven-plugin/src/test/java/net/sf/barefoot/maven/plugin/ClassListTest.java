@@ -0,0 +1,60 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+
+package net.sf.barefoot.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassListTest {
+
+  @Test
+  public void testMerge() throws Exception {
+    ClassList list = new ClassList();
+    list.add(
+        new BufferedReader(
+            new StringReader(
+                "# NOTE: Do not modify this file.\n"
+                    + "java/lang/Object id: 0\n"
+                    + "demo/Main id: 1\n"
+                    + "demo/Plugin id: 2 super: 0 source: /tmp/plugin.jar\n"
+                    + "@lambda-proxy demo/Main run ()V\n")));
+    list.add(
+        new BufferedReader(
+            new StringReader(
+                "java/lang/Object id: 0\n"
+                    + "demo/Handler id: 1\n"
+                    + "demo/Main id: 2\n"
+                    + "@lambda-proxy demo/Main run ()V\n")));
+
+    StringWriter writer = new StringWriter();
+    list.write(writer);
+
+    Assert.assertEquals(3, list.getClassCount());
+    Assert.assertEquals(
+        "java/lang/Object\ndemo/Main\n@lambda-proxy demo/Main run ()V\ndemo/Handler\n",
+        writer.toString());
+  }
+}
@@ -27,15 +27,25 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.naming.*;
 import javax.naming.spi.ObjectFactory;
 
-/** Context object. This implements the root and children of the naming tree. */
+/**
+ * Context object. This implements the root and children of the naming tree. Lookups take no locks,
+ * parsed names, object factories and singletons are cached as most use is reading bindings made at
+ * startup.
+ */
 final class BarefootContext implements Context {
-  final Hashtable<String, Object> init = new Hashtable<>();
-  final Hashtable<String, Object> environment = new Hashtable<>();
-  final Hashtable<String, Object> bindings = new Hashtable<>();
-  final Hashtable<String, Object> singletons = new Hashtable<>();
+  /* names looked up as strings, bounded as callers could build them at random */
+  private static final int NAME_CACHE_SIZE = 1024;
+  private static final ConcurrentMap<String, String[]> NAMES = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, Object> init = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, Object> environment = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, Object> bindings = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, Object> singletons = new ConcurrentHashMap<>();
+  final ConcurrentMap<String, ObjectFactory> factories = new ConcurrentHashMap<>();
   final ClassLoader classLoader;
 
   BarefootContext(ClassLoader loader, Hashtable<?, ?> env) {
@@ -51,97 +61,106 @@ final class BarefootContext implements Context {
 
   @Override
   public Object lookup(Name name) throws NamingException {
-    Enumeration<String> all = name.getAll();
-    Object value;
-    if (!all.hasMoreElements()) {
-      value = this;
-    } else {
-      String key = all.nextElement();
+    return lookup(components(name), 0, name);
+  }
 
-      synchronized (this) {
-        value = bindings.get(key);
+  @Override
+  public Object lookup(String name) throws NamingException {
+    String[] parts = NAMES.get(name);
 
-        if (value == null && !bindings.containsKey(key)) {
-          NameNotFoundException ex = new NameNotFoundException(key);
-          ex.setRemainingName(name);
-          throw ex;
-        }
+    if (parts == null) {
+      parts = components(new CompositeName(name));
+      if (NAMES.size() < NAME_CACHE_SIZE) {
+        NAMES.putIfAbsent(name, parts);
       }
+    }
 
-      if (!all.hasMoreElements()) {
-        if (value instanceof Reference) {
-          Reference ref = (Reference) value;
-          RefAddr singletonRef = ref.get("singleton");
-          Boolean singletonValue = asBoolean(singletonRef);
-          boolean isSingleton = singletonValue != null && singletonValue;
+    return lookup(parts, 0, null);
+  }
+
+  /**
+   * resolves the components of a name from an offset
+   *
+   * @param parts components
+   * @param off first component resolved by this context
+   * @param name the remaining components as given by the caller, or null to build them if needed
+   * @return bound object
+   * @throws NamingException if not bound or the object cannot be created
+   */
+  private Object lookup(String[] parts, int off, Name name) throws NamingException {
+    if (off == parts.length) {
+      return this;
+    }
+
+    String key = parts[off];
+    Object value = bindings.get(key);
 
-          if (isSingleton) {
+    if (value == null) {
+      NameNotFoundException ex = new NameNotFoundException(key);
+      ex.setRemainingName(name == null ? toName(parts, off) : name);
+      throw ex;
+    }
+
+    if (off + 1 == parts.length) {
+      if (value instanceof Reference) {
+        Reference ref = (Reference) value;
+        RefAddr singletonRef = ref.get("singleton");
+        Boolean singletonValue = asBoolean(singletonRef);
+        boolean isSingleton = singletonValue != null && singletonValue;
+
+        if (isSingleton) {
+          value = singletons.get(key);
+          if (value == null) {
+            /* not computeIfAbsent, the factory may look up other singletons in this context */
             synchronized (ref) {
-              synchronized (this) {
-                value = singletons.get(key);
-              }
+              value = singletons.get(key);
               if (value == null) {
-                value = newInstance(ref, name);
-                synchronized (this) {
+                value = newInstance(ref, name == null ? toName(parts, off) : name);
+                /* only cached while still bound, unbind clears it holding this monitor */
+                if (bindings.get(key) == ref) {
                   singletons.put(key, value);
                 }
               }
             }
-          } else {
-            value = newInstance(ref, name);
           }
+        } else {
+          value = newInstance(ref, name == null ? toName(parts, off) : name);
         }
-      } else {
-        CompositeName childName = new CompositeName();
-        do {
-          childName.add(all.nextElement());
-        } while (all.hasMoreElements());
-
-        if (!(value instanceof Context)) {
-          NotContextException ex = new NotContextException(key);
-          ex.setResolvedName(new CompositeName(key));
-          ex.setRemainingName(childName);
-          throw ex;
-        }
-
-        Context child = (Context) value;
+      }
+    } else {
+      if (!(value instanceof Context)) {
+        NotContextException ex = new NotContextException(key);
+        ex.setResolvedName(new CompositeName(key));
+        ex.setRemainingName(toName(parts, off + 1));
+        throw ex;
+      }
 
-        try {
-          value = child.lookup(childName);
-        } catch (NamingException ex) {
-          value = throwPrefixedException(ex, key);
-        }
+      try {
+        value =
+            value instanceof BarefootContext
+                ? ((BarefootContext) value).lookup(parts, off + 1, null)
+                : ((Context) value).lookup(toName(parts, off + 1));
+      } catch (NamingException ex) {
+        value = throwPrefixedException(ex, key);
       }
     }
 
     return value;
   }
 
-  @Override
-  public Object lookup(String name) throws NamingException {
-    return lookup(new CompositeName(name));
-  }
-
   @Override
   public void bind(Name name, Object value) throws NamingException {
     Enumeration<String> all = name.getAll();
     if (!all.hasMoreElements()) throw new InvalidNameException();
     String key = all.nextElement();
     if (!all.hasMoreElements()) {
-      synchronized (this) {
-        if (bindings.containsKey(key)) {
-          NameAlreadyBoundException ex = new NameAlreadyBoundException(key);
-          ex.setResolvedName(name);
-          throw ex;
-        }
-        bindings.put(key, value);
+      if (bindings.putIfAbsent(key, value) != null) {
+        NameAlreadyBoundException ex = new NameAlreadyBoundException(key);
+        ex.setResolvedName(name);
+        throw ex;
       }
     } else {
-      Object child;
-
-      synchronized (this) {
-        child = bindings.get(key);
-      }
+      Object child = bindings.get(key);
 
       if (child == null) {
         NameNotFoundException ex = new NameNotFoundException();
@@ -192,22 +211,22 @@ final class BarefootContext implements Context {
       String key = all.nextElement();
 
       if (!all.hasMoreElements()) {
-        synchronized (this) {
-          if (!bindings.containsKey(key)) {
-            NameNotFoundException ex = new NameNotFoundException();
-            ex.setRemainingName(name);
-            throw ex;
-          }
+        Object value = bindings.remove(key);
 
-          bindings.remove(key);
-          singletons.remove(key);
+        if (value == null) {
+          NameNotFoundException ex = new NameNotFoundException();
+          ex.setRemainingName(name);
+          throw ex;
         }
-      } else {
-        Object value;
 
-        synchronized (this) {
-          value = bindings.get(key);
+        if (value instanceof Reference) {
+          /* waits for a lookup creating the singleton so it cannot be cached after removal */
+          synchronized (value) {
+            singletons.remove(key);
+          }
         }
+      } else {
+        Object value = bindings.get(key);
 
         if (value == null) {
           NameNotFoundException ex = new NameNotFoundException();
@@ -260,17 +279,15 @@ final class BarefootContext implements Context {
 
     List<NameClassPair> result = new ArrayList<>();
 
-    synchronized (this) {
-      bindings.forEach(
-          (key, value) -> {
-            result.add(
-                new NameClassPair(
-                    key,
-                    value instanceof Reference
-                        ? ((Reference) value).getClassName()
-                        : value.getClass().getCanonicalName()));
-          });
-    }
+    bindings.forEach(
+        (key, value) -> {
+          result.add(
+              new NameClassPair(
+                  key,
+                  value instanceof Reference
+                      ? ((Reference) value).getClassName()
+                      : value.getClass().getCanonicalName()));
+        });
 
     return new BarefootNamingEnumeration(result.iterator());
   }
@@ -288,12 +305,10 @@ final class BarefootContext implements Context {
 
     List<Binding> result = new ArrayList<>();
 
-    synchronized (this) {
-      bindings.forEach(
-          (key, value) -> {
-            result.add(new Binding(key, value));
-          });
-    }
+    bindings.forEach(
+        (key, value) -> {
+          result.add(new Binding(key, value));
+        });
 
     return new BarefootNamingEnumeration(result.iterator());
   }
@@ -312,26 +327,20 @@ final class BarefootContext implements Context {
     String key = all.nextElement();
 
     if (!all.hasMoreElements()) {
-      synchronized (this) {
-        Object value = bindings.get(key);
-        if (value == null) {
-          NameNotFoundException ex = new NameNotFoundException();
-          ex.setRemainingName(name);
-          throw ex;
-        }
-        if (!(value instanceof Context)) {
-          NotContextException ex = new NotContextException();
-          ex.setResolvedName(name);
-          throw ex;
-        }
-        bindings.remove(key);
+      Object value = bindings.get(key);
+      if (value == null) {
+        NameNotFoundException ex = new NameNotFoundException();
+        ex.setRemainingName(name);
+        throw ex;
       }
-    } else {
-      Object value;
-
-      synchronized (this) {
-        value = bindings.get(key);
+      if (!(value instanceof Context)) {
+        NotContextException ex = new NotContextException();
+        ex.setResolvedName(name);
+        throw ex;
       }
+      bindings.remove(key, value);
+    } else {
+      Object value = bindings.get(key);
 
       if (value == null) {
         NameNotFoundException ex = new NameNotFoundException();
@@ -380,9 +389,8 @@ final class BarefootContext implements Context {
       } while (all.hasMoreElements());
       return child.createSubcontext(childName);
     }
-    if (bindings.containsKey(key)) throw new NameAlreadyBoundException(key);
     BarefootContext context = new BarefootContext(classLoader, new Hashtable<>());
-    bindings.put(key, context);
+    if (bindings.putIfAbsent(key, context) != null) throw new NameAlreadyBoundException(key);
     return context;
   }
 
@@ -440,25 +448,18 @@ final class BarefootContext implements Context {
   }
 
   @Override
-  public synchronized Object addToEnvironment(String key, Object value) throws NamingException {
-    Object original = environment.get(key);
-    environment.put(key, value);
-    return original;
+  public Object addToEnvironment(String key, Object value) throws NamingException {
+    return environment.put(key, value);
   }
 
   @Override
-  public synchronized Object removeFromEnvironment(String key) throws NamingException {
-    Object value = null;
-    if (environment.containsKey(key)) {
-      value = environment.get(key);
-      environment.remove(key);
-    }
-    return value;
+  public Object removeFromEnvironment(String key) throws NamingException {
+    return environment.remove(key);
   }
 
   @Override
-  public synchronized Hashtable<?, ?> getEnvironment() throws NamingException {
-    return (Hashtable<?, ?>) environment.clone();
+  public Hashtable<?, ?> getEnvironment() throws NamingException {
+    return new Hashtable<>(environment);
   }
 
   @Override
@@ -477,13 +478,49 @@ final class BarefootContext implements Context {
         : content instanceof Boolean ? (Boolean) content : Boolean.parseBoolean(content.toString());
   }
 
+  private static String[] components(Name name) {
+    String[] parts = new String[name.size()];
+    Enumeration<String> all = name.getAll();
+
+    for (int i = 0; i < parts.length; i++) {
+      parts[i] = all.nextElement();
+    }
+
+    return parts;
+  }
+
+  private static Name toName(String[] parts, int off) throws InvalidNameException {
+    CompositeName name = new CompositeName();
+
+    for (int i = off; i < parts.length; i++) {
+      name.add(parts[i]);
+    }
+
+    return name;
+  }
+
+  /* factories are created once per class, as NamingManager would for URL context factories */
+  private ObjectFactory getFactory(String className) throws ReflectiveOperationException {
+    ObjectFactory factory = factories.get(className);
+
+    if (factory == null) {
+      Class<?> cls = classLoader.loadClass(className);
+      factory = (ObjectFactory) cls.getConstructor().newInstance();
+      ObjectFactory existing = factories.putIfAbsent(className, factory);
+      if (existing != null) {
+        factory = existing;
+      }
+    }
+
+    return factory;
+  }
+
   private Object newInstance(Reference ref, Name name) throws LinkException {
     String className = ref.getFactoryClassName();
     Object value;
 
     try {
-      Class cls = classLoader.loadClass(className);
-      ObjectFactory factory = (ObjectFactory) cls.getConstructor().newInstance();
+      ObjectFactory factory = getFactory(className);
       value = factory.getObjectInstance(ref, name, this, new Hashtable<>());
     } catch (Exception ex) {
       LinkException ex2 = new LinkException();
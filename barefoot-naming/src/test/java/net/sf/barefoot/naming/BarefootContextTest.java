@@ -21,14 +21,25 @@
 
 package net.sf.barefoot.naming;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import javax.naming.Name;
 import javax.naming.NameNotFoundException;
 import javax.naming.NamingException;
 import javax.naming.NotContextException;
+import javax.naming.Reference;
+import javax.naming.StringRefAddr;
+import javax.naming.spi.ObjectFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -127,4 +138,135 @@ public class BarefootContextTest {
     }
     Assert.assertTrue(mustCatch);
   }
+
+  public static class BlockingFactory implements ObjectFactory {
+    static final CountDownLatch ENTERED = new CountDownLatch(1), RELEASE = new CountDownLatch(1);
+
+    @Override
+    public Object getObjectInstance(Object obj, Name name, Context ctx, Hashtable<?, ?> env)
+        throws InterruptedException {
+      ENTERED.countDown();
+      RELEASE.await();
+      return new StringBuilder(name.toString());
+    }
+  }
+
+  public static class CountingFactory implements ObjectFactory {
+    static final AtomicInteger FACTORIES = new AtomicInteger();
+
+    public CountingFactory() {
+      FACTORIES.incrementAndGet();
+    }
+
+    @Override
+    public Object getObjectInstance(Object obj, Name name, Context ctx, Hashtable<?, ?> env) {
+      return new StringBuilder(name.toString());
+    }
+  }
+
+  @Test
+  public void testReference() throws Exception {
+    InitialContext init = new InitialContext();
+    Context refs = init.createSubcontext("refs");
+    String factory = CountingFactory.class.getName();
+
+    refs.bind(
+        "single",
+        new Reference(
+            Object.class.getName(), new StringRefAddr("singleton", "true"), factory, null));
+    refs.bind("many", new Reference(Object.class.getName(), factory, null));
+
+    int factories = CountingFactory.FACTORIES.get();
+    Object single = init.lookup("refs/single");
+    Object many = init.lookup("refs/many");
+
+    Assert.assertEquals("single", single.toString());
+    Assert.assertEquals("many", many.toString());
+    Assert.assertSame(single, init.lookup("refs/single"));
+    Assert.assertNotSame(many, init.lookup("refs/many"));
+    Assert.assertEquals(factories + 1, CountingFactory.FACTORIES.get());
+
+    refs.unbind("single");
+    try {
+      init.lookup("refs/single");
+      Assert.fail();
+    } catch (NameNotFoundException ex) {
+      Assert.assertEquals("single", ex.getRemainingName().toString());
+    }
+
+    refs.bind("single", "plain");
+    Assert.assertEquals("plain", init.lookup("refs/single"));
+
+    init.unbind("refs");
+  }
+
+  @Test(timeout = 10000)
+  public void testUnbindDuringLookup() throws Exception {
+    InitialContext init = new InitialContext();
+    BarefootContext refs = (BarefootContext) init.createSubcontext("unbind");
+    refs.bind(
+        "single",
+        new Reference(
+            Object.class.getName(),
+            new StringRefAddr("singleton", "true"),
+            BlockingFactory.class.getName(),
+            null));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    try {
+      Future<Object> stale = executor.submit(() -> new InitialContext().lookup("unbind/single"));
+      BlockingFactory.ENTERED.await();
+      Future<?> unbound =
+          executor.submit(
+              () -> {
+                refs.unbind("single");
+                return null;
+              });
+      while (refs.bindings.containsKey("single")) {
+        Thread.yield();
+      }
+      BlockingFactory.RELEASE.countDown();
+      unbound.get();
+
+      refs.bind(
+          "single",
+          new Reference(
+              Object.class.getName(),
+              new StringRefAddr("singleton", "true"),
+              CountingFactory.class.getName(),
+              null));
+      Assert.assertNotSame(stale.get(), init.lookup("unbind/single"));
+    } finally {
+      executor.shutdown();
+      init.unbind("unbind");
+    }
+  }
+
+  @Test
+  public void testConcurrentLookup() throws Exception {
+    InitialContext init = new InitialContext();
+    Context refs = init.createSubcontext("concurrent");
+    refs.bind(
+        "single",
+        new Reference(
+            Object.class.getName(),
+            new StringRefAddr("singleton", "true"),
+            CountingFactory.class.getName(),
+            null));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        results.add(executor.submit(() -> new InitialContext().lookup("concurrent/single")));
+      }
+      Object first = results.get(0).get();
+      for (Future<Object> result : results) {
+        Assert.assertSame(first, result.get());
+      }
+    } finally {
+      executor.shutdown();
+      init.unbind("concurrent");
+    }
+  }
 }
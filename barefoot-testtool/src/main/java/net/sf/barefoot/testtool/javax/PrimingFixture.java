@@ -0,0 +1,127 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.testtool.javax;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Assert;
+
+/** counting filter and echo servlet shared by the adapters' priming tests */
+public class PrimingFixture {
+  /** priming requests for {@link #assertPrimed(int)}, run in a context at /app */
+  public static final String RESOURCE = "net/sf/barefoot/testtool/priming.http";
+
+  final AtomicInteger filtered = new AtomicInteger();
+  final List<String> served = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * adds the counting filter on /* and the echo servlet on /echo/*
+   *
+   * @param context context not yet started
+   */
+  public void register(ServletContext context) {
+    context
+        .addFilter(
+            "count",
+            new Filter() {
+              @Override
+              public void init(FilterConfig config) {}
+
+              @Override
+              public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+                  throws IOException, ServletException {
+                filtered.incrementAndGet();
+                chain.doFilter(req, resp);
+              }
+
+              @Override
+              public void destroy() {}
+            })
+        .addMappingForUrlPatterns(null, true, "/*");
+    context
+        .addServlet(
+            "echo",
+            new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse resp)
+                  throws IOException {
+                Cookie[] cookies = req.getCookies();
+                served.add(
+                    req.getMethod()
+                        + " "
+                        + req.getRequestURI()
+                        + " "
+                        + req.getParameter("name")
+                        + " "
+                        + (cookies == null ? 0 : cookies.length)
+                        + " "
+                        + ("POST".equals(req.getMethod())
+                            ? req.getReader().lines().collect(Collectors.joining())
+                            : ""));
+                resp.setContentType("text/plain");
+                resp.getWriter().print("discarded");
+              }
+            })
+        .addMapping("/echo/*");
+  }
+
+  /**
+   * checks every request in {@link #RESOURCE} went through the filter, the servlet seeing its
+   * query, cookies and body
+   *
+   * @param count number of requests the adapter ran
+   */
+  public void assertPrimed(int count) {
+    Assert.assertEquals(3, count);
+    Assert.assertEquals(
+        Arrays.asList("GET /app/echo/hello world 2 ", "POST /app/echo/body null 0 ping"), served);
+    Assert.assertEquals(3, filtered.get());
+  }
+
+  /** checks a keep-warm ping reached neither the filter nor the servlet */
+  public void assertNotDispatched() {
+    Assert.assertEquals(0, filtered.get());
+    Assert.assertTrue(served.isEmpty());
+  }
+
+  /** checks a single request reached the servlet */
+  public void assertDispatched() {
+    Assert.assertEquals(1, filtered.get());
+    Assert.assertEquals(1, served.size());
+  }
+}
@@ -23,6 +23,7 @@ package net.sf.barefoot.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 /** Read a byte buffer as input stream. */
@@ -55,4 +56,42 @@ public class ByteBufferInputStream extends InputStream {
     }
     return len;
   }
+
+  @Override
+  public int available() throws IOException {
+    return byteBuffer.remaining();
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    int len = (int) Math.max(0, Math.min(n, byteBuffer.remaining()));
+    byteBuffer.position(byteBuffer.position() + len);
+    return len;
+  }
+
+  @Override
+  public byte[] readAllBytes() throws IOException {
+    byte[] b = new byte[byteBuffer.remaining()];
+    byteBuffer.get(b);
+    return b;
+  }
+
+  @Override
+  public long transferTo(OutputStream out) throws IOException {
+    long len = byteBuffer.remaining();
+
+    if (byteBuffer.hasArray()) {
+      out.write(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), (int) len);
+      byteBuffer.position(byteBuffer.limit());
+    } else {
+      byte[] b = new byte[(int) Math.min(len, 8192)];
+      while (byteBuffer.hasRemaining()) {
+        int i = Math.min(b.length, byteBuffer.remaining());
+        byteBuffer.get(b, 0, i);
+        out.write(b, 0, i);
+      }
+    }
+
+    return len;
+  }
 }
@@ -0,0 +1,389 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * Buffers a whole response in a list of chunks. It grows by adding chunks, not by copying, and is
+ * turned into a string or Base64 text in one pass over the chunks. Writes beyond the limit fail
+ * with {@link LimitExceededException}.
+ */
+public class ResponseBuffer extends OutputStream {
+  private static final int FIRST_CHUNK = 1024, LARGEST_CHUNK = 1 << 20;
+  private static final byte[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+          .getBytes(StandardCharsets.US_ASCII);
+  private final long limit;
+  private final List<byte[]> chunks = new ArrayList<>();
+  private int count;
+  private long full;
+  private boolean limitExceeded;
+  private Writer writer;
+  private Charset writerCharset;
+  private Checksum checksum;
+
+  /**
+   * create buffer with a limit
+   *
+   * @param max most bytes the buffer holds
+   */
+  public ResponseBuffer(long max) {
+    limit = max;
+  }
+
+  /** create buffer without a limit */
+  public ResponseBuffer() {
+    this(Long.MAX_VALUE);
+  }
+
+  /** Thrown when a write would take the buffer beyond its limit. */
+  public static class LimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(long limit) {
+      super("response exceeds " + limit + " bytes");
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    reserve(1);
+    byte[] chunk = current(1);
+    chunk[count++] = (byte) b;
+    if (checksum != null) {
+      checksum.update(b);
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    reserve(len);
+
+    if (checksum != null) {
+      checksum.update(b, off, len);
+    }
+
+    while (len > 0) {
+      byte[] chunk = current(len);
+      int i = Math.min(len, chunk.length - count);
+      System.arraycopy(b, off, chunk, count, i);
+      count += i;
+      off += i;
+      len -= i;
+    }
+  }
+
+  private void reserve(int len) throws LimitExceededException {
+    if (full + count + len > limit) {
+      limitExceeded = true;
+      throw new LimitExceededException(limit);
+    }
+  }
+
+  private byte[] current(int len) {
+    int last = chunks.size() - 1;
+
+    if (last >= 0 && count < chunks.get(last).length) {
+      return chunks.get(last);
+    }
+
+    if (last >= 0) {
+      full += count;
+    }
+
+    long size = Math.max(full, len);
+    byte[] chunk = new byte[(int) Math.min(Math.max(size, FIRST_CHUNK), LARGEST_CHUNK)];
+    chunks.add(chunk);
+    count = 0;
+    return chunk;
+  }
+
+  /**
+   * writer encoding into this buffer, the same writer is returned on each call
+   *
+   * @param cs encoding
+   * @return writer
+   */
+  public Writer getWriter(Charset cs) {
+    if (writer == null) {
+      writer = new OutputStreamWriter(this, cs);
+      writerCharset = cs;
+    }
+    return writer;
+  }
+
+  /**
+   * encoding of the writer if the content was written as text
+   *
+   * @return encoding or null
+   */
+  public Charset getWriterCharset() {
+    return writerCharset;
+  }
+
+  /**
+   * keeps a checksum of the content as it is written, set before anything is written
+   *
+   * @param c checksum, null to stop
+   */
+  public void setChecksum(Checksum c) {
+    checksum = c;
+  }
+
+  /**
+   * checksum of the content written so far, including text held by the writer
+   *
+   * @return checksum or null if none was set
+   */
+  public Checksum getChecksum() {
+    flushWriter();
+    return checksum;
+  }
+
+  /**
+   * most bytes the buffer holds
+   *
+   * @return limit
+   */
+  public long getLimit() {
+    return limit;
+  }
+
+  /**
+   * has a write failed because of the limit, a writer does not report the failure itself
+   *
+   * @return true if content was lost
+   */
+  public boolean isLimitExceeded() {
+    return limitExceeded;
+  }
+
+  /**
+   * number of bytes held
+   *
+   * @return size
+   */
+  public long size() {
+    flushWriter();
+    return full + count;
+  }
+
+  /** discards the content, including text not yet encoded by the writer */
+  public void reset() {
+    flushWriter();
+    chunks.clear();
+    count = 0;
+    full = 0;
+    limitExceeded = false;
+    if (checksum != null) {
+      checksum.reset();
+    }
+  }
+
+  private void flushWriter() {
+    if (writer != null) {
+      try {
+        writer.flush();
+      } catch (IOException ex) {
+        // the limit is reported by isLimitExceeded
+      }
+    }
+  }
+
+  private int length(int i) {
+    return i == chunks.size() - 1 ? count : chunks.get(i).length;
+  }
+
+  /**
+   * copies the content into one array
+   *
+   * @return content
+   */
+  public byte[] toByteArray() {
+    byte[] result = new byte[Math.toIntExact(size())];
+    int off = 0;
+
+    for (int i = 0; i < chunks.size(); i++) {
+      int len = length(i);
+      System.arraycopy(chunks.get(i), 0, result, off, len);
+      off += len;
+    }
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return toString(writerCharset == null ? StandardCharsets.UTF_8 : writerCharset);
+  }
+
+  /**
+   * decodes the content
+   *
+   * @param cs encoding of the content
+   * @return text
+   */
+  public String toString(Charset cs) {
+    long size = size();
+
+    if (chunks.isEmpty()) {
+      return "";
+    }
+
+    if (chunks.size() == 1) {
+      return new String(chunks.get(0), 0, count, cs);
+    }
+
+    CharsetDecoder decoder =
+        cs.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer out =
+        CharBuffer.allocate(
+            Math.toIntExact((long) Math.ceil(size * (double) decoder.maxCharsPerByte())));
+    ByteBuffer carry = ByteBuffer.allocate(16);
+    CoderResult result = CoderResult.UNDERFLOW;
+
+    for (int i = 0; i < chunks.size() && !result.isOverflow(); i++) {
+      ByteBuffer in = ByteBuffer.wrap(chunks.get(i), 0, length(i));
+
+      while (carry.position() > 0 && in.hasRemaining() && !result.isOverflow()) {
+        carry.put(in.get());
+        carry.flip();
+        result = decoder.decode(carry, out, false);
+        carry.compact();
+      }
+
+      if (!result.isOverflow()) {
+        result = decoder.decode(in, out, false);
+        carry.put(in);
+      }
+    }
+
+    if (!result.isOverflow()) {
+      carry.flip();
+      result = decoder.decode(carry, out, true);
+    }
+
+    if (!result.isOverflow()) {
+      result = decoder.flush(out);
+    }
+
+    if (result.isOverflow()) {
+      return new String(toByteArray(), cs);
+    }
+
+    return new String(out.array(), 0, out.position());
+  }
+
+  /**
+   * encodes the content as Base64 text
+   *
+   * @return text
+   */
+  public String toBase64() {
+    long size = size();
+    byte[] out = new byte[Math.toIntExact((size + 2) / 3 * 4)];
+    int op = 0, bits = 0, held = 0;
+
+    for (int i = 0; i < chunks.size(); i++) {
+      byte[] chunk = chunks.get(i);
+      int len = length(i);
+      int j = 0;
+
+      while (held != 0 && j < len) {
+        bits = (bits << 8) | (chunk[j++] & 0xFF);
+        if (++held == 3) {
+          op = encode(bits, out, op);
+          bits = 0;
+          held = 0;
+        }
+      }
+
+      int aligned = j + (len - j) / 3 * 3;
+
+      while (j < aligned) {
+        op =
+            encode(
+                ((chunk[j] & 0xFF) << 16) | ((chunk[j + 1] & 0xFF) << 8) | (chunk[j + 2] & 0xFF),
+                out,
+                op);
+        j += 3;
+      }
+
+      while (j < len) {
+        bits = (bits << 8) | (chunk[j++] & 0xFF);
+        held++;
+      }
+    }
+
+    if (held == 1) {
+      out[op++] = BASE64[(bits >> 2) & 0x3F];
+      out[op++] = BASE64[(bits << 4) & 0x3F];
+      out[op++] = '=';
+      out[op++] = '=';
+    } else if (held == 2) {
+      out[op++] = BASE64[(bits >> 10) & 0x3F];
+      out[op++] = BASE64[(bits >> 4) & 0x3F];
+      out[op++] = BASE64[(bits << 2) & 0x3F];
+      out[op++] = '=';
+    }
+
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  private static int encode(int bits, byte[] out, int op) {
+    out[op++] = BASE64[(bits >> 18) & 0x3F];
+    out[op++] = BASE64[(bits >> 12) & 0x3F];
+    out[op++] = BASE64[(bits >> 6) & 0x3F];
+    out[op++] = BASE64[bits & 0x3F];
+    return op;
+  }
+
+  /**
+   * writes the content to another stream
+   *
+   * @param out destination
+   * @throws IOException on write failure
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    flushWriter();
+
+    for (int i = 0; i < chunks.size(); i++) {
+      out.write(chunks.get(i), 0, length(i));
+    }
+  }
+}
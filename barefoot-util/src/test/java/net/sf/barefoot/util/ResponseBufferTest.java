@@ -0,0 +1,145 @@
+/*
+ *
+ *  Copyright 2021, Roger Brown
+ *
+ *  This file is part of Barefoot.
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or (at your
+ *  option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ *  more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package net.sf.barefoot.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.CRC32C;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** test class for response buffer */
+public class ResponseBufferTest {
+
+  public ResponseBufferTest() {}
+
+  @Test
+  public void testBytes() throws IOException {
+    Random rand = new Random(1);
+
+    for (int len : new int[] {0, 1, 2, 3, 1023, 1024, 1025, 5000, 300000}) {
+      byte[] data = new byte[len];
+      rand.nextBytes(data);
+      ResponseBuffer buffer = new ResponseBuffer();
+      int off = 0;
+      while (off < len) {
+        int i = Math.min(len - off, 1 + rand.nextInt(700));
+        if (i == 1) {
+          buffer.write(data[off]);
+        } else {
+          buffer.write(data, off, i);
+        }
+        off += i;
+      }
+
+      Assert.assertEquals(len, buffer.size());
+      Assert.assertArrayEquals(data, buffer.toByteArray());
+      Assert.assertEquals(Base64.getEncoder().encodeToString(data), buffer.toBase64());
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      buffer.writeTo(baos);
+      Assert.assertArrayEquals(data, baos.toByteArray());
+    }
+  }
+
+  @Test
+  public void testText() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 200000) {
+      sb.append("héllo wörld € 😀 ");
+    }
+    String text = sb.toString();
+
+    ResponseBuffer buffer = new ResponseBuffer();
+    Writer writer = buffer.getWriter(StandardCharsets.UTF_8);
+    writer.write(text);
+
+    Assert.assertSame(writer, buffer.getWriter(StandardCharsets.UTF_8));
+    Assert.assertEquals(StandardCharsets.UTF_8, buffer.getWriterCharset());
+    Assert.assertEquals(text.getBytes(StandardCharsets.UTF_8).length, buffer.size());
+    Assert.assertEquals(text, buffer.toString());
+
+    buffer = new ResponseBuffer();
+    buffer.getWriter(StandardCharsets.UTF_16).write(text);
+    Assert.assertEquals(text, buffer.toString(StandardCharsets.UTF_16));
+  }
+
+  @Test
+  public void testLimit() throws IOException {
+    ResponseBuffer buffer = new ResponseBuffer(10);
+    buffer.write(new byte[10]);
+    Assert.assertFalse(buffer.isLimitExceeded());
+
+    try {
+      buffer.write(1);
+      Assert.fail("limit not enforced");
+    } catch (ResponseBuffer.LimitExceededException ex) {
+      Assert.assertTrue(buffer.isLimitExceeded());
+    }
+
+    Assert.assertEquals(10, buffer.size());
+
+    buffer.reset();
+    Assert.assertEquals(0, buffer.size());
+    Assert.assertFalse(buffer.isLimitExceeded());
+
+    Writer writer = buffer.getWriter(StandardCharsets.UTF_8);
+    writer.write("01234567890123456789");
+    buffer.size();
+    Assert.assertTrue(buffer.isLimitExceeded());
+  }
+
+  @Test
+  public void testReset() throws IOException {
+    ResponseBuffer buffer = new ResponseBuffer();
+    Writer writer = buffer.getWriter(StandardCharsets.UTF_8);
+    writer.write("discarded");
+    buffer.reset();
+    writer.write("kept");
+    Assert.assertEquals("kept", buffer.toString());
+  }
+
+  @Test
+  public void testChecksum() throws IOException {
+    byte[] data = new byte[5000];
+    new Random(2).nextBytes(data);
+    CRC32C expected = new CRC32C();
+    expected.update(data);
+
+    ResponseBuffer buffer = new ResponseBuffer();
+    buffer.setChecksum(new CRC32C());
+    buffer.write(data[0]);
+    buffer.write(data, 1, data.length - 1);
+    Assert.assertEquals(expected.getValue(), buffer.getChecksum().getValue());
+
+    buffer.reset();
+    Writer writer = buffer.getWriter(StandardCharsets.UTF_8);
+    writer.write("text");
+    expected.reset();
+    expected.update("text".getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(expected.getValue(), buffer.getChecksum().getValue());
+  }
+}
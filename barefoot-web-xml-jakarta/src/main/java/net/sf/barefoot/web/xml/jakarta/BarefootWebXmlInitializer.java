@@ -48,9 +48,7 @@ public final class BarefootWebXmlInitializer implements ServletContainerInitiali
       SAXParserFactory factory = SAXParserFactory.newInstance();
       SAXParser saxParser = factory.newSAXParser();
 
-      DefaultHandler handler =
-          new BarefootWebXmlHandler(
-              servletContext, new StringVariableExpander(new VariableMapper()));
+      DefaultHandler handler = new BarefootWebXmlHandler(servletContext, newValueExpander());
 
       try (InputStream is = servletContext.getResourceAsStream("/WEB-INF/web.xml")) {
         if (is == null) {
@@ -63,6 +61,16 @@ public final class BarefootWebXmlInitializer implements ServletContainerInitiali
     }
   }
 
+  /**
+   * expands variables in web.xml values from java:comp/env, system properties and the environment,
+   * also used by initializers generated at build time
+   *
+   * @return value expander
+   */
+  public static Function<String, String> newValueExpander() {
+    return new StringVariableExpander(new VariableMapper());
+  }
+
   private static class VariableMapper implements Function<String, String> {
     final Context context;
 